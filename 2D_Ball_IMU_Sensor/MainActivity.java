@@ -4,9 +4,9 @@ import android.app.Dialog;
 import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
+import android.view.Choreographer;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.Window;
@@ -18,13 +18,34 @@ import android.widget.ToggleButton;
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
 
-public class MainActivity extends AppCompatActivity implements SensorEventListener {
+public class MainActivity extends AppCompatActivity {
     private BallView ballView;
     private GestureDetector gestureDetector;
     private SensorManager sensorManager;
     private Sensor accelerometer;
-    private boolean sensorMode = false; // 기본 모드는 터치 모드
-    private final float[] gravity = new float[3]; // 중력 가속도 저장 배열
+    private volatile boolean sensorMode = false; // 기본 모드는 터치 모드 (센서 스레드에서도 읽음)
+    private final float[] gravity = new float[3]; // 중력 가속도 저장 배열 (센서 스레드 전용)
+
+    // 센서 스레드 → UI: 공에 줄 이동량의 누적합. UI는 직전 읽기와의 차이만 적용 → 프레임 사이 이벤트도 빠짐없이 반영
+    private static final int S_SUM_X = 0, S_SUM_Y = 1, S_COUNT = 2;
+    private final SensorSnapshot snapshot = new SensorSnapshot(S_COUNT);
+    private double sumX = 0, sumY = 0;              // 센서 스레드 전용
+    private final double[] read = new double[S_COUNT];
+    private double appliedX = 0, appliedY = 0;      // UI 스레드 전용
+    private SensorPipeline pipeline;
+
+    private final Choreographer.FrameCallback uiFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            snapshot.read(read);
+            float dx = (float) (read[S_SUM_X] - appliedX);
+            float dy = (float) (read[S_SUM_Y] - appliedY);
+            appliedX = read[S_SUM_X];
+            appliedY = read[S_SUM_Y];
+            if (sensorMode && (dx != 0 || dy != 0)) ballView.applySensorMovement(dx, dy);
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -41,6 +62,9 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         if (sensorManager != null) {
             accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
         }
+        // 가속도 필터링은 전용 센서 스레드에서
+        pipeline = new SensorPipeline(sensorManager, "BallSensors", this::onSensorEvent)
+                .add(accelerometer, SensorManager.SENSOR_DELAY_GAME);
 
         // Weight 버튼 (무게 설정 팝업)
         Button btnWeight = findViewById(R.id.btn_weight);
@@ -110,8 +134,8 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         weightDialog.show();
     }
 
-    @Override
-    public void onSensorChanged(SensorEvent event) {
+    /** 센서 스레드 */
+    private void onSensorEvent(SensorEvent event) {
         if (sensorMode && event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
             float alpha = 0.8f; // 중력 필터링 계수
 
@@ -129,25 +153,33 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             float accelX = rawX - gravity[0];
             float accelY = rawY - gravity[1];
 
-            // 공의 움직임 적용 (중력 제거된 가속도 사용)
-            ballView.applySensorMovement(-accelX, accelY);
+            // 공의 움직임 누적 (중력 제거된 가속도 사용) → UI 프레임에서 applySensorMovement
+            sumX += -accelX;
+            sumY += accelY;
+            snapshot.beginWrite();
+            snapshot.put(S_SUM_X, sumX);
+            snapshot.put(S_SUM_Y, sumY);
+            snapshot.endWrite();
         }
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
-        }
+        pipeline.start();
+        Choreographer.getInstance().postFrameCallback(uiFrame);
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        sensorManager.unregisterListener(this);
+        pipeline.stop();
+        Choreographer.getInstance().removeFrameCallback(uiFrame);
     }
 
     @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+    protected void onDestroy() {
+        super.onDestroy();
+        pipeline.release();
+    }
 }
@@ -0,0 +1,62 @@
+package com.example.apptest3;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 센서 스레드(쓰기 1개) → UI 스레드(읽기)로 최신 값 묶음을 넘기는 lock-free 스냅샷(seqlock).
+ * - 쓰기: beginWrite() → put(slot, v)... → endWrite(). 할당/락 없음, 읽는 쪽 때문에 기다리지 않음
+ * - 읽기: read(out)이 쓰는 중이거나 읽는 사이 바뀌면 다시 읽어 항상 한 번의 쓰기 결과만 돌려줌
+ * - 슬롯은 AtomicLongArray(double 비트)라 자바 메모리 모델상으로도 찢어진 값을 보지 않음
+ * 누적값(합계/카운터)을 슬롯에 두면 UI가 이전 읽기와의 차이로 그 사이 이벤트를 빠짐없이 반영할 수 있다.
+ */
+public final class SensorSnapshot {
+
+    private final AtomicLongArray slots;
+    private final AtomicLong seq = new AtomicLong(); // 홀수 = 쓰는 중
+
+    public SensorSnapshot(int slotCount) {
+        slots = new AtomicLongArray(slotCount);
+    }
+
+    public int size() {
+        return slots.length();
+    }
+
+    // ===== 쓰기(센서 스레드 1개만) =====
+
+    public void beginWrite() {
+        seq.set(seq.get() + 1);
+    }
+
+    public void put(int slot, double value) {
+        slots.set(slot, Double.doubleToRawLongBits(value));
+    }
+
+    public void endWrite() {
+        seq.set(seq.get() + 1);
+    }
+
+    // ===== 읽기(아무 스레드) =====
+
+    /**
+     * 마지막으로 완료된 쓰기의 슬롯 값을 out에 복사(out.length 만큼).
+     * @return 버전(쓰기 횟수). 0이면 아직 쓴 적 없음. 이전 값과 같으면 바뀐 게 없음
+     */
+    public long read(double[] out) {
+        final int n = Math.min(out.length, slots.length());
+        for (int spins = 0; ; spins++) {
+            long s1 = seq.get();
+            if ((s1 & 1) == 0) {
+                for (int i = 0; i < n; i++) out[i] = Double.longBitsToDouble(slots.get(i));
+                if (seq.get() == s1) return s1 >> 1;
+            }
+            if (spins >= 64) Thread.yield(); // 쓰기는 수 µs 이내라 거의 오지 않음
+        }
+    }
+
+    /** 현재 버전(값은 읽지 않음) */
+    public long version() {
+        return seq.get() >> 1;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.achoggmusicplayer;
+
+import android.widget.TextView;
+
+/**
+ * "라벨  MM:SS.cc / MM:SS.cc" 시간 표기를 재사용 char[]에 직접 써서 TextView에 반영.
+ * - 표시되는 10ms 단위 값(위치/길이)이 바뀐 경우에만 setText → 프레임마다 호출해도 할당 없음
+ * - 1시간 이상이면 H:MM:SS.cc
+ */
+public final class ClockTextFormatter {
+
+    private final TextView view;
+    private final char[] prefix;
+    private final char[] sep;
+    private final char[] buf;
+    private long lastPosCs = -1, lastDurCs = -1;
+
+    public ClockTextFormatter(TextView view, String label, String sep) {
+        this.view = view;
+        this.prefix = (label + "  ").toCharArray();
+        this.sep = sep.toCharArray();
+        // 시각 하나는 long 범위에서도 24자 이내
+        this.buf = new char[prefix.length + this.sep.length + 2 * 24];
+    }
+
+    /** @return 텍스트를 실제로 갱신했으면 true */
+    public boolean update(long posMs, long durMs) {
+        long posCs = Math.max(0, posMs) / 10;
+        long durCs = Math.max(0, durMs) / 10;
+        if (posCs == lastPosCs && durCs == lastDurCs) return false;
+        lastPosCs = posCs;
+        lastDurCs = durCs;
+
+        int n = 0;
+        System.arraycopy(prefix, 0, buf, n, prefix.length);
+        n += prefix.length;
+        n = appendClock10(buf, n, posCs);
+        System.arraycopy(sep, 0, buf, n, sep.length);
+        n += sep.length;
+        n = appendClock10(buf, n, durCs);
+        view.setText(buf, 0, n);
+        return true;
+    }
+
+    /** 다음 update()에서 값이 같아도 다시 그리도록 */
+    public void invalidate() {
+        lastPosCs = lastDurCs = -1;
+    }
+
+    /** centiseconds → [H:]MM:SS.cc 를 buf[at..]에 기록, 끝 위치 반환 */
+    static int appendClock10(char[] buf, int at, long cs) {
+        long totalSec = cs / 100;
+        long h = totalSec / 3600;
+        int m = (int) ((totalSec % 3600) / 60);
+        int s = (int) (totalSec % 60);
+        int c = (int) (cs % 100);
+        if (h > 0) {
+            at = appendLong(buf, at, h);
+            buf[at++] = ':';
+        }
+        at = append2(buf, at, m);
+        buf[at++] = ':';
+        at = append2(buf, at, s);
+        buf[at++] = '.';
+        return append2(buf, at, c);
+    }
+
+    private static int append2(char[] buf, int at, int v) {
+        buf[at] = (char) ('0' + v / 10);
+        buf[at + 1] = (char) ('0' + v % 10);
+        return at + 2;
+    }
+
+    private static int appendLong(char[] buf, int at, long v) {
+        int digits = 1;
+        for (long t = v; t >= 10; t /= 10) digits++;
+        for (int i = at + digits - 1; i >= at; i--) {
+            buf[i] = (char) ('0' + v % 10);
+            v /= 10;
+        }
+        return at + digits;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.achoggmusicplayer;
+
+/**
+ * 햅틱 진폭 테이블의 다해상도(mip) 요약.
+ * - level 0 = 원본 bin(10ms, int[] 공유 · 복사 없음)
+ * - level k = FACTOR^k bin 묶음의 min/max/RMS (40ms, 160ms, 640ms, ...), 각 값은 byte(0~255)
+ * - 구간 min/max/RMS는 레벨을 올라가며 블록 단위로 합산 → O(log n), 전체 재스캔 없음
+ * - 파형 뷰는 levelForBinsPerPixel()로 줌에 맞는 레벨을 골라 그대로 그리면 된다
+ */
+public final class HapticAmplitudePyramid {
+
+    public static final int FACTOR = 4;
+
+    private final int[] base;
+    private final int baseLen;
+    private final byte[][] min; // [level-1][i]
+    private final byte[][] max;
+    private final byte[][] rms;
+    private final int levels;   // level 0 포함
+
+    public HapticAmplitudePyramid(int[] base, int baseLen) {
+        this.base = base;
+        this.baseLen = baseLen;
+
+        int count = 1;
+        for (int n = baseLen; n > 1; n = (n + FACTOR - 1) / FACTOR) count++;
+        levels = count;
+        min = new byte[levels - 1][];
+        max = new byte[levels - 1][];
+        rms = new byte[levels - 1][];
+
+        int prevLen = baseLen;
+        for (int l = 1; l < levels; l++) {
+            int len = (prevLen + FACTOR - 1) / FACTOR;
+            byte[] mn = new byte[len], mx = new byte[len], rm = new byte[len];
+            for (int i = 0; i < len; i++) {
+                int from = i * FACTOR;
+                int to = Math.min(prevLen, from + FACTOR);
+                int lo = 255, hi = 0;
+                long sq = 0;
+                for (int j = from; j < to; j++) {
+                    int a, b, r;
+                    if (l == 1) {
+                        a = b = r = base[j];
+                    } else {
+                        a = getMin(l - 1, j);
+                        b = getMax(l - 1, j);
+                        r = getRms(l - 1, j);
+                    }
+                    if (a < lo) lo = a;
+                    if (b > hi) hi = b;
+                    sq += (long) r * r;
+                }
+                mn[i] = (byte) lo;
+                mx[i] = (byte) hi;
+                rm[i] = (byte) Math.round(Math.sqrt((double) sq / (to - from)));
+            }
+            min[l - 1] = mn;
+            max[l - 1] = mx;
+            rms[l - 1] = rm;
+            prevLen = len;
+        }
+    }
+
+    public int getLevelCount() { return levels; }
+
+    public int getLevelLength(int level) {
+        return level == 0 ? baseLen : min[level - 1].length;
+    }
+
+    /** level의 한 항목이 덮는 원본 bin 수 */
+    public int getBinsPerEntry(int level) {
+        int n = 1;
+        for (int i = 0; i < level; i++) n *= FACTOR;
+        return n;
+    }
+
+    public int getMin(int level, int i) { return level == 0 ? base[i] : min[level - 1][i] & 0xFF; }
+    public int getMax(int level, int i) { return level == 0 ? base[i] : max[level - 1][i] & 0xFF; }
+    public int getRms(int level, int i) { return level == 0 ? base[i] : rms[level - 1][i] & 0xFF; }
+
+    /** 픽셀당 bin 수에 맞는 가장 거친 레벨(항목 ≤ 1픽셀) */
+    public int levelForBinsPerPixel(double binsPerPixel) {
+        int level = 0;
+        long per = FACTOR;
+        while (level + 1 < levels && per <= binsPerPixel) {
+            level++;
+            per *= FACTOR;
+        }
+        return level;
+    }
+
+    /** [fromBin, toBin) 구간 최대 진폭 */
+    public int rangeMax(int fromBin, int toBin) {
+        return (int) query(fromBin, toBin, Q_MAX);
+    }
+
+    /** [fromBin, toBin) 구간 최소 진폭 */
+    public int rangeMin(int fromBin, int toBin) {
+        return (int) query(fromBin, toBin, Q_MIN);
+    }
+
+    /** [fromBin, toBin) 구간 RMS(상위 레벨은 byte RMS 기반 근사) */
+    public int rangeRms(int fromBin, int toBin) {
+        return (int) Math.round(query(fromBin, toBin, Q_RMS));
+    }
+
+    private static final int Q_MAX = 0, Q_MIN = 1, Q_RMS = 2;
+
+    private double query(int fromBin, int toBin, int kind) {
+        int lo = Math.max(0, fromBin);
+        int hi = Math.min(baseLen, toBin);
+        if (lo >= hi) return 0;
+
+        int mx = 0, mn = 255;
+        double sq = 0;
+        long weight = 0;
+        int level = 0;
+        int per = 1;
+        while (lo < hi) {
+            // 다음 상위 레벨 경계에 맞지 않는 머리/꼬리 항목은 현재 레벨에서 처리
+            boolean top = level == levels - 1;
+            while (lo < hi && (top || lo % FACTOR != 0)) {
+                int w = Math.min(per, baseLen - lo * per);
+                if (kind == Q_MAX) mx = Math.max(mx, getMax(level, lo));
+                else if (kind == Q_MIN) mn = Math.min(mn, getMin(level, lo));
+                else { int r = getRms(level, lo); sq += (double) r * r * w; weight += w; }
+                lo++;
+            }
+            while (lo < hi && hi % FACTOR != 0) {
+                hi--;
+                int w = Math.min(per, baseLen - hi * per);
+                if (kind == Q_MAX) mx = Math.max(mx, getMax(level, hi));
+                else if (kind == Q_MIN) mn = Math.min(mn, getMin(level, hi));
+                else { int r = getRms(level, hi); sq += (double) r * r * w; weight += w; }
+            }
+            lo /= FACTOR;
+            hi /= FACTOR;
+            level++;
+            per *= FACTOR;
+        }
+        if (kind == Q_MAX) return mx;
+        if (kind == Q_MIN) return mn;
+        return weight > 0 ? Math.sqrt(sq / weight) : 0;
+    }
+}
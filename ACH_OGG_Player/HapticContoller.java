@@ -3,21 +3,33 @@ package com.example.achoggmusicplayer;
 import android.content.Context;
 import android.net.Uri;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.os.VibratorManager;
+import android.util.Log;
 
 import androidx.annotation.Nullable;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Haptic 동기화 컨트롤러.
  *
- * - extractPatternOrFallback(): OGG 파일에서 Vorbis Comment 등의 메타로부터
- *   "HAPTIC_MS=..." 같은 키를 읽어 파형을 구성하는 훅.
- *   (지금은 실제 파싱은 TODO, 메타 없으면 폴백 파형을 반환)
+ * - extractPatternOrFallback(): OGG Vorbis/Opus Comment를 OggPageReader로 스트리밍 읽어
+ *   "HAPTIC_MS=..." 등의 키로 파형을 구성. 메타 없으면 폴백 파형을 반환.
+ *   · HAPTIC_MS        : off/on 교차 시간(ms) 목록. 여러 코멘트로 나뉘면 순서대로 이어 붙임
+ *   · HAPTIC_AMP       : (선택) 세그먼트별 진폭 0~255. 개수가 HAPTIC_MS와 같을 때만 사용
+ *   · HAPTIC_OFFSET_MS : (선택) 파형 시작 전 대기(ms)
+ *
+ * - compile(): 파형을 누적합(prefix-sum) 인덱스(PatternIndex)로 변환.
  *
- * - playAtOffset(): 전체 파형 기준 특정 오프셋(ms)에서 시작하도록
- *   배열을 재구성하여 createWaveform()으로 재생.
+ * - playAtOffset(): 인덱스에서 오프셋(ms)이 속한 세그먼트를 이진 탐색(O(log n))하고,
+ *   그 지점부터 최대 SLICE_SEGMENTS개만 잘라 createWaveform()으로 재생.
+ *   남은 구간은 슬라이스가 끝나는 시점에 다음 슬라이스로 이어서 재생(전체 배열 복제 없음).
  *
  * - pause(): 현재 진동 중지.
  * - stop(): 완전 종료(동일).
@@ -28,42 +40,182 @@ import androidx.annotation.Nullable;
  */
 public final class HapticController {
 
+    private static final String TAG = "HapticController";
+    private static final String KEY_MS = "HAPTIC_MS";
+    private static final String KEY_AMP = "HAPTIC_AMP";
+    private static final String KEY_OFFSET = "HAPTIC_OFFSET_MS";
+    private static final int SLICE_SEGMENTS = 64;
+    private static final long[] FALLBACK = {0, 80, 40, 120, 60, 80, 40, 200};
+
     private HapticController() {}
 
-    // 현재 재생 중 파형 캐시(필요 시 유지)
+    /**
+     * 컴파일된 파형. starts[i] = 세그먼트 i 시작 시각(누적합), starts[n] = 전체 길이.
+     * amplitudes는 항상 채워짐(HAPTIC_AMP 없으면 off=0, on=DEFAULT_AMPLITUDE).
+     */
+    public static final class PatternIndex {
+        public final long[] timings;
+        public final int[] amplitudes;
+        private final long[] starts;
+
+        PatternIndex(long[] timings, int[] amplitudes) {
+            this.timings = timings;
+            this.amplitudes = amplitudes;
+            this.starts = new long[timings.length + 1];
+            for (int i = 0; i < timings.length; i++) starts[i + 1] = starts[i] + Math.max(0, timings[i]);
+        }
+
+        public int size() { return timings.length; }
+
+        public long getTotalMs() { return starts[timings.length]; }
+
+        public long getStartMs(int segment) { return starts[segment]; }
+
+        /** offsetMs가 속한 세그먼트(starts[i] ≤ offset < starts[i+1]). 끝 이후면 size() */
+        public int segmentAt(long offsetMs) {
+            if (offsetMs <= 0) return 0;
+            if (offsetMs >= getTotalMs()) return timings.length;
+            int lo = 0, hi = timings.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi + 1) >>> 1;
+                if (starts[mid] <= offsetMs) lo = mid;
+                else hi = mid - 1;
+            }
+            return lo;
+        }
+    }
+
+    // 현재 재생 중 파형 캐시(같은 long[]으로 다시 호출되면 재컴파일 생략)
     private static long[] lastPattern = null;
+    private static PatternIndex lastIndex = null;
+
+    // 슬라이스 이어 재생(메인 스레드)
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static int generation = 0;
 
     @Nullable
     public static long[] extractPatternOrFallback(Context ctx, Uri mediaUri) {
-        // TODO: mediaUri의 OGG Vorbis Comment에서 "HAPTIC_MS=..."를 읽어
-        // "0,80,40,120,..." 형태의 문자열을 long[]으로 변환하는 로직을 구현.
-        // 당장은 폴백(간단 진동) 사용.
-        return new long[]{0, 80, 40, 120, 60, 80, 40, 200};
+        PatternIndex idx = extractIndexOrFallback(ctx, mediaUri);
+        return idx.timings;
+    }
+
+    /** 코멘트 키를 읽어 인덱스까지 컴파일. 실패/없음이면 폴백 파형 */
+    public static PatternIndex extractIndexOrFallback(Context ctx, Uri mediaUri) {
+        try {
+            OggPageReader.CommentHeader h = OggPageReader.readComments(ctx, mediaUri);
+            if (h != null) {
+                PatternIndex idx = fromComments(h);
+                if (idx != null) return idx;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "comment read fail: " + e.getMessage());
+        }
+        return compile(FALLBACK, null);
+    }
+
+    /** 코멘트 헤더의 HAPTIC_* 키로 인덱스 생성. HAPTIC_MS가 없거나 비면 null */
+    @Nullable
+    public static PatternIndex fromComments(OggPageReader.CommentHeader h) {
+        List<String> msParts = h.getAll(KEY_MS);
+        if (msParts.isEmpty()) return null;
+        LongList ms = new LongList();
+        for (String part : msParts) parseNumbers(part, ms);
+        if (ms.size == 0) return null;
+
+        long[] timings = ms.toArray();
+        String offset = h.get(KEY_OFFSET);
+        if (offset != null) {
+            LongList o = new LongList();
+            parseNumbers(offset, o);
+            if (o.size > 0 && o.data[0] > 0) timings[0] += o.data[0];
+        }
+
+        int[] amps = null;
+        List<String> ampParts = h.getAll(KEY_AMP);
+        if (!ampParts.isEmpty()) {
+            LongList a = new LongList();
+            for (String part : ampParts) parseNumbers(part, a);
+            if (a.size == timings.length) {
+                amps = new int[a.size];
+                for (int i = 0; i < a.size; i++) amps[i] = (int) Math.max(0, Math.min(255, a.data[i]));
+            } else {
+                Log.w(TAG, KEY_AMP + " count " + a.size + " != " + KEY_MS + " count " + timings.length + ", ignored");
+            }
+        }
+        return compile(timings, amps);
+    }
+
+    /** off/on 교차 파형(+선택 진폭)을 인덱스로 변환 */
+    public static PatternIndex compile(long[] timings, @Nullable int[] amplitudes) {
+        int[] amps = amplitudes;
+        if (amps == null) {
+            amps = new int[timings.length];
+            for (int i = 1; i < amps.length; i += 2) amps[i] = VibrationEffect.DEFAULT_AMPLITUDE;
+        }
+        return new PatternIndex(timings, amps);
     }
 
     public static void playAtOffset(Context ctx, long[] fullPattern, long offsetMs) {
         if (fullPattern == null || fullPattern.length == 0) return;
-        lastPattern = fullPattern;
+        if (fullPattern != lastPattern || lastIndex == null) {
+            lastIndex = compile(fullPattern, null);
+            lastPattern = fullPattern;
+        }
+        playAtOffset(ctx, lastIndex, offsetMs);
+    }
 
-        long[] adjusted = applyOffset(fullPattern, offsetMs);
-        vibrate(ctx, adjusted);
+    public static void playAtOffset(Context ctx, PatternIndex index, long offsetMs) {
+        if (index == null || index.size() == 0) return;
+        lastIndex = index;
+        lastPattern = index.timings;
+        final int gen = ++generation;
+        handler.removeCallbacksAndMessages(null);
+        final long start = Math.max(0, offsetMs);
+        // 패턴 0ms에 해당하는 uptime. 모든 슬라이스를 이 기준으로 예약 → 슬라이스별 지연이 누적되지 않음
+        final long anchorUptime = SystemClock.uptimeMillis() - start;
+        playSlice(ctx.getApplicationContext(), index, start, anchorUptime, gen);
     }
 
     public static void pause(Context ctx) {
+        generation++;
+        handler.removeCallbacksAndMessages(null);
         cancel(ctx);
     }
 
     public static void stop(Context ctx) {
-        cancel(ctx);
+        pause(ctx);
         lastPattern = null;
+        lastIndex = null;
     }
 
     // --- 내부 유틸 ---
 
-    private static void vibrate(Context ctx, long[] timings) {
+    /**
+     * offsetMs부터 최대 SLICE_SEGMENTS개를 재생하고, 남으면 다음 슬라이스를 anchorUptime + 시작 시각에 예약.
+     * 늦게 실행됐으면 지금의 패턴 위치부터 재생(뒤 슬라이스가 밀리지 않음)
+     */
+    private static void playSlice(Context ctx, PatternIndex index, long offsetMs, long anchorUptime, int gen) {
+        if (gen != generation) return;
+        offsetMs = Math.max(offsetMs, SystemClock.uptimeMillis() - anchorUptime);
+        int first = index.segmentAt(offsetMs);
+        if (first >= index.size()) return;
+
+        int end = Math.min(index.size(), first + SLICE_SEGMENTS);
+        long[] timings = Arrays.copyOfRange(index.timings, first, end);
+        int[] amps = Arrays.copyOfRange(index.amplitudes, first, end);
+        timings[0] = index.getStartMs(first + 1) - offsetMs; // 첫 세그먼트는 남은 시간만
+        vibrate(ctx, timings, amps);
+
+        if (end < index.size()) {
+            final long next = index.getStartMs(end);
+            handler.postAtTime(() -> playSlice(ctx, index, next, anchorUptime, gen), anchorUptime + next);
+        }
+    }
+
+    private static void vibrate(Context ctx, long[] timings, int[] amplitudes) {
         if (timings == null || timings.length == 0) return;
         if (Build.VERSION.SDK_INT >= 26) {
-            VibrationEffect effect = VibrationEffect.createWaveform(timings, -1);
+            VibrationEffect effect = VibrationEffect.createWaveform(timings, amplitudes, -1);
             if (Build.VERSION.SDK_INT >= 31) {
                 VibratorManager vm = (VibratorManager) ctx.getSystemService(Context.VIBRATOR_MANAGER_SERVICE);
                 if (vm != null) vm.getDefaultVibrator().vibrate(effect);
@@ -84,31 +236,34 @@ public final class HapticController {
         }
     }
 
-    /**
-     * 전체 파형에서 offsetMs만큼 건너뛰어 그 시점부터 재생 가능한 새 파형을 만든다.
-     * 예) full = [off0, on0, off1, on1, ...], offset이 on0의 중간이면
-     *     남은 on0 시간부터 시작하도록 조정.
-     */
-    private static long[] applyOffset(long[] full, long offsetMs) {
-        if (offsetMs <= 0) return full.clone();
-
-        long acc = 0;
-        for (int i = 0; i < full.length; i++) {
-            long seg = full[i];
-            if (offsetMs < acc + seg) {
-                // 이 세그먼트 i의 중간에서 시작
-                long remain = (acc + seg) - offsetMs;
-
-                // i 세그먼트의 남은 시간부터 이어서, 뒤의 세그먼트는 그대로 붙인다.
-                int restLen = full.length - i;
-                long[] adjusted = new long[restLen];
-                adjusted[0] = Math.max(0, remain);
-                System.arraycopy(full, i + 1, adjusted, 1, restLen - 1);
-                return adjusted;
+    /** "0,80, 40;120 ..." → 숫자만 순서대로 추가(구분자는 숫자 외 모든 문자, substring/split 없음) */
+    static void parseNumbers(String s, LongList out) {
+        long v = 0;
+        boolean inNumber = false;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            char c = s.charAt(i);
+            if (c >= '0' && c <= '9') {
+                v = v * 10 + (c - '0');
+                inNumber = true;
+            } else if (inNumber) {
+                out.add(v);
+                v = 0;
+                inNumber = false;
             }
-            acc += seg;
         }
-        // offset이 전체 길이를 넘으면 더 이상 진동 없음
-        return new long[]{0};
+        if (inNumber) out.add(v);
+    }
+
+    /** 박싱 없는 가변 long 목록 */
+    static final class LongList {
+        long[] data = new long[32];
+        int size = 0;
+
+        void add(long v) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = v;
+        }
+
+        long[] toArray() { return Arrays.copyOf(data, size); }
     }
 }
@@ -0,0 +1,352 @@
+package com.example.achoggmusicplayer;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 독립 햅틱 재생 엔진.
+ * 세그먼트를 WINDOW_MS 단위로 묶어 createWaveform(timings, amplitudes, -1) 한 번으로 재생.
+ * - 시간(Clock), 예약(Scheduler), 진동 출력(Output)은 주입 가능
+ *   · 기본: SystemClock.elapsedRealtime + 전용 HandlerThread + Vibrator
+ *   · VirtualHapticScheduler(단위 테스트): 가상 시간 + 부하 모델 → 기기 없이 결정적으로 지연/누락 측정
+ * - 윈도우마다 예정 시각 대비 실제 실행 시각을 JitterStats에 기록(히스토그램, 늦어서 생략된 ms)
+ */
+public final class HapticPlaybackEngine {
+
+    /** 단조 증가 ms 시계 */
+    public interface Clock {
+        long nowMs();
+    }
+
+    /** 단일 스레드 순차 실행 예약기(post 순서 보장) */
+    public interface Scheduler {
+        void post(Runnable r);
+        void postDelayed(Runnable r, long delayMs);
+        void removeAll();
+        void release();
+    }
+
+    /** 진동 출력. timings/amplitudes는 count개만 유효(호출 후 재사용됨) */
+    public interface Output {
+        void play(long[] timings, int[] amplitudes, int count);
+        void cancel();
+    }
+
+    private static final long WINDOW_MS = 1000;
+
+    private final Clock clock;
+    private final Scheduler scheduler;
+    private final Output output;
+    private final JitterStats jitter = new JitterStats();
+    private volatile OggHapticInspector.HapticTrackInfo track;
+
+    private volatile boolean playing = false;
+    private volatile long baseTrackMs = 0;      // 트랙 기준 시작 오프셋
+    private volatile long baseRealtimeMs = 0;   // 실제 시작 시간(clock 기준)
+    private volatile int generation = 0;        // stop/seek마다 증가 → 이전 윈도우 체인 무효화
+
+    // 윈도우 파형 빌드용(예약 스레드 전용, 재사용)
+    private long[] timings = new long[64];
+    private int[] amplitudes = new int[64];
+    private int count = 0;
+
+    /** 기기 기본 구성(SystemClock + HandlerThread + Vibrator) */
+    public HapticPlaybackEngine(Vibrator vibrator) {
+        this(SystemClock::elapsedRealtime, new HandlerScheduler("HapticPlayback"), new VibratorOutput(vibrator));
+    }
+
+    public HapticPlaybackEngine(Clock clock, Scheduler scheduler, Output output) {
+        this.clock = clock;
+        this.scheduler = scheduler;
+        this.output = output;
+    }
+
+    public void setTrack(OggHapticInspector.HapticTrackInfo info) {
+        stopInternal(true);
+        this.track = info;
+        this.baseTrackMs = 0;
+    }
+
+    public void clear() {
+        stopInternal(true);
+        this.track = null;
+        this.baseTrackMs = 0;
+    }
+
+    public boolean isPlaying() { return playing; }
+
+    /** 윈도우 실행 지연 통계(스냅샷 복사본) */
+    public JitterStats getJitter() { return jitter.copy(); }
+
+    public void resetJitter() { jitter.reset(); }
+
+    public long getCurrentPositionMs() {
+        if (!playing) return baseTrackMs;
+        long pos = baseTrackMs + (clock.nowMs() - baseRealtimeMs);
+        OggHapticInspector.HapticTrackInfo t = track;
+        if (t != null && pos > t.totalDurationMs) pos = t.totalDurationMs;
+        return Math.max(0, pos);
+    }
+
+    public void playFrom(long trackMs) {
+        OggHapticInspector.HapticTrackInfo t = track;
+        if (t == null) return;
+        stopInternal(false);
+        start(clamp(trackMs, 0, t.totalDurationMs));
+    }
+
+    public void pause() {
+        if (!playing) return;
+        long pos = getCurrentPositionMs();
+        stopInternal(true);
+        baseTrackMs = pos;
+    }
+
+    public void stop() {
+        stopInternal(true);
+        baseTrackMs = 0;
+    }
+
+    public void seekTo(long trackMs, boolean resumeIfPlaying) {
+        boolean wasPlaying = playing;
+        OggHapticInspector.HapticTrackInfo t = track;
+        stopInternal(false);
+        long target = clamp(trackMs, 0, (t != null ? t.totalDurationMs : 0));
+        if (t != null && (resumeIfPlaying || wasPlaying)) {
+            start(target);
+        } else {
+            baseTrackMs = target;
+            playing = false;
+        }
+    }
+
+    public void release() {
+        stopInternal(true);
+        scheduler.release();
+    }
+
+    private void start(long trackMs) {
+        baseTrackMs = trackMs;
+        baseRealtimeMs = clock.nowMs();
+        playing = true;
+        final int gen = generation;
+        final long due = baseRealtimeMs;
+        scheduler.post(() -> playWindow(gen, trackMs, due));
+    }
+
+    private void stopInternal(boolean stopPlaybackFlag) {
+        if (stopPlaybackFlag) playing = false;
+        generation++;
+        // 대기 중인 윈도우 제거 후 진동 취소(예약 스레드에서 순서대로 처리)
+        scheduler.removeAll();
+        scheduler.post(() -> {
+            try { output.cancel(); } catch (Exception ignore) {}
+        });
+    }
+
+    /**
+     * [windowStart, windowStart + WINDOW_MS) 구간을 하나의 파형으로 재생하고 다음 윈도우 예약(예약 스레드).
+     * dueMs = 이 윈도우가 실행되어야 했던 clock 시각(지연 측정용)
+     */
+    private void playWindow(int gen, long windowStart, long dueMs) {
+        OggHapticInspector.HapticTrackInfo t = track;
+        if (!playing || gen != generation || t == null) return;
+
+        long now = clock.nowMs();
+        long total = t.totalDurationMs;
+        if (windowStart >= total) {
+            playing = false;
+            try { output.cancel(); } catch (Exception ignore) {}
+            return;
+        }
+        long windowEnd = Math.min(total, windowStart + WINDOW_MS);
+
+        // 실제 시간 기준 현재 트랙 위치(지연된 경우 앞부분 생략)
+        long from = Math.max(windowStart, baseTrackMs + (now - baseRealtimeMs));
+        jitter.record(now - dueMs, Math.min(from, windowEnd) - windowStart);
+        if (from < windowEnd) {
+            buildWindow(t.segments, from, windowEnd);
+            if (count > 0) {
+                try { output.play(timings, amplitudes, count); } catch (Exception ignore) {}
+            }
+        }
+
+        final long next = windowEnd;
+        final long nextDue = baseRealtimeMs + (next - baseTrackMs);
+        scheduler.postDelayed(() -> playWindow(gen, next, nextDue), Math.max(0, nextDue - clock.nowMs()));
+    }
+
+    /** 세그먼트 → (timings, amplitudes) 변환. 빈 구간은 amplitude 0, 같은 진폭은 병합 */
+    private void buildWindow(List<OggHapticInspector.HapticSegment> segs, long from, long to) {
+        count = 0;
+        long cursor = from;
+        for (int i = firstSegmentEndingAfter(segs, from); i < segs.size() && cursor < to; i++) {
+            OggHapticInspector.HapticSegment seg = segs.get(i);
+            long segStart = Math.max(seg.startMs, cursor);
+            long segEnd = Math.min(seg.startMs + seg.durationMs, to);
+            if (segStart >= to) break;
+            if (segEnd <= segStart) continue;
+            if (segStart > cursor) append(segStart - cursor, 0);
+            append(segEnd - segStart, seg.amplitude);
+            cursor = segEnd;
+        }
+        if (cursor < to) append(to - cursor, 0);
+    }
+
+    private void append(long durationMs, int amplitude) {
+        if (durationMs <= 0) return;
+        if (count > 0 && amplitudes[count - 1] == amplitude) {
+            timings[count - 1] += durationMs;
+            return;
+        }
+        if (count == timings.length) {
+            timings = Arrays.copyOf(timings, count * 2);
+            amplitudes = Arrays.copyOf(amplitudes, count * 2);
+        }
+        timings[count] = durationMs;
+        amplitudes[count] = amplitude;
+        count++;
+    }
+
+    /** startMs 정렬된 세그먼트에서 (start + duration) > ms 인 첫 인덱스(이진 탐색) */
+    private static int firstSegmentEndingAfter(List<OggHapticInspector.HapticSegment> segs, long ms) {
+        int lo = 0, hi = segs.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            OggHapticInspector.HapticSegment s = segs.get(mid);
+            if (s.startMs + s.durationMs <= ms) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static long clamp(long v, long lo, long hi) {
+        return Math.max(lo, Math.min(hi, v));
+    }
+
+    // ---------- 지연 통계 ----------
+
+    /**
+     * 윈도우 실행 지연(실제 - 예정, ms) 히스토그램.
+     * 버킷 상한: 0, 1, 2, 4, 8, 16, 32, 64, 128, 256ms, 그 이상
+     */
+    public static final class JitterStats {
+        public static final long[] BUCKET_MAX_MS = {0, 1, 2, 4, 8, 16, 32, 64, 128, 256};
+
+        private final long[] buckets = new long[BUCKET_MAX_MS.length + 1];
+        private long fires, early, sumLateMs, maxLateMs, skippedMs, skippedWindows;
+
+        synchronized void record(long lateMs, long skippedInWindowMs) {
+            fires++;
+            if (lateMs < 0) {
+                early++;
+                lateMs = 0;
+            }
+            sumLateMs += lateMs;
+            if (lateMs > maxLateMs) maxLateMs = lateMs;
+            int b = 0;
+            while (b < BUCKET_MAX_MS.length && lateMs > BUCKET_MAX_MS[b]) b++;
+            buckets[b]++;
+            if (skippedInWindowMs > 0) {
+                skippedMs += skippedInWindowMs;
+                if (skippedInWindowMs >= WINDOW_MS) skippedWindows++;
+            }
+        }
+
+        synchronized void reset() {
+            Arrays.fill(buckets, 0);
+            fires = early = sumLateMs = maxLateMs = skippedMs = skippedWindows = 0;
+        }
+
+        synchronized JitterStats copy() {
+            JitterStats c = new JitterStats();
+            System.arraycopy(buckets, 0, c.buckets, 0, buckets.length);
+            c.fires = fires;
+            c.early = early;
+            c.sumLateMs = sumLateMs;
+            c.maxLateMs = maxLateMs;
+            c.skippedMs = skippedMs;
+            c.skippedWindows = skippedWindows;
+            return c;
+        }
+
+        public long getFires() { return fires; }
+        public long getMaxLateMs() { return maxLateMs; }
+        public long getSkippedMs() { return skippedMs; }
+        public long getSkippedWindows() { return skippedWindows; }
+        public long getBucket(int i) { return buckets[i]; }
+        public int getBucketCount() { return buckets.length; }
+
+        public double getMeanLateMs() { return fires > 0 ? (double) sumLateMs / fires : 0; }
+
+        /** 누적 비율 q(0~1)에 도달하는 버킷 상한(ms). 마지막 버킷이면 최대값 */
+        public long percentileMs(double q) {
+            if (fires == 0) return 0;
+            long need = (long) Math.ceil(q * fires), acc = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                acc += buckets[i];
+                if (acc >= need) return i < BUCKET_MAX_MS.length ? Math.min(BUCKET_MAX_MS[i], maxLateMs) : maxLateMs;
+            }
+            return maxLateMs;
+        }
+
+        /** 한 줄 요약 + 히스토그램 */
+        public String report() {
+            StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                    "fires %d · late mean %.1f ms · p50 ≤%d · p95 ≤%d · p99 ≤%d · max %d ms · skipped %d ms (%d windows)",
+                    fires, getMeanLateMs(), percentileMs(0.5), percentileMs(0.95), percentileMs(0.99),
+                    maxLateMs, skippedMs, skippedWindows));
+            for (int i = 0; i < buckets.length; i++) {
+                if (buckets[i] == 0) continue;
+                sb.append('\n').append(i < BUCKET_MAX_MS.length ? "  ≤" + BUCKET_MAX_MS[i] : "  >" + BUCKET_MAX_MS[i - 1])
+                        .append(" ms: ").append(buckets[i]);
+            }
+            return sb.toString();
+        }
+    }
+
+    // ---------- 기기 구현 ----------
+
+    /** 전용 HandlerThread(URGENT_AUDIO 우선순위) 예약기 */
+    public static final class HandlerScheduler implements Scheduler {
+        private final HandlerThread thread;
+        private final Handler handler;
+
+        public HandlerScheduler(String name) {
+            thread = new HandlerThread(name, Process.THREAD_PRIORITY_URGENT_AUDIO);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+
+        @Override public void post(Runnable r) { handler.post(r); }
+        @Override public void postDelayed(Runnable r, long delayMs) { handler.postDelayed(r, delayMs); }
+        @Override public void removeAll() { handler.removeCallbacksAndMessages(null); }
+        @Override public void release() { thread.quitSafely(); }
+    }
+
+    /** Vibrator.createWaveform 출력(API 26+) */
+    public static final class VibratorOutput implements Output {
+        private final Vibrator vibrator;
+
+        public VibratorOutput(Vibrator vibrator) {
+            this.vibrator = vibrator;
+        }
+
+        @Override public void play(long[] timings, int[] amplitudes, int count) {
+            if (Build.VERSION.SDK_INT < 26) return;
+            vibrator.vibrate(VibrationEffect.createWaveform(
+                    Arrays.copyOf(timings, count), Arrays.copyOf(amplitudes, count), -1));
+        }
+
+        @Override public void cancel() { vibrator.cancel(); }
+    }
+}
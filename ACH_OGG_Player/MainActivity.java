@@ -11,9 +11,9 @@ import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.SystemClock;
-import android.os.VibrationEffect;
 import android.os.Vibrator;
 import android.util.Log;
+import android.view.Choreographer;
 import android.widget.Button;
 import android.widget.SeekBar;
 import android.widget.TextView;
@@ -29,9 +29,11 @@ import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * - 오디오와 햅틱을 완전히 분리 제어
@@ -44,30 +46,37 @@ public class MainActivity extends AppCompatActivity {
     private static final String TAG = "ACHPlayer";
     private static final String PREFS = "ach_prefs";
     private static final String KEY_LAST_URI = "last_uri";
-    private static final int UI_INTERVAL_MS = 20; // 10ms 단위 표기에 충분한 UI 갱신 간격
 
     // UI
     private Button btnPick, btnPlay, btnPause, btnStop;
     private TextView tvPath, tvInfo, tvAudioTime, tvHapticTime;
     private SeekBar seekAudio, seekHaptic;
+    private HapticWaveformView waveHaptic;
     private Button btnHapticPlay, btnHapticPause, btnHapticStop, btnHapticResync, btnDesyncMinus, btnDesyncPlus;
 
     // 오디오
     private Uri selectedUri = null;
-    private MediaPlayer mediaPlayer = null;
-    private long audioDurationMs = 0L;
+    private volatile MediaPlayer mediaPlayer = null;   // PlaybackClock 스레드에서도 읽음
+    private volatile long audioDurationMs = 0L;
 
     // 햅틱
     private Vibrator vibrator;
     private HapticPlaybackEngine hapticEngine;
-    private OggHapticInspector.HapticTrackInfo hapticInfo; // null일 수 있음(없으면 오디오 길이에 맞춰 0 표시)
+    private volatile OggHapticInspector.HapticTrackInfo hapticInfo; // null일 수 있음(없으면 오디오 길이에 맞춰 0 표시)
 
-    // UI 주기 업데이트용
+    // 파일 분석(메타 + 햅틱 파싱)은 백그라운드 단일 워커에서. 재선택 시 이전 작업 취소
+    private final ExecutorService analyzeExecutor = Executors.newSingleThreadExecutor();
+    private Future<?> analyzeTask = null;
+    private Object analyzeToken = null;
+
+    // 위치 표시: 백그라운드 PlaybackClock 스냅샷 → Choreographer 프레임마다 표시 값이 바뀔 때만 갱신
     private final Handler uiHandler = new Handler(Looper.getMainLooper());
-    private final Runnable uiTicker = new Runnable() {
-        @Override public void run() {
+    private PlaybackClock playbackClock;
+    private ClockTextFormatter audioClockText, hapticClockText;
+    private final Choreographer.FrameCallback uiFrame = new Choreographer.FrameCallback() {
+        @Override public void doFrame(long frameTimeNanos) {
             updateTimesAndSeek();
-            uiHandler.postDelayed(this, UI_INTERVAL_MS);
+            Choreographer.getInstance().postFrameCallback(this);
         }
     };
 
@@ -110,6 +119,7 @@ public class MainActivity extends AppCompatActivity {
         tvHapticTime = findViewById(R.id.tvHapticTime);
         seekAudio = findViewById(R.id.seekAudio);
         seekHaptic = findViewById(R.id.seekHaptic);
+        waveHaptic = findViewById(R.id.waveHaptic);
 
         btnHapticPlay = findViewById(R.id.btnHapticPlay);
         btnHapticPause = findViewById(R.id.btnHapticPause);
@@ -121,6 +131,10 @@ public class MainActivity extends AppCompatActivity {
         vibrator = (Vibrator) getSystemService(VIBRATOR_SERVICE);
         hapticEngine = new HapticPlaybackEngine(vibrator);
 
+        audioClockText = new ClockTextFormatter(tvAudioTime, getString(R.string.label_audio_time), getString(R.string.time_sep));
+        hapticClockText = new ClockTextFormatter(tvHapticTime, getString(R.string.label_haptic_time), getString(R.string.time_sep));
+        playbackClock = new PlaybackClock(this::sampleClock);
+
         // 리스너 설정
         btnPick.setOnClickListener(v -> openPicker());
         btnPlay.setOnClickListener(v -> startAudio());
@@ -138,7 +152,7 @@ public class MainActivity extends AppCompatActivity {
                 fromUser = false;
                 int target = (int) (audioDurationMs * (sb.getProgress() / (float) sb.getMax()));
                 try { mediaPlayer.seekTo(target); } catch (Exception ignore) {}
-                updateTimesAndSeek();
+                playbackClock.refresh();
             }
         });
 
@@ -151,8 +165,8 @@ public class MainActivity extends AppCompatActivity {
             // 현재 햅틱 위치에서 재생
             hapticEngine.playFrom(hapticEngine.getCurrentPositionMs());
         });
-        btnHapticPause.setOnClickListener(v -> hapticEngine.pause());
-        btnHapticStop.setOnClickListener(v -> hapticEngine.stop());
+        btnHapticPause.setOnClickListener(v -> { hapticEngine.pause(); playbackClock.refresh(); logHapticJitter(); });
+        btnHapticStop.setOnClickListener(v -> { hapticEngine.stop(); playbackClock.refresh(); logHapticJitter(); });
         btnHapticResync.setOnClickListener(v -> {
             // 오디오 현재 위치로 즉시 동기화
             long aPos = (mediaPlayer != null) ? mediaPlayer.getCurrentPosition() : 0L;
@@ -182,14 +196,15 @@ public class MainActivity extends AppCompatActivity {
                 fromUser = false;
                 long hDur = (hapticInfo != null) ? hapticInfo.totalDurationMs : audioDurationMs;
                 if (hDur <= 0) return;
-                long target = (long) (hDur * (sb.getProgress() / (float) sb.getMax()));
-                hapticEngine.seekTo(target, hapticEngine.isPlaying());
-                updateTimesAndSeek();
+                seekHapticTo((long) (hDur * (sb.getProgress() / (float) sb.getMax())));
             }
         });
 
-        // UI Ticker 시작
-        uiHandler.post(uiTicker);
+        // 햅틱 파형(탭 = 해당 위치로 seek, 핀치 = 줌, 더블탭 = 전체)
+        waveHaptic.setOnSeekListener(this::seekHapticTo);
+
+        // 프레임 단위 UI 갱신 시작
+        Choreographer.getInstance().postFrameCallback(uiFrame);
 
         restoreLastUriIfPossible();
     }
@@ -200,38 +215,76 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void showMetadataAndPrepare(Uri uri) {
-        try {
-            // 오디오 메타
-            OggHapticInspector.Result r = OggHapticInspector.inspect(this, uri);
-            audioDurationMs = (r.durationMs > 0) ? r.durationMs : 0L;
-
-            // 햅틱 트랙 파싱(데모 세그먼트라도 생성)
-            hapticInfo = OggHapticInspector.parseAchFromOgg(this, uri);
-            if (hapticInfo != null) hapticEngine.setTrack(hapticInfo);
-            else hapticEngine.clear();
-
-            String chText;
-            if (r.channelCount <= 0) chText = "Unknown";
-            else if (r.channelCount == 1) chText = "Mono";
-            else if (r.channelCount == 2) chText = "Stereo";
-            else chText = r.channelCount + "ch (3ch 이상: Haptic 포함 가능)";
-
-            String info = ""
-                    + "Container/MIME : " + safe(r.mime) + "\n"
-                    + "Channels       : " + chText + "\n"
-                    + "Haptic Tag     : " + (r.hasHapticTag ? "존재 가능(ANDROID_HAPTIC 발견)" : "미확인") + "\n"
-                    + "Haptic 추정    : " + (r.hasHaptic() ? "있음(추정)" : "없음(추정)") + "\n"
-                    + "Sample Rate    : " + (r.sampleRate > 0 ? r.sampleRate + " Hz" : "Unknown") + "\n"
-                    + "Audio Duration : " + formatMs10(audioDurationMs) + "\n"
-                    + "Haptic Duration: " + (hapticInfo != null ? formatMs10(hapticInfo.totalDurationMs) : "Unknown") + "\n"
-                    + (r.notes == null ? "" : ("Notes          : " + r.notes + "\n"));
-
-            tvInfo.setText(info);
-            updateTimesAndSeek();
+        // 이전 분석 취소 후 백그라운드에서 메타/햅틱 트랙 파싱
+        cancelAnalysis();
+        final Object token = new Object();
+        analyzeToken = token;
+        hapticInfo = null;
+        hapticEngine.clear();
+        waveHaptic.clear();
+        tvInfo.setText("분석 중...");
+
+        analyzeTask = analyzeExecutor.submit(() -> {
+            try {
+                // 오디오 메타
+                OggHapticInspector.Result r = OggHapticInspector.inspect(this, uri);
+                if (Thread.currentThread().isInterrupted()) return;
+
+                // 햅틱 트랙 파싱(데모 세그먼트라도 생성)
+                OggHapticInspector.HapticTrackInfo info = OggHapticInspector.parseAchFromOgg(this, uri);
+                if (Thread.currentThread().isInterrupted()) return;
+
+                uiHandler.post(() -> {
+                    if (token != analyzeToken) return; // 그 사이 다른 파일 선택됨
+                    onAnalyzed(r, info);
+                });
+            } catch (Exception e) {
+                Log.e(TAG, "showMetadata error", e);
+                uiHandler.post(() -> {
+                    if (token != analyzeToken) return;
+                    tvInfo.setText("메타데이터/파싱 실패: " + e.getMessage());
+                });
+            }
+        });
+    }
 
-        } catch (Exception e) {
-            tvInfo.setText("메타데이터/파싱 실패: " + e.getMessage());
-            Log.e(TAG, "showMetadata error", e);
+    private void onAnalyzed(OggHapticInspector.Result r, OggHapticInspector.HapticTrackInfo info) {
+        audioDurationMs = (r.durationMs > 0) ? r.durationMs : 0L;
+
+        hapticInfo = info;
+        if (hapticInfo != null) hapticEngine.setTrack(hapticInfo);
+        else hapticEngine.clear();
+        if (hapticInfo != null) {
+            waveHaptic.setTrack(hapticInfo.getPyramid(), OggHapticInspector.HapticTrackInfo.BIN_MS, hapticInfo.totalDurationMs);
+        } else {
+            waveHaptic.clear();
+        }
+
+        String chText;
+        if (r.channelCount <= 0) chText = "Unknown";
+        else if (r.channelCount == 1) chText = "Mono";
+        else if (r.channelCount == 2) chText = "Stereo";
+        else chText = r.channelCount + "ch (3ch 이상: Haptic 포함 가능)";
+
+        String text = ""
+                + "Container/MIME : " + safe(r.mime) + "\n"
+                + "Channels       : " + chText + "\n"
+                + "Haptic Tag     : " + (r.hasHapticTag ? "존재 가능(ANDROID_HAPTIC 발견)" : "미확인") + "\n"
+                + "Haptic 추정    : " + (r.hasHaptic() ? "있음(추정)" : "없음(추정)") + "\n"
+                + "Sample Rate    : " + (r.sampleRate > 0 ? r.sampleRate + " Hz" : "Unknown") + "\n"
+                + "Audio Duration : " + formatMs10(audioDurationMs) + "\n"
+                + "Haptic Duration: " + (hapticInfo != null ? formatMs10(hapticInfo.totalDurationMs) : "Unknown") + "\n"
+                + (r.notes == null ? "" : ("Notes          : " + r.notes + "\n"));
+
+        tvInfo.setText(text);
+        playbackClock.refresh();
+    }
+
+    private void cancelAnalysis() {
+        analyzeToken = null;
+        if (analyzeTask != null) {
+            analyzeTask.cancel(true);
+            analyzeTask = null;
         }
     }
 
@@ -286,6 +339,7 @@ public class MainActivity extends AppCompatActivity {
         try {
             if (mediaPlayer != null && mediaPlayer.isPlaying()) {
                 mediaPlayer.pause();
+                playbackClock.refresh();
                 Toast.makeText(this, "오디오 일시정지", Toast.LENGTH_SHORT).show();
             }
         } catch (Exception e) {
@@ -300,6 +354,7 @@ public class MainActivity extends AppCompatActivity {
                 mediaPlayer.reset();
                 mediaPlayer.release();
                 mediaPlayer = null;
+                playbackClock.refresh();
                 Toast.makeText(this, "오디오 정지", Toast.LENGTH_SHORT).show();
             }
         } catch (Exception e) {
@@ -308,46 +363,46 @@ public class MainActivity extends AppCompatActivity {
     }
 
     // ---------- 공통 UI ----------
-    private void updateTimesAndSeek() {
-        // 오디오
-        int aPos = (mediaPlayer != null) ? mediaPlayer.getCurrentPosition() : 0;
-        int aDur = (mediaPlayer != null && mediaPlayer.getDuration() > 0)
-                ? mediaPlayer.getDuration() : (int) audioDurationMs;
+    /** PlaybackClock 스레드: 바인더 호출(MediaPlayer)은 여기서만 */
+    private void sampleClock(PlaybackClock.Sample s) {
+        MediaPlayer mp = mediaPlayer;
+        s.audioPlaying = mp != null && mp.isPlaying();
+        s.audioPosMs = mp != null ? mp.getCurrentPosition() : 0;
+        s.audioDurMs = audioDurationMs;
+
+        OggHapticInspector.HapticTrackInfo info = hapticInfo;
+        s.hapticPlaying = hapticEngine.isPlaying();
+        s.hapticPosMs = hapticEngine.getCurrentPositionMs();
+        s.hapticDurMs = info != null ? info.totalDurationMs : 0L;
+    }
 
-        tvAudioTime.setText(getString(R.string.label_audio_time)
-                + "  " + formatClock10(aPos) + getString(R.string.time_sep) + formatClock10(aDur));
+    /** 메인 스레드(프레임 콜백): 스냅샷만 읽고, 표시 값이 바뀐 뷰만 갱신 */
+    private void updateTimesAndSeek() {
+        PlaybackClock.Snapshot snap = playbackClock.getSnapshot();
+        long now = SystemClock.uptimeMillis();
 
-        if (aDur > 0) {
-            int progress = Math.round((aPos / (float) aDur) * seekAudio.getMax());
-            seekAudio.setProgress(progress);
-        } else {
-            seekAudio.setProgress(0);
-        }
+        // 오디오
+        long aPos = snap.audioPositionAt(now);
+        long aDur = snap.audioDurMs;
+        audioClockText.update(aPos, aDur);
+        setProgressIfChanged(seekAudio, aPos, aDur);
 
         // 햅틱
-        long hPos = (hapticEngine != null) ? hapticEngine.getCurrentPositionMs() : 0L;
-        long hDur = (hapticInfo != null) ? hapticInfo.totalDurationMs : 0L;
-
-        tvHapticTime.setText(getString(R.string.label_haptic_time)
-                + "  " + formatClock10((int) hPos) + getString(R.string.time_sep) + formatClock10((int) hDur));
+        long hPos = snap.hapticPositionAt(now);
+        long hDur = snap.hapticDurMs;
+        hapticClockText.update(hPos, hDur);
+        setProgressIfChanged(seekHaptic, hPos, hDur);
+        waveHaptic.setPlayheadMs(hPos);
+    }
 
-        if (hDur > 0) {
-            int progressH = Math.round((hPos / (float) hDur) * seekHaptic.getMax());
-            seekHaptic.setProgress(progressH);
-        } else {
-            seekHaptic.setProgress(0);
-        }
+    private void seekHapticTo(long target) {
+        hapticEngine.seekTo(target, hapticEngine.isPlaying());
+        playbackClock.refresh();
     }
 
-    private String formatClock10(int ms) {
-        if (ms < 0) ms = 0;
-        int totalSec = ms / 1000;
-        int h = totalSec / 3600;
-        int m = (totalSec % 3600) / 60;
-        int s = totalSec % 60;
-        int cs = (ms % 1000) / 10; // 10ms 단위(0~99)
-        if (h > 0) return String.format(Locale.US, "%d:%02d:%02d.%02d", h, m, s, cs);
-        return String.format(Locale.US, "%02d:%02d.%02d", m, s, cs);
+    private static void setProgressIfChanged(SeekBar bar, long pos, long dur) {
+        int progress = dur > 0 ? (int) Math.round(pos / (double) dur * bar.getMax()) : 0;
+        if (bar.getProgress() != progress) bar.setProgress(progress);
     }
 
     private String formatMs10(long ms) {
@@ -391,137 +446,20 @@ public class MainActivity extends AppCompatActivity {
         } catch (Exception ignore) {}
     }
 
+    /** 윈도우 예약 지연 히스토그램(예정 대비 실제 실행 시각) */
+    private void logHapticJitter() {
+        HapticPlaybackEngine.JitterStats j = hapticEngine.getJitter();
+        if (j.getFires() > 0) Log.d(TAG, "haptic jitter: " + j.report());
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        uiHandler.removeCallbacks(uiTicker);
+        Choreographer.getInstance().removeFrameCallback(uiFrame);
+        cancelAnalysis();
+        analyzeExecutor.shutdownNow();
         stopAudio();
-        if (hapticEngine != null) hapticEngine.stop();
-    }
-
-    // ---------- 독립 햅틱 재생 엔진 ----------
-    private static class HapticPlaybackEngine {
-        private final Vibrator vibrator;
-        private final Handler handler = new Handler(Looper.getMainLooper());
-        private OggHapticInspector.HapticTrackInfo track;
-
-        private boolean playing = false;
-        private long baseTrackMs = 0;      // 트랙 기준 시작 오프셋
-        private long baseRealtimeMs = 0;   // 실제 시작 시간 (elapsedRealtime)
-        private final List<Runnable> scheduled = new ArrayList<>();
-
-        HapticPlaybackEngine(Vibrator vibrator) {
-            this.vibrator = vibrator;
-        }
-
-        void setTrack(OggHapticInspector.HapticTrackInfo info) {
-            stopInternal(true);
-            this.track = info;
-            this.baseTrackMs = 0;
-        }
-
-        void clear() {
-            stopInternal(true);
-            this.track = null;
-            this.baseTrackMs = 0;
-        }
-
-        boolean isPlaying() { return playing; }
-
-        long getCurrentPositionMs() {
-            if (!playing) return baseTrackMs;
-            long now = SystemClock.elapsedRealtime();
-            long delta = now - baseRealtimeMs;
-            long pos = baseTrackMs + delta;
-            if (track != null && pos > track.totalDurationMs) pos = track.totalDurationMs;
-            return Math.max(0, pos);
-        }
-
-        void playFrom(long trackMs) {
-            if (track == null) return;
-            stopInternal(false);
-            playing = true;
-            baseTrackMs = clamp(trackMs, 0, track.totalDurationMs);
-            baseRealtimeMs = SystemClock.elapsedRealtime();
-            scheduleFrom(baseTrackMs);
-        }
-
-        void pause() {
-            if (!playing) return;
-            long pos = getCurrentPositionMs();
-            stopInternal(true);
-            baseTrackMs = pos;
-        }
-
-        void stop() {
-            stopInternal(true);
-            baseTrackMs = 0;
-        }
-
-        void seekTo(long trackMs, boolean resumeIfPlaying) {
-            boolean wasPlaying = playing;
-            stopInternal(false);
-            baseTrackMs = clamp(trackMs, 0, (track != null ? track.totalDurationMs : 0));
-            if (track != null && (resumeIfPlaying || wasPlaying)) {
-                playing = true;
-                baseRealtimeMs = SystemClock.elapsedRealtime();
-                scheduleFrom(baseTrackMs);
-            }
-        }
-
-        private void stopInternal(boolean stopPlaybackFlag) {
-            for (Runnable r : scheduled) handler.removeCallbacks(r);
-            scheduled.clear();
-            try { vibrator.cancel(); } catch (Exception ignore) {}
-            if (stopPlaybackFlag) playing = false;
-        }
-
-        private void scheduleFrom(long startTrackMs) {
-            if (track == null) return;
-
-            long start = startTrackMs;
-            for (OggHapticInspector.HapticSegment seg : track.segments) {
-                long segStart = seg.startMs;
-                long segEnd = seg.startMs + seg.durationMs;
-                if (segEnd <= start) continue;
-                long effectiveStart = Math.max(segStart, start);
-
-                long delayFromNow = (baseRealtimeMs + (effectiveStart - baseTrackMs)) - SystemClock.elapsedRealtime();
-                if (delayFromNow < 0) delayFromNow = 0;
-
-                long remaining = segEnd - effectiveStart;
-                if (remaining <= 0) continue;
-
-                final int amplitude = seg.amplitude;
-                final long vibrateDuration = remaining;
-
-                Runnable r = () -> {
-                    if (!playing) return;
-                    try {
-                        if (Build.VERSION.SDK_INT >= 26) {
-                            VibrationEffect effect = VibrationEffect.createOneShot(vibrateDuration, amplitude);
-                            vibrator.vibrate(effect);
-                        } else {
-                            vibrator.vibrate(vibrateDuration);
-                        }
-                    } catch (Exception ignore) {}
-                };
-                scheduled.add(r);
-                handler.postDelayed(r, delayFromNow);
-            }
-
-            long tailDelay = (baseRealtimeMs + (track.totalDurationMs - baseTrackMs)) - SystemClock.elapsedRealtime();
-            if (tailDelay < 0) tailDelay = 0;
-            Runnable tail = () -> {
-                playing = false;
-                try { vibrator.cancel(); } catch (Exception ignore) {}
-            };
-            scheduled.add(tail);
-            handler.postDelayed(tail, tailDelay);
-        }
-
-        private static long clamp(long v, long lo, long hi) {
-            return Math.max(lo, Math.min(hi, v));
-        }
+        if (hapticEngine != null) hapticEngine.release();
+        playbackClock.release();
     }
 }
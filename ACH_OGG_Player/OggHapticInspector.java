@@ -7,8 +7,6 @@ import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.util.Log;
 
-import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
@@ -28,7 +26,7 @@ public class OggHapticInspector {
         public int channelCount;
         public int sampleRate;
         public long durationMs;
-        public boolean hasHapticTag; // 파일 내 "ANDROID_HAPTIC" 문자열 존재 여부
+        public boolean hasHapticTag; // Ogg 코멘트 헤더 내 "ANDROID_HAPTIC" 존재 여부
         public String notes;
 
         public boolean hasHaptic() {
@@ -51,13 +49,32 @@ public class OggHapticInspector {
     }
 
     public static class HapticTrackInfo {
+        /** 파형 표시용 bin 크기 */
+        public static final int BIN_MS = 10;
+
         public final long totalDurationMs;
         public final List<HapticSegment> segments;
+        private HapticAmplitudePyramid pyramid; // 첫 요청 시 생성
 
         public HapticTrackInfo(long totalDurationMs, List<HapticSegment> segments) {
             this.totalDurationMs = totalDurationMs;
             this.segments = segments;
         }
+
+        /** 세그먼트를 BIN_MS bin 진폭(겹치면 max)으로 펼친 뒤 다해상도 요약. 한 번만 계산 */
+        public synchronized HapticAmplitudePyramid getPyramid() {
+            if (pyramid == null) {
+                int n = (int) Math.max(1, (totalDurationMs + BIN_MS - 1) / BIN_MS);
+                int[] bins = new int[n];
+                for (HapticSegment s : segments) {
+                    int from = (int) Math.max(0, s.startMs / BIN_MS);
+                    int to = (int) Math.min(n, (s.startMs + s.durationMs + BIN_MS - 1) / BIN_MS);
+                    for (int i = from; i < to; i++) if (s.amplitude > bins[i]) bins[i] = s.amplitude;
+                }
+                pyramid = new HapticAmplitudePyramid(bins, n);
+            }
+            return pyramid;
+        }
     }
 
     private static final String TAG = "OggHapticInspector";
@@ -92,8 +109,8 @@ public class OggHapticInspector {
         }
         ex.release();
 
-        // 3) 간단 문자열 스캔: "ANDROID_HAPTIC"
-        r.hasHapticTag = scanForString(ctx, uri, "ANDROID_HAPTIC", 1024 * 1024);
+        // 3) Ogg 코멘트 헤더 직접 파싱: "ANDROID_HAPTIC"
+        r.hasHapticTag = readHapticTag(ctx, uri);
 
         // 4) 메모
         if (r.channelCount >= 3 && !r.hasHapticTag) {
@@ -105,45 +122,17 @@ public class OggHapticInspector {
         return r;
     }
 
-    private static boolean scanForString(Context ctx, Uri uri, String needle, int maxBytes) {
-        try (InputStream is = ctx.getContentResolver().openInputStream(uri)) {
-            if (is == null) return false;
-            byte[] buf = new byte[64 * 1024];
-            int total = 0;
-            byte[] needleBytes = needle.getBytes(StandardCharsets.US_ASCII);
-            int nLen = needleBytes.length;
-
-            int read;
-            byte[] window = new byte[Math.max(buf.length + nLen, 128)];
-            int wSize = 0;
-
-            while ((read = is.read(buf)) > 0 && total < maxBytes) {
-                if (wSize + read > window.length) {
-                    wSize = 0;
-                }
-                System.arraycopy(buf, 0, window, wSize, read);
-                wSize += read;
-                total += read;
-
-                if (indexOf(window, wSize, needleBytes) >= 0) return true;
-            }
+    /** Ogg 헤더 페이지만 읽어 Vorbis/Opus 코멘트에서 ANDROID_HAPTIC 태그 확인(파일 스캔 없음) */
+    private static boolean readHapticTag(Context ctx, Uri uri) {
+        try {
+            OggPageReader.CommentHeader h = OggPageReader.readComments(ctx, uri);
+            return h != null && h.containsTag("ANDROID_HAPTIC");
         } catch (Exception e) {
-            Log.w(TAG, "scanForString fail: " + e.getMessage());
+            Log.w(TAG, "readHapticTag fail: " + e.getMessage());
         }
         return false;
     }
 
-    private static int indexOf(byte[] hay, int hayLen, byte[] needle) {
-        outer:
-        for (int i = 0; i <= hayLen - needle.length; i++) {
-            for (int j = 0; j < needle.length; j++) {
-                if (hay[i + j] != needle[j]) continue outer;
-            }
-            return i;
-        }
-        return -1;
-    }
-
     // ---------- (데모) ACH 트랙 파싱 ----------
     public static HapticTrackInfo parseAchFromOgg(Context ctx, Uri uri) {
         // TODO: 실제 파서를 보유하고 계시면 이 부분에 구현을 넣으세요.
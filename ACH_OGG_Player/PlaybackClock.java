@@ -0,0 +1,116 @@
+package com.example.achoggmusicplayer;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+
+/**
+ * 재생 위치 샘플러. 전용 HandlerThread에서 Probe를 주기적으로 호출해(바인더 호출은 여기서만)
+ * 불변 Snapshot을 volatile 필드로 공개한다.
+ * - UI는 getSnapshot()만 읽음(락/바인더 없음) → 재생 중이면 샘플 시각 기준으로 외삽해 표시
+ * - 값이 바뀐 경우에만 새 Snapshot 할당
+ * - 재생 중 SAMPLE_MS, 정지 중 IDLE_SAMPLE_MS 간격. seek/stop 직후엔 refresh()로 즉시 샘플
+ */
+public final class PlaybackClock {
+
+    /** 샘플 스레드에서 호출. 재사용되는 Sample에 현재 값을 채운다 */
+    public interface Probe {
+        void sample(Sample out);
+    }
+
+    /** Probe가 채우는 가변 버퍼(샘플 스레드 전용) */
+    public static final class Sample {
+        public long audioPosMs, audioDurMs, hapticPosMs, hapticDurMs;
+        public boolean audioPlaying, hapticPlaying;
+    }
+
+    /** UI에 공개되는 불변 위치 스냅샷 */
+    public static final class Snapshot {
+        public final long audioPosMs, audioDurMs, hapticPosMs, hapticDurMs;
+        public final boolean audioPlaying, hapticPlaying;
+        public final long sampledAtMs; // SystemClock.uptimeMillis 기준
+
+        Snapshot(Sample s, long sampledAtMs) {
+            this.audioPosMs = s.audioPosMs;
+            this.audioDurMs = s.audioDurMs;
+            this.hapticPosMs = s.hapticPosMs;
+            this.hapticDurMs = s.hapticDurMs;
+            this.audioPlaying = s.audioPlaying;
+            this.hapticPlaying = s.hapticPlaying;
+            this.sampledAtMs = sampledAtMs;
+        }
+
+        public long audioPositionAt(long nowMs) {
+            return extrapolate(audioPosMs, audioDurMs, audioPlaying, nowMs - sampledAtMs);
+        }
+
+        public long hapticPositionAt(long nowMs) {
+            return extrapolate(hapticPosMs, hapticDurMs, hapticPlaying, nowMs - sampledAtMs);
+        }
+
+        private static long extrapolate(long pos, long dur, boolean playing, long elapsed) {
+            if (playing && elapsed > 0) pos += elapsed;
+            if (dur > 0 && pos > dur) pos = dur;
+            return Math.max(0, pos);
+        }
+
+        boolean sameAs(Sample s) {
+            return audioPosMs == s.audioPosMs && audioDurMs == s.audioDurMs
+                    && hapticPosMs == s.hapticPosMs && hapticDurMs == s.hapticDurMs
+                    && audioPlaying == s.audioPlaying && hapticPlaying == s.hapticPlaying;
+        }
+    }
+
+    private static final long SAMPLE_MS = 50;
+    private static final long IDLE_SAMPLE_MS = 250;
+
+    private final Probe probe;
+    private final HandlerThread thread = new HandlerThread("PlaybackClock", Process.THREAD_PRIORITY_DISPLAY);
+    private final Handler handler;
+    private final Sample scratch = new Sample();
+    private volatile Snapshot snapshot;
+
+    private final Runnable tick = new Runnable() {
+        @Override public void run() {
+            boolean playing = sampleOnce();
+            handler.postDelayed(this, playing ? SAMPLE_MS : IDLE_SAMPLE_MS);
+        }
+    };
+
+    public PlaybackClock(Probe probe) {
+        this.probe = probe;
+        this.snapshot = new Snapshot(scratch, SystemClock.uptimeMillis());
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(tick);
+    }
+
+    public Snapshot getSnapshot() { return snapshot; }
+
+    /** 다음 주기를 기다리지 않고 즉시 재샘플(seek/stop/prepare 직후) */
+    public void refresh() {
+        handler.removeCallbacks(tick);
+        handler.post(tick);
+    }
+
+    public void release() {
+        handler.removeCallbacksAndMessages(null);
+        thread.quitSafely();
+    }
+
+    /** @return 재생 중인 대상이 있으면 true */
+    private boolean sampleOnce() {
+        Sample s = scratch;
+        try {
+            probe.sample(s);
+        } catch (Exception ignore) {
+            // 준비 중/해제된 플레이어 등: 이전 값 유지
+            return snapshot.audioPlaying || snapshot.hapticPlaying;
+        }
+        long now = SystemClock.uptimeMillis();
+        Snapshot prev = snapshot;
+        if (!prev.sameAs(s)) snapshot = new Snapshot(s, now);
+        return s.audioPlaying || s.hapticPlaying;
+    }
+}
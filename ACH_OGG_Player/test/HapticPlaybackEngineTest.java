@@ -0,0 +1,122 @@
+package com.example.achoggmusicplayer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * HapticPlaybackEngine 지연/누락 회귀 테스트. VirtualHapticScheduler로 가상 시간 + 부하를 주입해
+ * 같은 seed면 항상 같은 JitterStats가 나온다.
+ */
+public class HapticPlaybackEngineTest {
+
+    private static final long TOTAL_MS = 20_000;
+    private static final long SEED = 42;
+
+    /** 250ms마다 120ms 진동(진폭은 위치에 따라 변함) */
+    private static OggHapticInspector.HapticTrackInfo track() {
+        List<OggHapticInspector.HapticSegment> segs = new ArrayList<>();
+        for (long t = 0; t < TOTAL_MS; t += 250) {
+            segs.add(new OggHapticInspector.HapticSegment(t, 120, (int) (t / 100 % 255) + 1));
+        }
+        return new OggHapticInspector.HapticTrackInfo(TOTAL_MS, segs);
+    }
+
+    /** 처음부터 재생 → 중간에 seek → pause/resume → 끝까지 */
+    private static HapticPlaybackEngine.JitterStats runScenario(VirtualHapticScheduler.Load load, long seed) {
+        VirtualHapticScheduler vs = new VirtualHapticScheduler(seed);
+        vs.setLoad(load);
+        HapticPlaybackEngine engine = new HapticPlaybackEngine(vs, vs, new VirtualHapticScheduler.RecordingOutput());
+        engine.setTrack(track());
+
+        engine.playFrom(0);
+        vs.advanceBy(TOTAL_MS / 3);
+        engine.seekTo(TOTAL_MS / 2, true);
+        vs.advanceBy(TOTAL_MS / 10);
+        engine.pause();
+        vs.advanceBy(500);
+        engine.playFrom(engine.getCurrentPositionMs());
+        vs.advanceBy(TOTAL_MS);
+        engine.release();
+        return engine.getJitter();
+    }
+
+    /** 누락된 트랙 시간 = 늦게 실행된 시간의 합(엔진이 실제 시간 위치로 따라잡음) */
+    private static void assertSkippedEqualsLateness(HapticPlaybackEngine.JitterStats j) {
+        assertEquals(Math.round(j.getMeanLateMs() * j.getFires()), j.getSkippedMs());
+        assertEquals(0, j.getSkippedWindows());
+    }
+
+    @Test
+    public void idle_playsEveryWindowOnTime() {
+        VirtualHapticScheduler vs = new VirtualHapticScheduler(SEED);
+        VirtualHapticScheduler.RecordingOutput out = new VirtualHapticScheduler.RecordingOutput();
+        HapticPlaybackEngine engine = new HapticPlaybackEngine(vs, vs, out);
+        engine.setTrack(track());
+
+        engine.playFrom(0);
+        vs.advanceBy(TOTAL_MS + 1_000);
+
+        HapticPlaybackEngine.JitterStats j = engine.getJitter();
+        assertEquals(TOTAL_MS / 1000, j.getFires());
+        assertEquals(0, j.getMaxLateMs());
+        assertEquals(0, j.getSkippedMs());
+        assertEquals(TOTAL_MS, out.playedMs);
+        assertFalse(engine.isPlaying());
+    }
+
+    @Test
+    public void idle_seekAndPauseResume_skipNoTrackTime() {
+        HapticPlaybackEngine.JitterStats j = runScenario(VirtualHapticScheduler.IDLE, SEED);
+        assertTrue(j.getFires() > 0);
+        assertEquals(0, j.getMaxLateMs());
+        assertEquals(0, j.getSkippedMs());
+    }
+
+    @Test
+    public void pause_keepsPositionAndStopsWindowChain() {
+        VirtualHapticScheduler vs = new VirtualHapticScheduler(SEED);
+        VirtualHapticScheduler.RecordingOutput out = new VirtualHapticScheduler.RecordingOutput();
+        HapticPlaybackEngine engine = new HapticPlaybackEngine(vs, vs, out);
+        engine.setTrack(track());
+
+        engine.playFrom(0);
+        vs.advanceBy(3_300);
+        engine.pause();
+        int plays = out.plays;
+        vs.advanceBy(10_000);
+
+        assertEquals(3_300, engine.getCurrentPositionMs());
+        assertEquals(plays, out.plays);
+        assertEquals(0, vs.pendingCount());
+    }
+
+    @Test
+    public void randomBusy_lateBoundedAndCaughtUp() {
+        long maxBusy = 40;
+        HapticPlaybackEngine.JitterStats j = runScenario(VirtualHapticScheduler.randomBusy(0.3, maxBusy), SEED);
+        // 한 윈도우 앞에는 취소 작업 + 윈도우 자신의 부하가 겹칠 수 있음
+        assertTrue("max late " + j.getMaxLateMs(), j.getMaxLateMs() <= 2 * maxBusy);
+        assertTrue(j.getMaxLateMs() > 0);
+        assertSkippedEqualsLateness(j);
+    }
+
+    @Test
+    public void periodic_lateBoundedByBusyPeriod() {
+        long busy = 30;
+        HapticPlaybackEngine.JitterStats j = runScenario(VirtualHapticScheduler.periodic(700, busy), SEED);
+        assertTrue("max late " + j.getMaxLateMs(), j.getMaxLateMs() <= busy);
+        assertSkippedEqualsLateness(j);
+    }
+
+    @Test
+    public void sameSeed_sameStats() {
+        VirtualHapticScheduler.Load load = VirtualHapticScheduler.randomBusy(0.3, 40);
+        assertEquals(runScenario(load, SEED).report(), runScenario(load, SEED).report());
+    }
+}
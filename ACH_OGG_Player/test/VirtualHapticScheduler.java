@@ -0,0 +1,98 @@
+package com.example.achoggmusicplayer;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * HapticPlaybackEngine용 가상 시간 시계 + 예약기(기기/Looper 없이 JVM 단위 테스트에서 실행).
+ * - advanceBy(ms): 가상 시간을 진행하며 만기된 작업을 예정 시각 순서(같으면 post 순서)로 실행
+ * - Load: 작업 실행 직전 스레드가 바빠서 늦어지는 시간(ms) → 메인 스레드 부하 모사
+ * - 같은 seed/부하/조작 순서면 항상 같은 JitterStats가 나온다(결정적)
+ */
+public final class VirtualHapticScheduler implements HapticPlaybackEngine.Clock, HapticPlaybackEngine.Scheduler {
+
+    /** 작업 하나가 실행되기 전 추가로 지연되는 시간(ms) */
+    public interface Load {
+        long busyMs(long nowMs, Random rnd);
+    }
+
+    public static final Load IDLE = (now, rnd) -> 0;
+
+    /** probability 확률로 [0, maxBusyMs] 균등 분포만큼 막힘(프레임 드랍/GC 같은 간헐 부하) */
+    public static Load randomBusy(double probability, long maxBusyMs) {
+        return (now, rnd) -> rnd.nextDouble() < probability ? (long) (rnd.nextDouble() * (maxBusyMs + 1)) : 0;
+    }
+
+    /** periodMs마다 busyMs 동안 막힘(주기적 무거운 작업) */
+    public static Load periodic(long periodMs, long busyMs) {
+        return (now, rnd) -> {
+            long phase = now % periodMs;
+            return phase < busyMs ? busyMs - phase : 0;
+        };
+    }
+
+    private static final class Task {
+        final long due, seq;
+        final Runnable r;
+
+        Task(long due, long seq, Runnable r) {
+            this.due = due;
+            this.seq = seq;
+            this.r = r;
+        }
+    }
+
+    private final PriorityQueue<Task> queue = new PriorityQueue<>(16, (a, b) ->
+            a.due != b.due ? Long.compare(a.due, b.due) : Long.compare(a.seq, b.seq));
+    private final Random rnd;
+    private Load load = IDLE;
+    private long now = 0;
+    private long seq = 0;
+
+    public VirtualHapticScheduler(long seed) {
+        this.rnd = new Random(seed);
+    }
+
+    public void setLoad(Load load) {
+        this.load = load != null ? load : IDLE;
+    }
+
+    @Override public long nowMs() { return now; }
+
+    @Override public void post(Runnable r) { postDelayed(r, 0); }
+
+    @Override public void postDelayed(Runnable r, long delayMs) {
+        queue.add(new Task(now + Math.max(0, delayMs), seq++, r));
+    }
+
+    @Override public void removeAll() { queue.clear(); }
+
+    @Override public void release() { queue.clear(); }
+
+    public int pendingCount() { return queue.size(); }
+
+    /** 가상 시간을 ms만큼 진행. 부하로 밀린 작업은 진행 구간 끝을 넘어 실행될 수 있음 */
+    public void advanceBy(long ms) {
+        long end = now + ms;
+        while (!queue.isEmpty() && queue.peek().due <= end) {
+            Task t = queue.poll();
+            if (t.due > now) now = t.due;
+            now += Math.max(0, load.busyMs(now, rnd));
+            t.r.run();
+        }
+        if (now < end) now = end;
+    }
+
+    /** 출력 기록(재생 횟수, 요청된 진동 총 길이) */
+    public static final class RecordingOutput implements HapticPlaybackEngine.Output {
+        public int plays, cancels;
+        public long playedMs;
+
+        @Override public void play(long[] timings, int[] amplitudes, int count) {
+            plays++;
+            for (int i = 0; i < count; i++) playedMs += timings[i];
+        }
+
+        @Override public void cancel() { cancels++; }
+    }
+}
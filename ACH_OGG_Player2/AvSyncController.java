@@ -0,0 +1,229 @@
+package com.example.achoggmusicplayer;
+
+import android.media.MediaPlayer;
+import android.media.MediaTimestamp;
+import android.media.PlaybackParams;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * 오디오(mpAudio) 클럭 기준으로 햅틱(mpHaptic)을 자동 정렬하는 동기 루프.
+ * - TICK_MS마다 두 플레이어의 MediaTimestamp를 같은 System.nanoTime 시점으로 외삽해 오차 측정
+ * - |오차| > SEEK_THRESHOLD_MS: 햅틱을 seek (드묾)
+ * - DEADBAND_MS < |오차| ≤ SEEK_THRESHOLD_MS: PlaybackParams 속도를 ±MAX_SPEED_TRIM 이내로 미세 조정
+ * - 오차 기울기(EMA)로 드리프트(ms/s) 추정, |오차| 히스토그램으로 p99 산출
+ * targetOffsetMs로 의도적 디싱크(±100ms 버튼)를 유지한 채 정렬할 수 있다.
+ * 모든 측정/보정은 전용 HandlerThread에서 수행, 메트릭 콜백만 메인 스레드로 전달.
+ */
+public final class AvSyncController {
+
+    public interface Listener {
+        void onMetrics(Metrics m);
+    }
+
+    /** 메트릭 스냅샷(불변) */
+    public static final class Metrics {
+        public final double errorMs;      // 최근 오차(햅틱 - 오디오 - 목표), EMA
+        public final double driftMsPerSec;
+        public final double p99ErrorMs;
+        public final int speedTrims;
+        public final int seeks;
+        public final float speed;
+
+        Metrics(double errorMs, double driftMsPerSec, double p99ErrorMs, int speedTrims, int seeks, float speed) {
+            this.errorMs = errorMs;
+            this.driftMsPerSec = driftMsPerSec;
+            this.p99ErrorMs = p99ErrorMs;
+            this.speedTrims = speedTrims;
+            this.seeks = seeks;
+            this.speed = speed;
+        }
+    }
+
+    private static final String TAG = "AvSyncController";
+    private static final long TICK_MS = 100;               // 초당 10회 샘플
+    private static final int METRICS_EVERY_TICKS = 10;     // 1초마다 메트릭 공개
+    private static final double DEADBAND_MS = 8.0;
+    private static final double SEEK_THRESHOLD_MS = 80.0;
+    private static final float MAX_SPEED_TRIM = 0.02f;     // ±2%
+    private static final double TRIM_GAIN = 0.0005;        // 오차 1ms당 0.05% 속도
+    private static final float SPEED_EPSILON = 0.001f;     // 이보다 작은 변화는 binder 호출 생략
+    private static final double EMA_ALPHA = 0.3;
+    private static final int HIST_MAX_MS = 500;
+
+    private final Object lock = new Object();
+    private final HandlerThread thread = new HandlerThread("AvSync");
+    private final Handler handler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Listener listener;
+
+    // lock 보호
+    private MediaPlayer audio, haptic;
+    private volatile int targetOffsetMs = 0;
+
+    // 동기 스레드 전용 상태
+    private double emaErrorMs = 0, emaDriftMsPerSec = 0;
+    private double lastErrorMs = Double.NaN;
+    private long lastSampleNs = 0;
+    private float speed = 1.0f;
+    private int speedTrims = 0, seeks = 0, ticks = 0;
+    private final int[] histogram = new int[HIST_MAX_MS + 1]; // |오차| 1ms 단위
+    private int histCount = 0;
+
+    private final Runnable tick = new Runnable() {
+        @Override public void run() {
+            synchronized (lock) {
+                try { sample(); } catch (Exception e) { Log.w(TAG, "sample fail: " + e.getMessage()); }
+            }
+            if (++ticks % METRICS_EVERY_TICKS == 0) publish();
+            handler.postDelayed(this, TICK_MS);
+        }
+    };
+
+    public AvSyncController(Listener listener) {
+        this.listener = listener;
+        thread.start();
+        handler = new Handler(thread.getLooper());
+        handler.post(tick);
+    }
+
+    public void attachAudio(MediaPlayer mp) {
+        synchronized (lock) { audio = mp; resetEstimator(); }
+    }
+
+    public void attachHaptic(MediaPlayer mp) {
+        synchronized (lock) { haptic = mp; speed = 1.0f; resetEstimator(); }
+    }
+
+    /** 의도적 디싱크 목표(햅틱 - 오디오, ms). 0이면 완전 정렬 */
+    public void setTargetOffsetMs(int offsetMs) {
+        targetOffsetMs = offsetMs;
+        synchronized (lock) { resetEstimator(); }
+    }
+
+    public int getTargetOffsetMs() { return targetOffsetMs; }
+
+    /**
+     * 재생 중인 플레이어를 lock 안에서 일시정지. 동기 스레드가 isPlaying() 확인 후 setPlaybackParams()를
+     * 호출하기 전에 끼어든 pause는 그 호출로 다시 재생되므로, pause는 반드시 이 경로로.
+     * @return 하나라도 일시정지했으면 true
+     */
+    public boolean pause(MediaPlayer... players) {
+        boolean any = false;
+        synchronized (lock) {
+            for (MediaPlayer mp : players) {
+                try { if (mp != null && mp.isPlaying()) { mp.pause(); any = true; } } catch (Exception ignore) {}
+            }
+            resetEstimator();
+        }
+        return any;
+    }
+
+    public void resetMetrics() {
+        handler.post(() -> {
+            speedTrims = seeks = 0;
+            Arrays.fill(histogram, 0);
+            histCount = 0;
+        });
+    }
+
+    public void release() {
+        synchronized (lock) { audio = null; haptic = null; }
+        handler.removeCallbacksAndMessages(null);
+        thread.quitSafely();
+    }
+
+    // ---- 동기 스레드 ----
+
+    private void sample() {
+        MediaPlayer a = audio, h = haptic;
+        if (a == null || h == null || !a.isPlaying() || !h.isPlaying()) {
+            lastErrorMs = Double.NaN;
+            return;
+        }
+        MediaTimestamp ta = a.getTimestamp();
+        MediaTimestamp th = h.getTimestamp();
+        if (ta == null || th == null) return;
+
+        long nowNs = System.nanoTime();
+        double audioMs = extrapolateMs(ta, nowNs);
+        double hapticMs = extrapolateMs(th, nowNs);
+        double err = hapticMs - audioMs - targetOffsetMs;
+
+        // 드리프트: 관측 기울기에서 현재 속도 보정분((speed-1)*1000 ms/s)을 뺀 고유 드리프트(EMA)
+        if (!Double.isNaN(lastErrorMs) && lastSampleNs != 0) {
+            double dtSec = (nowNs - lastSampleNs) / 1e9;
+            if (dtSec > 0) {
+                double slope = (err - lastErrorMs) / dtSec - (speed - 1.0f) * 1000.0;
+                emaDriftMsPerSec += EMA_ALPHA * (slope - emaDriftMsPerSec);
+            }
+        }
+        emaErrorMs = Double.isNaN(lastErrorMs) ? err : emaErrorMs + EMA_ALPHA * (err - emaErrorMs);
+        lastErrorMs = err;
+        lastSampleNs = nowNs;
+        record(Math.abs(err));
+
+        double abs = Math.abs(emaErrorMs);
+        if (Math.abs(err) > SEEK_THRESHOLD_MS) {
+            long target = Math.max(0, Math.round(audioMs + targetOffsetMs));
+            h.seekTo(target, MediaPlayer.SEEK_CLOSEST);
+            applySpeed(h, 1.0f);
+            seeks++;
+            resetEstimator();
+        } else if (abs > DEADBAND_MS) {
+            // 햅틱이 앞서면(+) 느리게, 뒤처지면(-) 빠르게
+            float trim = (float) Math.max(-MAX_SPEED_TRIM, Math.min(MAX_SPEED_TRIM, -emaErrorMs * TRIM_GAIN));
+            if (applySpeed(h, 1.0f + trim)) speedTrims++;
+        } else {
+            applySpeed(h, 1.0f);
+        }
+    }
+
+    /** 속도가 유의미하게 바뀔 때만 PlaybackParams 적용. 멈춘 플레이어에 속도(≠0)를 주면 재생이 시작되므로 재확인 */
+    private boolean applySpeed(MediaPlayer h, float target) {
+        if (Math.abs(target - speed) < SPEED_EPSILON) return false;
+        if (!h.isPlaying()) return false;
+        PlaybackParams pp = h.getPlaybackParams();
+        h.setPlaybackParams(pp.setSpeed(target));
+        speed = target;
+        return true;
+    }
+
+    private static double extrapolateMs(MediaTimestamp ts, long nowNs) {
+        double elapsedUs = (nowNs - ts.getAnchorSystemNanoTime()) / 1000.0 * ts.getMediaClockRate();
+        return (ts.getAnchorMediaTimeUs() + elapsedUs) / 1000.0;
+    }
+
+    private void resetEstimator() {
+        lastErrorMs = Double.NaN;
+        lastSampleNs = 0;
+        emaErrorMs = 0;
+    }
+
+    private void record(double absErrMs) {
+        int b = (int) Math.min(HIST_MAX_MS, Math.round(absErrMs));
+        histogram[b]++;
+        histCount++;
+    }
+
+    private double percentile(double p) {
+        if (histCount == 0) return 0;
+        long need = (long) Math.ceil(histCount * p);
+        long acc = 0;
+        for (int i = 0; i <= HIST_MAX_MS; i++) {
+            acc += histogram[i];
+            if (acc >= need) return i;
+        }
+        return HIST_MAX_MS;
+    }
+
+    private void publish() {
+        if (listener == null) return;
+        Metrics m = new Metrics(emaErrorMs, emaDriftMsPerSec, percentile(0.99), speedTrims, seeks, speed);
+        mainHandler.post(() -> listener.onMetrics(m));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.achoggmusicplayer;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 10ms bin 진폭 테이블을 가변 길이 세그먼트로 압축한 햅틱 트랙.
+ * - 연속 bin의 (최대 - 최소) ≤ tolerance 이면 한 세그먼트로 병합, 값은 구간 중앙값 → bin별 오차 ≤ tolerance/2
+ * - 메모리: 세그먼트당 int(끝 bin) + byte(진폭) = 5바이트 (원본은 bin당 int 4바이트)
+ * - 조회(amplitudeAt)는 끝 bin 누적 배열 이진 탐색 O(log n), 원본 복원 없음
+ * - writeTo/readFrom: (varint 길이, byte 진폭) RLE 직렬화(디스크 캐시용)
+ */
+public final class CompressedHapticTrack {
+
+    public static final int DEFAULT_TOLERANCE = 4;
+
+    private final int binMs;
+    private final int binCount;
+    private final int[] ends;      // 세그먼트 i = [ends[i-1], ends[i]) bin (ends[-1] = 0)
+    private final byte[] levels;   // 세그먼트 진폭 0~255
+
+    private CompressedHapticTrack(int binMs, int binCount, int[] ends, byte[] levels) {
+        this.binMs = binMs;
+        this.binCount = binCount;
+        this.ends = ends;
+        this.levels = levels;
+    }
+
+    /** amps[0, count)을 tolerance 이내로 병합해 압축 */
+    public static CompressedHapticTrack compress(int[] amps, int count, int binMs, int tolerance) {
+        int[] e = new int[16];
+        byte[] lv = new byte[16];
+        int n = 0;
+        int i = 0;
+        while (i < count) {
+            int lo = clamp(amps[i]), hi = lo;
+            int j = i + 1;
+            while (j < count) {
+                int a = clamp(amps[j]);
+                int nlo = Math.min(lo, a), nhi = Math.max(hi, a);
+                if (nhi - nlo > tolerance) break;
+                lo = nlo;
+                hi = nhi;
+                j++;
+            }
+            if (n == e.length) {
+                e = Arrays.copyOf(e, n * 2);
+                lv = Arrays.copyOf(lv, n * 2);
+            }
+            e[n] = j;
+            lv[n] = (byte) ((lo + hi + 1) >> 1);
+            n++;
+            i = j;
+        }
+        return new CompressedHapticTrack(binMs, count, Arrays.copyOf(e, n), Arrays.copyOf(lv, n));
+    }
+
+    public int getBinMs() { return binMs; }
+
+    public int getBinCount() { return binCount; }
+
+    public int getSegmentCount() { return ends.length; }
+
+    public long getDurationMs() { return (long) binCount * binMs; }
+
+    /** 압축 표현의 배열 바이트 수(객체 헤더 제외) */
+    public long getMemoryBytes() { return ends.length * 5L; }
+
+    public long getSegmentStartMs(int seg) { return (long) (seg == 0 ? 0 : ends[seg - 1]) * binMs; }
+
+    public long getSegmentEndMs(int seg) { return (long) ends[seg] * binMs; }
+
+    public int getSegmentAmplitude(int seg) { return levels[seg] & 0xFF; }
+
+    /** bin이 속한 세그먼트(ends[i] > bin 인 첫 i). 범위 밖이면 양 끝으로 고정 */
+    public int segmentOfBin(int bin) {
+        if (ends.length == 0) return -1;
+        if (bin <= 0) return 0;
+        if (bin >= binCount) return ends.length - 1;
+        int lo = 0, hi = ends.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ends[mid] > bin) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    /** 임의 시각 ms의 진폭(OggHapticInspector.HapticTrackInfo.getAmplitudeAt과 같은 경계 규칙) */
+    public int amplitudeAt(long ms) {
+        if (ends.length == 0) return 0;
+        int bin = ms < 0 ? 0 : (int) Math.min(Integer.MAX_VALUE, ms / binMs);
+        return getSegmentAmplitude(segmentOfBin(bin));
+    }
+
+    /** 원본 길이의 bin 배열로 복원(허용 오차 이내 근사) */
+    public int[] expand() {
+        int[] out = new int[binCount];
+        int from = 0;
+        for (int i = 0; i < ends.length; i++) {
+            Arrays.fill(out, from, ends[i], levels[i] & 0xFF);
+            from = ends[i];
+        }
+        return out;
+    }
+
+    /** RLE 직렬화 최대 크기(세그먼트당 varint 최대 5 + 1바이트) */
+    public int maxEncodedSize() { return 4 + 4 + 4 + ends.length * 6; }
+
+    /** [binMs][binCount][segCount] + (varint 길이, 진폭)* */
+    public void writeTo(ByteBuffer bb) {
+        bb.putInt(binMs).putInt(binCount).putInt(ends.length);
+        int prev = 0;
+        for (int i = 0; i < ends.length; i++) {
+            int len = ends[i] - prev;
+            prev = ends[i];
+            while ((len & ~0x7F) != 0) {
+                bb.put((byte) ((len & 0x7F) | 0x80));
+                len >>>= 7;
+            }
+            bb.put((byte) len);
+            bb.put(levels[i]);
+        }
+    }
+
+    /** writeTo 형식 역직렬화. 손상 시 IllegalArgumentException */
+    public static CompressedHapticTrack readFrom(ByteBuffer bb) {
+        int binMs = bb.getInt();
+        int binCount = bb.getInt();
+        int segs = bb.getInt();
+        if (binMs <= 0 || binCount < 0 || segs < 0 || segs > binCount) throw new IllegalArgumentException("bad header");
+        int[] ends = new int[segs];
+        byte[] levels = new byte[segs];
+        int pos = 0;
+        for (int i = 0; i < segs; i++) {
+            int len = 0, shift = 0, b;
+            do {
+                if (shift > 28) throw new IllegalArgumentException("bad varint");
+                b = bb.get();
+                len |= (b & 0x7F) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            pos += len;
+            if (len <= 0 || pos > binCount) throw new IllegalArgumentException("bad run");
+            ends[i] = pos;
+            levels[i] = bb.get();
+        }
+        if (pos != binCount) throw new IllegalArgumentException("bad length");
+        return new CompressedHapticTrack(binMs, binCount, ends, levels);
+    }
+
+    private static int clamp(int a) {
+        return a < 0 ? 0 : (a > 255 ? 255 : a);
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.achoggmusicplayer;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 오디오 디코더 목록을 MediaCodecList에서 프로세스당 1회만 조회해 캐시(파일마다 createDecoderByType 탐색 반복 없음).
+ * - mime별 디코더 이름/최대 채널 수 → 햅틱 채널까지 디코드 가능한지 미리 판단
+ * - float 출력(KEY_PCM_ENCODING=FLOAT) 요청을 실제로 따르는지는 첫 디코드 출력 포맷으로 학습해 디코더별로 기억
+ *   → 이후 같은 디코더는 변환 없는 인코딩으로 바로 요청/읽기
+ */
+public final class DecoderCapabilities {
+
+    public static final int FLOAT_UNKNOWN = 0, FLOAT_HONORED = 1, FLOAT_IGNORED = 2;
+
+    /** 디코더 1개 */
+    public static final class Decoder {
+        public final String name;
+        public final String mime;
+        public final int maxChannels;
+        public final boolean softwareOnly;
+        volatile int floatOutput = FLOAT_UNKNOWN;
+
+        Decoder(String name, String mime, int maxChannels, boolean softwareOnly) {
+            this.name = name;
+            this.mime = mime;
+            this.maxChannels = maxChannels;
+            this.softwareOnly = softwareOnly;
+        }
+
+        public int getFloatOutput() { return floatOutput; }
+
+        @Override public String toString() {
+            return name + " (" + mime + ", max " + maxChannels + "ch" + (softwareOnly ? ", sw" : "")
+                    + (floatOutput == FLOAT_HONORED ? ", float" : floatOutput == FLOAT_IGNORED ? ", s16" : "") + ")";
+        }
+    }
+
+    private static final String TAG = "DecoderCapabilities";
+
+    private static Map<String, List<Decoder>> byMime; // 소문자 mime → 프레임워크 순위 순서
+
+    private DecoderCapabilities() {}
+
+    private static synchronized Map<String, List<Decoder>> probe() {
+        if (byMime != null) return byMime;
+        Map<String, List<Decoder>> map = new HashMap<>();
+        try {
+            for (MediaCodecInfo info : new MediaCodecList(MediaCodecList.REGULAR_CODECS).getCodecInfos()) {
+                if (info.isEncoder()) continue;
+                boolean sw = Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && info.isSoftwareOnly();
+                for (String type : info.getSupportedTypes()) {
+                    String mime = type.toLowerCase(Locale.US);
+                    if (!mime.startsWith("audio/")) continue;
+                    int maxCh = 2;
+                    try {
+                        MediaCodecInfo.AudioCapabilities ac = info.getCapabilitiesForType(type).getAudioCapabilities();
+                        if (ac != null) maxCh = ac.getMaxInputChannelCount();
+                    } catch (RuntimeException ignore) {}
+                    List<Decoder> list = map.get(mime);
+                    if (list == null) map.put(mime, list = new ArrayList<>(2));
+                    list.add(new Decoder(info.getName(), mime, maxCh, sw));
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "MediaCodecList probe fail: " + e.getMessage());
+        }
+        byMime = map;
+        Log.d(TAG, "probed " + map.size() + " audio decoder types");
+        return map;
+    }
+
+    /** mime의 디코더 목록(없으면 빈 목록) */
+    public static List<Decoder> decoders(String mime) {
+        if (mime == null) return Collections.emptyList();
+        List<Decoder> list = probe().get(mime.toLowerCase(Locale.US));
+        return list != null ? list : Collections.<Decoder>emptyList();
+    }
+
+    /** channels 채널을 디코드할 수 있는 첫 디코더. 없으면 첫 디코더(채널을 줄여 낼 수 있음), 그것도 없으면 null */
+    public static Decoder find(String mime, int channels) {
+        List<Decoder> list = decoders(mime);
+        for (Decoder d : list) if (d.maxChannels >= channels) return d;
+        return list.isEmpty() ? null : list.get(0);
+    }
+
+    /** mime을 channels 채널 그대로 디코드할 수 있는지 */
+    public static boolean canDecode(String mime, int channels) {
+        Decoder d = find(mime, channels);
+        return d != null && d.maxChannels >= channels;
+    }
+
+    /** float 출력을 요청할지. 무시된 적이 있는 디코더는 16bit 그대로(요청 자체를 생략) */
+    public static boolean shouldRequestFloat(Decoder d) {
+        return d != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && d.floatOutput != FLOAT_IGNORED;
+    }
+
+    /** 첫 출력 포맷 확정 시 호출: float 요청 결과를 디코더별로 기억 */
+    public static void noteOutputEncoding(Decoder d, boolean requestedFloat, int pcmEncoding) {
+        if (d == null || !requestedFloat) return;
+        d.floatOutput = pcmEncoding == PcmSource.ENCODING_PCM_FLOAT ? FLOAT_HONORED : FLOAT_IGNORED;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.achoggmusicplayer;
+
+/**
+ * 인터리브 PCM에서 햅틱 채널 위치 판별(순수 자바).
+ * 우선순위: 채널 마스크(HAPTIC_A/B 비트) → 포맷의 haptic-channel-count → ANDROID_HAPTIC=N(숫자) 태그 →
+ * 3ch 이상이면 ch2(기존 가정). 기존 가정은 값 없는 ANDROID_HAPTIC 태그가 있거나, 마스크를 모르는 3~4ch일 때만 적용
+ * (햅틱 비트 없는 완전한 마스크(5.1 등)는 햅틱 없음). 1~2ch는 태그만으로는 햅틱 채널로 보지 않는다(태그 펄스 폴백).
+ * 인터리브 순서는 마스크 비트 오름차순이고 햅틱 비트가 최상위이므로, 개수만 알 때는 마지막 N채널이 햅틱.
+ */
+public final class HapticChannelLayout {
+
+    /** AudioFormat.CHANNEL_OUT_HAPTIC_A/B(숨김 상수) 값 */
+    public static final int CHANNEL_OUT_HAPTIC_A = 0x20000000;
+    public static final int CHANNEL_OUT_HAPTIC_B = 0x10000000;
+    public static final int HAPTIC_MASK = CHANNEL_OUT_HAPTIC_A | CHANNEL_OUT_HAPTIC_B;
+
+    public static final String SOURCE_NONE = "none";
+    public static final String SOURCE_MASK = "mask";
+    public static final String SOURCE_FORMAT = "format";
+    public static final String SOURCE_TAG = "tag";
+    public static final String SOURCE_LEGACY = "legacy";
+
+    public static final HapticChannelLayout NONE = new HapticChannelLayout(0, -1, 0, SOURCE_NONE);
+
+    public final int channelCount;
+    public final int hapticIndex;   // 첫 햅틱 채널(0-based). 없으면 -1
+    public final int hapticCount;
+    public final String source;
+
+    private HapticChannelLayout(int channelCount, int hapticIndex, int hapticCount, String source) {
+        this.channelCount = channelCount;
+        this.hapticIndex = hapticIndex;
+        this.hapticCount = hapticCount;
+        this.source = source;
+    }
+
+    public boolean hasHaptic() { return hapticIndex >= 0; }
+
+    /** 오디오(비햅틱) 채널 수 */
+    public int getAudioChannelCount() { return hasHaptic() ? channelCount - hapticCount : channelCount; }
+
+    /** 태그 정보 없이 판별(디코더 출력 포맷만 아는 경우) */
+    public static HapticChannelLayout resolve(int channelCount, int channelMask, int formatHapticCount, int tagHapticCount) {
+        return resolve(channelCount, channelMask, formatHapticCount, tagHapticCount, false);
+    }
+
+    /**
+     * @param channelMask       KEY_CHANNEL_MASK(없으면 0)
+     * @param formatHapticCount 포맷의 "haptic-channel-count"(없으면 0)
+     * @param tagHapticCount    ANDROID_HAPTIC=N 태그의 숫자 값(없거나 숫자가 아니면 0)
+     * @param tagPresent        ANDROID_HAPTIC 키가 있는지(값과 무관)
+     */
+    public static HapticChannelLayout resolve(int channelCount, int channelMask, int formatHapticCount,
+                                              int tagHapticCount, boolean tagPresent) {
+        if (channelCount <= 0) return NONE;
+        int hapticBits = channelMask & HAPTIC_MASK;
+        if (hapticBits != 0 && Integer.bitCount(channelMask) == channelCount) {
+            // 가장 낮은 햅틱 비트 아래에 있는 비트 수 = 그 채널의 인터리브 위치
+            int lowest = Integer.lowestOneBit(hapticBits);
+            return new HapticChannelLayout(channelCount, Integer.bitCount(channelMask & (lowest - 1)),
+                    Integer.bitCount(hapticBits), SOURCE_MASK);
+        }
+        if (formatHapticCount > 0 && formatHapticCount < channelCount) {
+            return new HapticChannelLayout(channelCount, channelCount - formatHapticCount, formatHapticCount, SOURCE_FORMAT);
+        }
+        if (tagHapticCount > 0 && tagHapticCount < channelCount) {
+            return new HapticChannelLayout(channelCount, channelCount - tagHapticCount, tagHapticCount, SOURCE_TAG);
+        }
+        boolean maskKnown = channelMask != 0 && Integer.bitCount(channelMask) == channelCount;
+        if (channelCount >= 3 && (tagPresent || (!maskKnown && channelCount <= 4))) {
+            return new HapticChannelLayout(channelCount, 2, channelCount - 2, SOURCE_LEGACY);
+        }
+        return new HapticChannelLayout(channelCount, -1, 0, SOURCE_NONE);
+    }
+
+    /** ANDROID_HAPTIC=N 값 → 햅틱 채널 수(없거나 숫자가 아니면 0) */
+    public static int parseTagCount(String value) {
+        if (value == null) return 0;
+        try {
+            return Math.max(0, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    @Override public String toString() {
+        return hasHaptic() ? "ch" + hapticIndex + (hapticCount > 1 ? "+" + (hapticCount - 1) : "") + "/" + channelCount + " (" + source + ")"
+                : "none/" + channelCount;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.achoggmusicplayer;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * 디코드된 햅틱 진폭 테이블의 디스크 캐시(앱 cacheDir/haptic_env).
+ * - 키: Ogg 헤더 페이지(최소 64KB) FNV-1a 64bit 해시 + 파일 크기 → 같은 내용이면 URI가 달라도 적중
+ * - 포맷: [magic "HENV"][version][totalMs] + CompressedHapticTrack RLE([binMs][bins][segs] + (varint 길이, 진폭)*)
+ * - 읽기는 mmap, 쓰기는 임시 파일 → rename
+ * - 예산(바이트) 초과 시 lastModified 기준 LRU 삭제(적중 시 lastModified 갱신)
+ */
+public final class HapticEnvelopeCache {
+
+    private static final String TAG = "HapticEnvelopeCache";
+    private static final String DIR_NAME = "haptic_env";
+    private static final String EXT = ".henv";
+    private static final int MAGIC = 0x48454E56; // "HENV"
+    private static final int VERSION = 2; // 1: bin당 1바이트 → 2: 세그먼트 RLE
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final int HASH_MIN_BYTES = 64 * 1024;
+    private static final long DEFAULT_BUDGET_BYTES = 8L * 1024 * 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final File dir;
+    private final long budgetBytes;
+
+    public HapticEnvelopeCache(File dir, long budgetBytes) {
+        this.dir = dir;
+        this.budgetBytes = budgetBytes;
+    }
+
+    public static HapticEnvelopeCache forContext(Context ctx) {
+        return new HapticEnvelopeCache(new File(ctx.getCacheDir(), DIR_NAME), DEFAULT_BUDGET_BYTES);
+    }
+
+    /** 이미 열린 채널에서 키 계산(헤더는 호출자가 읽음, headerBytes ≤ 0이면 앞부분 64KB) */
+    public static String computeKey(FileChannel ch, long size, long headerBytes) throws IOException {
+        long n = Math.min(size, Math.max(headerBytes, HASH_MIN_BYTES));
+        MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, 0, n);
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < n; i++) {
+            hash ^= (mb.get(i) & 0xFF);
+            hash *= FNV_PRIME;
+        }
+        hash ^= size;
+        hash *= FNV_PRIME;
+        return String.format(Locale.US, "%016x_%x", hash, size);
+    }
+
+    /** 콘텐츠 키 + 현재 추출 설정(셰이핑 체인, 압축 허용 오차) → 캐시 항목 키. contentKey가 null이면 null */
+    public static String trackKey(String contentKey) {
+        if (contentKey == null) return null;
+        return contentKey + "_" + OggHapticInspector.getEnvelopeConfig().signature()
+                + "_t" + OggHapticInspector.getCompressTolerance();
+    }
+
+    /** 캐시 적중 시 트랙, 없거나 손상되면 null */
+    public synchronized OggHapticInspector.HapticTrackInfo get(String key) {
+        if (key == null) return null;
+        File f = new File(dir, key + EXT);
+        if (!f.isFile()) return null;
+
+        try (RandomAccessFile raf = new RandomAccessFile(f, "r")) {
+            FileChannel ch = raf.getChannel();
+            long len = ch.size();
+            if (len < HEADER_SIZE) throw new IOException("truncated");
+            MappedByteBuffer mb = ch.map(FileChannel.MapMode.READ_ONLY, 0, len);
+            mb.order(ByteOrder.LITTLE_ENDIAN);
+            if (mb.getInt() != MAGIC || mb.getInt() != VERSION) throw new IOException("bad header");
+            long totalMs = mb.getLong();
+            CompressedHapticTrack track = CompressedHapticTrack.readFrom(mb);
+            if (mb.hasRemaining()) throw new IOException("bad length");
+
+            //noinspection ResultOfMethodCallIgnored
+            f.setLastModified(System.currentTimeMillis()); // LRU 갱신
+            OggHapticInspector.HapticTrackInfo info = new OggHapticInspector.HapticTrackInfo(totalMs, track);
+            info.getPyramid();
+            return info;
+        } catch (IOException | RuntimeException e) { // BufferUnderflow/IllegalArgument = 손상
+            Log.w(TAG, "get fail(" + key + "): " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            f.delete();
+            return null;
+        }
+    }
+
+    public synchronized void put(String key, OggHapticInspector.HapticTrackInfo info) {
+        if (key == null || info == null || info.getBinCount() == 0) return;
+        if (!dir.isDirectory() && !dir.mkdirs()) return;
+
+        CompressedHapticTrack track = info.getCompressed();
+        ByteBuffer bb = ByteBuffer.allocate(HEADER_SIZE + track.maxEncodedSize()).order(ByteOrder.LITTLE_ENDIAN);
+        bb.putInt(MAGIC).putInt(VERSION).putLong(info.totalDurationMs);
+        track.writeTo(bb);
+        bb.flip();
+
+        File tmp = new File(dir, key + EXT + ".tmp");
+        File dst = new File(dir, key + EXT);
+        try (FileOutputStream fos = new FileOutputStream(tmp)) {
+            FileChannel ch = fos.getChannel();
+            while (bb.hasRemaining()) ch.write(bb);
+        } catch (IOException e) {
+            Log.w(TAG, "put fail(" + key + "): " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+        if (!tmp.renameTo(dst)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            return;
+        }
+        evictToBudget();
+    }
+
+    private void evictToBudget() {
+        File[] files = dir.listFiles((d, name) -> name.endsWith(EXT));
+        if (files == null) return;
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= budgetBytes) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File f : files) {
+            if (total <= budgetBytes) break;
+            long len = f.length();
+            if (f.delete()) total -= len;
+        }
+    }
+}
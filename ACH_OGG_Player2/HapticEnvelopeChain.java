@@ -0,0 +1,141 @@
+package com.example.achoggmusicplayer;
+
+import java.util.Arrays;
+
+/**
+ * bin 단위(10ms) 햅틱 엔벨로프 셰이핑 체인. 입력은 bin의 RMS와 절대 피크(16bit 스케일).
+ *   피크 혼합 → 온셋 검출(에너지 dB 증가량) → 피크 홀드 → 어택/릴리즈 팔로워 → 노이즈 게이트 → 로그(dB) 매핑
+ * - 상태는 스칼라 몇 개뿐 → PCM 단일 패스 안에서 bin이 닫힐 때마다 호출(추가 버퍼 없음)
+ * - Config.rmsOnly()는 기존 선형 RMS(0~255)와 같은 값을 낸다
+ */
+public final class HapticEnvelopeChain {
+
+    private static final double FULL_SCALE = 32767.0;
+
+    /** 체인 설정. 각 단계는 값이 0(또는 -∞)이면 비활성 */
+    public static final class Config {
+        public double peakMix = 0.5;          // 0 = RMS만, 1 = 피크만
+        public double onsetThresholdDb = 9;   // 직전 bin 대비 이만큼 커지면 온셋
+        public double onsetBoost = 1.4;       // 온셋 bin 증폭(피크 기준)
+        public int holdMs = 30;               // 피크 유지 시간
+        public int attackMs = 2;
+        public int releaseMs = 90;
+        public double gateOpenDb = -48;       // 게이트 열림/닫힘(히스테리시스, dBFS)
+        public double gateCloseDb = -54;
+        public boolean logMapping = true;     // true: [floorDb, 0] dBFS → 0~255, false: 선형
+        public double floorDb = -54;
+
+        public static Config defaults() { return new Config(); }
+
+        /** 셰이핑 없이 선형 RMS(기존 동작) */
+        public static Config rmsOnly() {
+            Config c = new Config();
+            c.peakMix = 0;
+            c.onsetThresholdDb = 0;
+            c.holdMs = 0;
+            c.attackMs = 0;
+            c.releaseMs = 0;
+            c.gateOpenDb = c.gateCloseDb = Double.NEGATIVE_INFINITY;
+            c.logMapping = false;
+            return c;
+        }
+
+        /** 설정 식별자(디코드 캐시 키에 포함 → 설정이 바뀌면 캐시 미스) */
+        public String signature() {
+            return Integer.toHexString(Arrays.hashCode(new double[]{
+                    peakMix, onsetThresholdDb, onsetBoost, holdMs, attackMs, releaseMs,
+                    gateOpenDb, gateCloseDb, logMapping ? 1 : 0, floorDb}));
+        }
+    }
+
+    private final Config cfg;
+    private final int holdBins;
+    private final double attackCoef, releaseCoef;
+
+    private double prevDb;
+    private double held;
+    private int holdLeft;
+    private double env;
+    private boolean gateOpen;
+    private int onsets;
+
+    public HapticEnvelopeChain(Config cfg, int binMs) {
+        this.cfg = cfg;
+        this.holdBins = cfg.holdMs > 0 ? Math.max(1, cfg.holdMs / binMs) : 0;
+        this.attackCoef = coef(cfg.attackMs, binMs);
+        this.releaseCoef = coef(cfg.releaseMs, binMs);
+        reset();
+    }
+
+    public void reset() {
+        prevDb = cfg.floorDb;
+        held = 0;
+        holdLeft = 0;
+        env = 0;
+        gateOpen = false;
+        onsets = 0;
+    }
+
+    /** 지금까지 검출된 온셋 수 */
+    public int getOnsetCount() { return onsets; }
+
+    /** bin 하나 처리. rms/peak는 16bit 스케일(0~32767), 반환은 0~255 */
+    public int process(double rms, int peak) {
+        double x = rms + cfg.peakMix * (peak - rms);
+
+        // 온셋: 에너지(dB) 1차 차분이 임계 이상이면 과도음으로 보고 피크 기준 증폭
+        if (cfg.onsetThresholdDb > 0) {
+            double db = toDb(x);
+            if (db - prevDb >= cfg.onsetThresholdDb && db > cfg.gateCloseDb) {
+                onsets++;
+                x = Math.min(FULL_SCALE, Math.max(x, peak) * cfg.onsetBoost);
+            }
+            prevDb = db;
+        }
+
+        // 피크 홀드
+        if (holdBins > 0) {
+            if (x >= held) {
+                held = x;
+                holdLeft = holdBins;
+            } else if (holdLeft > 0) {
+                holdLeft--;
+                x = held;
+            } else {
+                held = x;
+            }
+        }
+
+        // 어택/릴리즈 팔로워(1차 IIR)
+        if (attackCoef < 1 || releaseCoef < 1) {
+            env += (x - env) * (x > env ? attackCoef : releaseCoef);
+            x = env;
+        }
+
+        // 노이즈 게이트(히스테리시스)
+        if (cfg.gateOpenDb > Double.NEGATIVE_INFINITY) {
+            double db = toDb(x);
+            if (gateOpen) {
+                if (db < cfg.gateCloseDb) gateOpen = false;
+            } else if (db >= cfg.gateOpenDb) {
+                gateOpen = true;
+            }
+            if (!gateOpen) return 0;
+        }
+
+        long amp = cfg.logMapping
+                ? Math.round(255.0 * (toDb(x) - cfg.floorDb) / -cfg.floorDb)
+                : Math.round(x * (255.0 / FULL_SCALE));
+        return amp < 0 ? 0 : (amp > 255 ? 255 : (int) amp);
+    }
+
+    private static double toDb(double x) {
+        return 20.0 * Math.log10(Math.max(x, 1.0) / FULL_SCALE);
+    }
+
+    /** 시간 상수 → bin당 1차 IIR 계수. 0이면 즉시 추종(1) */
+    private static double coef(int tauMs, int binMs) {
+        if (tauMs <= 0) return 1.0;
+        return 1.0 - Math.exp(-(double) binMs / tauMs);
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.achoggmusicplayer;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 햅틱 트랙 추출을 메인 스레드 밖(단일 워커)에서 수행하는 실행기.
+ * - extract(): 이전 작업을 취소하고 새 URI의 inspect + 디코드 시작
+ * - 진행률/부분 트랙은 bin 단위로 갱신되며 메인 스레드로 합쳐서(coalesce) 전달
+ * - cancel(): 진행 중인 디코드 중단(파일 재선택 시). 취소된 작업의 콜백은 전달되지 않음
+ * - 디코드 결과는 HapticEnvelopeCache에 저장 → 같은 내용의 파일은 디코드 없이 바로 완료
+ * 모든 Listener 콜백은 메인 스레드에서 호출된다.
+ */
+public final class HapticExtractor {
+
+    public interface Listener {
+        void onMeta(OggHapticInspector.Result meta);
+        void onProgress(int decodedBins, int totalBins);
+        /** 재생을 먼저 시작할 수 있도록 부분 트랙 공개(PARTIAL_INTERVAL_BINS 마다) */
+        void onPartial(OggHapticInspector.HapticTrackInfo partial);
+        /** 최종 트랙. 햅틱이 없으면 null */
+        void onComplete(OggHapticInspector.HapticTrackInfo info);
+        void onError(Exception e);
+    }
+
+    private static final String TAG = "HapticExtractor";
+    private static final int PARTIAL_INTERVAL_BINS = 100; // 10ms bin 기준 1초
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "HapticExtractor");
+        t.setPriority(Thread.NORM_PRIORITY - 1);
+        return t;
+    });
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private HapticEnvelopeCache cache;
+    private Job current;
+
+    public void extract(Context ctx, Uri uri, Listener listener) {
+        cancel();
+        if (cache == null) cache = HapticEnvelopeCache.forContext(ctx.getApplicationContext());
+        Job job = new Job(ctx.getApplicationContext(), uri, listener, cache);
+        current = job;
+        job.future = executor.submit(job);
+    }
+
+    public void cancel() {
+        if (current == null) return;
+        current.cancelled = true;
+        if (current.future != null) current.future.cancel(true);
+        current = null;
+    }
+
+    public boolean isRunning() {
+        return current != null && current.future != null && !current.future.isDone();
+    }
+
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    private final class Job implements Runnable, OggHapticInspector.DecodeProgress {
+        private final Context ctx;
+        private final Uri uri;
+        private final Listener listener;
+        private final HapticEnvelopeCache cache;
+        private volatile boolean cancelled = false;
+        private Future<?> future;
+
+        // 워커 → 메인 진행률 전달(최신값만 유지)
+        private final AtomicBoolean progressPosted = new AtomicBoolean(false);
+        private volatile int latestBins, latestTotal;
+        private int lastPartialBins = 0;
+
+        Job(Context ctx, Uri uri, Listener listener, HapticEnvelopeCache cache) {
+            this.ctx = ctx;
+            this.uri = uri;
+            this.listener = listener;
+            this.cache = cache;
+        }
+
+        @Override public boolean isCancelled() {
+            return cancelled || Thread.currentThread().isInterrupted();
+        }
+
+        @Override public void run() {
+            // 파일은 세션으로 1회만 연다: 메타 → 캐시 키 → 디코드가 같은 fd/extractor 사용
+            try (OggMediaSession session = OggMediaSession.open(ctx, uri)) {
+                OggHapticInspector.Result meta = OggHapticInspector.inspect(session);
+                post(() -> listener.onMeta(meta));
+                if (isCancelled()) return;
+
+                // 캐시 적중이면 디코드 생략(키 = 파일 내용 + 셰이핑 설정 + 압축 허용 오차)
+                String key = HapticEnvelopeCache.trackKey(session.computeContentKey());
+                OggHapticInspector.HapticTrackInfo cached = cache.get(key);
+                if (cached != null) {
+                    post(() -> listener.onComplete(cached));
+                    return;
+                }
+
+                OggHapticInspector.HapticTrackInfo info = OggHapticInspector.parseAchFromOgg(session, meta, this);
+                if (isCancelled()) return;
+                cache.put(key, info);
+                post(() -> listener.onComplete(info));
+            } catch (Exception e) {
+                if (isCancelled()) return;
+                Log.e(TAG, "extract error", e);
+                post(() -> listener.onError(e));
+            }
+        }
+
+        @Override public void onBins(OggHapticInspector.HapticTrackInfo partial, int decodedBins, int totalBins) {
+            latestBins = decodedBins;
+            latestTotal = totalBins;
+            if (progressPosted.compareAndSet(false, true)) {
+                post(() -> {
+                    progressPosted.set(false);
+                    listener.onProgress(latestBins, latestTotal);
+                });
+            }
+            if (decodedBins - lastPartialBins >= PARTIAL_INTERVAL_BINS) {
+                lastPartialBins = decodedBins;
+                post(() -> listener.onPartial(partial));
+            }
+        }
+
+        private void post(Runnable r) {
+            mainHandler.post(() -> {
+                if (!cancelled) r.run();
+            });
+        }
+    }
+}
@@ -0,0 +1,515 @@
+package com.example.achoggmusicplayer;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 폴더(SAF 트리 URI 또는 일반 디렉터리) 단위 햅틱 OGG 일괄 검사기.
+ * - 탐색 스레드 1개가 트리를 걸으며 .ogg/.oga/.opus 파일을 고정 크기 워커 풀에 넘김(대기 작업 수는 Semaphore로 제한)
+ * - 파일당 OggMediaSession 1개(FileDescriptor 1회 오픈): Ogg 헤더 1회 읽기(태그/코덱 + 캐시 키) → MediaExtractor 1개로 포맷/길이
+ * - 햅틱 여부는 플레이어와 같은 HapticChannelLayout 판별 결과(위치/개수/근거)를 인덱스에 저장해 판단
+ * - 햅틱 RMS 요약: HapticEnvelopeCache 적중이면 피라미드에서, 아니면(decodeMissing) 같은 extractor로 디코드 후 캐시 저장
+ * - 결과는 filesDir/haptic_library/<루트 해시>.tsv 에 한 줄씩 바로 append(flush) → 인덱스가 스트리밍으로 쌓임
+ * - 재개: 같은 루트를 다시 scan()하면 인덱스에 있는 (uri, 크기, 수정시각) 항목은 건너뜀(실패 항목은 다시 검사).
+ *   "#START" 뒤에 "#DONE"이 없는 인덱스는 미완료 → findUnfinishedRoot()로 프로세스 재시작 후 이어서 검사
+ * 모든 Listener 콜백은 메인 스레드에서 호출된다(진행률은 최신값만 합쳐서 전달).
+ */
+public final class HapticLibraryScanner {
+
+    public interface Listener {
+        void onProgress(Progress p);
+        void onComplete(Progress p);
+        void onError(Exception e);
+    }
+
+    /** 진행 상황 스냅샷(불변) */
+    public static final class Progress {
+        public final int found, done, skipped, failed, withHaptic;
+
+        Progress(int found, int done, int skipped, int failed, int withHaptic) {
+            this.found = found;
+            this.done = done;
+            this.skipped = skipped;
+            this.failed = failed;
+            this.withHaptic = withHaptic;
+        }
+    }
+
+    public static final class Options {
+        public int workers = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        public boolean decodeMissing = false; // 캐시에 없으면 디코드해서 RMS 요약(느림)
+        public boolean rescan = false;        // true면 기존 인덱스를 버리고 처음부터
+    }
+
+    /** 인덱스 한 줄(파일 하나) */
+    public static final class Entry {
+        public String uri, name, mime, error;
+        public long size, lastModified, durationMs;
+        public int channelCount, sampleRate, codec;
+        public boolean hasHapticTag;
+        // 플레이어와 같은 HapticChannelLayout 판별 결과(없으면 -1 / 0 / null)
+        public int hapticIndex = -1, hapticCount = 0;
+        public String layoutSource;
+        public int hapticRms = -1, hapticPeak = -1; // 0~255, 요약 없으면 -1
+
+        public boolean hasHaptic() {
+            return hapticIndex >= 0;
+        }
+
+        String resumeKey() {
+            return resumeKey(uri, size, lastModified);
+        }
+
+        static String resumeKey(String uri, long size, long lastModified) {
+            return uri + '\t' + size + '\t' + lastModified;
+        }
+
+        String toLine() {
+            return uri + '\t' + size + '\t' + lastModified + '\t' + clean(name) + '\t' + clean(mime)
+                    + '\t' + channelCount + '\t' + sampleRate + '\t' + durationMs + '\t' + (hasHapticTag ? 1 : 0)
+                    + '\t' + codec + '\t' + hapticRms + '\t' + hapticPeak + '\t' + clean(error)
+                    + '\t' + hapticIndex + '\t' + hapticCount + '\t' + clean(layoutSource);
+        }
+
+        /** toLine() 역변환. 형식이 다르면 null(배치 열이 없는 이전 형식 줄은 layoutSource == null) */
+        static Entry parse(String line) {
+            String[] f = line.split("\t", -1);
+            if (f.length != 13 && f.length != 16) return null;
+            try {
+                Entry e = new Entry();
+                e.uri = f[0];
+                e.size = Long.parseLong(f[1]);
+                e.lastModified = Long.parseLong(f[2]);
+                e.name = f[3].isEmpty() ? null : f[3];
+                e.mime = f[4].isEmpty() ? null : f[4];
+                e.channelCount = Integer.parseInt(f[5]);
+                e.sampleRate = Integer.parseInt(f[6]);
+                e.durationMs = Long.parseLong(f[7]);
+                e.hasHapticTag = "1".equals(f[8]);
+                e.codec = Integer.parseInt(f[9]);
+                e.hapticRms = Integer.parseInt(f[10]);
+                e.hapticPeak = Integer.parseInt(f[11]);
+                e.error = f[12].isEmpty() ? null : f[12];
+                if (f.length == 16) {
+                    e.hapticIndex = Integer.parseInt(f[13]);
+                    e.hapticCount = Integer.parseInt(f[14]);
+                    e.layoutSource = f[15].isEmpty() ? null : f[15];
+                }
+                return e;
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+
+        private static String clean(String s) {
+            return s == null ? "" : s.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+        }
+    }
+
+    private static final String TAG = "HapticLibraryScanner";
+    private static final String DIR_NAME = "haptic_library";
+    private static final String EXT = ".tsv";
+    private static final String MARK_ROOT = "#ROOT\t";
+    private static final String MARK_START = "#START\t";
+    private static final String MARK_DONE = "#DONE\t";
+
+    private static final String[] CHILD_COLUMNS = {
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_SIZE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED,
+    };
+
+    private final Context app;
+    private final File indexDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private HapticEnvelopeCache cache;
+    private Scan current;
+
+    public HapticLibraryScanner(Context ctx) {
+        this.app = ctx.getApplicationContext();
+        this.indexDir = new File(app.getFilesDir(), DIR_NAME);
+    }
+
+    /** SAF 트리 URI(OpenDocumentTree 결과, 영구 권한 필요) 검사 시작. 진행 중이던 검사는 취소 */
+    public void scan(Uri treeUri, Options options, Listener listener) {
+        start(treeUri.toString(), options, listener);
+    }
+
+    /** 일반 디렉터리 검사 시작 */
+    public void scan(File dir, Options options, Listener listener) {
+        start(Uri.fromFile(dir).toString(), options, listener);
+    }
+
+    public void cancel() {
+        if (current == null) return;
+        current.cancelled = true;
+        current.thread.interrupt();
+        current = null;
+    }
+
+    public boolean isRunning() {
+        return current != null && current.thread.isAlive();
+    }
+
+    public File indexFileFor(String root) {
+        return new File(indexDir, String.format(Locale.US, "%08x", root.hashCode()) + EXT);
+    }
+
+    /** 마지막 검사가 끝나지 않은(프로세스 종료 등) 루트. 없으면 null */
+    public static String findUnfinishedRoot(Context ctx) {
+        File[] files = new File(ctx.getApplicationContext().getFilesDir(), DIR_NAME)
+                .listFiles((d, name) -> name.endsWith(EXT));
+        if (files == null) return null;
+        for (File f : files) {
+            String root = null;
+            boolean open = false;
+            try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+                for (String line; (line = r.readLine()) != null; ) {
+                    if (line.startsWith(MARK_ROOT)) root = line.substring(MARK_ROOT.length());
+                    else if (line.startsWith(MARK_START)) open = true;
+                    else if (line.startsWith(MARK_DONE)) open = false;
+                }
+            } catch (IOException e) {
+                continue;
+            }
+            if (open && root != null) return root;
+        }
+        return null;
+    }
+
+    /** 인덱스 파일의 항목들(같은 uri가 여러 번 있으면 마지막 것) */
+    public static List<Entry> readIndex(File f) {
+        List<Entry> out = new ArrayList<>();
+        Map<String, Integer> pos = new HashMap<>();
+        try (BufferedReader r = new BufferedReader(new FileReader(f))) {
+            for (String line; (line = r.readLine()) != null; ) {
+                if (line.startsWith("#")) continue;
+                Entry e = Entry.parse(line);
+                if (e == null) continue;
+                Integer at = pos.get(e.uri);
+                if (at != null) {
+                    out.set(at, e);
+                } else {
+                    pos.put(e.uri, out.size());
+                    out.add(e);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "readIndex fail: " + e.getMessage());
+        }
+        return out;
+    }
+
+    // ---------- 내부 ----------
+
+    private void start(String root, Options options, Listener listener) {
+        cancel();
+        if (cache == null) cache = HapticEnvelopeCache.forContext(app);
+        Scan scan = new Scan(root, options != null ? options : new Options(), listener);
+        current = scan;
+        scan.thread.start();
+    }
+
+    /** 탐색 중 발견한 검사 대상 */
+    private static final class Candidate {
+        final String uri, name;
+        final long size, lastModified;
+
+        Candidate(String uri, String name, long size, long lastModified) {
+            this.uri = uri;
+            this.name = name;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+    }
+
+    private final class Scan implements Runnable, OggHapticInspector.DecodeProgress {
+        private final String root;
+        private final Options options;
+        private final Listener listener;
+        private final Thread thread;
+        private final ExecutorService pool;
+        private final Semaphore slots;
+        private final int maxSlots;
+        private volatile boolean cancelled = false;
+
+        private final Set<String> doneKeys = new HashSet<>();
+        private BufferedWriter writer;
+
+        private final AtomicInteger found = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+        private final AtomicInteger skipped = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicInteger withHaptic = new AtomicInteger();
+        private final AtomicBoolean progressPosted = new AtomicBoolean(false);
+
+        Scan(String root, Options options, Listener listener) {
+            this.root = root;
+            this.options = options;
+            this.listener = listener;
+            int workers = Math.max(1, options.workers);
+            this.maxSlots = workers * 2; // 실행 중 + 대기 1개씩
+            this.slots = new Semaphore(maxSlots);
+            AtomicInteger n = new AtomicInteger();
+            this.pool = Executors.newFixedThreadPool(workers, r -> {
+                Thread t = new Thread(r, "LibraryScan-" + n.incrementAndGet());
+                t.setPriority(Thread.NORM_PRIORITY - 1);
+                return t;
+            });
+            this.thread = new Thread(this, "LibraryScan");
+        }
+
+        @Override public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override public void onBins(OggHapticInspector.HapticTrackInfo partial, int decodedBins, int totalBins) {}
+
+        @Override public void run() {
+            try {
+                openIndex();
+                Uri rootUri = Uri.parse(root);
+                if (ContentResolver.SCHEME_FILE.equals(rootUri.getScheme())) {
+                    walkFiles(new File(rootUri.getPath()));
+                } else {
+                    walkTree(rootUri);
+                }
+                // 남은 작업 완료 대기
+                slots.acquire(maxSlots);
+                slots.release(maxSlots);
+                if (cancelled) return;
+                writeLine(MARK_DONE + System.currentTimeMillis());
+                Progress p = snapshot();
+                mainHandler.post(() -> { if (!cancelled) listener.onComplete(p); });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                if (cancelled) return;
+                Log.e(TAG, "scan error", e);
+                mainHandler.post(() -> listener.onError(e));
+            } finally {
+                pool.shutdownNow();
+                try {
+                    pool.awaitTermination(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ignore) {
+                    Thread.currentThread().interrupt();
+                }
+                closeIndex();
+            }
+        }
+
+        /** 기존 인덱스에서 완료 항목 로드(재개) 후 append 모드로 연다 */
+        private void openIndex() throws IOException {
+            if (!indexDir.isDirectory() && !indexDir.mkdirs()) throw new IOException("mkdirs fail: " + indexDir);
+            File f = indexFileFor(root);
+            boolean append = !options.rescan && f.isFile();
+            if (append) {
+                for (Entry e : readIndex(f)) {
+                    // 실패 행(권한/IO 일시 오류, 디코드 중 종료)과 배치 열 없는 이전 형식 → 다시 검사
+                    if (e.error != null || e.layoutSource == null) continue;
+                    doneKeys.add(e.resumeKey());
+                    if (e.hasHaptic()) withHaptic.incrementAndGet();
+                }
+            }
+            writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f, append), StandardCharsets.UTF_8));
+            if (!append) writeLine(MARK_ROOT + root);
+            writeLine(MARK_START + System.currentTimeMillis());
+        }
+
+        private synchronized void writeLine(String line) throws IOException {
+            writer.write(line);
+            writer.newLine();
+            writer.flush(); // 프로세스가 죽어도 여기까지는 남도록
+        }
+
+        private synchronized void closeIndex() {
+            if (writer == null) return;
+            try { writer.close(); } catch (IOException ignore) {}
+            writer = null;
+        }
+
+        private void walkTree(Uri treeUri) throws InterruptedException {
+            ContentResolver cr = app.getContentResolver();
+            ArrayDeque<String> dirs = new ArrayDeque<>();
+            dirs.push(DocumentsContract.getTreeDocumentId(treeUri));
+            while (!dirs.isEmpty() && !cancelled) {
+                Uri children = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, dirs.pop());
+                try (Cursor c = cr.query(children, CHILD_COLUMNS, null, null, null)) {
+                    if (c == null) continue;
+                    while (c.moveToNext() && !cancelled) {
+                        String id = c.getString(0);
+                        String name = c.getString(1);
+                        String mime = c.getString(2);
+                        if (DocumentsContract.Document.MIME_TYPE_DIR.equals(mime)) {
+                            dirs.push(id);
+                        } else if (isOggCandidate(name, mime)) {
+                            long size = c.isNull(3) ? -1 : c.getLong(3);
+                            long mod = c.isNull(4) ? 0 : c.getLong(4);
+                            offer(new Candidate(DocumentsContract.buildDocumentUriUsingTree(treeUri, id).toString(),
+                                    name, size, mod));
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    Log.w(TAG, "list fail: " + e.getMessage()); // 권한 없는 하위 폴더 등은 건너뜀
+                }
+            }
+        }
+
+        private void walkFiles(File dir) throws InterruptedException {
+            ArrayDeque<File> dirs = new ArrayDeque<>();
+            dirs.push(dir);
+            while (!dirs.isEmpty() && !cancelled) {
+                File[] list = dirs.pop().listFiles();
+                if (list == null) continue;
+                for (File f : list) {
+                    if (cancelled) return;
+                    if (f.isDirectory()) dirs.push(f);
+                    else if (isOggCandidate(f.getName(), null)) {
+                        offer(new Candidate(Uri.fromFile(f).toString(), f.getName(), f.length(), f.lastModified()));
+                    }
+                }
+            }
+        }
+
+        /** 이미 인덱스에 있으면 건너뛰고, 아니면 슬롯이 빌 때까지 기다렸다가 워커에 넘김 */
+        private void offer(Candidate c) throws InterruptedException {
+            found.incrementAndGet();
+            if (doneKeys.contains(Entry.resumeKey(c.uri, c.size, c.lastModified))) {
+                skipped.incrementAndGet();
+                postProgress();
+                return;
+            }
+            slots.acquire();
+            try {
+                pool.execute(() -> {
+                    try {
+                        if (cancelled) return;
+                        Entry e = inspect(c);
+                        if (cancelled) return;
+                        writeLine(e.toLine());
+                        done.incrementAndGet();
+                        if (e.error != null) failed.incrementAndGet();
+                        if (e.hasHaptic()) withHaptic.incrementAndGet();
+                        postProgress();
+                    } catch (IOException e) {
+                        Log.w(TAG, "index write fail: " + e.getMessage());
+                    } finally {
+                        slots.release();
+                    }
+                });
+            } catch (RuntimeException e) { // RejectedExecution(취소 중)
+                slots.release();
+                throw e;
+            }
+        }
+
+        /** 파일 하나 검사: 세션 1개(fd 1회 오픈, 헤더 1회 읽기, extractor 1개) */
+        private Entry inspect(Candidate c) {
+            Entry e = new Entry();
+            e.uri = c.uri;
+            e.name = c.name;
+            e.size = c.size;
+            e.lastModified = c.lastModified;
+
+            try (OggMediaSession session = OggMediaSession.open(app, Uri.parse(c.uri))) {
+                // 1) Ogg 헤더(태그/코덱) + 캐시 키
+                OggPageReader.CommentHeader h = session.getCommentHeader(); // Ogg 아님/손상이면 null
+                if (h != null) {
+                    e.codec = h.codec;
+                    e.hasHapticTag = h.containsTag("ANDROID_HAPTIC");
+                }
+                String key = HapticEnvelopeCache.trackKey(session.computeContentKey());
+
+                // 2) 포맷/길이
+                MediaFormat fmt = session.getAudioFormat();
+                if (fmt != null) {
+                    e.mime = fmt.getString(MediaFormat.KEY_MIME);
+                    if (fmt.containsKey(MediaFormat.KEY_CHANNEL_COUNT)) e.channelCount = fmt.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                    if (fmt.containsKey(MediaFormat.KEY_SAMPLE_RATE)) e.sampleRate = fmt.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    if (fmt.containsKey(MediaFormat.KEY_DURATION)) e.durationMs = fmt.getLong(MediaFormat.KEY_DURATION) / 1000;
+                }
+
+                // 3) 햅틱 RMS 요약(캐시 → 필요 시 같은 extractor로 디코드)
+                OggHapticInspector.HapticTrackInfo track = cache.get(key);
+                HapticChannelLayout layout = session.getHapticLayout();
+                e.hapticIndex = layout.hapticIndex;
+                e.hapticCount = layout.hapticCount;
+                e.layoutSource = layout.source;
+                if (track == null && options.decodeMissing && layout.hasHaptic()
+                        && DecoderCapabilities.canDecode(e.mime, e.channelCount)) {
+                    session.beginDecode();
+                    try (MediaCodecPcmSource src = session.openPcmSource(0)) {
+                        if (src != null) {
+                            track = OggHapticInspector.parseFromSource(src, layout.hapticIndex, e.sampleRate, e.durationMs, this);
+                        }
+                    }
+                    session.markDecodeDone();
+                    if (track != null && !cancelled) cache.put(key, track);
+                }
+                if (track != null && track.getBinCount() > 0) {
+                    HapticAmplitudePyramid p = track.getPyramid();
+                    e.hapticRms = p.rangeRms(0, track.getBinCount());
+                    e.hapticPeak = p.rangeMax(0, track.getBinCount());
+                }
+            } catch (Exception err) {
+                e.error = err.getClass().getSimpleName() + ": " + err.getMessage();
+            }
+            return e;
+        }
+
+        private Progress snapshot() {
+            return new Progress(found.get(), done.get(), skipped.get(), failed.get(), withHaptic.get());
+        }
+
+        private void postProgress() {
+            if (progressPosted.compareAndSet(false, true)) {
+                mainHandler.post(() -> {
+                    progressPosted.set(false);
+                    if (!cancelled) listener.onProgress(snapshot());
+                });
+            }
+        }
+    }
+
+    private static boolean isOggCandidate(String name, String mime) {
+        if (mime != null) {
+            String m = mime.toLowerCase(Locale.US);
+            if (m.equals("audio/ogg") || m.equals("application/ogg") || m.equals("audio/opus")) return true;
+        }
+        if (name == null) return false;
+        String n = name.toLowerCase(Locale.US);
+        return n.endsWith(".ogg") || n.endsWith(".oga") || n.endsWith(".opus");
+    }
+}
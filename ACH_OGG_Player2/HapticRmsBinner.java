@@ -0,0 +1,154 @@
+package com.example.achoggmusicplayer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 인터리브 PCM(16bit 또는 float)에서 햅틱 채널만 stride로 읽어 binSamples 단위 RMS → 0~255 진폭으로 변환.
+ * - float는 읽는 자리에서 16bit 스케일 정수로 환산(버퍼 변환 없음) → 두 인코딩이 같은 누적/셰이핑 경로 사용
+ * - chain이 있으면 bin마다 RMS + 절대 피크를 HapticEnvelopeChain에 통과(같은 패스, 추가 버퍼 없음)
+ * - 코덱 출력 ByteBuffer를 절대 인덱스로 직접 읽음(short[] 복사 없음)
+ * - 결과는 totalMs로 미리 크기를 잡은 int[]에 기록(박싱/ArrayList 없음)
+ * - reset()으로 재사용 가능 → 정상 상태에서 추가 할당 없음
+ */
+public final class HapticRmsBinner {
+
+    private static final double AMP_SCALE = 255.0 / 32767.0;
+
+    private int channels;
+    private int hapticChIndex;
+    private int binSamples;
+    private int expectedBins;
+    private int encoding = PcmSource.ENCODING_PCM_16BIT;
+
+    private int[] amps = new int[0];
+    private int binCount = 0;
+    private int samplesAccum = 0;
+    private long sumSquares = 0L; // 32767^2 * binSamples → long 범위 내
+    private int peak = 0;
+    private HapticEnvelopeChain chain;
+
+    public HapticRmsBinner(int channels, int hapticChIndex, int binSamples, int expectedBins) {
+        reset(channels, hapticChIndex, binSamples, expectedBins);
+    }
+
+    /** 새 트랙용으로 상태 초기화. 기존 배열이 충분하면 재사용 */
+    public void reset(int channels, int hapticChIndex, int binSamples, int expectedBins) {
+        this.channels = channels;
+        this.hapticChIndex = hapticChIndex;
+        this.binSamples = Math.max(1, binSamples);
+        this.expectedBins = Math.max(1, expectedBins);
+        int cap = this.expectedBins + 1; // 마지막 잔여 bin 여유
+        if (amps.length < cap) amps = new int[cap];
+        binCount = 0;
+        samplesAccum = 0;
+        sumSquares = 0L;
+        peak = 0;
+        if (chain != null) chain.reset();
+    }
+
+    /** 입력 인코딩(PcmSource.ENCODING_*). 트랙 중간에 바꾸지 않음 */
+    public void setPcmEncoding(int encoding) {
+        this.encoding = encoding;
+    }
+
+    /** bin 셰이핑 체인 지정(null이면 선형 RMS) */
+    public void setChain(HapticEnvelopeChain chain) {
+        this.chain = chain;
+        if (chain != null) chain.reset();
+    }
+
+    /** buf[offset, offset+size) 구간의 인터리브 PCM 프레임을 누적 */
+    public void accept(ByteBuffer buf, int offset, int size) {
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (encoding == PcmSource.ENCODING_PCM_FLOAT) {
+            acceptFloat(buf, offset, size);
+            return;
+        }
+        final int frameBytes = channels * 2;
+        final int last = offset + size - frameBytes + hapticChIndex * 2; // 마지막 완전 프레임
+        int acc = samplesAccum;
+        long sq = sumSquares;
+        int pk = peak;
+        for (int p = offset + hapticChIndex * 2; p <= last; p += frameBytes) {
+            int s = buf.getShort(p);
+            sq += s * s;
+            int a = s < 0 ? -s : s;
+            if (a > pk) pk = a;
+            if (++acc >= binSamples) {
+                push(sq, acc, pk);
+                acc = 0;
+                sq = 0L;
+                pk = 0;
+            }
+        }
+        samplesAccum = acc;
+        sumSquares = sq;
+        peak = pk;
+    }
+
+    private void acceptFloat(ByteBuffer buf, int offset, int size) {
+        final int frameBytes = channels * 4;
+        final int last = offset + size - frameBytes + hapticChIndex * 4;
+        int acc = samplesAccum;
+        long sq = sumSquares;
+        int pk = peak;
+        for (int p = offset + hapticChIndex * 4; p <= last; p += frameBytes) {
+            int s = floatToS16(buf.getFloat(p));
+            sq += s * s;
+            int a = s < 0 ? -s : s;
+            if (a > pk) pk = a;
+            if (++acc >= binSamples) {
+                push(sq, acc, pk);
+                acc = 0;
+                sq = 0L;
+                pk = 0;
+            }
+        }
+        samplesAccum = acc;
+        sumSquares = sq;
+        peak = pk;
+    }
+
+    /** float 샘플(±1.0) → 16bit 스케일 정수(클리핑) */
+    public static int floatToS16(float f) {
+        int s = (int) (f * 32767f);
+        return s > 32767 ? 32767 : s < -32767 ? -32767 : s;
+    }
+
+    /** 잔여 샘플 처리 후 expectedBins 길이로 맞춘 진폭 배열 반환(부족분 0 패딩) */
+    public int[] finish() {
+        if (samplesAccum > 0) {
+            push(sumSquares, samplesAccum, peak);
+            samplesAccum = 0;
+            sumSquares = 0L;
+            peak = 0;
+        }
+        if (binCount < expectedBins) Arrays.fill(amps, binCount, expectedBins, 0);
+        return Arrays.copyOf(amps, expectedBins);
+    }
+
+    /**
+     * 디코드 중인 진폭 버퍼(복사 없음). [0, getBinCount()) 구간만 확정값이고 나머지는 0.
+     * 버퍼가 확장되면 이전 참조는 더 이상 갱신되지 않는다.
+     */
+    public int[] peek() { return amps; }
+
+    /** 지금까지 완성된 bin 수 */
+    public int getBinCount() { return binCount; }
+
+    private void push(long sq, int n, int pk) {
+        if (binCount >= amps.length) {
+            // totalMs 추정보다 길게 디코드되는 경우만 확장
+            amps = Arrays.copyOf(amps, amps.length + (amps.length >> 1) + 1);
+        }
+        double rms = Math.sqrt((double) sq / n);
+        if (chain != null) {
+            amps[binCount++] = chain.process(rms, pk);
+            return;
+        }
+        int amp = (int) Math.round(rms * AMP_SCALE);
+        amps[binCount++] = amp > 255 ? 255 : amp;
+    }
+}
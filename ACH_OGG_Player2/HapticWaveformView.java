@@ -0,0 +1,301 @@
+package com.example.achoggmusicplayer;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+
+/**
+ * 햅틱 진폭 파형 + 재생 헤드 뷰.
+ * - 파형은 TILE_PX 폭 Bitmap 타일 띠에 한 번만 그려 캐시. 프레임마다 보이는 타일 blit + 헤드 선만 그림(진폭 재순회 없음)
+ * - 줌(핀치)은 픽셀당 bin 수에 맞는 HapticAmplitudePyramid 레벨의 max/RMS를 그대로 사용, 더블탭 = 전체 맞춤
+ * - 디코드 중 부분 트랙은 새로 확정된 bin이 걸친 타일만 다시 그림
+ * - 타일은 MAX_TILES개까지 보관(오래 안 보인 것부터 재사용), 배율/높이가 바뀌면 전부 무효화
+ * - 확대 상태에서는 헤드가 뷰 폭의 1/3 지점에 머물도록 스크롤, 탭하면 OnSeekListener로 위치 전달
+ * 메인 스레드 전용.
+ */
+public final class HapticWaveformView extends View {
+
+    public interface OnSeekListener {
+        void onSeek(long ms);
+    }
+
+    private static final int TILE_PX = 256;
+    private static final int MAX_TILES = 24;
+    private static final float HEAD_ANCHOR = 1f / 3f;
+    private static final double MAX_PX_PER_BIN = 4; // 최대 확대: bin당 4px
+
+    private static final class Tile {
+        int index = -1;   // 타일 번호(-1 = 비어 있음)
+        int validBins;    // 그릴 때 확정돼 있던 bin 수
+        long lastUsed;    // 마지막으로 그려진 프레임
+        Bitmap bitmap;
+    }
+
+    private final Tile[] tiles = new Tile[MAX_TILES];
+    private final Canvas tileCanvas = new Canvas();
+    private final Paint envPaint = new Paint();
+    private final Paint rmsPaint = new Paint();
+    private final Paint headPaint = new Paint();
+    private final Paint basePaint = new Paint();
+    private final float[] envPts = new float[TILE_PX * 4];
+    private final float[] rmsPts = new float[TILE_PX * 4];
+    private final ScaleGestureDetector scaleDetector;
+    private final GestureDetector gestureDetector;
+
+    // 데이터: 완료 트랙이면 pyramid, 디코드 중이면 partialAmps[0, validBins)
+    private HapticAmplitudePyramid pyramid;
+    private int[] partialAmps;
+    private int validBins;
+    private int binMs = 10;
+    private long totalMs;
+
+    // 보기 상태
+    private double zoomMsPerPx = 0;   // 0 = 전체 맞춤
+    private double tileMsPerPx = -1;  // 타일을 그린 배율
+    private int tileHeight = -1;
+    private long playheadMs;
+    private int scrollPx;
+    private float headX = Float.NaN;
+    private long frame;
+    private int colMax, colRms;       // column() 결과(할당 없이 전달)
+    private OnSeekListener seekListener;
+
+    public HapticWaveformView(Context ctx) {
+        this(ctx, null);
+    }
+
+    public HapticWaveformView(Context ctx, AttributeSet attrs) {
+        super(ctx, attrs);
+        for (int i = 0; i < MAX_TILES; i++) tiles[i] = new Tile();
+        float density = ctx.getResources().getDisplayMetrics().density;
+        envPaint.setColor(0xFF90CAF9);
+        rmsPaint.setColor(0xFF1E88E5);
+        basePaint.setColor(Color.LTGRAY);
+        headPaint.setColor(0xFFE53935);
+        headPaint.setStrokeWidth(Math.max(1f, 2f * density));
+
+        scaleDetector = new ScaleGestureDetector(ctx, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override public boolean onScale(ScaleGestureDetector d) {
+                if (totalMs <= 0) return false;
+                double fit = fitMsPerPx();
+                double next = msPerPx() / d.getScaleFactor();
+                zoomMsPerPx = next >= fit ? 0 : Math.max(binMs / MAX_PX_PER_BIN, next);
+                invalidate();
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(ctx, new GestureDetector.SimpleOnGestureListener() {
+            @Override public boolean onDown(MotionEvent e) { return true; }
+
+            @Override public boolean onDoubleTap(MotionEvent e) {
+                zoomMsPerPx = 0;
+                invalidate();
+                return true;
+            }
+
+            @Override public boolean onSingleTapConfirmed(MotionEvent e) {
+                if (seekListener == null || totalMs <= 0) return false;
+                long ms = (long) ((scrollPx + e.getX()) * msPerPx());
+                seekListener.onSeek(Math.max(0, Math.min(totalMs, ms)));
+                return true;
+            }
+        });
+    }
+
+    public void setOnSeekListener(OnSeekListener l) { seekListener = l; }
+
+    /** 완료 트랙(요약 레벨로 그림) */
+    public void setTrack(HapticAmplitudePyramid pyramid, int binMs, long totalMs) {
+        this.pyramid = pyramid;
+        this.partialAmps = null;
+        this.validBins = pyramid != null ? pyramid.getLevelLength(0) : 0;
+        this.binMs = Math.max(1, binMs);
+        this.totalMs = Math.max(0, totalMs);
+        dropTiles();
+        invalidate();
+    }
+
+    /** 디코드 중 트랙: amps[0, validBins)만 확정. 같은 트랙이면 새로 확정된 구간의 타일만 다시 그림 */
+    public void setPartial(int[] amps, int validBins, int binMs, long totalMs) {
+        if (pyramid != null || this.totalMs != totalMs || this.binMs != binMs) {
+            pyramid = null;
+            dropTiles();
+        }
+        this.partialAmps = amps;
+        this.validBins = amps != null ? Math.min(validBins, amps.length) : 0;
+        this.binMs = Math.max(1, binMs);
+        this.totalMs = Math.max(0, totalMs);
+        invalidate();
+    }
+
+    public void clear() {
+        pyramid = null;
+        partialAmps = null;
+        validBins = 0;
+        totalMs = 0;
+        dropTiles();
+        invalidate();
+    }
+
+    /** 프레임마다 호출. 헤드 픽셀이나 스크롤이 바뀐 경우에만 다시 그림 */
+    public void setPlayheadMs(long ms) {
+        if (ms == playheadMs) return;
+        playheadMs = ms;
+        if (totalMs <= 0 || getWidth() <= 0) return;
+        double mpp = msPerPx();
+        int scroll = scrollFor(mpp);
+        float x = (float) (ms / mpp) - scroll;
+        if (scroll != scrollPx || !(Math.abs(x - headX) < 0.5f)) invalidate();
+    }
+
+    @Override public boolean onTouchEvent(MotionEvent e) {
+        boolean handled = scaleDetector.onTouchEvent(e);
+        handled |= gestureDetector.onTouchEvent(e);
+        return handled || super.onTouchEvent(e);
+    }
+
+    @Override protected void onDraw(Canvas canvas) {
+        int w = getWidth(), h = getHeight();
+        canvas.drawLine(0, h - 0.5f, w, h - 0.5f, basePaint);
+        if (totalMs <= 0 || w <= 0 || h <= 0) return;
+
+        double mpp = msPerPx();
+        if (mpp != tileMsPerPx || h != tileHeight) {
+            dropTiles();
+            tileMsPerPx = mpp;
+            tileHeight = h;
+        }
+        int scroll = scrollFor(mpp);
+        frame++;
+        for (int t = scroll / TILE_PX, last = (scroll + w - 1) / TILE_PX; t <= last; t++) {
+            Tile tile = obtain(t, mpp, h);
+            if (tile != null) canvas.drawBitmap(tile.bitmap, t * TILE_PX - scroll, 0, null);
+        }
+
+        headX = (float) (playheadMs / mpp) - scroll;
+        scrollPx = scroll;
+        canvas.drawLine(headX, 0, headX, h, headPaint);
+    }
+
+    @Override protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        for (Tile t : tiles) {
+            if (t.bitmap != null) t.bitmap.recycle();
+            t.bitmap = null;
+            t.index = -1;
+        }
+    }
+
+    // ===== 타일 =====
+
+    /** 타일 t를 캐시에서 찾거나(새 bin이 생겼으면 다시 그림) 가장 오래된 칸에 그림 */
+    private Tile obtain(int t, double mpp, int h) {
+        if (pyramid == null && partialAmps == null) return null;
+        int lastBin = (int) Math.min(validBins, (long) Math.ceil((t + 1) * TILE_PX * mpp / binMs));
+
+        Tile victim = tiles[0]; // 빈 칸 우선, 없으면 가장 오래 안 쓰인 칸
+        for (Tile tile : tiles) {
+            if (tile.index == t) {
+                if (tile.validBins < lastBin) render(tile, t, mpp, h);
+                tile.lastUsed = frame;
+                return tile;
+            }
+            if (victim.index >= 0 && (tile.index < 0 || tile.lastUsed < victim.lastUsed)) victim = tile;
+        }
+        render(victim, t, mpp, h);
+        victim.lastUsed = frame;
+        return victim;
+    }
+
+    private void render(Tile tile, int t, double mpp, int h) {
+        if (tile.bitmap == null || tile.bitmap.getHeight() != h) {
+            if (tile.bitmap != null) tile.bitmap.recycle();
+            tile.bitmap = Bitmap.createBitmap(TILE_PX, h, Bitmap.Config.ARGB_8888);
+        }
+        tile.index = t;
+        tile.validBins = validBins;
+        tile.bitmap.eraseColor(Color.TRANSPARENT);
+
+        double binsPerPx = mpp / binMs;
+        int level = pyramid != null ? pyramid.levelForBinsPerPixel(binsPerPx) : 0;
+        int per = pyramid != null ? pyramid.getBinsPerEntry(level) : 1;
+        float scale = (h - 1) / 255f;
+        int ne = 0, nr = 0;
+        for (int px = 0; px < TILE_PX; px++) {
+            long x = (long) t * TILE_PX + px;
+            int b0 = (int) (x * binsPerPx);
+            if (b0 >= validBins) break;
+            int b1 = Math.min(validBins, Math.max(b0 + 1, (int) ((x + 1) * binsPerPx)));
+            column(b0, b1, level, per);
+            float cx = px + 0.5f;
+            if (colMax > 0) {
+                envPts[ne++] = cx; envPts[ne++] = h;
+                envPts[ne++] = cx; envPts[ne++] = h - colMax * scale;
+            }
+            if (colRms > 0) {
+                rmsPts[nr++] = cx; rmsPts[nr++] = h;
+                rmsPts[nr++] = cx; rmsPts[nr++] = h - colRms * scale;
+            }
+        }
+        tileCanvas.setBitmap(tile.bitmap);
+        if (ne > 0) tileCanvas.drawLines(envPts, 0, ne, envPaint);
+        if (nr > 0) tileCanvas.drawLines(rmsPts, 0, nr, rmsPaint);
+        tileCanvas.setBitmap(null);
+    }
+
+    /** [b0, b1) bin 구간의 max/RMS → colMax/colRms. 완료 트랙은 요약 레벨 항목 몇 개만 봄 */
+    private void column(int b0, int b1, int level, int per) {
+        int mx = 0;
+        long sq = 0;
+        int n = 0;
+        if (pyramid != null) {
+            int len = pyramid.getLevelLength(level);
+            int e1 = Math.min(len, Math.max(b0 / per + 1, (b1 + per - 1) / per));
+            for (int e = b0 / per; e < e1; e++, n++) {
+                mx = Math.max(mx, pyramid.getMax(level, e));
+                int r = pyramid.getRms(level, e);
+                sq += (long) r * r;
+            }
+        } else if (partialAmps != null) {
+            for (int b = b0; b < b1; b++, n++) {
+                int a = partialAmps[b];
+                if (a > mx) mx = a;
+                sq += (long) a * a;
+            }
+        }
+        colMax = mx;
+        colRms = n > 0 ? (int) Math.round(Math.sqrt((double) sq / n)) : 0;
+    }
+
+    private void dropTiles() {
+        for (Tile t : tiles) t.index = -1; // 비트맵은 재사용
+        headX = Float.NaN;
+    }
+
+    // ===== 배율/스크롤 =====
+
+    private double fitMsPerPx() {
+        return Math.max(1e-3, totalMs / (double) Math.max(1, getWidth()));
+    }
+
+    private double msPerPx() {
+        double fit = fitMsPerPx();
+        return zoomMsPerPx <= 0 || zoomMsPerPx >= fit ? fit : zoomMsPerPx;
+    }
+
+    /** 확대 시 헤드가 HEAD_ANCHOR 지점에 오도록, 양 끝에서는 고정 */
+    private int scrollFor(double mpp) {
+        int w = getWidth();
+        int content = (int) Math.ceil(totalMs / mpp);
+        if (content <= w) return 0;
+        int s = (int) (playheadMs / mpp - w * HEAD_ANCHOR);
+        return Math.max(0, Math.min(content - w, s));
+    }
+}
@@ -8,9 +8,10 @@ import android.media.MediaPlayer;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.Looper;
+import android.os.SystemClock;
+import android.os.Vibrator;
 import android.util.Log;
+import android.view.Choreographer;
 import android.widget.Button;
 import android.widget.SeekBar;
 import android.widget.TextView;
@@ -34,6 +35,8 @@ import java.util.Locale;
  * - mpAudio: 오디오만 재생(ACH 진동 mute)
  * - mpHaptic: 오디오는 0볼륨, ACH 진동만 출력
  * 기존 독립 제어 + 새로 추가된 동시 제어(Both Play/Pause/Stop)
+ * 두 파일이 같으면 Both 제어는 MixedHapticPlayer(단일 디코드 → 하나의 AudioTrack)로 재생
+ * 파일을 바꾸면 이전 쌍은 MediaPlayerPool에 보관(B 슬롯) → A/B 즉시 전환, 현재 쌍이 끝나면 B로 끊김 없이 이어짐
  */
 public class MainActivity extends AppCompatActivity {
 
@@ -41,15 +44,17 @@ public class MainActivity extends AppCompatActivity {
     private static final String PREFS = "ach_prefs";
     private static final String KEY_AUDIO_URI = "audio_uri";
     private static final String KEY_HAPTIC_URI = "haptic_uri";
-    private static final int UI_INTERVAL_MS = 20;
+    private static final String KEY_ALT_AUDIO_URI = "alt_audio_uri";
+    private static final String KEY_ALT_HAPTIC_URI = "alt_haptic_uri";
 
     // UI
-    private Button btnPickAudio, btnPickHaptic;
+    private Button btnPickAudio, btnPickHaptic, btnScanLibrary, btnSwapAB;
     private TextView tvAudioPath, tvHapticPath, tvInfo;
     private Button btnPlay, btnPause, btnStop;
     private Button btnBothPlay, btnBothPause, btnBothStop; // 새로 추가
     private TextView tvAudioTime, tvHapticTime;
     private SeekBar seekAudio, seekHaptic;
+    private HapticWaveformView waveHaptic;
     private Button btnHapticPlay, btnHapticPause, btnHapticStop, btnHapticResync, btnDesyncMinus, btnDesyncPlus;
 
     // 파일
@@ -57,18 +62,42 @@ public class MainActivity extends AppCompatActivity {
     private Uri hapticUri = null;
 
     // 플레이어
-    private MediaPlayer mpAudio = null;   // 오디오 전용
-    private MediaPlayer mpHaptic = null;  // 햅틱 전용(무음)
-
-    private long audioDurationMs = 0L;
-    private long hapticDurationMs = 0L;
-
-    // UI 주기 업데이트용
-    private final Handler uiHandler = new Handler(Looper.getMainLooper());
-    private final Runnable uiTicker = new Runnable() {
-        @Override public void run() {
+    // PlaybackClock 스레드에서도 읽으므로 volatile
+    private volatile MediaPlayer mpAudio = null;   // 오디오 전용
+    private volatile MediaPlayer mpHaptic = null;  // 햅틱 전용(무음)
+
+    private volatile long audioDurationMs = 0L;
+    private volatile long hapticDurationMs = 0L;
+
+    // 준비된 플레이어 보관(파일 전환 시 prepare 대기 제거). mp*Uri = 현재 플레이어의 파일, alt* = B 슬롯
+    private MediaPlayerPool playerPool;
+    private Uri mpAudioUri = null, mpHapticUri = null;
+    private Uri altAudioUri = null, altHapticUri = null;
+    private boolean gaplessDone = false; // B로 한 번 넘어간 뒤엔 다시 연결 안 함(A↔B 무한 반복 방지)
+
+    // 햅틱 파형 추출(백그라운드, 파일 재선택 시 취소)
+    private final HapticExtractor hapticExtractor = new HapticExtractor();
+    private HapticLibraryScanner libraryScanner;
+    private String libraryStatus = null; // 폴더 일괄 검사 진행/결과
+    private OggHapticInspector.HapticTrackInfo hapticTrack = null; // 부분 또는 최종
+    private int hapticDecodedBins = 0, hapticTotalBins = 0;
+    private String hapticExtractStatus = null;
+
+    // 오디오 클럭 기준 햅틱 자동 동기(속도 미세 조정 + 임계 초과 시 seek)
+    private AvSyncController syncController;
+    private AvSyncController.Metrics syncMetrics = null;
+
+    // 같은 파일을 오디오/햅틱으로 고른 경우: 한 번만 디코드해 오디오+햅틱을 함께 출력
+    private MixedHapticPlayer mixedPlayer;
+    private volatile boolean mixedActive = false;
+
+    // 위치 표시: 백그라운드 PlaybackClock 스냅샷 → Choreographer 프레임마다 표시 값이 바뀔 때만 갱신
+    private PlaybackClock playbackClock;
+    private ClockTextFormatter audioClockText, hapticClockText;
+    private final Choreographer.FrameCallback uiFrame = new Choreographer.FrameCallback() {
+        @Override public void doFrame(long frameTimeNanos) {
             updateTimesAndSeek();
-            uiHandler.postDelayed(this, UI_INTERVAL_MS);
+            Choreographer.getInstance().postFrameCallback(this);
         }
     };
 
@@ -79,8 +108,9 @@ public class MainActivity extends AppCompatActivity {
                     grantPersist(uri);
                     audioUri = uri;
                     tvAudioPath.setText("오디오 파일: " + uri);
-                    saveUris();
+                    gaplessDone = false;
                     prepareAudio();
+                    saveUris();
                 }
             });
 
@@ -90,8 +120,17 @@ public class MainActivity extends AppCompatActivity {
                     grantPersist(uri);
                     hapticUri = uri;
                     tvHapticPath.setText("햅틱 파일: " + uri);
-                    saveUris();
+                    gaplessDone = false;
                     prepareHaptic();
+                    saveUris();
+                }
+            });
+
+    private final ActivityResultLauncher<Uri> pickLibraryLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocumentTree(), uri -> {
+                if (uri != null) {
+                    grantPersist(uri); // 프로세스 재시작 후 재개에도 필요
+                    scanLibrary(uri);
                 }
             });
 
@@ -110,6 +149,8 @@ public class MainActivity extends AppCompatActivity {
         // UI 바인딩
         btnPickAudio = findViewById(R.id.btnPickAudio);
         btnPickHaptic = findViewById(R.id.btnPickHaptic);
+        btnScanLibrary = findViewById(R.id.btnScanLibrary);
+        btnSwapAB = findViewById(R.id.btnSwapAB);
         tvAudioPath = findViewById(R.id.tvAudioPath);
         tvHapticPath = findViewById(R.id.tvHapticPath);
         tvInfo = findViewById(R.id.tvInfo);
@@ -128,6 +169,7 @@ public class MainActivity extends AppCompatActivity {
         tvHapticTime = findViewById(R.id.tvHapticTime);
         seekAudio = findViewById(R.id.seekAudio);
         seekHaptic = findViewById(R.id.seekHaptic);
+        waveHaptic = findViewById(R.id.waveHaptic);
 
         btnHapticPlay = findViewById(R.id.btnHapticPlay);
         btnHapticPause = findViewById(R.id.btnHapticPause);
@@ -139,6 +181,8 @@ public class MainActivity extends AppCompatActivity {
         // 리스너
         btnPickAudio.setOnClickListener(v -> pickAudioLauncher.launch(MIME()));
         btnPickHaptic.setOnClickListener(v -> pickHapticLauncher.launch(MIME()));
+        btnScanLibrary.setOnClickListener(v -> pickLibraryLauncher.launch(null));
+        btnSwapAB.setOnClickListener(v -> swapAB());
 
         // 동시 제어 리스너
         btnBothPlay.setOnClickListener(v -> bothPlay());
@@ -147,7 +191,7 @@ public class MainActivity extends AppCompatActivity {
 
         // 오디오 개별
         btnPlay.setOnClickListener(v -> { if (ensureAudioReady()) try { mpAudio.start(); } catch (Exception ignore) {} });
-        btnPause.setOnClickListener(v -> { if (mpAudio != null && mpAudio.isPlaying()) try { mpAudio.pause(); } catch (Exception ignore) {} });
+        btnPause.setOnClickListener(v -> syncController.pause(mpAudio));
         btnStop.setOnClickListener(v -> stopAudio());
 
         // 오디오 시킹
@@ -157,17 +201,18 @@ public class MainActivity extends AppCompatActivity {
             @Override public void onProgressChanged(SeekBar sb, int p, boolean u) { fromUser = u; }
             @Override public void onStartTrackingTouch(SeekBar sb) { fromUser = true; }
             @Override public void onStopTrackingTouch(SeekBar sb) {
-                if (!fromUser || mpAudio == null || audioDurationMs <= 0) return;
+                if (!fromUser || audioDurationMs <= 0) return;
                 fromUser = false;
                 int target = (int) (audioDurationMs * (sb.getProgress() / (float) sb.getMax()));
-                try { mpAudio.seekTo(target); } catch (Exception ignore) {}
-                updateTimesAndSeek();
+                if (mixedActive) mixedPlayer.seekTo(target);
+                else if (mpAudio != null) try { mpAudio.seekTo(target); } catch (Exception ignore) {}
+                playbackClock.refresh();
             }
         });
 
         // 햅틱 개별
         btnHapticPlay.setOnClickListener(v -> { if (ensureHapticReady()) try { mpHaptic.setVolume(0f,0f); mpHaptic.start(); } catch (Exception ignore) {} });
-        btnHapticPause.setOnClickListener(v -> { if (mpHaptic != null && mpHaptic.isPlaying()) try { mpHaptic.pause(); } catch (Exception ignore) {} });
+        btnHapticPause.setOnClickListener(v -> syncController.pause(mpHaptic));
         btnHapticStop.setOnClickListener(v -> stopHaptic());
 
         // 오디오 시점으로 재동기화
@@ -176,6 +221,7 @@ public class MainActivity extends AppCompatActivity {
             int aPos = 0;
             try { aPos = mpAudio.getCurrentPosition(); } catch (Exception ignore) {}
             boolean resume = mpHaptic.isPlaying();
+            syncController.setTargetOffsetMs(0);
             try {
                 int max = (int) (hapticDurationMs > 0 ? hapticDurationMs : mpHaptic.getDuration());
                 if (aPos > max) aPos = max;
@@ -198,26 +244,62 @@ public class MainActivity extends AppCompatActivity {
             @Override public void onStopTrackingTouch(SeekBar sb) {
                 if (!fromUser || mpHaptic == null || hapticDurationMs <= 0) return;
                 fromUser = false;
-                int target = (int) (hapticDurationMs * (sb.getProgress() / (float) sb.getMax()));
-                boolean resume = mpHaptic.isPlaying();
-                try { mpHaptic.seekTo(target); if (resume) mpHaptic.start(); } catch (Exception ignore) {}
-                updateTimesAndSeek();
+                seekHapticTo((int) (hapticDurationMs * (sb.getProgress() / (float) sb.getMax())));
+            }
+        });
+
+        // 햅틱 파형(탭 = 해당 위치로 seek, 핀치 = 줌, 더블탭 = 전체)
+        waveHaptic.setOnSeekListener(ms -> seekHapticTo((int) Math.min(ms, Integer.MAX_VALUE)));
+
+        syncController = new AvSyncController(m -> { syncMetrics = m; updateInfo(); });
+        mixedPlayer = new MixedHapticPlayer(this, buildAudioAttrs(/*hapticMuted=*/false),
+                (Vibrator) getSystemService(VIBRATOR_SERVICE), new MixedHapticPlayer.Listener() {
+            @Override public void onCompletion() { playbackClock.refresh(); }
+            @Override public void onError(Exception e) {
+                mixedActive = false;
+                Toast.makeText(MainActivity.this, "단일 디코더 오류: " + e.getMessage(), Toast.LENGTH_LONG).show();
             }
         });
 
-        // UI ticker
-        uiHandler.post(uiTicker);
+        audioClockText = new ClockTextFormatter(tvAudioTime, getString(R.string.label_audio_time), getString(R.string.time_sep));
+        hapticClockText = new ClockTextFormatter(tvHapticTime, getString(R.string.label_haptic_time), getString(R.string.time_sep));
+        playbackClock = new PlaybackClock(this::sampleClock);
+        libraryScanner = new HapticLibraryScanner(this);
+        playerPool = new MediaPlayerPool(this, MediaPlayerPool.DEFAULT_BUDGET_BYTES, (mp, role) -> {
+            mp.setAudioAttributes(buildAudioAttrs(/*hapticMuted=*/role == MediaPlayerPool.Role.AUDIO));
+            if (role == MediaPlayerPool.Role.HAPTIC) mp.setVolume(0f, 0f);
+        });
+
+        // 프레임 단위 UI 갱신
+        Choreographer.getInstance().postFrameCallback(uiFrame);
 
         // 이전 선택 복원
         restoreUris();
+
+        // 끝나지 않은 폴더 검사가 있으면 이어서(인덱스에 있는 파일은 건너뜀)
+        String unfinished = HapticLibraryScanner.findUnfinishedRoot(this);
+        if (unfinished != null && hasPersist(Uri.parse(unfinished))) scanLibrary(Uri.parse(unfinished));
     }
 
     private String[] MIME() {
         return new String[]{"audio/ogg", "application/ogg", "audio/x-ogg"};
     }
 
+    /** 오디오/햅틱이 같은 파일 → 단일 디코더 경로 사용 가능 */
+    private boolean isSingleSource() {
+        return audioUri != null && audioUri.equals(hapticUri);
+    }
+
     // ===== 동시 제어 구현 =====
     private void bothPlay() {
+        if (isSingleSource()) {
+            // 개별 플레이어는 멈추고 하나의 디코더로 오디오+햅틱 출력
+            syncController.pause(mpAudio, mpHaptic);
+            mixedActive = true;
+            mixedPlayer.start();
+            updateInfo();
+            return;
+        }
         boolean started = false;
         if (ensureAudioReady()) {
             try { mpAudio.start(); started = true; } catch (Exception ignore) {}
@@ -229,70 +311,200 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void bothPause() {
-        boolean any = false;
-        try { if (mpAudio != null && mpAudio.isPlaying()) { mpAudio.pause(); any = true; } } catch (Exception ignore) {}
-        try { if (mpHaptic != null && mpHaptic.isPlaying()) { mpHaptic.pause(); any = true; } } catch (Exception ignore) {}
+        if (mixedActive) {
+            mixedPlayer.pause();
+            return;
+        }
+        // 동기 스레드의 속도 보정과 겹치지 않도록 컨트롤러 lock 안에서 멈춤
+        boolean any = syncController.pause(mpAudio, mpHaptic);
         if (!any) Toast.makeText(this, "일시정지할 대상이 없습니다.", Toast.LENGTH_SHORT).show();
+        playbackClock.refresh();
     }
 
     private void bothStop() {
+        if (mixedActive) {
+            mixedPlayer.stop();
+            mixedActive = false;
+            updateInfo();
+        }
         stopAudio();
         stopHaptic();
     }
 
     // ===== 오디오 준비/제어 =====
-    private void prepareAudio() {
-        releaseAudio();
+    private void prepareAudio() { prepareAudio(false); }
+
+    /** 현재 플레이어는 풀에 보관하고 audioUri 플레이어를 꺼냄(풀에 준비돼 있으면 즉시). autoStart: 준비되면 바로 재생 */
+    private void prepareAudio(boolean autoStart) {
+        parkAudio();
         if (audioUri == null) return;
+        mixedPlayer.setDataSource(audioUri);
+
+        final Uri uri = audioUri;
+        MediaPlayer player = playerPool.acquire(uri, MediaPlayerPool.Role.AUDIO, mp -> {
+            if (mp != mpAudio) return; // 그사이 다른 파일로 전환됨
+            audioDurationMs = mp.getDuration();
+            syncController.attachAudio(mp);
+            if (autoStart) try { mp.start(); } catch (Exception ignore) {}
+            linkGapless();
+            updateInfo();
+        });
+        if (player == null) { Toast.makeText(this, "오디오 dataSource 실패: " + uri, Toast.LENGTH_LONG).show(); return; }
+        mpAudio = player;
+        mpAudioUri = uri;
+        player.setOnCompletionListener(this::onAudioCompletion);
+        player.setOnErrorListener((mp, what, extra) -> { Toast.makeText(this, "오디오 오류: " + what + "/" + extra, Toast.LENGTH_LONG).show(); return true; });
+    }
 
-        mpAudio = new MediaPlayer();
-        mpAudio.setAudioAttributes(buildAudioAttrs(/*hapticMuted=*/true));
-        try { mpAudio.setDataSource(this, audioUri); }
-        catch (Exception e) { Toast.makeText(this, "오디오 dataSource 실패: " + e.getMessage(), Toast.LENGTH_LONG).show(); Log.e(TAG,"mpAudio.setDataSource",e); releaseAudio(); return; }
-        mpAudio.setOnPreparedListener(mp -> { audioDurationMs = mp.getDuration(); updateInfo(); });
-        mpAudio.setOnCompletionListener(mp -> updateTimesAndSeek());
-        mpAudio.setOnErrorListener((mp, what, extra) -> { Toast.makeText(this, "오디오 오류: " + what + "/" + extra, Toast.LENGTH_LONG).show(); return true; });
-        mpAudio.prepareAsync();
+    /** 연결된 B가 이미 재생을 이어받았으면 슬롯만 교체(재준비 없음), 아니면 평소처럼 정지 */
+    private void onAudioCompletion(MediaPlayer mp) {
+        playbackClock.refresh();
+        if (mp != mpAudio || !handedOff(altAudioUri, MediaPlayerPool.Role.AUDIO)) return;
+        gaplessDone = true;
+        audioUri = altAudioUri;
+        tvAudioPath.setText("오디오 파일: " + audioUri);
+        prepareAudio(false);
+        saveUris();
     }
 
     private void stopAudio() {
         try {
             if (mpAudio != null) {
-                if (mpAudio.isPlaying()) mpAudio.stop();
+                syncController.pause(mpAudio); // stop()은 재준비가 필요 → 풀 재사용 불가
                 mpAudio.seekTo(0);
-                updateTimesAndSeek();
+                playbackClock.refresh();
             }
         } catch (Exception e) { Log.e(TAG, "stopAudio", e); }
     }
 
     // ===== 햅틱 준비/제어 =====
-    private void prepareHaptic() {
-        releaseHaptic();
+    private void scanLibrary(Uri treeUri) {
+        libraryStatus = "검사 시작...";
+        updateInfo();
+        libraryScanner.scan(treeUri, new HapticLibraryScanner.Options(), new HapticLibraryScanner.Listener() {
+            @Override public void onProgress(HapticLibraryScanner.Progress p) {
+                libraryStatus = formatLibrary(p, "검사 중");
+                updateInfo();
+            }
+            @Override public void onComplete(HapticLibraryScanner.Progress p) {
+                libraryStatus = formatLibrary(p, "완료");
+                updateInfo();
+            }
+            @Override public void onError(Exception e) {
+                libraryStatus = "실패: " + e.getMessage();
+                updateInfo();
+            }
+        });
+    }
+
+    private String formatLibrary(HapticLibraryScanner.Progress p, String state) {
+        return String.format(Locale.US, "%s %d/%d (skip %d, fail %d) · haptic %d",
+                state, p.done + p.skipped, p.found, p.skipped, p.failed, p.withHaptic);
+    }
+
+    private void prepareHaptic() { prepareHaptic(false); }
+
+    private void prepareHaptic(boolean autoStart) {
+        parkHaptic();
         if (hapticUri == null) return;
 
-        mpHaptic = new MediaPlayer();
-        mpHaptic.setAudioAttributes(buildAudioAttrs(/*hapticMuted=*/false));
-        mpHaptic.setVolume(0f, 0f);
-        try { mpHaptic.setDataSource(this, hapticUri); }
-        catch (Exception e) { Toast.makeText(this, "햅틱 dataSource 실패: " + e.getMessage(), Toast.LENGTH_LONG).show(); Log.e(TAG,"mpHaptic.setDataSource",e); releaseHaptic(); return; }
-        mpHaptic.setOnPreparedListener(mp -> { hapticDurationMs = mp.getDuration(); updateInfo(); });
-        mpHaptic.setOnCompletionListener(mp -> updateTimesAndSeek());
-        mpHaptic.setOnErrorListener((mp, what, extra) -> { Toast.makeText(this, "햅틱 오류: " + what + "/" + extra, Toast.LENGTH_LONG).show(); return true; });
-        mpHaptic.prepareAsync();
+        final Uri uri = hapticUri;
+        MediaPlayer player = playerPool.acquire(uri, MediaPlayerPool.Role.HAPTIC, mp -> {
+            if (mp != mpHaptic) return;
+            hapticDurationMs = mp.getDuration();
+            syncController.attachHaptic(mp);
+            if (autoStart) try { mp.setVolume(0f, 0f); mp.start(); } catch (Exception ignore) {}
+            linkGapless();
+            updateInfo();
+        });
+        if (player == null) { Toast.makeText(this, "햅틱 dataSource 실패: " + uri, Toast.LENGTH_LONG).show(); return; }
+        mpHaptic = player;
+        mpHapticUri = uri;
+        player.setOnCompletionListener(this::onHapticCompletion);
+        player.setOnErrorListener((mp, what, extra) -> { Toast.makeText(this, "햅틱 오류: " + what + "/" + extra, Toast.LENGTH_LONG).show(); return true; });
+
+        startHapticExtraction();
+    }
+
+    private void onHapticCompletion(MediaPlayer mp) {
+        playbackClock.refresh();
+        if (mp != mpHaptic || !handedOff(altHapticUri, MediaPlayerPool.Role.HAPTIC)) return;
+        gaplessDone = true;
+        hapticUri = altHapticUri;
+        tvHapticPath.setText("햅틱 파일: " + hapticUri);
+        prepareHaptic(false);
+        saveUris();
+    }
+
+    private void startHapticExtraction() {
+        hapticTrack = null;
+        hapticDecodedBins = hapticTotalBins = 0;
+        hapticExtractStatus = "분석 중...";
+        waveHaptic.clear();
+        hapticExtractor.extract(this, hapticUri, new HapticExtractor.Listener() {
+            @Override public void onMeta(OggHapticInspector.Result meta) {
+                hapticExtractStatus = meta.hasHaptic()
+                        ? "디코드 중... (" + meta.codecMime + ", haptic " + meta.layout + ")" : "햅틱 채널/태그 없음";
+                updateInfo();
+            }
+            @Override public void onProgress(int decodedBins, int totalBins) {
+                hapticDecodedBins = decodedBins;
+                hapticTotalBins = totalBins;
+                showPartialWaveform();
+                updateInfo();
+            }
+            @Override public void onPartial(OggHapticInspector.HapticTrackInfo partial) {
+                hapticTrack = partial;
+                showPartialWaveform();
+            }
+            @Override public void onComplete(OggHapticInspector.HapticTrackInfo info) {
+                hapticTrack = info;
+                if (info != null) waveHaptic.setTrack(info.getPyramid(), info.binMs, info.totalDurationMs);
+                else waveHaptic.clear();
+                hapticExtractStatus = info != null ? "완료" : "햅틱 파형 없음";
+                if (info != null) hapticDecodedBins = hapticTotalBins = info.getBinCount();
+                updateInfo();
+            }
+            @Override public void onError(Exception e) {
+                hapticExtractStatus = "실패: " + e.getMessage();
+                updateInfo();
+            }
+        });
+    }
+
+    /** 디코드 중: 확정된 bin까지만 파형에 반영(새로 확정된 구간의 타일만 다시 그림) */
+    private void showPartialWaveform() {
+        OggHapticInspector.HapticTrackInfo t = hapticTrack;
+        if (t != null && t.amps != null) waveHaptic.setPartial(t.amps, hapticDecodedBins, t.binMs, t.totalDurationMs);
     }
 
     private void stopHaptic() {
         try {
             if (mpHaptic != null) {
-                if (mpHaptic.isPlaying()) mpHaptic.stop();
+                syncController.pause(mpHaptic);
                 mpHaptic.seekTo(0);
-                updateTimesAndSeek();
+                playbackClock.refresh();
             }
         } catch (Exception e) { Log.e(TAG, "stopHaptic", e); }
     }
 
+    private void seekHapticTo(int target) {
+        if (mixedActive) {
+            // 단일 디코더 재생 중에는 오디오/햅틱이 한 스트림 → 오디오 시킹과 같은 경로
+            mixedPlayer.seekTo(target);
+            playbackClock.refresh();
+            return;
+        }
+        if (mpHaptic == null || hapticDurationMs <= 0) return;
+        boolean resume = mpHaptic.isPlaying();
+        try { mpHaptic.seekTo(target); if (resume) mpHaptic.start(); } catch (Exception ignore) {}
+        playbackClock.refresh();
+    }
+
     private void nudgeHaptic(int deltaMs) {
         if (mpHaptic == null) return;
+        // 자동 동기가 되돌리지 않도록 목표 오프셋도 함께 이동
+        syncController.setTargetOffsetMs(syncController.getTargetOffsetMs() + deltaMs);
         try {
             int cur = mpHaptic.getCurrentPosition();
             int dur = hapticDurationMs > 0 ? (int) hapticDurationMs : mpHaptic.getDuration();
@@ -319,60 +531,154 @@ public class MainActivity extends AppCompatActivity {
         return ab.build();
     }
 
+    /** 개별 제어로 전환 시 단일 디코더 재생 중단 */
+    private void leaveMixed() {
+        if (!mixedActive) return;
+        mixedPlayer.stop();
+        mixedActive = false;
+        updateInfo();
+    }
+
+    // ===== A/B 전환 + 무간격 연결 =====
+    /** 보관 중인 B 쌍으로 즉시 교체(재생 중이었으면 이어서 재생). 현재 쌍은 새 B가 됨 */
+    private void swapAB() {
+        if (altAudioUri == null && altHapticUri == null) {
+            Toast.makeText(this, "B 슬롯이 비어 있습니다(다른 파일을 한 번 선택하세요).", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        boolean wasPlaying = mixedActive
+                || (mpAudio != null && mpAudio.isPlaying()) || (mpHaptic != null && mpHaptic.isPlaying());
+        gaplessDone = false;
+        if (altAudioUri != null) {
+            audioUri = altAudioUri;
+            tvAudioPath.setText("오디오 파일: " + audioUri);
+            prepareAudio(wasPlaying);
+        }
+        if (altHapticUri != null) {
+            hapticUri = altHapticUri;
+            tvHapticPath.setText("햅틱 파일: " + hapticUri);
+            prepareHaptic(wasPlaying);
+        }
+        saveUris();
+        updateInfo();
+    }
+
+    /**
+     * 현재 쌍이 끝나면 B 쌍이 바로 이어지도록 setNextMediaPlayer 연결.
+     * 오디오/햅틱이 함께 넘어가야 하므로, 있는 쪽 모두 B가 준비된 경우에만 연결
+     */
+    private void linkGapless() {
+        if (gaplessDone) return;
+        MediaPlayer a = mpAudio, h = mpHaptic;
+        if (a == null && h == null) return;
+        if (a != null && !playerPool.isPrepared(altAudioUri, MediaPlayerPool.Role.AUDIO)) return;
+        if (h != null && !playerPool.isPrepared(altHapticUri, MediaPlayerPool.Role.HAPTIC)) return;
+        if (a != null) link(a, altAudioUri, MediaPlayerPool.Role.AUDIO);
+        if (h != null) link(h, altHapticUri, MediaPlayerPool.Role.HAPTIC);
+    }
+
+    private void link(MediaPlayer cur, Uri alt, MediaPlayerPool.Role role) {
+        MediaPlayer next = playerPool.peekPrepared(alt, role);
+        if (next == null || next == cur) return;
+        try { cur.setNextMediaPlayer(next); }
+        catch (Exception e) { Log.w(TAG, "setNextMediaPlayer", e); playerPool.unlink(alt, role); }
+    }
+
+    /** 완료 시점에 연결된 B가 이미 재생 중인지(프레임워크가 넘겨받음) */
+    private boolean handedOff(Uri alt, MediaPlayerPool.Role role) {
+        MediaPlayer next = playerPool.peekLinked(alt, role);
+        try { return next != null && next.isPlaying(); } catch (Exception e) { return false; }
+    }
+
     private boolean ensureAudioReady() {
+        leaveMixed();
         if (audioUri == null) { Toast.makeText(this, "오디오 파일을 먼저 선택해 주세요.", Toast.LENGTH_SHORT).show(); return false; }
         if (mpAudio == null) { prepareAudio(); Toast.makeText(this, "오디오 준비 중...", Toast.LENGTH_SHORT).show(); return false; }
         return true;
     }
 
     private boolean ensureHapticReady() {
+        leaveMixed();
         if (hapticUri == null) { Toast.makeText(this, "햅틱 파일을 먼저 선택해 주세요.", Toast.LENGTH_SHORT).show(); return false; }
         if (mpHaptic == null) { prepareHaptic(); Toast.makeText(this, "햅틱 준비 중...", Toast.LENGTH_SHORT).show(); return false; }
         return true;
     }
 
+    /** PlaybackClock 스레드: 바인더 호출(MediaPlayer)은 여기서만 */
+    private void sampleClock(PlaybackClock.Sample s) {
+        if (mixedActive) {
+            // 단일 디코더: 오디오/햅틱이 같은 AudioTrack 클럭
+            s.audioPlaying = s.hapticPlaying = mixedPlayer.isPlaying();
+            s.audioPosMs = s.hapticPosMs = mixedPlayer.getCurrentPositionMs();
+            s.audioDurMs = audioDurationMs;
+            s.hapticDurMs = hapticDurationMs;
+            return;
+        }
+        MediaPlayer a = mpAudio;
+        s.audioPlaying = a != null && a.isPlaying();
+        s.audioPosMs = a != null ? a.getCurrentPosition() : 0;
+        s.audioDurMs = audioDurationMs;
+
+        MediaPlayer h = mpHaptic;
+        s.hapticPlaying = h != null && h.isPlaying();
+        s.hapticPosMs = h != null ? h.getCurrentPosition() : 0;
+        s.hapticDurMs = hapticDurationMs;
+    }
+
+    /** 메인 스레드(프레임 콜백): 스냅샷만 읽고, 표시 값이 바뀐 뷰만 갱신 */
     private void updateTimesAndSeek() {
+        PlaybackClock.Snapshot snap = playbackClock.getSnapshot();
+        long now = SystemClock.uptimeMillis();
+
         // 오디오
-        int aPos = 0, aDur = (int) audioDurationMs;
-        try {
-            if (mpAudio != null) {
-                aPos = mpAudio.getCurrentPosition();
-                aDur = mpAudio.getDuration() > 0 ? mpAudio.getDuration() : (int) audioDurationMs;
-            }
-        } catch (Exception ignore) {}
-        tvAudioTime.setText(getString(R.string.label_audio_time) + "  " + formatClock10(aPos) + getString(R.string.time_sep) + formatClock10(aDur));
-        seekAudio.setProgress(aDur > 0 ? Math.round((aPos / (float) aDur) * seekAudio.getMax()) : 0);
+        long aPos = snap.audioPositionAt(now);
+        audioClockText.update(aPos, snap.audioDurMs);
+        setProgressIfChanged(seekAudio, aPos, snap.audioDurMs);
 
         // 햅틱
-        int hPos = 0, hDur = (int) hapticDurationMs;
-        try {
-            if (mpHaptic != null) {
-                hPos = mpHaptic.getCurrentPosition();
-                hDur = mpHaptic.getDuration() > 0 ? mpHaptic.getDuration() : (int) hapticDurationMs;
-            }
-        } catch (Exception ignore) {}
-        tvHapticTime.setText(getString(R.string.label_haptic_time) + "  " + formatClock10(hPos) + getString(R.string.time_sep) + formatClock10(hDur));
-        seekHaptic.setProgress(hDur > 0 ? Math.round((hPos / (float) hDur) * seekHaptic.getMax()) : 0);
+        long hPos = snap.hapticPositionAt(now);
+        hapticClockText.update(hPos, snap.hapticDurMs);
+        setProgressIfChanged(seekHaptic, hPos, snap.hapticDurMs);
+        waveHaptic.setPlayheadMs(hPos);
+    }
+
+    private static void setProgressIfChanged(SeekBar bar, long pos, long dur) {
+        int progress = dur > 0 ? (int) Math.round(pos / (double) dur * bar.getMax()) : 0;
+        if (bar.getProgress() != progress) bar.setProgress(progress);
     }
 
     private void updateInfo() {
         String info = "Audio Duration : " + formatMs10(audioDurationMs) + "\n"
                     + "Haptic Duration: " + (hapticDurationMs > 0 ? formatMs10(hapticDurationMs) : "Unknown") + "\n";
+        if (mixedActive) {
+            info += "Playback       : single decoder, haptic via "
+                    + (mixedPlayer.isHapticViaAudio() ? "AudioTrack haptic channel"
+                    : mixedPlayer.isHapticViaVibrator() ? "vibrator waveform" : "-") + "\n";
+        } else if (syncMetrics != null) {
+            info += String.format(Locale.US, "Sync           : err %.1f ms · p99 %.0f ms · drift %.2f ms/s · trims %d · seeks %d · x%.3f%s\n",
+                    syncMetrics.errorMs, syncMetrics.p99ErrorMs, syncMetrics.driftMsPerSec,
+                    syncMetrics.speedTrims, syncMetrics.seeks, syncMetrics.speed,
+                    syncController.getTargetOffsetMs() != 0 ? " (offset " + syncController.getTargetOffsetMs() + " ms)" : "");
+        }
+        if (hapticExtractStatus != null) {
+            info += "Haptic Envelope: " + hapticExtractStatus
+                    + (hapticTotalBins > 0 ? " (" + hapticDecodedBins + "/" + hapticTotalBins + " bins)" : "") + "\n";
+            OggHapticInspector.HapticTrackInfo track = hapticTrack;
+            if (track != null && track.amps == null) {
+                CompressedHapticTrack c = track.getCompressed();
+                info += String.format(Locale.US, "Haptic Segments: %d (x%.1f, %d B)\n", c.getSegmentCount(),
+                        (double) c.getBinCount() * 4 / Math.max(1, c.getMemoryBytes()), c.getMemoryBytes());
+            }
+        }
+        if (libraryStatus != null) info += "Library Scan   : " + libraryStatus + "\n";
+        if (altAudioUri != null || altHapticUri != null) {
+            info += "Player Pool    : " + playerPool.stats()
+                    + (gaplessDone ? " · B로 이어짐" : playerPool.peekLinked(altAudioUri, MediaPlayerPool.Role.AUDIO) != null
+                    || playerPool.peekLinked(altHapticUri, MediaPlayerPool.Role.HAPTIC) != null ? " · gapless → B" : "") + "\n";
+        }
         tvInfo.setText(info);
     }
 
-    /** 10ms 단위(HH:MM:SS.cc) */
-    private String formatClock10(int ms) {
-        if (ms < 0) ms = 0;
-        int totalSec = ms / 1000;
-        int h = totalSec / 3600;
-        int m = (totalSec % 3600) / 60;
-        int s = totalSec % 60;
-        int cs = (ms % 1000) / 10;
-        if (h > 0) return String.format(Locale.US, "%d:%02d:%02d.%02d", h, m, s, cs);
-        return String.format(Locale.US, "%02d:%02d.%02d", m, s, cs);
-    }
-
     private String formatMs10(long ms) {
         if (ms <= 0) return "Unknown";
         int totalSec = (int)(ms / 1000);
@@ -390,6 +696,8 @@ public class MainActivity extends AppCompatActivity {
         sp.edit()
           .putString(KEY_AUDIO_URI, audioUri != null ? audioUri.toString() : null)
           .putString(KEY_HAPTIC_URI, hapticUri != null ? hapticUri.toString() : null)
+          .putString(KEY_ALT_AUDIO_URI, altAudioUri != null ? altAudioUri.toString() : null)
+          .putString(KEY_ALT_HAPTIC_URI, altHapticUri != null ? altHapticUri.toString() : null)
           .apply();
     }
 
@@ -414,6 +722,18 @@ public class MainActivity extends AppCompatActivity {
                 prepareHaptic();
             }
         }
+
+        // B 슬롯은 백그라운드로 미리 준비만(A/B 전환이 바로 되도록)
+        String altA = sp.getString(KEY_ALT_AUDIO_URI, null);
+        String altH = sp.getString(KEY_ALT_HAPTIC_URI, null);
+        if (altA != null && hasPersist(Uri.parse(altA))) {
+            altAudioUri = Uri.parse(altA);
+            playerPool.preload(altAudioUri, MediaPlayerPool.Role.AUDIO);
+        }
+        if (altH != null && hasPersist(Uri.parse(altH))) {
+            altHapticUri = Uri.parse(altH);
+            playerPool.preload(altHapticUri, MediaPlayerPool.Role.HAPTIC);
+        }
     }
 
     private void grantPersist(Uri uri) {
@@ -429,21 +749,73 @@ public class MainActivity extends AppCompatActivity {
         return false;
     }
 
+    /** 현재 오디오 플레이어를 release 대신 풀에 보관. 다른 파일로 바뀌는 경우 B 슬롯으로 기억 */
+    private void parkAudio() {
+        if (mixedPlayer != null) { mixedPlayer.stop(); mixedActive = false; }
+        if (syncController != null) syncController.attachAudio(null);
+        MediaPlayer mp = mpAudio;
+        mpAudio = null; audioDurationMs = 0L;
+        if (mp == null) return;
+        playerPool.unlink(altAudioUri, MediaPlayerPool.Role.AUDIO);
+        if (mpAudioUri != null && !mpAudioUri.equals(audioUri)) altAudioUri = mpAudioUri;
+        playerPool.park(mpAudioUri, MediaPlayerPool.Role.AUDIO, mp);
+        mpAudioUri = null;
+    }
+
+    private void parkHaptic() {
+        if (mixedPlayer != null) { mixedPlayer.stop(); mixedActive = false; }
+        hapticExtractor.cancel();
+        if (syncController != null) syncController.attachHaptic(null);
+        MediaPlayer mp = mpHaptic;
+        mpHaptic = null; hapticDurationMs = 0L;
+        if (mp == null) return;
+        playerPool.unlink(altHapticUri, MediaPlayerPool.Role.HAPTIC);
+        if (mpHapticUri != null && !mpHapticUri.equals(hapticUri)) altHapticUri = mpHapticUri;
+        playerPool.park(mpHapticUri, MediaPlayerPool.Role.HAPTIC, mp);
+        mpHapticUri = null;
+    }
+
     private void releaseAudio() {
+        if (mixedPlayer != null) { mixedPlayer.stop(); mixedActive = false; }
+        if (syncController != null) syncController.attachAudio(null);
         try { if (mpAudio != null) { mpAudio.release(); } } catch (Exception ignore) {}
-        mpAudio = null; audioDurationMs = 0L;
+        mpAudio = null; mpAudioUri = null; audioDurationMs = 0L;
     }
 
     private void releaseHaptic() {
+        if (mixedPlayer != null) { mixedPlayer.stop(); mixedActive = false; }
+        hapticExtractor.cancel();
+        if (syncController != null) syncController.attachHaptic(null);
         try { if (mpHaptic != null) { mpHaptic.release(); } } catch (Exception ignore) {}
-        mpHaptic = null; hapticDurationMs = 0L;
+        mpHaptic = null; mpHapticUri = null; hapticDurationMs = 0L;
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        if (playerPool != null) playerPool.setBudgetBytes(MediaPlayerPool.DEFAULT_BUDGET_BYTES);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // 백그라운드면 보관 플레이어 전부, 메모리 부족이면 절반만 남김(재생 중/연결된 것은 유지)
+        if (level >= TRIM_MEMORY_BACKGROUND) playerPool.setBudgetBytes(0);
+        else if (level >= TRIM_MEMORY_RUNNING_LOW && level < TRIM_MEMORY_UI_HIDDEN)
+            playerPool.setBudgetBytes(MediaPlayerPool.DEFAULT_BUDGET_BYTES / 2);
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        uiHandler.removeCallbacks(uiTicker);
+        Choreographer.getInstance().removeFrameCallback(uiFrame);
         releaseAudio();
         releaseHaptic();
+        playerPool.release();
+        hapticExtractor.shutdown();
+        libraryScanner.cancel(); // 인덱스는 남음 → 다음 실행 때 이어서 검사
+        syncController.release();
+        mixedPlayer.release();
+        playbackClock.release();
     }
 }
@@ -0,0 +1,197 @@
+package com.example.achoggmusicplayer;
+
+import android.content.Context;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Locale;
+
+/**
+ * MediaExtractor + MediaCodec 기반 PcmSource.
+ * - 지정 트랙(기본: 첫 오디오 트랙)을 디코드. Vorbis/Opus 등 mime별 디코더는 DecoderCapabilities 캐시에서 선택
+ * - 디코더가 float 출력을 지원하면 float로 요청(디코더 내부 float→16bit 변환 생략), 실제 인코딩은 출력 포맷 기준
+ * - read()가 돌려준 출력 버퍼는 다음 read()/close()에서 코덱에 반환(복사 없음)
+ */
+public final class MediaCodecPcmSource implements PcmSource {
+
+    private static final long TIMEOUT_US = 10_000;
+
+    private final MediaExtractor extractor;
+    private final MediaCodec codec;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private final DecoderCapabilities.Decoder decoder; // 캐시에 없으면 null
+    private final boolean requestedFloat;
+    private int sampleRate;
+    private int channels;
+    private int channelMask;
+    private int encoding = ENCODING_PCM_16BIT;
+    private boolean formatNoted = false;
+    private boolean inputDone = false, outputDone = false;
+    private int heldIndex = -1;
+
+    private MediaCodecPcmSource(MediaExtractor extractor, MediaCodec codec, MediaFormat format,
+                                DecoderCapabilities.Decoder decoder, boolean requestedFloat) {
+        this.extractor = extractor;
+        this.codec = codec;
+        this.decoder = decoder;
+        this.requestedFloat = requestedFloat;
+        this.sampleRate = format.containsKey(MediaFormat.KEY_SAMPLE_RATE)
+                ? format.getInteger(MediaFormat.KEY_SAMPLE_RATE) : 0;
+        this.channels = format.containsKey(MediaFormat.KEY_CHANNEL_COUNT)
+                ? format.getInteger(MediaFormat.KEY_CHANNEL_COUNT) : 2;
+        this.channelMask = format.containsKey(MediaFormat.KEY_CHANNEL_MASK)
+                ? format.getInteger(MediaFormat.KEY_CHANNEL_MASK) : 0;
+    }
+
+    /** startUs > 0이면 그 이전 sync 지점으로 seek. 오디오 트랙이 없으면 null */
+    public static MediaCodecPcmSource open(Context ctx, Uri uri, long startUs) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(ctx, uri, null);
+        } catch (IOException | RuntimeException e) {
+            extractor.release();
+            throw e;
+        }
+        return open(extractor, startUs);
+    }
+
+    /** 이미 setDataSource된 extractor로 연다(소유권 이전 · 실패/트랙 없음이면 release). 오디오 트랙이 없으면 null */
+    public static MediaCodecPcmSource open(MediaExtractor extractor, long startUs) throws IOException {
+        return open(extractor, -1, startUs);
+    }
+
+    /** trackIndex < 0이면 첫 오디오 트랙 */
+    public static MediaCodecPcmSource open(MediaExtractor extractor, int trackIndex, long startUs) throws IOException {
+        MediaCodec codec = null;
+        try {
+            int track = trackIndex >= 0 ? trackIndex : firstAudioTrack(extractor);
+            if (track < 0 || track >= extractor.getTrackCount()) {
+                extractor.release();
+                return null;
+            }
+            MediaFormat fmt = extractor.getTrackFormat(track);
+            String mime = fmt.getString(MediaFormat.KEY_MIME);
+            if (mime == null) {
+                extractor.release();
+                return null;
+            }
+            extractor.selectTrack(track);
+            if (startUs > 0) extractor.seekTo(startUs, MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+
+            int channels = fmt.containsKey(MediaFormat.KEY_CHANNEL_COUNT) ? fmt.getInteger(MediaFormat.KEY_CHANNEL_COUNT) : 2;
+            DecoderCapabilities.Decoder decoder = DecoderCapabilities.find(mime, channels);
+            boolean wantFloat = DecoderCapabilities.shouldRequestFloat(decoder);
+            if (wantFloat) fmt.setInteger(MediaFormat.KEY_PCM_ENCODING, ENCODING_PCM_FLOAT);
+            codec = decoder != null ? MediaCodec.createByCodecName(decoder.name) : MediaCodec.createDecoderByType(mime);
+            try {
+                codec.configure(fmt, null, null, 0);
+            } catch (RuntimeException e) {
+                if (!wantFloat) throw e;
+                // float 요청을 거부하는 디코더 → 기본 인코딩으로 재시도하고 기억
+                DecoderCapabilities.noteOutputEncoding(decoder, true, ENCODING_PCM_16BIT);
+                wantFloat = false;
+                fmt.setInteger(MediaFormat.KEY_PCM_ENCODING, ENCODING_PCM_16BIT);
+                codec.reset();
+                codec.configure(fmt, null, null, 0);
+            }
+            codec.start();
+            return new MediaCodecPcmSource(extractor, codec, fmt, decoder, wantFloat);
+        } catch (IOException | RuntimeException e) {
+            if (codec != null) codec.release(); // configure/start 실패 시 코덱 인스턴스도 반환
+            extractor.release();
+            throw e;
+        }
+    }
+
+    private static int firstAudioTrack(MediaExtractor extractor) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.toLowerCase(Locale.US).startsWith("audio/")) return i;
+        }
+        return -1;
+    }
+
+    @Override public int getSampleRate() { return sampleRate; }
+
+    @Override public int getChannelCount() { return channels; }
+
+    @Override public int getPcmEncoding() { return encoding; }
+
+    @Override public int getChannelMask() { return channelMask; }
+
+    /** 사용 중인 디코더(캐시 정보). 목록에 없어 타입으로 만든 경우 null */
+    public DecoderCapabilities.Decoder getDecoder() { return decoder; }
+
+    @Override
+    public boolean read(Chunk chunk) {
+        releaseHeld();
+        while (!outputDone) {
+            if (!inputDone) {
+                int inIndex = codec.dequeueInputBuffer(TIMEOUT_US);
+                if (inIndex >= 0) {
+                    ByteBuffer ibuf = codec.getInputBuffer(inIndex);
+                    int sampleSize = extractor.readSampleData(ibuf, 0);
+                    if (sampleSize < 0) {
+                        codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        codec.queueInputBuffer(inIndex, 0, sampleSize, extractor.getSampleTime(), 0);
+                        extractor.advance();
+                    }
+                }
+            }
+
+            int outIndex = codec.dequeueOutputBuffer(info, TIMEOUT_US);
+            if (outIndex >= 0) {
+                if (!formatNoted) noteFormat(codec.getOutputFormat());
+                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) outputDone = true;
+                ByteBuffer obuf = codec.getOutputBuffer(outIndex);
+                if (obuf != null && info.size > 0) {
+                    obuf.order(ByteOrder.LITTLE_ENDIAN);
+                    chunk.buffer = obuf;
+                    chunk.offset = info.offset;
+                    chunk.size = info.size;
+                    chunk.presentationTimeUs = info.presentationTimeUs;
+                    heldIndex = outIndex;
+                    return true;
+                }
+                codec.releaseOutputBuffer(outIndex, false);
+            } else if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                noteFormat(codec.getOutputFormat());
+            }
+        }
+        return false;
+    }
+
+    /** 출력 포맷 확정: 채널/샘플레이트/인코딩/마스크 갱신, float 요청 결과를 디코더 캐시에 기록 */
+    private void noteFormat(MediaFormat out) {
+        formatNoted = true;
+        if (out.containsKey(MediaFormat.KEY_CHANNEL_COUNT)) channels = out.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+        if (out.containsKey(MediaFormat.KEY_SAMPLE_RATE)) sampleRate = out.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        if (out.containsKey(MediaFormat.KEY_CHANNEL_MASK)) channelMask = out.getInteger(MediaFormat.KEY_CHANNEL_MASK);
+        // KEY_PCM_ENCODING이 없으면 16bit(API 24 미만 포함)
+        encoding = out.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                && out.getInteger(MediaFormat.KEY_PCM_ENCODING) == ENCODING_PCM_FLOAT ? ENCODING_PCM_FLOAT : ENCODING_PCM_16BIT;
+        DecoderCapabilities.noteOutputEncoding(decoder, requestedFloat, encoding);
+    }
+
+    @Override
+    public void close() {
+        releaseHeld();
+        try { codec.stop(); } catch (Exception ignore) {}
+        try { codec.release(); } catch (Exception ignore) {}
+        extractor.release();
+    }
+
+    private void releaseHeld() {
+        if (heldIndex >= 0) {
+            try { codec.releaseOutputBuffer(heldIndex, false); } catch (Exception ignore) {}
+            heldIndex = -1;
+        }
+    }
+}
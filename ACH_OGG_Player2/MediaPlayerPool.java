@@ -0,0 +1,268 @@
+package com.example.achoggmusicplayer;
+
+import android.content.Context;
+import android.media.MediaPlayer;
+import android.media.PlaybackParams;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * (Uri, 역할)별로 준비된 MediaPlayer를 보관해 파일 전환 시 prepare 대기를 없앤다.
+ * - preload(): 백그라운드 prepareAsync로 미리 준비
+ * - acquire(): 풀에 있으면 그 인스턴스를 꺼내 바로 사용(준비 중이면 완료 시 콜백), 없으면 새로 생성
+ * - park(): 사용하던 플레이어를 release 대신 속도 1.0 복원 + 일시정지 + 0으로 되감아 보관(B 슬롯)
+ * - 메모리 상한(인스턴스당 추정치 합)을 넘거나 IDLE_EVICT_MS 동안 안 쓰이면 오래된 것부터 release
+ * - peekPrepared(): 풀에 둔 채 setNextMediaPlayer 대상으로 빌려줌(연결 중엔 축출 안 함)
+ * 메인 스레드 전용.
+ */
+public final class MediaPlayerPool {
+
+    public enum Role { AUDIO, HAPTIC }
+
+    /** 새 인스턴스 설정(AudioAttributes/볼륨 등). setDataSource 전에 호출 */
+    public interface Configurator {
+        void configure(MediaPlayer mp, Role role);
+    }
+
+    /** 준비 완료(메인 스레드). 이미 준비된 인스턴스면 다음 루프에서 바로 호출 */
+    public interface PreparedCallback {
+        void onPrepared(MediaPlayer mp);
+    }
+
+    private static final String TAG = "MediaPlayerPool";
+
+    /** 인스턴스 1개 추정 메모리(extractor + 디코더 버퍼 + AudioTrack). 실측 불가라 보수적 상수 */
+    public static final long ESTIMATED_PLAYER_BYTES = 1L << 20;
+    public static final long DEFAULT_BUDGET_BYTES = 4 * ESTIMATED_PLAYER_BYTES; // 오디오/햅틱 2쌍
+    public static final long IDLE_EVICT_MS = 60_000;
+    private static final long IDLE_CHECK_MS = 15_000;
+
+    private static final class Entry {
+        final Uri uri;
+        final Role role;
+        final MediaPlayer mp;
+        boolean prepared;
+        boolean linked;      // 다른 플레이어의 setNextMediaPlayer 대상
+        long idleSinceMs;
+
+        Entry(Uri uri, Role role, MediaPlayer mp) {
+            this.uri = uri;
+            this.role = role;
+            this.mp = mp;
+            this.idleSinceMs = SystemClock.uptimeMillis();
+        }
+    }
+
+    private final Context ctx;
+    private final Configurator configurator;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // 접근 순서(LRU): 가장 오래 안 쓰인 것이 앞
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(8, 0.75f, true);
+    private long budgetBytes;
+    private boolean idleCheckPosted = false;
+    private int hits, misses, evictions;
+
+    private final Runnable idleCheck = new Runnable() {
+        @Override public void run() {
+            idleCheckPosted = false;
+            long now = SystemClock.uptimeMillis();
+            for (Entry e : new ArrayList<>(entries.values())) {
+                if (!e.linked && now - e.idleSinceMs >= IDLE_EVICT_MS) evict(e, "idle");
+            }
+            scheduleIdleCheck();
+        }
+    };
+
+    public MediaPlayerPool(Context ctx, long budgetBytes, Configurator configurator) {
+        this.ctx = ctx.getApplicationContext();
+        this.budgetBytes = Math.max(0, budgetBytes);
+        this.configurator = configurator;
+    }
+
+    private static String key(Uri uri, Role role) {
+        return role.name() + '|' + uri;
+    }
+
+    /** 풀에 없으면 새로 만들어 준비 시작. 상한 때문에 보관할 수 없으면 아무것도 안 함 */
+    public void preload(Uri uri, Role role) {
+        if (uri == null || entries.containsKey(key(uri, role))) return;
+        if (budgetBytes < ESTIMATED_PLAYER_BYTES) return;
+        Entry e = create(uri, role);
+        if (e == null) return;
+        e.mp.setOnPreparedListener(mp -> e.prepared = true);
+        put(e);
+    }
+
+    /**
+     * 재생용 인스턴스를 꺼낸다(풀에서 제거, 호출자 소유). 준비되면 cb 호출.
+     * 리스너(prepared/completion/error)는 호출자가 다시 설정한다. 생성 실패 시 null
+     */
+    public MediaPlayer acquire(Uri uri, Role role, PreparedCallback cb) {
+        Entry e = entries.remove(key(uri, role));
+        if (e != null) {
+            hits++;
+            e.linked = false;
+            e.mp.setOnErrorListener(null);
+            if (e.prepared) mainHandler.post(() -> cb.onPrepared(e.mp));
+            else e.mp.setOnPreparedListener(cb::onPrepared);
+            return e.mp;
+        }
+        misses++;
+        Entry created = create(uri, role);
+        if (created == null) return null;
+        created.mp.setOnPreparedListener(cb::onPrepared);
+        return created.mp;
+    }
+
+    /** 사용하던 준비 완료 인스턴스를 보관(일시정지 + 처음으로). 같은 키가 이미 있으면 오래된 쪽 release */
+    public void park(Uri uri, Role role, MediaPlayer mp) {
+        if (mp == null) return;
+        if (uri == null || budgetBytes < ESTIMATED_PLAYER_BYTES) {
+            releaseQuietly(mp);
+            return;
+        }
+        try {
+            // 동기 보정(±2%) 속도가 남은 채 재사용되지 않도록 1.0으로 복원. 멈춘 플레이어는 이 호출로
+            // 재생이 시작되므로 복원 뒤에 일시정지
+            PlaybackParams pp = mp.getPlaybackParams();
+            if (pp.getSpeed() != 1.0f) mp.setPlaybackParams(pp.setSpeed(1.0f));
+            if (mp.isPlaying()) mp.pause();
+            mp.setNextMediaPlayer(null);
+            mp.seekTo(0);
+        } catch (Exception ex) {
+            // 준비 전/오류 상태 → 재사용 불가
+            releaseQuietly(mp);
+            return;
+        }
+        mp.setOnCompletionListener(null);
+        mp.setOnPreparedListener(null);
+        Entry e = new Entry(uri, role, mp);
+        e.prepared = true;
+        Entry old = entries.remove(key(uri, role));
+        if (old != null && old.mp != mp) evict(old, "replaced");
+        put(e);
+    }
+
+    /**
+     * 풀에 둔 채 준비된 인스턴스를 돌려준다(setNextMediaPlayer 대상용, 연결 표시로 축출 제외).
+     * 없거나 준비 전이면 null
+     */
+    public MediaPlayer peekPrepared(Uri uri, Role role) {
+        if (uri == null) return null;
+        Entry e = entries.get(key(uri, role));
+        if (e == null || !e.prepared) return null;
+        e.linked = true;
+        return e.mp;
+    }
+
+    /** peekPrepared로 연결된 인스턴스(없으면 null). 연결 표시는 바꾸지 않음 */
+    public MediaPlayer peekLinked(Uri uri, Role role) {
+        Entry e = uri != null ? entries.get(key(uri, role)) : null;
+        return e != null && e.linked ? e.mp : null;
+    }
+
+    /** peekPrepared 연결 해제(이후 일반 축출 대상) */
+    public void unlink(Uri uri, Role role) {
+        if (uri == null) return;
+        Entry e = entries.get(key(uri, role));
+        if (e != null) {
+            e.linked = false;
+            e.idleSinceMs = SystemClock.uptimeMillis();
+        }
+    }
+
+    public boolean isPrepared(Uri uri, Role role) {
+        Entry e = uri != null ? entries.get(key(uri, role)) : null;
+        return e != null && e.prepared;
+    }
+
+    /** 상한 변경(onTrimMemory 등). 넘는 만큼 LRU로 즉시 축출 */
+    public void setBudgetBytes(long bytes) {
+        budgetBytes = Math.max(0, bytes);
+        enforceBudget(null);
+    }
+
+    public long getBudgetBytes() { return budgetBytes; }
+
+    public long getPooledBytes() { return entries.size() * ESTIMATED_PLAYER_BYTES; }
+
+    public int size() { return entries.size(); }
+
+    public String stats() {
+        return entries.size() + " pooled (" + (getPooledBytes() >> 10) + "/" + (budgetBytes >> 10)
+                + " KB) · hit " + hits + " · miss " + misses + " · evict " + evictions;
+    }
+
+    /** 보관 중인 모든 인스턴스 release(연결된 것 포함) */
+    public void release() {
+        mainHandler.removeCallbacks(idleCheck);
+        idleCheckPosted = false;
+        for (Entry e : new ArrayList<>(entries.values())) evict(e, "release");
+    }
+
+    private Entry create(Uri uri, Role role) {
+        MediaPlayer mp = new MediaPlayer();
+        try {
+            if (configurator != null) configurator.configure(mp, role);
+            mp.setDataSource(ctx, uri);
+        } catch (Exception ex) {
+            Log.w(TAG, "create fail " + role + " " + uri + ": " + ex.getMessage());
+            releaseQuietly(mp);
+            return null;
+        }
+        Entry e = new Entry(uri, role, mp);
+        mp.prepareAsync();
+        return e;
+    }
+
+    private void put(Entry e) {
+        // 보관 중 오류가 나면 재사용 불가 → 축출
+        e.mp.setOnErrorListener((mp, what, extra) -> {
+            Log.w(TAG, "pooled player error " + what + "/" + extra + ": " + e.uri);
+            if (entries.get(key(e.uri, e.role)) == e) evict(e, "error");
+            return true;
+        });
+        entries.put(key(e.uri, e.role), e);
+        enforceBudget(e);
+        scheduleIdleCheck();
+    }
+
+    /** keep은 방금 넣은 항목(상한이 1개 미만이 아닌 한 유지) */
+    private void enforceBudget(Entry keep) {
+        if (getPooledBytes() <= budgetBytes) return;
+        for (Map.Entry<String, Entry> me : new ArrayList<>(entries.entrySet())) {
+            if (getPooledBytes() <= budgetBytes) break;
+            Entry e = me.getValue();
+            if (e == keep || e.linked) continue;
+            evict(e, "budget");
+        }
+        // 연결/방금 넣은 것만 남았는데도 넘으면 방금 넣은 것까지
+        if (keep != null && getPooledBytes() > budgetBytes && entries.get(key(keep.uri, keep.role)) == keep) {
+            evict(keep, "budget");
+        }
+    }
+
+    private void evict(Entry e, String reason) {
+        entries.remove(key(e.uri, e.role));
+        evictions++;
+        Log.d(TAG, "evict(" + reason + ") " + e.role + " " + e.uri);
+        releaseQuietly(e.mp);
+    }
+
+    private void scheduleIdleCheck() {
+        if (idleCheckPosted || entries.isEmpty()) return;
+        idleCheckPosted = true;
+        mainHandler.postDelayed(idleCheck, IDLE_CHECK_MS);
+    }
+
+    private static void releaseQuietly(MediaPlayer mp) {
+        try { mp.release(); } catch (Exception ignore) {}
+    }
+}
@@ -0,0 +1,530 @@
+package com.example.achoggmusicplayer;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.VibrationEffect;
+import android.os.Vibrator;
+import android.util.Log;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 3채널(L, R, H) OGG를 MediaCodec으로 한 번만 디코드해 재생하는 단일 디코더 플레이어.
+ * - 햅틱 채널 지원 기기: 디코더 출력 버퍼를 그대로 STEREO | HAPTIC_A 마스크의 AudioTrack에 기록(복사 없음)
+ * - 미지원 기기(또는 AudioTrack 생성 실패): L/R만 스테레오(모노 + 햅틱이면 모노) AudioTrack으로, 햅틱 채널은 10ms RMS → 진동 진폭 파형
+ * - 햅틱 채널 위치는 OggMediaSession.getHapticLayout()(HapticChannelLayout)으로 판별. 햅틱 표시 없는 다채널(5.1 등)은
+ *   앞 L/R만 재생하고 진동하지 않음
+ * - AudioTrack 인코딩은 디코더 출력 인코딩(16bit/float)을 그대로 따름 → 변환 없이 기록
+ * - 위치는 AudioTrack 재생 헤드 기준 → 오디오/햅틱이 같은 클럭이므로 플레이어 간 드리프트가 없음
+ * 디코드/기록은 "MixedPlayback" 스레드, 진동 폴백은 "MixedHaptic" HandlerThread에서 수행.
+ * stop()은 워커에 종료만 알리고 기다리지 않음(메인 스레드 블로킹 없음). 코덱/AudioTrack은 워커가 스스로
+ * 해제하고, 공유 상태(track, 위치 등)는 현재 워커일 때만 lock 안에서 게시 → 늦게 끝나는 이전 워커가 덮어쓰지 않음.
+ */
+public final class MixedHapticPlayer {
+
+    public interface Listener {
+        void onCompletion();
+        void onError(Exception e);
+    }
+
+    private static final String TAG = "MixedHapticPlayer";
+    private static final int AUDIO_CHANNELS = 2;
+    private static final int BIN_MS = 10;
+    private static final int RING_BINS = 1024;             // 진동 폴백용 진폭 링(약 10초)
+    private static final long VIB_WINDOW_MS = 100;          // 진동 파형 1회 길이
+    private static final long IDLE_WAIT_MS = 5;             // 버퍼가 가득 찼거나 일시정지일 때 대기
+    private static final int CHANNEL_OUT_HAPTIC_A_FALLBACK = 0x20000000;
+    private static final int CHANNEL_OUT_HAPTIC_B_FALLBACK = 0x10000000;
+
+    private static final int IDLE = 0, PLAYING = 1, PAUSED = 2, COMPLETED = 3;
+
+    private final Context ctx;
+    private final AudioAttributes attrs;
+    private final Vibrator vibrator;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Object lock = new Object();
+
+    private final HandlerThread vibThread = new HandlerThread("MixedHaptic", Process.THREAD_PRIORITY_URGENT_AUDIO);
+    private final Handler vibHandler;
+
+    private Uri uri;
+    private volatile Thread worker;
+    private volatile int state = IDLE;
+    private volatile long pendingSeekMs = -1;
+
+    // 현재 워커가 lock 안에서 설정(publishTrack/publishPosition), 다른 스레드는 읽기만
+    private volatile AudioTrack track;
+    private volatile int sampleRate = 0;
+    private volatile long baseFrame = 0;              // 현재 AudioTrack 시작 시점의 트랙 프레임
+    private volatile long framesWritten = 0;          // 현재 AudioTrack에 기록한 프레임 수
+    private volatile boolean hapticViaAudio = false;
+    private volatile boolean hapticViaVibrator = false;
+
+    // 진동 폴백: 절대 bin 번호 % RING_BINS 위치에 진폭 기록
+    private final int[] ring = new int[RING_BINS];
+    private volatile long ringWrittenBins = 0;
+    private final long[] vibTimings = new long[(int) (VIB_WINDOW_MS / BIN_MS)];
+    private final int[] vibAmps = new int[vibTimings.length];
+
+    public MixedHapticPlayer(Context ctx, AudioAttributes attrs, Vibrator vibrator, Listener listener) {
+        this.ctx = ctx.getApplicationContext();
+        this.attrs = attrs;
+        this.vibrator = vibrator;
+        this.listener = listener;
+        vibThread.start();
+        vibHandler = new Handler(vibThread.getLooper());
+    }
+
+    /** 기기가 오디오 스트림 안의 햅틱 채널을 재생할 수 있는지(숨김 API, 리플렉션) */
+    public static boolean isHapticPlaybackSupported() {
+        try {
+            Method m = AudioManager.class.getMethod("isHapticPlaybackSupported");
+            return (Boolean) m.invoke(null);
+        } catch (Throwable ignore) {
+            return false;
+        }
+    }
+
+    public void setDataSource(Uri uri) {
+        stop();
+        this.uri = uri;
+    }
+
+    public void start() {
+        if (uri == null) return;
+        synchronized (lock) {
+            if (state == PLAYING) return;
+            if (state == PAUSED && worker != null) {
+                state = PLAYING;
+                AudioTrack t = track;
+                if (t != null) try { t.play(); } catch (Exception ignore) {}
+                scheduleVibration();
+                lock.notifyAll();
+                return;
+            }
+            long from = state == COMPLETED ? 0 : Math.max(0, pendingSeekMs);
+            pendingSeekMs = from;
+            state = PLAYING;
+            if (worker == null) {
+                worker = new Thread(this::runLoop, "MixedPlayback");
+                worker.start();
+            }
+            lock.notifyAll();
+        }
+    }
+
+    public void pause() {
+        synchronized (lock) {
+            if (state != PLAYING) return;
+            state = PAUSED;
+            AudioTrack t = track;
+            if (t != null) try { t.pause(); } catch (Exception ignore) {}
+        }
+        cancelVibration();
+    }
+
+    public void seekTo(long ms) {
+        synchronized (lock) {
+            pendingSeekMs = Math.max(0, ms);
+            if (state == COMPLETED) state = PAUSED;
+            lock.notifyAll();
+        }
+        cancelVibration();
+    }
+
+    /** 재생 중단. 이전 워커는 다음 확인 지점에서 스스로 코덱/AudioTrack을 해제하고 끝남(join 없음) */
+    public void stop() {
+        synchronized (lock) {
+            state = IDLE;
+            pendingSeekMs = 0;
+            worker = null;
+            track = null;      // 이전 워커의 트랙은 그 워커가 해제
+            baseFrame = 0;
+            framesWritten = 0;
+            lock.notifyAll();
+        }
+        cancelVibration();
+    }
+
+    public void release() {
+        stop();
+        vibHandler.removeCallbacksAndMessages(null);
+        vibThread.quitSafely();
+    }
+
+    public boolean isPlaying() { return state == PLAYING; }
+
+    /** 햅틱이 오디오 스트림(햅틱 채널)으로 나가는지 */
+    public boolean isHapticViaAudio() { return hapticViaAudio; }
+
+    /** 햅틱이 진동 진폭 파형 폴백으로 나가는지 */
+    public boolean isHapticViaVibrator() { return hapticViaVibrator; }
+
+    /** AudioTrack 재생 헤드 기준 현재 위치(ms) */
+    public long getCurrentPositionMs() {
+        long pending = pendingSeekMs;
+        if (pending >= 0) return pending;
+        int sr = sampleRate;
+        if (sr <= 0) return 0;
+        return currentFrame() * 1000L / sr;
+    }
+
+    private long currentFrame() {
+        if (state == COMPLETED) return baseFrame + framesWritten;
+        AudioTrack t = track;
+        long played = 0;
+        if (t != null) {
+            try { played = t.getPlaybackHeadPosition() & 0xFFFFFFFFL; } catch (Exception ignore) {}
+        }
+        return baseFrame + played;
+    }
+
+    // ===== 재생 스레드 =====
+
+    /** stop() 이후 남은 이전 재생 스레드는 스스로 종료 */
+    private boolean quitRequested() {
+        return worker != Thread.currentThread();
+    }
+
+    private void runLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        final Uri source = uri; // setDataSource()로 바뀌어도 이 워커는 자기 파일만 연다
+        OggMediaSession session = null;
+        HapticChannelLayout layout = HapticChannelLayout.NONE;
+        MediaCodecPcmSource src = null;
+        AudioTrack own = null; // 이 워커가 만든 트랙(해제 책임도 이 워커)
+        PcmSource.Chunk chunk = new PcmSource.Chunk();
+        ByteBuffer stereo = null;
+        long startMs = 0;
+        long skipToFrame = 0;
+        long binFrame = 0;   // 진동 폴백: 현재 누적 중인 bin의 절대 프레임 위치
+        long sumSq = 0;
+        int binFill = 0;
+
+        try {
+            // 햅틱 채널 배치는 인스펙터와 같은 규칙(마스크/포맷 키/태그)으로 워커당 1회 판별, seek은 같은 fd로 재오픈
+            session = OggMediaSession.open(ctx, source);
+            layout = session.getHapticLayout();
+            while (!quitRequested()) {
+                long seek = pendingSeekMs;
+                if (seek >= 0) {
+                    // (재)시작: seek 위치 직전 sync 지점부터 소스를 다시 열고 트랙을 비움
+                    if (src != null) src.close();
+                    src = session.openPcmSource(seek * 1000L);
+                    if (src == null) throw new IllegalStateException("오디오 트랙 없음");
+                    releaseTrack(own);
+                    own = null;
+                    startMs = seek;
+                    synchronized (lock) {
+                        if (quitRequested()) break;
+                        if (sampleRate > 0) baseFrame = seek * sampleRate / 1000L;
+                        framesWritten = 0;
+                        if (pendingSeekMs == seek) pendingSeekMs = -1;
+                    }
+                }
+
+                if (!waitWhilePaused()) break;
+                if (pendingSeekMs >= 0) continue;
+
+                if (!src.read(chunk)) {
+                    finishPlayback(own);
+                    synchronized (lock) {
+                        while (!quitRequested() && pendingSeekMs < 0) lock.wait();
+                    }
+                    continue;
+                }
+
+                int channels = src.getChannelCount();
+                int sr = src.getSampleRate();
+                int encoding = src.getPcmEncoding();
+                boolean isFloat = encoding == PcmSource.ENCODING_PCM_FLOAT;
+                int sampleBytes = PcmSource.bytesPerSample(encoding);
+                int frameBytes = channels * sampleBytes;
+                long chunkFrame = Math.round(chunk.presentationTimeUs * (double) sr / 1_000_000.0);
+                int offset = chunk.offset;
+                int size = chunk.size - chunk.size % frameBytes;
+
+                if (own == null) {
+                    skipToFrame = startMs * sr / 1000L;
+                    own = openTrack(layout, channels, sr, encoding, skipToFrame);
+                    if (own == null) break; // 그사이 stop() → 게시하지 않고 종료
+                    binFrame = skipToFrame;
+                    sumSq = 0;
+                    binFill = 0;
+                }
+
+                // seek 정밀화: 목표 프레임 이전 샘플은 버림
+                if (chunkFrame < skipToFrame) {
+                    long drop = Math.min(size / frameBytes, skipToFrame - chunkFrame);
+                    offset += (int) drop * frameBytes;
+                    size -= (int) drop * frameBytes;
+                }
+                if (size <= 0) continue;
+
+                ByteBuffer out;
+                int outFrameBytes;
+                boolean layoutHaptic = hasHaptic(layout, channels);
+                if (hapticViaAudio || (!layoutHaptic && channels <= AUDIO_CHANNELS)) {
+                    // 디코더 출력 그대로 기록(채널 순서 L, R, H… 가 AudioTrack 마스크 순서와 동일)
+                    out = chunk.buffer;
+                    out.limit(offset + size);
+                    out.position(offset);
+                    outFrameBytes = frameBytes;
+                } else {
+                    // 폴백: 앞쪽 오디오 채널(최대 L/R)만 추리고 햅틱 채널은 bin RMS로 누적
+                    int outChannels = audioOutChannels(layout, channels);
+                    int need = size / frameBytes * outChannels * sampleBytes;
+                    if (stereo == null || stereo.capacity() < need) {
+                        stereo = ByteBuffer.allocateDirect(Math.max(need, 16 * 1024)).order(ByteOrder.LITTLE_ENDIAN);
+                    }
+                    stereo.clear();
+                    ByteBuffer in = chunk.buffer;
+                    int binSamples = sr * BIN_MS / 1000;
+                    int hOff = layout.hapticIndex * sampleBytes;
+                    for (int p = offset, end = offset + size; p < end; p += frameBytes) {
+                        if (isFloat) {
+                            stereo.putFloat(in.getFloat(p));
+                            if (outChannels == 2) stereo.putFloat(in.getFloat(p + 4));
+                        } else {
+                            stereo.putShort(in.getShort(p));
+                            if (outChannels == 2) stereo.putShort(in.getShort(p + 2));
+                        }
+                        if (hapticViaVibrator && layoutHaptic) {
+                            int s = isFloat ? HapticRmsBinner.floatToS16(in.getFloat(p + hOff)) : in.getShort(p + hOff);
+                            sumSq += s * s;
+                            if (++binFill >= binSamples) {
+                                pushBin(binFrame / binSamples, sumSq, binFill);
+                                binFrame += binFill;
+                                sumSq = 0;
+                                binFill = 0;
+                            }
+                        }
+                    }
+                    stereo.flip();
+                    out = stereo;
+                    outFrameBytes = outChannels * sampleBytes;
+                }
+                writeFully(own, out, outFrameBytes);
+            }
+        } catch (InterruptedException ignore) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            Log.e(TAG, "playback error", e);
+            synchronized (lock) { if (!quitRequested()) state = IDLE; }
+            mainHandler.post(() -> { if (listener != null) listener.onError(e); });
+        } finally {
+            if (src != null) src.close();
+            if (session != null) session.close();
+            releaseTrack(own);
+            boolean current;
+            synchronized (lock) {
+                // 오류/인터럽트로 끝난 현재 워커: 참조를 비워 다음 start()가 새 워커를 띄우게 함
+                current = !quitRequested();
+                if (current) {
+                    worker = null;
+                    track = null;
+                    state = IDLE;
+                }
+            }
+            if (current) cancelVibration(); // stop()이 이미 취소함 → 새 재생의 진동은 건드리지 않음
+        }
+    }
+
+    /** 일시정지 동안 대기. 종료 요청이면 false */
+    private boolean waitWhilePaused() throws InterruptedException {
+        synchronized (lock) {
+            while (!quitRequested() && state != PLAYING && pendingSeekMs < 0) lock.wait();
+            return !quitRequested();
+        }
+    }
+
+    /** 논블로킹 기록 반복. seek/종료 요청이 들어오면 남은 데이터를 버리고 반환 */
+    private void writeFully(AudioTrack t, ByteBuffer out, int frameBytes) throws InterruptedException {
+        while (out.hasRemaining()) {
+            if (quitRequested() || pendingSeekMs >= 0) return;
+            if (state != PLAYING) {
+                if (!waitWhilePaused()) return;
+                continue;
+            }
+            synchronized (lock) {
+                // pause()와 경합하지 않도록 lock 안에서 상태 확인 후 play
+                if (!quitRequested() && state == PLAYING && t.getPlayState() != AudioTrack.PLAYSTATE_PLAYING) {
+                    t.play();
+                    scheduleVibration();
+                }
+            }
+            int n = t.write(out, out.remaining(), AudioTrack.WRITE_NON_BLOCKING);
+            if (n < 0) throw new IllegalStateException("AudioTrack.write " + n);
+            if (n == 0) {
+                synchronized (lock) { lock.wait(IDLE_WAIT_MS); }
+            } else {
+                synchronized (lock) { if (!quitRequested()) framesWritten += n / frameBytes; }
+            }
+        }
+    }
+
+    /** 판별된 배치가 실제 디코더 출력 채널 수와 맞고 햅틱 채널이 있는지 */
+    private static boolean hasHaptic(HapticChannelLayout layout, int channels) {
+        return layout.hasHaptic() && layout.channelCount == channels && layout.hapticIndex < channels;
+    }
+
+    /** 폴백 경로에서 AudioTrack으로 보낼 앞쪽 오디오 채널 수(1 또는 2). 햅틱 채널은 뒤쪽 */
+    private static int audioOutChannels(HapticChannelLayout layout, int channels) {
+        int audio = hasHaptic(layout, channels) ? layout.hapticIndex : channels;
+        return Math.max(1, Math.min(AUDIO_CHANNELS, audio));
+    }
+
+    /**
+     * 트랙을 만들고 현재 워커면 lock 안에서 track/위치/햅틱 경로를 게시.
+     * @return 만든 트랙. 그사이 stop()됐으면 해제 후 null
+     */
+    private AudioTrack openTrack(HapticChannelLayout layout, int channels, int sr, int encoding, long startFrame) {
+        boolean viaAudio = false, viaVibrator = false;
+        AudioTrack t = null;
+        // 디코더 출력(L, R, H…)을 그대로 쓸 수 있는 건 스테레오 + 마지막 1~2채널 햅틱일 때만
+        boolean hasHaptic = hasHaptic(layout, channels);
+        int hapticChannels = hasHaptic ? layout.hapticCount : 0;
+        boolean stereoPlusHaptic = hasHaptic && layout.hapticIndex == AUDIO_CHANNELS
+                && layout.getAudioChannelCount() == AUDIO_CHANNELS;
+
+        if (stereoPlusHaptic && hapticChannels <= 2 && isHapticPlaybackSupported()) {
+            int mask = AudioFormat.CHANNEL_OUT_STEREO | hapticMask("CHANNEL_OUT_HAPTIC_A", CHANNEL_OUT_HAPTIC_A_FALLBACK);
+            if (hapticChannels == 2) mask |= hapticMask("CHANNEL_OUT_HAPTIC_B", CHANNEL_OUT_HAPTIC_B_FALLBACK);
+            try {
+                t = buildTrack(mask, sr, encoding);
+                viaAudio = true;
+                Log.d(TAG, "haptic via AudioTrack channel mask 0x" + Integer.toHexString(mask));
+            } catch (RuntimeException e) {
+                Log.w(TAG, "haptic channel mask rejected, fallback to vibrator: " + e.getMessage());
+            }
+        }
+        if (t == null) {
+            int outChannels = audioOutChannels(layout, channels);
+            t = buildTrack(outChannels == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO, sr, encoding);
+            viaVibrator = hasHaptic && vibrator != null && vibrator.hasVibrator()
+                    && Build.VERSION.SDK_INT >= 26;
+        }
+        synchronized (lock) {
+            if (!quitRequested()) {
+                track = t;
+                sampleRate = sr;
+                hapticViaAudio = viaAudio;
+                hapticViaVibrator = viaVibrator;
+                baseFrame = startFrame;
+                framesWritten = 0;
+                ringWrittenBins = startFrame / (sr * BIN_MS / 1000);
+                return t;
+            }
+        }
+        releaseTrack(t);
+        return null;
+    }
+
+    /** encoding: 디코더 출력 그대로(PcmSource.ENCODING_* = AudioFormat.ENCODING_*) */
+    private AudioTrack buildTrack(int channelMask, int sr, int encoding) {
+        AudioFormat fmt = new AudioFormat.Builder()
+                .setEncoding(encoding)
+                .setSampleRate(sr)
+                .setChannelMask(channelMask)
+                .build();
+        int minBuf = AudioTrack.getMinBufferSize(sr, channelMask, encoding);
+        if (minBuf <= 0) minBuf = sr / 10 * Integer.bitCount(channelMask) * PcmSource.bytesPerSample(encoding);
+        AudioTrack t = new AudioTrack.Builder()
+                .setAudioAttributes(attrs)
+                .setAudioFormat(fmt)
+                .setBufferSizeInBytes(minBuf * 2)
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .build();
+        if (t.getState() != AudioTrack.STATE_INITIALIZED) {
+            t.release();
+            throw new IllegalStateException("AudioTrack init fail");
+        }
+        return t;
+    }
+
+    private static int hapticMask(String field, int fallback) {
+        try {
+            Field f = AudioFormat.class.getField(field);
+            return f.getInt(null);
+        } catch (Throwable ignore) {
+            return fallback;
+        }
+    }
+
+    /** 이 워커가 만든 트랙 해제. 게시된 트랙이면 게시도 내림 */
+    private void releaseTrack(AudioTrack t) {
+        if (t == null) return;
+        synchronized (lock) { if (track == t) track = null; }
+        try { t.pause(); t.flush(); } catch (Exception ignore) {}
+        try { t.release(); } catch (Exception ignore) {}
+    }
+
+    /** EOS: 남은 버퍼를 재생시키고 완료 통지 */
+    private void finishPlayback(AudioTrack t) {
+        if (t != null) try { t.stop(); } catch (Exception ignore) {}
+        synchronized (lock) {
+            if (quitRequested()) return; // stop() 이후 끝난 이전 재생은 완료 통지하지 않음
+            if (state == PLAYING) state = COMPLETED;
+        }
+        mainHandler.post(() -> { if (listener != null) listener.onCompletion(); });
+    }
+
+    private void pushBin(long bin, long sq, int n) {
+        if (quitRequested()) return; // 이전 워커가 새 재생의 링을 덮어쓰지 않도록
+        int amp = (int) Math.round(Math.sqrt((double) sq / n) / 32767.0 * 255.0);
+        ring[(int) (bin % RING_BINS)] = Math.min(255, amp);
+        ringWrittenBins = bin + 1;
+    }
+
+    // ===== 진동 폴백(MixedHaptic 스레드) =====
+
+    private void scheduleVibration() {
+        if (!hapticViaVibrator) return;
+        vibHandler.removeCallbacksAndMessages(null);
+        vibHandler.post(vibTick);
+    }
+
+    private void cancelVibration() {
+        vibHandler.removeCallbacksAndMessages(null);
+        if (vibrator != null) {
+            vibHandler.post(() -> { try { vibrator.cancel(); } catch (Exception ignore) {} });
+        }
+    }
+
+    /** 재생 헤드가 가리키는 bin부터 VIB_WINDOW_MS 구간을 하나의 파형으로 재생 */
+    private final Runnable vibTick = new Runnable() {
+        @Override public void run() {
+            if (state != PLAYING || !hapticViaVibrator || sampleRate <= 0) return;
+            long startBin = currentFrame() / (sampleRate / 100);
+            long written = ringWrittenBins;
+            int n = 0;
+            boolean any = false;
+            for (long b = startBin; n < vibAmps.length; b++, n++) {
+                // 아직 디코드되지 않았거나 링에서 밀려난 bin은 0
+                int amp = (b < written && written - b <= RING_BINS) ? ring[(int) (b % RING_BINS)] : 0;
+                if (amp > 0 && !vibrator.hasAmplitudeControl()) amp = VibrationEffect.DEFAULT_AMPLITUDE;
+                vibTimings[n] = BIN_MS;
+                vibAmps[n] = amp;
+                any |= amp != 0;
+            }
+            try {
+                if (any) vibrator.vibrate(VibrationEffect.createWaveform(vibTimings, vibAmps, -1));
+                else vibrator.cancel();
+            } catch (Exception ignore) {}
+            vibHandler.postDelayed(this, VIB_WINDOW_MS);
+        }
+    };
+}
@@ -1,42 +1,39 @@
 package com.example.achoggmusicplayer;
 
 import android.content.Context;
-import android.media.MediaCodec;
-import android.media.MediaCodecInfo;
-import android.media.MediaExtractor;
 import android.media.MediaFormat;
 import android.media.MediaMetadataRetriever;
 import android.net.Uri;
 import android.util.Log;
 
-import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.charset.StandardCharsets;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.IOException;
 import java.util.Locale;
 
 /**
  * OGG 내부 정보와 햅틱(ACH) 파형 추출기
- * - inspect(): 오디오 메타(채널, 샘플레이트, 길이, ANDROID_HAPTIC 태그 유무)
- * - parseAchFromOgg(): 3ch 이상이면 3번째 채널을 "햅틱 전용 채널"로 간주하여
- *   MediaCodec으로 PCM 디코드 → 10ms 윈도우 RMS → 0~255 진폭 파형으로 변환.
- *   3ch 아니거나 디코드 불가면: ANDROID_HAPTIC 태그가 있으면 간단 펄스, 아니면 null.
+ * - inspect(): 오디오 메타(코덱, 채널, 샘플레이트, 길이, ANDROID_HAPTIC 태그, 햅틱 채널 배치, 디코더)
+ * - parseAchFromOgg(): HapticChannelLayout으로 찾은 햅틱 채널(마스크/포맷 키/태그, 없으면 3ch 이상의 ch2)을
+ *   MediaCodec(Vorbis/Opus, 16bit 또는 float 출력)으로 디코드 → 10ms 윈도우 RMS/피크 → HapticEnvelopeChain 셰이핑 → 0~255 진폭 파형.
+ *   긴 트랙은 ParallelHapticDecoder로 구간을 나눠 여러 코덱에서 병렬 디코드.
+ *   햅틱 채널이 없거나 그 채널 수를 디코드할 디코더가 없으면: ANDROID_HAPTIC 태그가 있으면 간단 펄스, 아니면 null.
  */
 public class OggHapticInspector {
 
     // ==== 오디오 메타 결과 ====
     public static class Result {
-        public String mime;
+        public String mime;       // 컨테이너(provider 타입)
+        public String codecMime;  // 트랙 코덱(audio/vorbis, audio/opus ...)
         public int channelCount;
         public int sampleRate;
         public long durationMs;
-        public boolean hasHapticTag; // 파일 내 "ANDROID_HAPTIC" 문자열 존재 여부
+        public boolean hasHapticTag; // Ogg 코멘트 헤더 내 "ANDROID_HAPTIC" 존재 여부
         public String notes;
+        public HapticChannelLayout layout = HapticChannelLayout.NONE;
+        public String decoderName;  // DecoderCapabilities 캐시에서 고른 디코더(없으면 null)
+        public boolean decodable;   // 햅틱 채널까지 전부 디코드 가능한 디코더가 있는지
 
         public boolean hasHaptic() {
-            return hasHapticTag || channelCount >= 3;
+            return hasHapticTag || layout.hasHaptic();
         }
     }
 
@@ -44,7 +41,7 @@ public class OggHapticInspector {
     public static class HapticTrackInfo {
         public final long totalDurationMs;
         public final int binMs;    // 10ms 고정
-        public final int[] amps;   // 각 bin의 0~255 진폭
+        public final int[] amps;   // 각 bin의 0~255 진폭(디코드 중 부분 트랙). 압축 트랙이면 null
 
         public HapticTrackInfo(long totalDurationMs, int binMs, int[] amps) {
             this.totalDurationMs = totalDurationMs;
@@ -52,113 +49,216 @@ public class OggHapticInspector {
             this.amps = amps;
         }
 
-        /** 임의 시각 ms에서의 진폭(가장 가까운 bin) */
+        /** 압축 트랙만 보관(원본 bin 배열 없음) */
+        public HapticTrackInfo(long totalDurationMs, CompressedHapticTrack compressed) {
+            this(totalDurationMs, compressed.getBinMs(), null);
+            this.compressed = compressed;
+        }
+
+        private HapticAmplitudePyramid pyramid; // 최초 요청 시 1회 생성
+        private CompressedHapticTrack compressed;
+
+        public int getBinCount() {
+            if (amps != null) return amps.length;
+            return compressed != null ? compressed.getBinCount() : 0;
+        }
+
+        /** 임의 시각 ms에서의 진폭(가장 가까운 bin). 압축 트랙이면 세그먼트 이진 탐색 */
         public int getAmplitudeAt(long ms) {
-            if (amps == null || amps.length == 0) return 0;
+            if (amps == null) return compressed != null ? compressed.amplitudeAt(ms) : 0;
+            if (amps.length == 0) return 0;
             if (ms < 0) return amps[0];
             int idx = (int) (ms / binMs);
             if (idx >= amps.length) return amps[amps.length - 1];
             return amps[idx];
         }
+
+        /** 가변 길이 세그먼트 표현. 원본 배열만 있으면 기본 허용 오차로 1회 압축 */
+        public synchronized CompressedHapticTrack getCompressed() {
+            if (compressed == null) {
+                compressed = CompressedHapticTrack.compress(amps != null ? amps : new int[0],
+                        amps != null ? amps.length : 0, binMs, compressTolerance);
+            }
+            return compressed;
+        }
+
+        /** min/max/RMS 다해상도 요약(10ms, 40ms, 160ms, ...). 파싱 완료 시 미리 생성됨 */
+        public synchronized HapticAmplitudePyramid getPyramid() {
+            if (pyramid == null) {
+                pyramid = amps == null && compressed != null
+                        ? new HapticAmplitudePyramid(compressed)
+                        : new HapticAmplitudePyramid(amps, amps != null ? amps.length : 0);
+            }
+            return pyramid;
+        }
+
+        /** [fromMs, toMs) 구간 최대 진폭 */
+        public int getMaxInRange(long fromMs, long toMs) {
+            return getPyramid().rangeMax(toBin(fromMs), toBinEnd(toMs));
+        }
+
+        /** [fromMs, toMs) 구간 RMS 진폭 */
+        public int getRmsInRange(long fromMs, long toMs) {
+            return getPyramid().rangeRms(toBin(fromMs), toBinEnd(toMs));
+        }
+
+        private int toBin(long ms) { return (int) Math.max(0, ms / binMs); }
+        private int toBinEnd(long ms) { return (int) Math.max(0, (ms + binMs - 1) / binMs); }
+    }
+
+    /**
+     * 디코드 진행 콜백(디코드 워커 스레드에서 호출).
+     * - partial: 지금까지 디코드된 bin까지 채워진 부분 트랙(이후 bin은 0)
+     * - isCancelled()가 true가 되면 디코드를 즉시 중단하고 null 반환
+     */
+    public interface DecodeProgress {
+        boolean isCancelled();
+        void onBins(HapticTrackInfo partial, int decodedBins, int totalBins);
     }
 
     private static final String TAG = "OggHapticInspector";
     private static final int HAPTIC_BIN_MS = 10; // 10ms bin
+    private static final long PARALLEL_MIN_MS = 60_000; // 이보다 긴 트랙만 청크 병렬 디코드
+
+    // 병렬 디코드 워커 수(1이면 항상 단일 코덱 직렬 디코드)
+    private static volatile int decodeWorkers =
+            Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+
+    /** 병렬 디코드 워커 수 지정(1/2/4/8 비교 측정용). 1이면 직렬 */
+    public static void setDecodeWorkers(int workers) {
+        decodeWorkers = Math.max(1, workers);
+    }
+
+    // bin 엔벨로프 셰이핑(온셋/피크 홀드/어택·릴리즈/게이트/로그 매핑)
+    private static volatile HapticEnvelopeChain.Config envelopeConfig = HapticEnvelopeChain.Config.defaults();
+
+    /** 셰이핑 체인 설정. Config.rmsOnly()면 기존 선형 RMS */
+    public static void setEnvelopeConfig(HapticEnvelopeChain.Config config) {
+        envelopeConfig = config != null ? config : HapticEnvelopeChain.Config.rmsOnly();
+    }
+
+    public static HapticEnvelopeChain.Config getEnvelopeConfig() { return envelopeConfig; }
+
+    // 완료 트랙 압축 허용 오차(0~255 단위). 0이면 값이 같은 bin만 병합(무손실)
+    private static volatile int compressTolerance = CompressedHapticTrack.DEFAULT_TOLERANCE;
+
+    public static void setCompressTolerance(int tolerance) {
+        compressTolerance = Math.max(0, Math.min(255, tolerance));
+    }
+
+    public static int getCompressTolerance() { return compressTolerance; }
+
+    /** 완료 트랙을 압축 트랙으로 변환(원본 bin 배열 해제, 피라미드 미리 생성) */
+    public static HapticTrackInfo compact(HapticTrackInfo info) {
+        if (info == null || info.amps == null) return info;
+        HapticTrackInfo c = new HapticTrackInfo(info.totalDurationMs,
+                CompressedHapticTrack.compress(info.amps, info.amps.length, info.binMs, compressTolerance));
+        c.getPyramid();
+        return c;
+    }
 
     // ---------- 오디오 메타/포맷 ----------
     public static Result inspect(Context ctx, Uri uri) throws Exception {
+        try (OggMediaSession session = OggMediaSession.open(ctx, uri)) {
+            return inspect(session);
+        }
+    }
+
+    /** 열린 세션에서 메타 조회(추가 파일 오픈 없음) */
+    public static Result inspect(OggMediaSession session) throws Exception {
         Result r = new Result();
 
-        // 1) duration/mime
-        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
-        retriever.setDataSource(ctx, uri);
-        String dur = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
-        try { r.durationMs = dur == null ? -1 : Long.parseLong(dur); } catch (Throwable ignore) {}
-        r.mime = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_MIMETYPE);
-
-        // 2) audio track 포맷(채널/샘플레이트)
-        MediaExtractor ex = new MediaExtractor();
-        ex.setDataSource(ctx, uri, null);
-        int trackCount = ex.getTrackCount();
-        for (int i = 0; i < trackCount; i++) {
-            MediaFormat fmt = ex.getTrackFormat(i);
-            String m = fmt.getString(MediaFormat.KEY_MIME);
-            if (m != null && m.toLowerCase(Locale.US).startsWith("audio/")) {
-                if (fmt.containsKey(MediaFormat.KEY_CHANNEL_COUNT)) {
-                    r.channelCount = fmt.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
-                }
-                if (fmt.containsKey(MediaFormat.KEY_SAMPLE_RATE)) {
-                    r.sampleRate = fmt.getInteger(MediaFormat.KEY_SAMPLE_RATE);
-                }
-                break;
+        // 1) audio track 포맷(채널/샘플레이트/길이)
+        MediaFormat fmt = session.getAudioFormat();
+        r.durationMs = -1;
+        if (fmt != null) {
+            if (fmt.containsKey(MediaFormat.KEY_CHANNEL_COUNT)) {
+                r.channelCount = fmt.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            }
+            if (fmt.containsKey(MediaFormat.KEY_SAMPLE_RATE)) {
+                r.sampleRate = fmt.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            }
+            if (fmt.containsKey(MediaFormat.KEY_DURATION)) {
+                r.durationMs = fmt.getLong(MediaFormat.KEY_DURATION) / 1000;
             }
         }
-        ex.release();
 
-        // 3) 간단 문자열 스캔: "ANDROID_HAPTIC"
-        r.hasHapticTag = scanForString(ctx, uri, "ANDROID_HAPTIC", 1024 * 1024);
+        // 2) 길이를 extractor가 모르면 같은 fd로 retriever 조회 / mime은 provider 타입
+        if (r.durationMs <= 0) {
+            MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+            try {
+                retriever.setDataSource(session.getFileDescriptor());
+                String dur = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+                try { r.durationMs = dur == null ? -1 : Long.parseLong(dur); } catch (Throwable ignore) {}
+            } catch (RuntimeException e) {
+                Log.w(TAG, "duration fallback fail: " + e.getMessage());
+            } finally {
+                try { retriever.release(); } catch (Exception ignore) {}
+            }
+        }
+        r.mime = session.getContainerMime();
+
+        // 3) Ogg 코멘트 헤더 직접 파싱: "ANDROID_HAPTIC"
+        OggPageReader.CommentHeader h = session.getCommentHeader();
+        r.hasHapticTag = h != null && h.containsTag("ANDROID_HAPTIC");
+
+        // 4) 햅틱 채널 배치 + 디코더(캐시된 MediaCodecList 조회)
+        r.layout = session.getHapticLayout();
+        if (fmt != null) {
+            r.codecMime = fmt.getString(MediaFormat.KEY_MIME);
+            DecoderCapabilities.Decoder d = DecoderCapabilities.find(r.codecMime, r.channelCount);
+            r.decoderName = d != null ? d.name : null;
+            r.decodable = d != null && d.maxChannels >= r.channelCount;
+        }
 
-        // 4) 메모
-        if (r.channelCount >= 3 && !r.hasHapticTag) {
-            r.notes = "3채널 이상이지만 ANDROID_HAPTIC 문자열은 없음(전용 채널로 추정하여 사용).";
-        } else if (r.channelCount <= 2 && r.hasHapticTag) {
+        // 5) 메모
+        if (r.layout.hasHaptic() && !r.decodable) {
+            r.notes = "햅틱 채널이 있으나 " + r.channelCount + "ch " + r.codecMime + " 디코더 없음(태그 펄스로 대체).";
+        } else if (HapticChannelLayout.SOURCE_LEGACY.equals(r.layout.source) && !r.hasHapticTag) {
+            r.notes = "3~4채널이지만 ANDROID_HAPTIC 문자열은 없음(전용 채널로 추정하여 사용).";
+        } else if (!r.layout.hasHaptic() && r.hasHapticTag) {
             r.notes = "태그는 있으나 채널 수는 1~2ch(인코더/Extractor 차이 가능).";
         }
 
         return r;
     }
 
-    private static boolean scanForString(Context ctx, Uri uri, String needle, int maxBytes) {
-        try (InputStream is = ctx.getContentResolver().openInputStream(uri)) {
-            if (is == null) return false;
-            byte[] buf = new byte[64 * 1024];
-            int total = 0;
-            byte[] needleBytes = needle.getBytes(StandardCharsets.US_ASCII);
-            int nLen = needleBytes.length;
-
-            int read;
-            byte[] window = new byte[Math.max(buf.length + nLen, 128)];
-            int wSize = 0;
-
-            while ((read = is.read(buf)) > 0 && total < maxBytes) {
-                if (wSize + read > window.length) wSize = 0;
-                System.arraycopy(buf, 0, window, wSize, read);
-                wSize += read;
-                total += read;
-
-                if (indexOf(window, wSize, needleBytes) >= 0) return true;
-            }
-        } catch (Exception e) {
-            Log.w(TAG, "scanForString fail: " + e.getMessage());
-        }
-        return false;
+    // ---------- 햅틱 파형 추출 ----------
+    public static HapticTrackInfo parseAchFromOgg(Context ctx, Uri uri) {
+        return parseAchFromOgg(ctx, uri, null);
     }
 
-    private static int indexOf(byte[] hay, int hayLen, byte[] needle) {
-        outer:
-        for (int i = 0; i <= hayLen - needle.length; i++) {
-            for (int j = 0; j < needle.length; j++) {
-                if (hay[i + j] != needle[j]) continue outer;
-            }
-            return i;
+    /** progress != null이면 bin 단위 진행/부분 트랙을 보고하고 취소를 확인 */
+    public static HapticTrackInfo parseAchFromOgg(Context ctx, Uri uri, DecodeProgress progress) {
+        try (OggMediaSession session = OggMediaSession.open(ctx, uri)) {
+            return parseAchFromOgg(session, inspect(session), progress);
+        } catch (Exception e) {
+            Log.e(TAG, "parseAchFromOgg error", e);
         }
-        return -1;
+        return null;
     }
 
-    // ---------- 햅틱 파형 추출 ----------
-    public static HapticTrackInfo parseAchFromOgg(Context ctx, Uri uri) {
+    /** 열린 세션 + 이미 조회한 메타로 추출(같은 fd/extractor 재사용) */
+    public static HapticTrackInfo parseAchFromOgg(OggMediaSession session, Result meta, DecodeProgress progress) {
         try {
-            Result meta = inspect(ctx, uri);
             long totalMs = meta.durationMs > 0 ? meta.durationMs : 0;
 
-            if (meta.channelCount >= 3 && meta.sampleRate > 0 && totalMs > 0) {
-                // 3ch 이상 → ch2(0-based) = 3번째 채널에서 10ms RMS → 0~255
+            if (meta.layout.hasHaptic() && meta.decodable && meta.sampleRate > 0 && totalMs > 0) {
+                // 햅틱 채널(보통 L, R 다음 ch2)에서 10ms RMS → 0~255
+                int hapticCh = meta.layout.hapticIndex;
                 int sr = meta.sampleRate;
                 int binSamples = (int) (sr * (HAPTIC_BIN_MS / 1000.0));
                 if (binSamples <= 0) binSamples = Math.max(1, sr / 100); // 안전
-                int[] amps = decodeThirdChannelRmsToAmps(ctx, uri, 2, sr, binSamples, totalMs);
+                int workers = decodeWorkers;
+                session.beginDecode();
+                int[] amps = (workers > 1 && totalMs >= PARALLEL_MIN_MS)
+                        ? ParallelHapticDecoder.decode(session, hapticCh, sr, binSamples, HAPTIC_BIN_MS, totalMs, workers, progress)
+                        : decodeHapticChannelRmsToAmps(session, hapticCh, sr, binSamples, totalMs, progress);
+                session.markDecodeDone();
+                if (progress != null && progress.isCancelled()) return null;
                 if (amps != null && amps.length > 0) {
-                    return new HapticTrackInfo(totalMs, HAPTIC_BIN_MS, amps);
+                    // 파싱 시점에 압축 + 요약 레벨 생성
+                    return compact(new HapticTrackInfo(totalMs, HAPTIC_BIN_MS, amps));
                 }
             }
 
@@ -175,7 +275,7 @@ public class OggHapticInspector {
                     for (int i = 0; i < onBins && p < bins; i++) amps[p++] = 180;
                     for (int i = 0; i < offBins && p < bins; i++) amps[p++] = 0;
                 }
-                return new HapticTrackInfo(bins * HAPTIC_BIN_MS, HAPTIC_BIN_MS, amps);
+                return compact(new HapticTrackInfo(bins * HAPTIC_BIN_MS, HAPTIC_BIN_MS, amps));
             }
 
         } catch (Exception e) {
@@ -185,131 +285,72 @@ public class OggHapticInspector {
     }
 
     /**
-     * MediaCodec으로 디코드하여 3번째 채널(short PCM) RMS→amp(0~255)로 변환
+     * 이미 열린 PcmSource(호출자 소유)의 햅틱 채널을 직렬 디코드해 압축 트랙으로. 햅틱 채널이 없거나 취소면 null.
+     * 배치 스캐너처럼 파일당 extractor 하나로 메타와 디코드를 함께 처리할 때 사용.
      */
-    private static int[] decodeThirdChannelRmsToAmps(Context ctx, Uri uri, int hapticChIndex,
-                                                     int sampleRate, int binSamples, long totalMs) throws Exception {
-        MediaExtractor extractor = new MediaExtractor();
-        extractor.setDataSource(ctx, uri, null);
-        int audioTrack = -1;
-        MediaFormat format = null;
-
-        for (int i = 0; i < extractor.getTrackCount(); i++) {
-            MediaFormat fmt = extractor.getTrackFormat(i);
-            String mime = fmt.getString(MediaFormat.KEY_MIME);
-            if (mime != null && mime.toLowerCase(Locale.US).startsWith("audio/")) {
-                audioTrack = i;
-                format = fmt;
-                break;
-            }
-        }
-        if (audioTrack < 0 || format == null) {
-            extractor.release();
-            return null;
-        }
+    public static HapticTrackInfo parseFromSource(PcmSource src, int hapticChIndex, int sampleRate, long totalMs,
+                                                  DecodeProgress progress) throws IOException {
+        if (hapticChIndex < 0 || sampleRate <= 0 || totalMs <= 0) return null;
+        int binSamples = Math.max(1, (int) (sampleRate * (HAPTIC_BIN_MS / 1000.0)));
+        int expectedBins = Math.max(1, (int) (totalMs / HAPTIC_BIN_MS));
+        int[] amps = extractRmsAmps(src, hapticChIndex, binSamples, expectedBins, totalMs, progress);
+        if (amps == null || amps.length == 0) return null;
+        return compact(new HapticTrackInfo(totalMs, HAPTIC_BIN_MS, amps));
+    }
 
-        extractor.selectTrack(audioTrack);
-        String mime = format.getString(MediaFormat.KEY_MIME);
-        MediaCodec codec = MediaCodec.createDecoderByType(mime);
-        codec.configure(format, null, null, 0);
-        codec.start();
-
-        // output은 PCM 16bit로 나오는 것이 일반적
-        MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
-        boolean inputDone = false, outputDone = false;
-
-        int channels = format.containsKey(MediaFormat.KEY_CHANNEL_COUNT)
-                ? format.getInteger(MediaFormat.KEY_CHANNEL_COUNT) : 2;
-        if (hapticChIndex >= channels) { // 채널 수가 기대보다 적으면 실패
-            try { codec.stop(); codec.release(); } catch (Exception ignore) {}
-            extractor.release();
-            return null;
+    /**
+     * MediaCodec으로 디코드하여 햅틱 채널(16bit/float PCM) RMS→amp(0~255)로 변환
+     */
+    private static int[] decodeHapticChannelRmsToAmps(OggMediaSession session, int hapticChIndex,
+                                                     int sampleRate, int binSamples, long totalMs,
+                                                     DecodeProgress progress) throws Exception {
+        try (MediaCodecPcmSource src = session.openPcmSource(0)) {
+            if (src == null) return null;
+            int expectedBins = Math.max(1, (int) (totalMs / HAPTIC_BIN_MS));
+            return extractRmsAmps(src, hapticChIndex, binSamples, expectedBins, totalMs, progress);
         }
+    }
 
-        // 10ms bin 누적용
-        ArrayList<Integer> amps = new ArrayList<>();
-        long samplesAccum = 0;
-        double sumSquares = 0.0;
-        long totalSamplesTarget = (long) ((totalMs / 1000.0) * sampleRate);
-
-        while (!outputDone) {
-            // 입력
-            if (!inputDone) {
-                int inIndex = codec.dequeueInputBuffer(10_000);
-                if (inIndex >= 0) {
-                    ByteBuffer ibuf = codec.getInputBuffer(inIndex);
-                    int sampleSize = extractor.readSampleData(ibuf, 0);
-                    if (sampleSize < 0) {
-                        codec.queueInputBuffer(inIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-                        inputDone = true;
-                    } else {
-                        long pts = extractor.getSampleTime();
-                        codec.queueInputBuffer(inIndex, 0, sampleSize, pts, 0);
-                        extractor.advance();
-                    }
-                }
+    /**
+     * PcmSource(코덱/WAV/합성)에서 hapticChIndex 채널을 binSamples 단위 RMS/피크 → 셰이핑 → 0~255 진폭으로 변환.
+     * 기기 의존성이 없어 JVM 단위 테스트/벤치마크에서도 전체 추출 경로를 그대로 돌릴 수 있다.
+     * @return expectedBins 길이 배열(부족분 0 패딩). 채널 부족 또는 취소 시 null
+     */
+    public static int[] extractRmsAmps(PcmSource src, int hapticChIndex, int binSamples, int expectedBins,
+                                       long totalMs, DecodeProgress progress) throws IOException {
+        PcmSource.Chunk chunk = new PcmSource.Chunk();
+        HapticRmsBinner binner = null;
+        int reportedBins = 0;
+
+        while (src.read(chunk)) {
+            if (binner == null) {
+                // 채널 수/인코딩/마스크는 첫 출력 시점(코덱 출력 포맷 확정 후) 기준
+                HapticChannelLayout out = HapticChannelLayout.resolve(src.getChannelCount(), src.getChannelMask(), 0, 0);
+                if (HapticChannelLayout.SOURCE_MASK.equals(out.source)) hapticChIndex = out.hapticIndex;
+                if (hapticChIndex >= src.getChannelCount()) return null;
+                binner = new HapticRmsBinner(src.getChannelCount(), hapticChIndex, binSamples, expectedBins);
+                binner.setPcmEncoding(src.getPcmEncoding());
+                binner.setChain(new HapticEnvelopeChain(envelopeConfig, HAPTIC_BIN_MS));
             }
-
-            // 출력
-            int outIndex = codec.dequeueOutputBuffer(info, 10_000);
-            if (outIndex >= 0) {
-                ByteBuffer obuf = codec.getOutputBuffer(outIndex);
-                if (obuf != null && info.size > 0) {
-                    obuf.order(ByteOrder.LITTLE_ENDIAN);
-                    // 16bit PCM interleaved
-                    int samples = info.size / 2; // shorts
-                    short[] tmp = new short[samples];
-                    obuf.asShortBuffer().get(tmp);
-                    // hapticChIndex 채널만 추출
-                    for (int i = hapticChIndex; i < samples; i += channels) {
-                        int s = tmp[i];
-                        sumSquares += (s * s);
-                        samplesAccum++;
-                        if (samplesAccum >= binSamples) {
-                            double rms = Math.sqrt(sumSquares / samplesAccum);
-                            // short max 32767 → 0~255 스케일
-                            int amp = (int) Math.round((rms / 32767.0) * 255.0);
-                            if (amp < 0) amp = 0; if (amp > 255) amp = 255;
-                            amps.add(amp);
-                            sumSquares = 0.0;
-                            samplesAccum = 0;
-                        }
-                    }
+            // 인터리브 PCM(디코더 출력 인코딩 그대로) → hapticChIndex 채널만 stride로 직접 읽음
+            binner.accept(chunk.buffer, chunk.offset, chunk.size);
+
+            if (progress != null) {
+                if (progress.isCancelled()) return null;
+                int done = binner.getBinCount();
+                if (done != reportedBins) {
+                    reportedBins = done;
+                    progress.onBins(new HapticTrackInfo(totalMs, HAPTIC_BIN_MS, binner.peek()),
+                            Math.min(done, expectedBins), expectedBins);
                 }
-                codec.releaseOutputBuffer(outIndex, false);
-                if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                    outputDone = true;
-                }
-            } else if (outIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED ||
-                       outIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                // ignore
             }
         }
-
-        try { codec.stop(); codec.release(); } catch (Exception ignore) {}
-        extractor.release();
-
-        // 남은 샘플 처리
-        if (samplesAccum > 0) {
-            double rms = Math.sqrt(sumSquares / samplesAccum);
-            int amp = (int) Math.round((rms / 32767.0) * 255.0);
-            if (amp < 0) amp = 0; if (amp > 255) amp = 255;
-            amps.add(amp);
-        }
-
-        // 총 길이에 맞춰 bin 개수 보정
-        int expectedBins = Math.max(1, (int) (totalMs / HAPTIC_BIN_MS));
-        if (amps.size() < expectedBins) {
-            // 부족하면 0으로 패딩
-            while (amps.size() < expectedBins) amps.add(0);
-        } else if (amps.size() > expectedBins) {
-            // 많으면 잘라냄
-            while (amps.size() > expectedBins) amps.remove(amps.size() - 1);
+        if (binner == null) {
+            if (hapticChIndex >= src.getChannelCount()) return null;
+            binner = new HapticRmsBinner(src.getChannelCount(), hapticChIndex, binSamples, expectedBins);
         }
 
-        // 배열 변환
-        int[] out = new int[amps.size()];
-        for (int i = 0; i < amps.size(); i++) out[i] = amps.get(i);
-        return out;
+        // 남은 샘플 처리 + 총 길이에 맞춰 bin 개수 보정(부족분 0 패딩, 초과분 잘라냄)
+        return binner.finish();
     }
 }
@@ -0,0 +1,224 @@
+package com.example.achoggmusicplayer;
+
+import android.content.Context;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * 한 콘텐츠 URI에 대한 열린 세션. openFileDescriptor 1회로 메타/태그/캐시 키/디코드를 모두 처리.
+ * - 코멘트 헤더: 같은 FileChannel에서 1회 파싱 후 보관
+ * - 포맷/길이: MediaExtractor 1개(setDataSource(fd, 0, size)). openPcmSource()가 이 extractor를 코덱에 넘김
+ * - 오디오 트랙이 여러 개면 햅틱 채널이 있는 트랙을 우선 선택, 햅틱 채널 위치는 HapticChannelLayout으로 판별
+ * - 병렬 청크 디코드용 추가 extractor도 같은 fd로 생성(provider 재오픈 없음)
+ * - 단계별 소요 시간(Timings)을 기록, close() 시 로그
+ * 스레드 안전하지 않음(한 작업 스레드 전용). newExtractor()만 다른 스레드에서 호출 가능.
+ */
+public final class OggMediaSession implements Closeable {
+
+    /** 단계별 누적 소요 시간(ms) */
+    public static final class Timings {
+        public long openMs, headerMs, keyMs, extractorMs, decodeMs;
+
+        @Override public String toString() {
+            return String.format(Locale.US, "open %d ms · header %d ms · key %d ms · extractor %d ms · decode %d ms",
+                    openMs, headerMs, keyMs, extractorMs, decodeMs);
+        }
+    }
+
+    private static final String TAG = "OggMediaSession";
+    private static final String KEY_HAPTIC_CHANNEL_COUNT = "haptic-channel-count"; // MediaFormat 숨김 키
+
+    public final Uri uri;
+    private final Context ctx;
+    private final ParcelFileDescriptor pfd;
+    private final FileInputStream fis;
+    private final FileChannel channel;
+    private final long size;
+    private final Timings timings = new Timings();
+
+    private boolean headerRead = false;
+    private OggPageReader.CommentHeader header;
+    private MediaExtractor extractor;   // openPcmSource() 후 null(소유권 이전)
+    private MediaFormat audioFormat;
+    private int audioTrack = -1;
+    private HapticChannelLayout layout;
+    private boolean extractorProbed = false;
+    private long decodeStartedAt = -1;
+
+    private OggMediaSession(Context ctx, Uri uri, ParcelFileDescriptor pfd, long openMs) {
+        this.ctx = ctx;
+        this.uri = uri;
+        this.pfd = pfd;
+        this.fis = new FileInputStream(pfd.getFileDescriptor());
+        this.channel = fis.getChannel();
+        this.size = pfd.getStatSize();
+        timings.openMs = openMs;
+    }
+
+    public static OggMediaSession open(Context ctx, Uri uri) throws IOException {
+        long t0 = SystemClock.elapsedRealtime();
+        ParcelFileDescriptor pfd = ctx.getContentResolver().openFileDescriptor(uri, "r");
+        if (pfd == null) throw new FileNotFoundException("openFileDescriptor null: " + uri);
+        return new OggMediaSession(ctx.getApplicationContext(), uri, pfd, SystemClock.elapsedRealtime() - t0);
+    }
+
+    public Timings getTimings() { return timings; }
+
+    public FileDescriptor getFileDescriptor() { return pfd.getFileDescriptor(); }
+
+    /** 파일 크기(알 수 없으면 ≤ 0) */
+    public long getSize() { return size; }
+
+    /** Vorbis/Opus 코멘트 헤더(1회 파싱 후 캐시). Ogg가 아니거나 손상이면 null */
+    public OggPageReader.CommentHeader getCommentHeader() {
+        if (headerRead) return header;
+        headerRead = true;
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            channel.position(0);
+            header = new OggPageReader(channel).readCommentHeader();
+        } catch (IOException e) {
+            Log.w(TAG, "comment read fail: " + e.getMessage());
+        }
+        timings.headerMs += SystemClock.elapsedRealtime() - t0;
+        return header;
+    }
+
+    /** HapticEnvelopeCache 콘텐츠 키(헤더 바이트 해시 + 크기). 실패 시 null */
+    public String computeContentKey() {
+        if (size <= 0) return null;
+        OggPageReader.CommentHeader h = getCommentHeader();
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            return HapticEnvelopeCache.computeKey(channel, size, h != null ? h.headerBytes : 0);
+        } catch (IOException e) {
+            Log.w(TAG, "computeKey fail: " + e.getMessage());
+            return null;
+        } finally {
+            timings.keyMs += SystemClock.elapsedRealtime() - t0;
+        }
+    }
+
+    /** 첫 오디오 트랙 포맷. 없으면 null */
+    public MediaFormat getAudioFormat() throws IOException {
+        probeExtractor();
+        return audioFormat;
+    }
+
+    /** 선택된 오디오 트랙 번호(없으면 -1) */
+    public int getAudioTrackIndex() throws IOException {
+        probeExtractor();
+        return audioTrack;
+    }
+
+    /** 선택된 트랙의 햅틱 채널 배치(마스크/포맷 키/ANDROID_HAPTIC 태그/채널 수 순) */
+    public HapticChannelLayout getHapticLayout() throws IOException {
+        if (layout != null) return layout;
+        MediaFormat fmt = getAudioFormat();
+        if (fmt == null) return layout = HapticChannelLayout.NONE;
+        OggPageReader.CommentHeader h = getCommentHeader();
+        String tag = h == null ? null : h.get("ANDROID_HAPTIC");
+        return layout = layoutOf(fmt, HapticChannelLayout.parseTagCount(tag), h != null && h.hasKey("ANDROID_HAPTIC"));
+    }
+
+    private static HapticChannelLayout layoutOf(MediaFormat fmt, int tagCount, boolean tagPresent) {
+        return HapticChannelLayout.resolve(
+                fmt.containsKey(MediaFormat.KEY_CHANNEL_COUNT) ? fmt.getInteger(MediaFormat.KEY_CHANNEL_COUNT) : 0,
+                fmt.containsKey(MediaFormat.KEY_CHANNEL_MASK) ? fmt.getInteger(MediaFormat.KEY_CHANNEL_MASK) : 0,
+                fmt.containsKey(KEY_HAPTIC_CHANNEL_COUNT) ? fmt.getInteger(KEY_HAPTIC_CHANNEL_COUNT) : 0,
+                tagCount, tagPresent);
+    }
+
+    /** 같은 fd로 새 extractor(호출자 소유, 병렬 청크 디코드용) */
+    public MediaExtractor newExtractor() throws IOException {
+        MediaExtractor ex = new MediaExtractor();
+        try {
+            ex.setDataSource(pfd.getFileDescriptor(), 0, size > 0 ? size : 0x7ffffffffffffffL);
+        } catch (IOException | RuntimeException e) {
+            ex.release();
+            throw e;
+        }
+        return ex;
+    }
+
+    /**
+     * 세션 extractor로 디코더를 연다(extractor 소유권은 반환된 소스로 이전, 이후 getAudioFormat()은 캐시값).
+     * 두 번째 호출부터는 새 extractor를 만든다. 오디오 트랙이 없으면 null
+     */
+    public MediaCodecPcmSource openPcmSource(long startUs) throws IOException {
+        probeExtractor();
+        MediaExtractor ex = extractor != null ? extractor : newExtractor();
+        extractor = null;
+        return MediaCodecPcmSource.open(ex, audioTrack, startUs);
+    }
+
+    /** 디코드 구간 시작(직렬/병렬 공통, markDecodeDone까지의 시간을 decodeMs에 누적) */
+    public void beginDecode() {
+        if (decodeStartedAt < 0) decodeStartedAt = SystemClock.elapsedRealtime();
+    }
+
+    /** 디코드 구간 종료 */
+    public void markDecodeDone() {
+        if (decodeStartedAt < 0) return;
+        timings.decodeMs += SystemClock.elapsedRealtime() - decodeStartedAt;
+        decodeStartedAt = -1;
+    }
+
+    private void probeExtractor() throws IOException {
+        if (extractorProbed) return;
+        extractorProbed = true;
+        long t0 = SystemClock.elapsedRealtime();
+        try {
+            extractor = newExtractor();
+            // 첫 오디오 트랙, 단 햅틱 채널이 보이는 오디오 트랙이 있으면 그 트랙(멀티 트랙 컨테이너)
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat fmt = extractor.getTrackFormat(i);
+                String m = fmt.getString(MediaFormat.KEY_MIME);
+                if (m == null || !m.toLowerCase(Locale.US).startsWith("audio/")) continue;
+                if (audioFormat == null) {
+                    audioFormat = fmt;
+                    audioTrack = i;
+                }
+                if (layoutOf(fmt, 0, false).hasHaptic()) {
+                    audioFormat = fmt;
+                    audioTrack = i;
+                    break;
+                }
+            }
+        } finally {
+            timings.extractorMs += SystemClock.elapsedRealtime() - t0;
+        }
+    }
+
+    /** 컨테이너 MIME(provider 조회, 파일은 열지 않음). 모르면 null */
+    public String getContainerMime() {
+        try {
+            return ctx.getContentResolver().getType(uri);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    @Override public void close() {
+        markDecodeDone();
+        if (extractor != null) {
+            extractor.release();
+            extractor = null;
+        }
+        try { fis.close(); } catch (IOException ignore) {}
+        try { pfd.close(); } catch (IOException ignore) {}
+        Log.d(TAG, uri + ": " + timings);
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.achoggmusicplayer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 순수 자바 Ogg 페이지/패킷 디먹서(헤더 전용)
+ * - FileChannel에서 페이지 단위로 읽으며 capture pattern("OggS"), CRC32, segment table 검증
+ * - 첫 논리 스트림(BOS 페이지의 serial)의 패킷만 재조립
+ * - Vorbis/Opus 코멘트 헤더(2번째 패킷)를 읽는 즉시 중단 → 파일 전체 스캔 불필요
+ */
+public final class OggPageReader {
+
+    public static final int CODEC_UNKNOWN = 0;
+    public static final int CODEC_VORBIS = 1;
+    public static final int CODEC_OPUS = 2;
+
+    // ==== 코멘트 헤더 결과 ====
+    public static class CommentHeader {
+        public int codec = CODEC_UNKNOWN;
+        public String vendor;
+        public final List<String> comments = new ArrayList<>(); // "KEY=value"
+        public long headerBytes; // 코멘트 헤더까지 읽은 파일 바이트 수
+
+        /** KEY=value 코멘트에서 key(대소문자 무시)의 첫 값. 없으면 null */
+        public String get(String key) {
+            String prefix = key.toUpperCase(Locale.US) + "=";
+            for (String c : comments) {
+                if (c.length() >= prefix.length()
+                        && c.substring(0, prefix.length()).toUpperCase(Locale.US).equals(prefix)) {
+                    return c.substring(prefix.length());
+                }
+            }
+            return null;
+        }
+
+        /** key(대소문자 무시)의 모든 값을 코멘트 순서대로. 긴 값을 여러 코멘트로 나눠 담은 경우용 */
+        public List<String> getAll(String key) {
+            String prefix = key.toUpperCase(Locale.US) + "=";
+            List<String> out = new ArrayList<>();
+            for (String c : comments) {
+                if (c.length() >= prefix.length()
+                        && c.substring(0, prefix.length()).toUpperCase(Locale.US).equals(prefix)) {
+                    out.add(c.substring(prefix.length()));
+                }
+            }
+            return out;
+        }
+
+        /** 코멘트 중 key(대소문자 무시)인 항목이 있는지("KEY=value" 또는 값 없는 "KEY") */
+        public boolean hasKey(String key) {
+            for (String c : comments) {
+                int eq = c.indexOf('=');
+                if ((eq < 0 ? c : c.substring(0, eq)).equalsIgnoreCase(key)) return true;
+            }
+            return false;
+        }
+
+        /** vendor/코멘트 어딘가에 needle 문자열이 있는지 */
+        public boolean containsTag(String needle) {
+            if (vendor != null && vendor.contains(needle)) return true;
+            for (String c : comments) if (c.contains(needle)) return true;
+            return false;
+        }
+    }
+
+    private static final int HEADER_SIZE = 27;
+    private static final int MAX_PAGE_SIZE = HEADER_SIZE + 255 + 255 * 255;
+    private static final int MAX_PACKET_SIZE = 16 * 1024 * 1024; // 커버아트 등 과대 코멘트 방어
+
+    private static final int[] CRC_TABLE = new int[256];
+    static {
+        for (int i = 0; i < 256; i++) {
+            int r = i << 24;
+            for (int k = 0; k < 8; k++) {
+                r = (r & 0x80000000) != 0 ? (r << 1) ^ 0x04C11DB7 : (r << 1);
+            }
+            CRC_TABLE[i] = r;
+        }
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer page = ByteBuffer.allocate(MAX_PAGE_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private long filePos = 0;         // 다음 페이지의 파일 오프셋
+    private int streamSerial = 0;
+    private boolean hasStream = false;
+
+    // 현재 페이지 상태
+    private int segCount = 0;
+    private int segIndex = 0;
+    private int bodyCursor = 0;
+
+    // 패킷 재조립 버퍼
+    private byte[] packet = new byte[4096];
+    private int packetLen = 0;
+
+    public OggPageReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /** 식별 헤더 + 코멘트 헤더 2개 패킷을 읽어 파싱. 지원하지 않는 코덱이면 null */
+    public CommentHeader readCommentHeader() throws IOException {
+        int idLen = nextPacket();
+        if (idLen < 0) return null;
+
+        CommentHeader h = new CommentHeader();
+        int off;
+        if (isVorbisHeader(packet, idLen, 1)) {
+            h.codec = CODEC_VORBIS;
+        } else if (startsWith(packet, idLen, "OpusHead")) {
+            h.codec = CODEC_OPUS;
+        } else {
+            return null;
+        }
+
+        int len = nextPacket();
+        if (len < 0) return null;
+        if (h.codec == CODEC_VORBIS) {
+            if (!isVorbisHeader(packet, len, 3)) throw new IOException("vorbis comment header missing");
+            off = 7;
+        } else {
+            if (!startsWith(packet, len, "OpusTags")) throw new IOException("OpusTags missing");
+            off = 8;
+        }
+
+        ByteBuffer bb = ByteBuffer.wrap(packet, 0, len).order(ByteOrder.LITTLE_ENDIAN);
+        bb.position(off);
+        h.vendor = readString(bb);
+        long n = bb.getInt() & 0xFFFFFFFFL;
+        for (long i = 0; i < n; i++) {
+            h.comments.add(readString(bb));
+        }
+        h.headerBytes = filePos;
+        return h;
+    }
+
+    /** 다음 패킷을 packet[0..len)에 재조립. EOF면 -1 */
+    private int nextPacket() throws IOException {
+        packetLen = 0;
+        while (true) {
+            if (segIndex >= segCount) {
+                if (!readPage()) return -1;
+                continue;
+            }
+            int lace = page.get(HEADER_SIZE + segIndex) & 0xFF;
+            segIndex++;
+            append(page.array(), bodyCursor, lace);
+            bodyCursor += lace;
+            if (lace < 255) return packetLen;
+        }
+    }
+
+    /** 대상 스트림의 다음 페이지를 읽어 검증. EOF면 false */
+    private boolean readPage() throws IOException {
+        while (true) {
+            if (!readFully(0, HEADER_SIZE)) return false;
+            if (page.get(0) != 'O' || page.get(1) != 'g' || page.get(2) != 'g' || page.get(3) != 'S') {
+                throw new IOException("capture pattern mismatch @" + filePos);
+            }
+            if (page.get(4) != 0) throw new IOException("unsupported ogg version @" + filePos);
+
+            int headerType = page.get(5) & 0xFF;
+            int serial = page.getInt(14);
+            int storedCrc = page.getInt(22);
+            int nSeg = page.get(26) & 0xFF;
+
+            if (!readFully(HEADER_SIZE, HEADER_SIZE + nSeg)) return false;
+            int bodyLen = 0;
+            for (int i = 0; i < nSeg; i++) bodyLen += page.get(HEADER_SIZE + i) & 0xFF;
+            int pageLen = HEADER_SIZE + nSeg + bodyLen;
+            if (!readFully(HEADER_SIZE + nSeg, pageLen)) return false;
+
+            if (crc(page.array(), pageLen) != storedCrc) {
+                throw new IOException("page CRC mismatch @" + filePos);
+            }
+            filePos += pageLen;
+
+            if (!hasStream && (headerType & 0x02) != 0) {
+                streamSerial = serial;
+                hasStream = true;
+            }
+            if (!hasStream || serial != streamSerial) continue; // 다른 논리 스트림은 건너뜀
+
+            segCount = nSeg;
+            segIndex = 0;
+            bodyCursor = HEADER_SIZE + nSeg;
+            return true;
+        }
+    }
+
+    private boolean readFully(int from, int to) throws IOException {
+        page.limit(to);
+        page.position(from);
+        long at = filePos + from;
+        while (page.hasRemaining()) {
+            int n = channel.read(page, at);
+            if (n < 0) return false;
+            at += n;
+        }
+        return true;
+    }
+
+    private void append(byte[] src, int off, int len) throws IOException {
+        int need = packetLen + len;
+        if (need > MAX_PACKET_SIZE) throw new IOException("packet too large: " + need);
+        if (need > packet.length) {
+            byte[] grown = new byte[Math.min(MAX_PACKET_SIZE, Math.max(need, packet.length * 2))];
+            System.arraycopy(packet, 0, grown, 0, packetLen);
+            packet = grown;
+        }
+        System.arraycopy(src, off, packet, packetLen, len);
+        packetLen = need;
+    }
+
+    /** Ogg CRC32(poly 0x04C11DB7, init 0, 반사 없음). CRC 필드(22~25)는 0으로 간주 */
+    private static int crc(byte[] data, int len) {
+        int crc = 0;
+        for (int i = 0; i < len; i++) {
+            int b = (i >= 22 && i < 26) ? 0 : (data[i] & 0xFF);
+            crc = (crc << 8) ^ CRC_TABLE[((crc >>> 24) ^ b) & 0xFF];
+        }
+        return crc;
+    }
+
+    private static String readString(ByteBuffer bb) throws IOException {
+        long n = bb.getInt() & 0xFFFFFFFFL;
+        if (n > bb.remaining()) throw new IOException("comment length overflow");
+        String s = new String(bb.array(), bb.position(), (int) n, StandardCharsets.UTF_8);
+        bb.position(bb.position() + (int) n);
+        return s;
+    }
+
+    private static boolean isVorbisHeader(byte[] p, int len, int type) {
+        return len >= 7 && (p[0] & 0xFF) == type && startsWith(p, 1, len, "vorbis");
+    }
+
+    private static boolean startsWith(byte[] p, int len, String magic) {
+        return startsWith(p, 0, len, magic);
+    }
+
+    private static boolean startsWith(byte[] p, int off, int len, String magic) {
+        if (len - off < magic.length()) return false;
+        for (int i = 0; i < magic.length(); i++) {
+            if (p[off + i] != (byte) magic.charAt(i)) return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.achoggmusicplayer;
+
+import android.util.Log;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 긴 트랙의 햅틱 RMS 디코드를 시간 구간(청크)으로 나눠 병렬 수행.
+ * - 청크마다 독립 MediaCodecPcmSource(세션 fd로 만든 MediaExtractor + MediaCodec), 고정 크기 워커 풀(bounded)
+ * - 디코더 출력 인코딩(16bit/float)을 그대로 읽음(변환 버퍼 없음)
+ * - 각 청크는 시작 bin보다 PREROLL_US 앞의 sync 지점으로 seekTo → 디코더 워밍업 구간은 버림(overlap)
+ * - 출력 PCM은 presentationTimeUs로 절대 샘플 위치를 구해 bin에 누적 → 청크 경계와 무관하게 같은 bin 정렬
+ * - 청크는 서로 겹치지 않는 bin 범위의 RMS/피크만 기록 → 스레드 수와 무관하게 결정적 결과
+ * - 상태가 있는 HapticEnvelopeChain은 청크 순서대로(앞에서부터 연속 구간) 한 번 통과 → 직렬 디코드와 같은 값
+ * - 진행률도 같은 순서로 보고
+ */
+public final class ParallelHapticDecoder {
+
+    private static final String TAG = "ParallelHapticDecoder";
+    private static final long PREROLL_US = 100_000;   // 경계 앞 100ms 겹쳐 디코드
+    private static final long MIN_CHUNK_MS = 5_000;   // 청크가 이보다 짧으면 분할 이득 없음
+    private static final int CHUNKS_PER_WORKER = 2;   // 청크 길이 편차 흡수
+
+    private ParallelHapticDecoder() {}
+
+    /**
+     * @return expectedBins 길이의 진폭 배열. 취소되었거나 트랙이 없으면 null
+     */
+    public static int[] decode(OggMediaSession session, int hapticChIndex, int sampleRate, int binSamples,
+                               int binMs, long totalMs, int workers,
+                               OggHapticInspector.DecodeProgress progress) throws Exception {
+        final int expectedBins = Math.max(1, (int) (totalMs / binMs));
+        int chunkCount = (int) Math.max(1, Math.min((long) workers * CHUNKS_PER_WORKER, totalMs / MIN_CHUNK_MS));
+        final int[] out = new int[expectedBins];
+        final double[] rms = new double[expectedBins]; // 청크 워커가 기록(16bit 스케일)
+        final int[] peak = new int[expectedBins];
+        HapticEnvelopeChain chain = new HapticEnvelopeChain(OggHapticInspector.getEnvelopeConfig(), binMs);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(workers, chunkCount)), r -> {
+            Thread t = new Thread(r, "HapticDecode");
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(chunkCount);
+            int[] chunkEnd = new int[chunkCount];
+            for (int c = 0; c < chunkCount; c++) {
+                final int b0 = (int) ((long) expectedBins * c / chunkCount);
+                final int b1 = (int) ((long) expectedBins * (c + 1) / chunkCount);
+                chunkEnd[c] = b1;
+                futures.add(pool.submit(() -> {
+                    decodeChunk(session, hapticChIndex, sampleRate, binSamples, b0, b1, rms, peak, progress);
+                    return null;
+                }));
+            }
+
+            // 청크 순서대로 대기 → 앞쪽부터 연속된 구간이 확정될 때마다 셰이핑 후 보고
+            int shaped = 0;
+            for (int c = 0; c < chunkCount; c++) {
+                futures.get(c).get();
+                for (; shaped < chunkEnd[c]; shaped++) out[shaped] = chain.process(rms[shaped], peak[shaped]);
+                if (progress != null) {
+                    if (progress.isCancelled()) return null;
+                    progress.onBins(new OggHapticInspector.HapticTrackInfo(totalMs, binMs, out),
+                            chunkEnd[c], expectedBins);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+            pool.awaitTermination(1, TimeUnit.SECONDS);
+        }
+        if (progress != null && progress.isCancelled()) return null;
+        return out;
+    }
+
+    /** [b0, b1) bin 구간만 디코드하여 bin별 RMS/절대 피크를 rms/peak에 기록 */
+    private static void decodeChunk(OggMediaSession session, int hapticChIndex, int sampleRate, int binSamples,
+                                    int b0, int b1, double[] rms, int[] peak,
+                                    OggHapticInspector.DecodeProgress progress) throws Exception {
+        final long startSample = (long) b0 * binSamples;
+        final long endSample = (long) b1 * binSamples;
+        final long[] sumSq = new long[b1 - b0];
+        final int[] counts = new int[b1 - b0];
+
+        long startUs = startSample * 1_000_000L / sampleRate;
+        try (MediaCodecPcmSource src = MediaCodecPcmSource.open(session.newExtractor(),
+                session.getAudioTrackIndex(), Math.max(0, startUs - PREROLL_US))) {
+            if (src == null) return;
+            PcmSource.Chunk chunk = new PcmSource.Chunk();
+            boolean done = false;
+            while (!done && src.read(chunk)) {
+                if (progress != null && progress.isCancelled()) return;
+                int channels = src.getChannelCount();
+                if (hapticChIndex >= channels) return;
+                final boolean isFloat = src.getPcmEncoding() == PcmSource.ENCODING_PCM_FLOAT;
+                final int sampleBytes = isFloat ? 4 : 2;
+                final int frameBytes = channels * sampleBytes;
+
+                ByteBuffer buf = chunk.buffer;
+                long frame = Math.round(chunk.presentationTimeUs * (double) sampleRate / 1_000_000.0);
+                int last = chunk.offset + chunk.size - frameBytes + hapticChIndex * sampleBytes;
+                for (int p = chunk.offset + hapticChIndex * sampleBytes; p <= last; p += frameBytes, frame++) {
+                    if (frame < startSample) continue;   // 프리롤(겹침) 구간 버림
+                    if (frame >= endSample) { done = true; break; }
+                    int s = isFloat ? HapticRmsBinner.floatToS16(buf.getFloat(p)) : buf.getShort(p);
+                    int bin = (int) (frame / binSamples) - b0;
+                    sumSq[bin] += s * s;
+                    counts[bin]++;
+                    int a = s < 0 ? -s : s;
+                    if (a > peak[b0 + bin]) peak[b0 + bin] = a;
+                }
+            }
+        }
+
+        for (int i = 0; i < sumSq.length; i++) {
+            if (counts[i] == 0) continue; // 디코드되지 않은 bin은 0 유지
+            rms[b0 + i] = Math.sqrt((double) sumSq[i] / counts[i]);
+        }
+        Log.d(TAG, "chunk [" + b0 + "," + b1 + ") done");
+    }
+}
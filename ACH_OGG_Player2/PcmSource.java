@@ -0,0 +1,48 @@
+package com.example.achoggmusicplayer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 인터리브 LE PCM 공급원(16bit 정수 또는 32bit float — 디코더가 내는 그대로, 변환 없음).
+ * - MediaCodecPcmSource: 기기 코덱 디코드(OGG 등)
+ * - StreamPcmSource: WAV/raw PCM 스트림(순수 자바)
+ * - SyntheticPcmSource: 합성 신호(순수 자바)
+ * 햅틱 RMS 파이프라인은 이 인터페이스만 사용하므로 JVM 단위 테스트/벤치마크에서도 동작한다.
+ */
+public interface PcmSource extends Closeable {
+
+    /** AudioFormat.ENCODING_* 와 같은 값(순수 자바에서도 쓰도록 복제) */
+    int ENCODING_PCM_16BIT = 2;
+    int ENCODING_PCM_FLOAT = 4;
+
+    /** read()가 채우는 재사용 청크. buffer는 다음 read()/close() 전까지만 유효 */
+    final class Chunk {
+        public ByteBuffer buffer;
+        public int offset;
+        public int size;
+        public long presentationTimeUs;
+    }
+
+    int getSampleRate();
+
+    int getChannelCount();
+
+    /** ENCODING_PCM_16BIT 또는 ENCODING_PCM_FLOAT. 첫 read() 이후 확정 */
+    default int getPcmEncoding() { return ENCODING_PCM_16BIT; }
+
+    /** 출력 채널 마스크(AudioFormat.CHANNEL_OUT_*). 모르면 0 */
+    default int getChannelMask() { return 0; }
+
+    /** 샘플 하나의 바이트 수 */
+    static int bytesPerSample(int encoding) {
+        return encoding == ENCODING_PCM_FLOAT ? 4 : 2;
+    }
+
+    /** 다음 PCM 청크를 chunk에 채운다. 스트림 끝이면 false */
+    boolean read(Chunk chunk) throws IOException;
+
+    @Override
+    void close();
+}
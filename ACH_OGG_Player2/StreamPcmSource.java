@@ -0,0 +1,128 @@
+package com.example.achoggmusicplayer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * WAV(16bit PCM) 또는 raw 인터리브 16bit LE PCM 스트림을 읽는 순수 자바 PcmSource.
+ * 기기 없이 JVM에서 햅틱 RMS 파이프라인을 돌릴 때 사용.
+ */
+public final class StreamPcmSource implements PcmSource {
+
+    private static final int FRAMES_PER_CHUNK = 4096;
+
+    private final InputStream in;
+    private final int sampleRate;
+    private final int channels;
+    private final byte[] buf;
+    private final ByteBuffer view;
+    private long remainingBytes; // data 청크 남은 바이트(raw면 무제한)
+    private long framesRead = 0;
+
+    /** raw 인터리브 16bit LE PCM */
+    public StreamPcmSource(InputStream in, int sampleRate, int channels) {
+        this(in, sampleRate, channels, Long.MAX_VALUE);
+    }
+
+    private StreamPcmSource(InputStream in, int sampleRate, int channels, long dataBytes) {
+        this.in = in;
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.buf = new byte[FRAMES_PER_CHUNK * channels * 2];
+        this.view = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
+        this.remainingBytes = dataBytes;
+    }
+
+    /** RIFF/WAVE 헤더를 읽고 data 청크 시작에 위치시킨다(16bit PCM만 지원) */
+    public static StreamPcmSource wav(InputStream in) throws IOException {
+        byte[] h = new byte[12];
+        readFully(in, h, 12);
+        if (!tag(h, 0, "RIFF") || !tag(h, 8, "WAVE")) throw new IOException("not a RIFF/WAVE stream");
+
+        int sampleRate = 0, channels = 0, bits = 0;
+        byte[] ch = new byte[8];
+        while (true) {
+            readFully(in, ch, 8);
+            long size = le32(ch, 4);
+            if (tag(ch, 0, "fmt ")) {
+                if (size < 16) throw new IOException("bad fmt chunk");
+                byte[] fmt = new byte[(int) size];
+                readFully(in, fmt, fmt.length);
+                int format = (fmt[0] & 0xFF) | (fmt[1] & 0xFF) << 8;
+                channels = (fmt[2] & 0xFF) | (fmt[3] & 0xFF) << 8;
+                sampleRate = (int) le32(fmt, 4);
+                bits = (fmt[14] & 0xFF) | (fmt[15] & 0xFF) << 8;
+                if (format != 1 && format != 0xFFFE) throw new IOException("unsupported WAV format " + format);
+                if ((size & 1) != 0) skipFully(in, 1);
+            } else if (tag(ch, 0, "data")) {
+                if (channels <= 0 || bits != 16) throw new IOException("only 16bit PCM WAV supported");
+                return new StreamPcmSource(in, sampleRate, channels, size);
+            } else {
+                skipFully(in, size + (size & 1));
+            }
+        }
+    }
+
+    @Override public int getSampleRate() { return sampleRate; }
+
+    @Override public int getChannelCount() { return channels; }
+
+    @Override
+    public boolean read(Chunk chunk) throws IOException {
+        int frameBytes = channels * 2;
+        int want = (int) Math.min(buf.length, remainingBytes);
+        want -= want % frameBytes;
+        int n = 0;
+        while (n < want) {
+            int r = in.read(buf, n, want - n);
+            if (r < 0) break;
+            n += r;
+        }
+        n -= n % frameBytes; // 불완전 프레임은 버림
+        if (n <= 0) return false;
+        remainingBytes -= n;
+
+        chunk.buffer = view;
+        chunk.offset = 0;
+        chunk.size = n;
+        chunk.presentationTimeUs = framesRead * 1_000_000L / sampleRate;
+        framesRead += n / frameBytes;
+        return true;
+    }
+
+    @Override
+    public void close() {
+        try { in.close(); } catch (IOException ignore) {}
+    }
+
+    private static boolean tag(byte[] b, int off, String t) {
+        for (int i = 0; i < 4; i++) if (b[off + i] != (byte) t.charAt(i)) return false;
+        return true;
+    }
+
+    private static long le32(byte[] b, int off) {
+        return (b[off] & 0xFFL) | (b[off + 1] & 0xFFL) << 8 | (b[off + 2] & 0xFFL) << 16 | (b[off + 3] & 0xFFL) << 24;
+    }
+
+    private static void readFully(InputStream in, byte[] b, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int r = in.read(b, n, len - n);
+            if (r < 0) throw new IOException("unexpected EOF");
+            n += r;
+        }
+    }
+
+    private static void skipFully(InputStream in, long n) throws IOException {
+        while (n > 0) {
+            long s = in.skip(n);
+            if (s <= 0) {
+                if (in.read() < 0) throw new IOException("unexpected EOF");
+                s = 1;
+            }
+            n -= s;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.achoggmusicplayer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 합성 인터리브 16bit PCM(순수 자바). 채널별 Generator로 샘플을 만든다.
+ * 버퍼는 재사용하므로 read() 자체는 할당이 없다(벤치마크 입력용).
+ */
+public final class SyntheticPcmSource implements PcmSource {
+
+    /** channel, frame → 16bit 샘플 값 */
+    public interface Generator {
+        int sample(int channel, long frame);
+    }
+
+    private static final int FRAMES_PER_CHUNK = 4096;
+
+    private final int sampleRate;
+    private final int channels;
+    private final long totalFrames;
+    private final Generator generator;
+    private final ByteBuffer buf;
+    private long frame = 0;
+
+    public SyntheticPcmSource(int sampleRate, int channels, long totalFrames, Generator generator) {
+        this.sampleRate = sampleRate;
+        this.channels = channels;
+        this.totalFrames = totalFrames;
+        this.generator = generator;
+        this.buf = ByteBuffer.allocate(FRAMES_PER_CHUNK * channels * 2).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /** 모든 채널에 같은 사인파(freqHz, amplitude 0~32767) */
+    public static SyntheticPcmSource sine(int sampleRate, int channels, long totalFrames,
+                                          double freqHz, int amplitude) {
+        final double w = 2.0 * Math.PI * freqHz / sampleRate;
+        return new SyntheticPcmSource(sampleRate, channels, totalFrames,
+                (ch, f) -> (int) Math.round(Math.sin(w * f) * amplitude));
+    }
+
+    /** 오디오 채널은 무음, hapticCh만 주기 pulseMs의 on/off 펄스(0 또는 amplitude) */
+    public static SyntheticPcmSource hapticPulse(int sampleRate, int channels, int hapticCh, long totalFrames,
+                                                 int pulseMs, int amplitude) {
+        final long period = Math.max(2, (long) sampleRate * pulseMs / 1000 * 2);
+        return new SyntheticPcmSource(sampleRate, channels, totalFrames,
+                (ch, f) -> ch == hapticCh && (f % period) < period / 2 ? amplitude : 0);
+    }
+
+    public void rewind() { frame = 0; }
+
+    @Override public int getSampleRate() { return sampleRate; }
+
+    @Override public int getChannelCount() { return channels; }
+
+    @Override
+    public boolean read(Chunk chunk) {
+        if (frame >= totalFrames) return false;
+        int n = (int) Math.min(FRAMES_PER_CHUNK, totalFrames - frame);
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            long f = frame + i;
+            for (int c = 0; c < channels; c++, p += 2) {
+                int s = generator.sample(c, f);
+                buf.putShort(p, (short) Math.max(-32768, Math.min(32767, s)));
+            }
+        }
+        chunk.buffer = buf;
+        chunk.offset = 0;
+        chunk.size = p;
+        chunk.presentationTimeUs = frame * 1_000_000L / sampleRate;
+        frame += n;
+        return true;
+    }
+
+    @Override
+    public void close() {}
+}
@@ -0,0 +1,185 @@
+package com.example.achoggmusicplayer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * OggHapticInspector.extractRmsAmps 전체 경로(PcmSource → HapticRmsBinner → 셰이핑)를 기기 없이 검사.
+ * 합성 펄스(SyntheticPcmSource)와 같은 신호의 WAV(StreamPcmSource), float 출력이 같은 파형을 내야 한다.
+ */
+public class HapticRmsExtractionTest {
+
+    private static final int SR = 48_000;
+    private static final int CHANNELS = 3;     // L, R, H
+    private static final int HAPTIC_CH = 2;
+    private static final int BIN_MS = 10;
+    private static final int BIN_SAMPLES = SR * BIN_MS / 1000;
+    private static final long TOTAL_MS = 1_000;
+    private static final long TOTAL_FRAMES = SR * TOTAL_MS / 1000;
+    private static final int BINS = (int) (TOTAL_MS / BIN_MS);
+    private static final int PULSE_MS = 50;    // 50ms on / 50ms off
+    private static final int AMPLITUDE = 16_384;
+
+    private HapticEnvelopeChain.Config saved;
+
+    @Before
+    public void linearRms() {
+        saved = OggHapticInspector.getEnvelopeConfig();
+        OggHapticInspector.setEnvelopeConfig(HapticEnvelopeChain.Config.rmsOnly());
+    }
+
+    @After
+    public void restoreConfig() {
+        OggHapticInspector.setEnvelopeConfig(saved);
+    }
+
+    private static SyntheticPcmSource pulse(long frames) {
+        return SyntheticPcmSource.hapticPulse(SR, CHANNELS, HAPTIC_CH, frames, PULSE_MS, AMPLITUDE);
+    }
+
+    private static int[] extract(PcmSource src) throws IOException {
+        try {
+            return OggHapticInspector.extractRmsAmps(src, HAPTIC_CH, BIN_SAMPLES, BINS, TOTAL_MS, null);
+        } finally {
+            src.close();
+        }
+    }
+
+    @Test
+    public void pulse_binCountAndPositions() throws IOException {
+        int[] amps = extract(pulse(TOTAL_FRAMES));
+
+        assertEquals(BINS, amps.length);
+        int onLevel = Math.round(AMPLITUDE * 255f / 32767f);
+        int binsPerHalf = PULSE_MS / BIN_MS;
+        for (int i = 0; i < BINS; i++) {
+            boolean on = (i / binsPerHalf) % 2 == 0;
+            assertEquals("bin " + i, on ? onLevel : 0, amps[i]);
+        }
+    }
+
+    @Test
+    public void shortSource_padsToExpectedBins() throws IOException {
+        int[] amps = extract(pulse(TOTAL_FRAMES / 2));
+
+        assertEquals(BINS, amps.length);
+        assertTrue(amps[0] > 0);
+        for (int i = BINS / 2; i < BINS; i++) assertEquals("bin " + i, 0, amps[i]);
+    }
+
+    @Test
+    public void missingHapticChannel_returnsNull() throws IOException {
+        PcmSource stereo = SyntheticPcmSource.hapticPulse(SR, 2, 1, TOTAL_FRAMES, PULSE_MS, AMPLITUDE);
+        assertNull(extract(stereo));
+    }
+
+    @Test
+    public void wav_matchesSynthetic() throws IOException {
+        byte[] wav = toWav(pulse(TOTAL_FRAMES));
+        int[] fromWav = extract(StreamPcmSource.wav(new ByteArrayInputStream(wav)));
+
+        assertArrayEquals(extract(pulse(TOTAL_FRAMES)), fromWav);
+    }
+
+    @Test
+    public void float_matchesPcm16() throws IOException {
+        int[] pcm16 = extract(pulse(TOTAL_FRAMES));
+        int[] pcmFloat = extract(new FloatPcmSource(pulse(TOTAL_FRAMES)));
+
+        assertArrayEquals(pcm16, pcmFloat);
+    }
+
+    @Test
+    public void float_matchesPcm16_withDefaultShaping() throws IOException {
+        OggHapticInspector.setEnvelopeConfig(HapticEnvelopeChain.Config.defaults());
+        int[] pcm16 = extract(pulse(TOTAL_FRAMES));
+        int[] pcmFloat = extract(new FloatPcmSource(pulse(TOTAL_FRAMES)));
+
+        assertEquals(pcm16.length, pcmFloat.length);
+        for (int i = 0; i < pcm16.length; i++) {
+            // float → 16bit 변환의 1 LSB 차이만 허용
+            assertTrue("bin " + i + ": " + pcm16[i] + " vs " + pcmFloat[i], Math.abs(pcm16[i] - pcmFloat[i]) <= 1);
+        }
+    }
+
+    /** 16bit 소스를 전부 읽어 RIFF/WAVE(앞에 LIST 청크 포함) 바이트로 */
+    private static byte[] toWav(PcmSource src) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        PcmSource.Chunk chunk = new PcmSource.Chunk();
+        while (src.read(chunk)) {
+            byte[] b = new byte[chunk.size];
+            ByteBuffer view = chunk.buffer.duplicate();
+            view.position(chunk.offset);
+            view.get(b);
+            data.write(b);
+        }
+        src.close();
+
+        byte[] list = {'I', 'N', 'F', 'O', 'x'}; // 홀수 크기 → 패딩 바이트까지 건너뛰는지 확인
+        ByteBuffer h = ByteBuffer.allocate(12 + 8 + 16 + 8 + list.length + 1 + 8).order(ByteOrder.LITTLE_ENDIAN);
+        h.put("RIFF".getBytes()).putInt(h.capacity() - 8 + data.size()).put("WAVE".getBytes());
+        h.put("fmt ".getBytes()).putInt(16)
+                .putShort((short) 1).putShort((short) src.getChannelCount()).putInt(src.getSampleRate())
+                .putInt(src.getSampleRate() * src.getChannelCount() * 2)
+                .putShort((short) (src.getChannelCount() * 2)).putShort((short) 16);
+        h.put("LIST".getBytes()).putInt(list.length).put(list).put((byte) 0);
+        h.put("data".getBytes()).putInt(data.size());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(h.array());
+        data.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /** 16bit 소스를 float(±1.0) 인터리브로 바꿔 내보냄(float 출력 디코더 흉내) */
+    private static final class FloatPcmSource implements PcmSource {
+        private final PcmSource in;
+        private final Chunk inChunk = new Chunk();
+        private ByteBuffer buf;
+
+        FloatPcmSource(PcmSource in) {
+            this.in = in;
+        }
+
+        @Override public int getSampleRate() { return in.getSampleRate(); }
+
+        @Override public int getChannelCount() { return in.getChannelCount(); }
+
+        @Override public int getPcmEncoding() { return ENCODING_PCM_FLOAT; }
+
+        @Override
+        public boolean read(Chunk chunk) throws IOException {
+            if (!in.read(inChunk)) return false;
+            int samples = inChunk.size / 2;
+            if (buf == null || buf.capacity() < samples * 4) {
+                buf = ByteBuffer.allocate(samples * 4).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            ByteBuffer src = inChunk.buffer.order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < samples; i++) {
+                buf.putFloat(i * 4, src.getShort(inChunk.offset + i * 2) / 32767f);
+            }
+            chunk.buffer = buf;
+            chunk.offset = 0;
+            chunk.size = samples * 4;
+            chunk.presentationTimeUs = inChunk.presentationTimeUs;
+            return true;
+        }
+
+        @Override
+        public void close() {
+            in.close();
+        }
+    }
+}
@@ -7,7 +7,9 @@ import android.net.Uri;
 import android.os.Build; 
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.view.Choreographer;
 import android.view.MotionEvent; 
 import android.widget.Button;
 import android.widget.TextView;
@@ -30,8 +32,9 @@ import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Locale;
 
-public class MainActivity extends AppCompatActivity implements android.hardware.SensorEventListener {
+public class MainActivity extends AppCompatActivity {
 
 private android.hardware.SensorManager sensorManager;
 private android.hardware.Sensor accelerometer, gyroscope;
@@ -44,11 +47,13 @@ private LineGraphSeries<DataPoint> accelXSeries, accelYSeries, accelZSeries;
 private int graphXIndex = 0;
 private static final int grid_size = 20;
 
+// ===== 아래 상태는 센서 스레드 전용 (UI에서 바꿀 때는 pipeline.post) =====
 private BufferedWriter csvWriter;
 private File csvFile;
 private boolean isCsvRecording = false;
 private boolean isTouching = false;
 private boolean shouldInsertBlank = false;
+private final SimpleDateFormat timeFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
 
 private int recordDelay = 0;
 private static final int MARGIN_TIME = 3;
@@ -61,8 +66,49 @@ private long[][] accelTimeQueue = new long[MARGIN_TIME][2];
 private int gIndex;
 private int aIndex;
 
+// 센서 타임스탬프(event.timestamp, ns) 기준. 이벤트 전달 지연/UI 부하와 무관한 샘플 시각
 private long lastGyroTimestamp = -1;
 private long lastAccelTimestamp = -1;
+private long wallClockOffsetNs = Long.MIN_VALUE; // 센서 시계(elapsedRealtime) → 벽시계 변환, 첫 이벤트에서 한 번 계산
+private int gyroGraphIndex = 0, accelGraphIndex = 0;
+
+// ===== 센서 스레드 → UI 스냅샷: 센서별(지연 큐를 거친) 표시 값 + 그래프 X 인덱스 =====
+private static final int S_GYRO_X = 0, S_GYRO_Y = 1, S_GYRO_Z = 2, S_GYRO_INDEX = 3,
+        S_ACCEL_X = 4, S_ACCEL_Y = 5, S_ACCEL_Z = 6, S_ACCEL_INDEX = 7, S_COUNT = 8;
+private final SensorSnapshot snapshot = new SensorSnapshot(S_COUNT);
+private final float[] shownGyro = new float[3], shownAccel = new float[3]; // 센서 스레드 전용
+private final double[] read = new double[S_COUNT];                        // UI 스레드 전용
+private double uiGyroIndex = 0, uiAccelIndex = 0;
+private long uiVersion = 0;
+private SensorPipeline pipeline;
+
+// UI: 프레임마다 스냅샷을 읽어 바뀐 센서만 텍스트/그래프 갱신
+private final Choreographer.FrameCallback uiFrame = new Choreographer.FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        long v = snapshot.read(read);
+        if (v != uiVersion) {
+            uiVersion = v;
+            if (read[S_GYRO_INDEX] != uiGyroIndex) {
+                uiGyroIndex = read[S_GYRO_INDEX];
+                float yaw = (float) read[S_GYRO_X], pitch = (float) read[S_GYRO_Y], roll = (float) read[S_GYRO_Z];
+                gyroTextView.setText(String.format("Yaw: %+06.2f, Pitch: %+06.2f, Roll: %+06.2f", yaw, pitch, roll));
+                gyroYawSeries.appendData(new DataPoint(uiGyroIndex, yaw), true, 100);
+                gyroPitchSeries.appendData(new DataPoint(uiGyroIndex, pitch), true, 100);
+                gyroRollSeries.appendData(new DataPoint(uiGyroIndex, roll), true, 100);
+            }
+            if (read[S_ACCEL_INDEX] != uiAccelIndex) {
+                uiAccelIndex = read[S_ACCEL_INDEX];
+                float ax = (float) read[S_ACCEL_X], ay = (float) read[S_ACCEL_Y], az = (float) read[S_ACCEL_Z];
+                accelTextView.setText(String.format("Accel X: %+06.2f, Y: %+06.2f, Z: %+06.2f", ax, ay, az));
+                accelXSeries.appendData(new DataPoint(uiAccelIndex, ax), true, 100);
+                accelYSeries.appendData(new DataPoint(uiAccelIndex, ay), true, 100);
+                accelZSeries.appendData(new DataPoint(uiAccelIndex, az), true, 100);
+            }
+        }
+        Choreographer.getInstance().postFrameCallback(this);
+    }
+};
 
 private static final int REQUEST_MANAGE_STORAGE = 1001;
 
@@ -99,6 +145,10 @@ protected void onCreate(Bundle savedInstanceState) {
         accelerometer = sensorManager.getDefaultSensor(android.hardware.Sensor.TYPE_ACCELEROMETER);
         gyroscope = sensorManager.getDefaultSensor(android.hardware.Sensor.TYPE_GYROSCOPE);
     }
+    // 센서 처리(지연 큐, CSV 기록)는 전용 센서 스레드에서
+    pipeline = new SensorPipeline(sensorManager, "ObjectSelectSensors", this::onSensorEvent)
+            .add(gyroscope, android.hardware.SensorManager.SENSOR_DELAY_GAME)
+            .add(accelerometer, android.hardware.SensorManager.SENSOR_DELAY_GAME);
 
     // 그래프 초기화
     gyroYawSeries = new LineGraphSeries<>();
@@ -132,7 +182,8 @@ protected void onCreate(Bundle savedInstanceState) {
     accelGraph.getViewport().setMaxX(100);
     accelGraph.getViewport().setScrollable(true);
 
-    startCsvButton.setOnClickListener(v -> {
+    // CSV 상태는 센서 스레드가 소유 → 버튼은 작업을 넘기고, 결과 Toast만 UI로
+    startCsvButton.setOnClickListener(v -> pipeline.post(() -> {
         if (!isCsvRecording) {
             try {
                 String fileName = "sensor_data_" + System.currentTimeMillis() + ".csv";
@@ -142,53 +193,75 @@ protected void onCreate(Bundle savedInstanceState) {
                 csvWriter = new BufferedWriter(new FileWriter(csvFile));
                 csvWriter.write("Timestamp,TimeString,SensorType,X,Y,Z,Interval(ms)\n");
                 isCsvRecording = true;
-                Toast.makeText(this, "CSV 저장 준비됨 (터치 시 저장)", Toast.LENGTH_SHORT).show();
+                toast("CSV 저장 준비됨 (터치 시 저장)");
             } catch (IOException e) {
                 e.printStackTrace();
-                Toast.makeText(this, "파일 생성 실패", Toast.LENGTH_SHORT).show();
+                toast("파일 생성 실패");
             }
         }
-    });
+    }));
 
-    stopCsvButton.setOnClickListener(v -> {
+    stopCsvButton.setOnClickListener(v -> pipeline.post(() -> {
         if (isCsvRecording && csvWriter != null) {
             try {
                 csvWriter.close();
                 csvWriter = null;
                 isCsvRecording = false;
-                Toast.makeText(this, "CSV 저장 중지됨", Toast.LENGTH_SHORT).show();
+                toast("CSV 저장 중지됨");
             } catch (IOException e) {
                 e.printStackTrace();
             }
         }
-    });
+    }));
 
-    deleteCsvButton.setOnClickListener(v -> {
+    deleteCsvButton.setOnClickListener(v -> pipeline.post(() -> {
         if (csvFile != null && csvFile.exists()) {
+            closeCsvQuietly();
             boolean deleted = csvFile.delete();
-            Toast.makeText(this, deleted ? "CSV 삭제됨" : "삭제 실패", Toast.LENGTH_SHORT).show();
+            toast(deleted ? "CSV 삭제됨" : "삭제 실패");
             if (deleted) {
                 csvWriter = null;
                 csvFile = null;
                 isCsvRecording = false;
             }
         } else {
-            Toast.makeText(this, "삭제할 파일 없음", Toast.LENGTH_SHORT).show();
+            toast("삭제할 파일 없음");
         }
-    });
+    }));
+}
+
+private void toast(String msg) {
+    runOnUiThread(() -> Toast.makeText(this, msg, Toast.LENGTH_SHORT).show());
+}
+
+/** 센서 스레드 */
+private void closeCsvQuietly() {
+    if (csvWriter != null) {
+        try {
+            csvWriter.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        csvWriter = null;
+    }
 }
 
 @Override
 public boolean dispatchTouchEvent(MotionEvent event) {
+    // 기록 상태는 센서 스레드 소유 → 터치 상태 변경도 같은 스레드 순서로 전달
     switch (event.getAction()) {
         case MotionEvent.ACTION_DOWN:
-            isTouching = true;
-            shouldInsertBlank = true;
+            pipeline.post(() -> {
+                isTouching = true;
+                shouldInsertBlank = true;
+            });
             break;
         case MotionEvent.ACTION_UP:
         case MotionEvent.ACTION_CANCEL:
-            recordDelay = MARGIN_TIME*4;
-            isTouching = false;
+            pipeline.post(() -> {
+                recordDelay = MARGIN_TIME*4;
+                isTouching = false;
+            });
             break;
     }
     return super.dispatchTouchEvent(event);
@@ -197,124 +270,134 @@ public boolean dispatchTouchEvent(MotionEvent event) {
 @Override
 protected void onResume() {
     super.onResume();
-    if (sensorManager != null) {
-        if (gyroscope != null) {
-            sensorManager.registerListener(this, gyroscope, android.hardware.SensorManager.SENSOR_DELAY_GAME);
-        }
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, android.hardware.SensorManager.SENSOR_DELAY_GAME);
-        }
-    }
+    pipeline.start();
+    Choreographer.getInstance().postFrameCallback(uiFrame);
 }
 
 @Override
-public void onSensorChanged(android.hardware.SensorEvent event) {
-    runOnUiThread(() -> {
-        graphXIndex++;
-        long timestamp = System.currentTimeMillis();
-        //String timeString = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp));
-        String line = "";
-        long interval = 0;
-
-        if (event.sensor.getType() == android.hardware.Sensor.TYPE_GYROSCOPE) {
-            /*
-            interval = (lastGyroTimestamp > 0) ? (timestamp - lastGyroTimestamp) : 0;
-            lastGyroTimestamp = timestamp;
-
-            float yaw = event.values[0];
-            float pitch = event.values[1];
-            float roll = event.values[2];
-            */
-            int nextIndex = (gIndex +1) % MARGIN_TIME;
-
-            gyroQueue[gIndex][0] = event.values[0];
-            gyroQueue[gIndex][1] = event.values[1];
-            gyroQueue[gIndex][2] = event.values[2];
-            gyroTimeQueue[gIndex][0] = timestamp;
-            gyroTimeQueue[gIndex][1] = (lastGyroTimestamp > 0) ? (timestamp - lastGyroTimestamp) : 0;
-            lastGyroTimestamp = timestamp;
-
-            float yaw = gyroQueue[nextIndex][0];
-            float pitch = gyroQueue[nextIndex][1];
-            float roll = gyroQueue[nextIndex][2];
-            timestamp = gyroTimeQueue[nextIndex][0];
-            interval = gyroTimeQueue[nextIndex][1];
-            String timeString = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp));
-
-            gIndex = nextIndex;      
-
-            gyroTextView.setText(String.format("Yaw: %+06.2f, Pitch: %+06.2f, Roll: %+06.2f", yaw, pitch, roll));
-            gyroYawSeries.appendData(new DataPoint(graphXIndex, yaw), true, 100);
-            gyroPitchSeries.appendData(new DataPoint(graphXIndex, pitch), true, 100);
-            gyroRollSeries.appendData(new DataPoint(graphXIndex, roll), true, 100);
-            line = String.format("%d,%s,GYROSCOPE,%.4f,%.4f,%.4f,%d\n",
-                    timestamp, timeString, yaw, pitch, roll, interval);
-        } else if (event.sensor.getType() == android.hardware.Sensor.TYPE_ACCELEROMETER) {
-           /*
-            interval = (lastAccelTimestamp > 0) ? (timestamp - lastAccelTimestamp) : 0;
-            lastAccelTimestamp = timestamp;
-
-            float ax = event.values[0];
-            float ay = event.values[1];
-            float az = event.values[2];
-            */
-            
-            int nextIndex = (aIndex + 1) % MARGIN_TIME;
-            
-            accelQueue[aIndex][0] = event.values[0];
-            accelQueue[aIndex][1] = event.values[1];
-            accelQueue[aIndex][2] = event.values[2];
-            accelTimeQueue[aIndex][0] = timestamp;
-            accelTimeQueue[aIndex][1] = (lastAccelTimestamp > 0) ? (timestamp - lastAccelTimestamp) : 0;
-            lastAccelTimestamp = timestamp;
-
-            float ax = accelQueue[nextIndex][0];
-            float ay = accelQueue[nextIndex][1];
-            float az = accelQueue[nextIndex][2];
-            timestamp = accelTimeQueue[nextIndex][0];
-            interval = accelTimeQueue[nextIndex][1];
-            String timeString = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp));
-
-            aIndex = nextIndex;
-
-            accelTextView.setText(String.format("Accel X: %+06.2f, Y: %+06.2f, Z: %+06.2f", ax, ay, az));
-            accelXSeries.appendData(new DataPoint(graphXIndex, ax), true, 100);
-            accelYSeries.appendData(new DataPoint(graphXIndex, ay), true, 100);
-            accelZSeries.appendData(new DataPoint(graphXIndex, az), true, 100);
-            line = String.format("%d,%s,ACCELEROMETER,%.4f,%.4f,%.4f,%d\n",
-                    timestamp, timeString, ax, ay, az, interval);
-        }
-
-        //if (isCsvRecording && isTouching && csvWriter != null) {
-        if (isCsvRecording && (isTouching || (recordDelay >0)) && csvWriter != null) {
-            try {
-                recordDelay--;
-                if (shouldInsertBlank) {
-                    csvWriter.write("\n");
-                    shouldInsertBlank = false;
-                }
-                csvWriter.write(line);
-                csvWriter.flush();
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-        }
-    });
+protected void onPause() {
+    super.onPause();
+    pipeline.stop();
+    Choreographer.getInstance().removeFrameCallback(uiFrame);
 }
 
-@Override
-public void onAccuracyChanged(android.hardware.Sensor sensor, int accuracy) {}
+/** 센서 스레드: 지연 큐 → CSV 기록 → 표시 값 스냅샷 게시 */
+private void onSensorEvent(android.hardware.SensorEvent event) {
+    graphXIndex++;
+    long timestamp = event.timestamp; // ns
+    if (wallClockOffsetNs == Long.MIN_VALUE) {
+        wallClockOffsetNs = System.currentTimeMillis() * 1_000_000L - SystemClock.elapsedRealtimeNanos();
+    }
+    //String timeString = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(timestamp));
+    String line = "";
+    long interval = 0;
+
+    if (event.sensor.getType() == android.hardware.Sensor.TYPE_GYROSCOPE) {
+        /*
+        interval = (lastGyroTimestamp > 0) ? (timestamp - lastGyroTimestamp) : 0;
+        lastGyroTimestamp = timestamp;
+
+        float yaw = event.values[0];
+        float pitch = event.values[1];
+        float roll = event.values[2];
+        */
+        int nextIndex = (gIndex +1) % MARGIN_TIME;
+
+        gyroQueue[gIndex][0] = event.values[0];
+        gyroQueue[gIndex][1] = event.values[1];
+        gyroQueue[gIndex][2] = event.values[2];
+        gyroTimeQueue[gIndex][0] = timestamp;
+        gyroTimeQueue[gIndex][1] = (lastGyroTimestamp > 0) ? (timestamp - lastGyroTimestamp) : 0;
+        lastGyroTimestamp = timestamp;
+
+        float yaw = gyroQueue[nextIndex][0];
+        float pitch = gyroQueue[nextIndex][1];
+        float roll = gyroQueue[nextIndex][2];
+        timestamp = gyroTimeQueue[nextIndex][0];
+        interval = gyroTimeQueue[nextIndex][1];
+        long wallMs = (timestamp + wallClockOffsetNs) / 1_000_000L;
+        String timeString = timeFormat.format(new Date(wallMs));
+
+        gIndex = nextIndex;      
+
+        shownGyro[0] = yaw;
+        shownGyro[1] = pitch;
+        shownGyro[2] = roll;
+        gyroGraphIndex = graphXIndex;
+        line = String.format("%d,%s,GYROSCOPE,%.4f,%.4f,%.4f,%.3f\n",
+                wallMs, timeString, yaw, pitch, roll, interval * 1e-6);
+    } else if (event.sensor.getType() == android.hardware.Sensor.TYPE_ACCELEROMETER) {
+       /*
+        interval = (lastAccelTimestamp > 0) ? (timestamp - lastAccelTimestamp) : 0;
+        lastAccelTimestamp = timestamp;
+
+        float ax = event.values[0];
+        float ay = event.values[1];
+        float az = event.values[2];
+        */
+        
+        int nextIndex = (aIndex + 1) % MARGIN_TIME;
+        
+        accelQueue[aIndex][0] = event.values[0];
+        accelQueue[aIndex][1] = event.values[1];
+        accelQueue[aIndex][2] = event.values[2];
+        accelTimeQueue[aIndex][0] = timestamp;
+        accelTimeQueue[aIndex][1] = (lastAccelTimestamp > 0) ? (timestamp - lastAccelTimestamp) : 0;
+        lastAccelTimestamp = timestamp;
+
+        float ax = accelQueue[nextIndex][0];
+        float ay = accelQueue[nextIndex][1];
+        float az = accelQueue[nextIndex][2];
+        timestamp = accelTimeQueue[nextIndex][0];
+        interval = accelTimeQueue[nextIndex][1];
+        long wallMs = (timestamp + wallClockOffsetNs) / 1_000_000L;
+        String timeString = timeFormat.format(new Date(wallMs));
+
+        aIndex = nextIndex;
+
+        shownAccel[0] = ax;
+        shownAccel[1] = ay;
+        shownAccel[2] = az;
+        accelGraphIndex = graphXIndex;
+        line = String.format("%d,%s,ACCELEROMETER,%.4f,%.4f,%.4f,%.3f\n",
+                wallMs, timeString, ax, ay, az, interval * 1e-6);
+    } else {
+        return;
+    }
 
-@Override
-protected void onDestroy() {
-    super.onDestroy();
-    if (csvWriter != null) {
+    //if (isCsvRecording && isTouching && csvWriter != null) {
+    if (isCsvRecording && (isTouching || (recordDelay >0)) && csvWriter != null) {
         try {
-            csvWriter.close();
+            recordDelay--;
+            if (shouldInsertBlank) {
+                csvWriter.write("\n");
+                shouldInsertBlank = false;
+            }
+            csvWriter.write(line);
+            csvWriter.flush();
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
+
+    snapshot.beginWrite();
+    snapshot.put(S_GYRO_X, shownGyro[0]);
+    snapshot.put(S_GYRO_Y, shownGyro[1]);
+    snapshot.put(S_GYRO_Z, shownGyro[2]);
+    snapshot.put(S_GYRO_INDEX, gyroGraphIndex);
+    snapshot.put(S_ACCEL_X, shownAccel[0]);
+    snapshot.put(S_ACCEL_Y, shownAccel[1]);
+    snapshot.put(S_ACCEL_Z, shownAccel[2]);
+    snapshot.put(S_ACCEL_INDEX, accelGraphIndex);
+    snapshot.endWrite();
+}
+
+@Override
+protected void onDestroy() {
+    super.onDestroy();
+    // 파일 닫기는 기록 스레드에서 → release()가 큐에 남은 작업까지 처리한 뒤 종료
+    pipeline.post(this::closeCsvQuietly);
+    pipeline.release();
 }
 
 private void checkStoragePermission() {
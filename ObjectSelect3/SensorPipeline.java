@@ -0,0 +1,106 @@
+package com.example.objectselect3;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 센서 이벤트를 전용 HandlerThread에서 받아 처리하는 파이프라인.
+ * - 필터/융합은 Processor에서 센서 스레드로 실행 → UI가 바빠도 센서 전달이 밀리지 않음
+ * - 결과는 SensorSnapshot으로 게시하고 UI는 프레임마다 읽기만 한다(setText 등은 UI 쪽에서)
+ * - UI에서 처리 상태를 바꿀 일(리셋 등)은 post()로 센서 스레드에 넘겨 상태를 한 스레드에만 둔다
+ * 스레드는 release()까지 하나만 유지(start/stop은 등록/해제만) → 쓰는 쪽이 항상 한 스레드
+ */
+public final class SensorPipeline implements SensorEventListener {
+
+    /** 센서 스레드에서 호출 */
+    public interface Processor {
+        void onSensorChanged(SensorEvent event);
+    }
+
+    private final SensorManager sensorManager;
+    private final String name;
+    private final Processor processor;
+    private final List<Sensor> sensors = new ArrayList<>();
+    private final List<Integer> periodsUs = new ArrayList<>();
+    private HandlerThread thread;
+    private Handler handler;
+    private boolean registered = false;
+    private boolean released = false;
+
+    public SensorPipeline(SensorManager sensorManager, String name, Processor processor) {
+        this.sensorManager = sensorManager;
+        this.name = name;
+        this.processor = processor;
+    }
+
+    /** 등록할 센서 추가(null이면 무시). start() 전에 호출 */
+    public SensorPipeline add(Sensor sensor, int samplingPeriodUs) {
+        if (sensor != null) {
+            sensors.add(sensor);
+            periodsUs.add(samplingPeriodUs);
+        }
+        return this;
+    }
+
+    public boolean hasSensors() {
+        return !sensors.isEmpty();
+    }
+
+    /** 센서 스레드 시작(처음 한 번) + 리스너 등록 */
+    public void start() {
+        if (registered || released || sensorManager == null) return;
+        ensureThread();
+        for (int i = 0; i < sensors.size(); i++) {
+            sensorManager.registerListener(this, sensors.get(i), periodsUs.get(i), handler);
+        }
+        registered = true;
+    }
+
+    /** 리스너 해제(스레드는 유지) */
+    public void stop() {
+        if (!registered) return;
+        sensorManager.unregisterListener(this);
+        registered = false;
+    }
+
+    /** 해제 + 스레드 종료(이미 큐에 들어온 이벤트는 처리 후 종료) */
+    public void release() {
+        stop();
+        released = true;
+        if (thread != null) {
+            thread.quitSafely();
+            thread = null;
+            handler = null;
+        }
+    }
+
+    /** 센서 스레드에서 실행. release() 후면 false */
+    public boolean post(Runnable r) {
+        if (released) return false;
+        ensureThread();
+        return handler != null && handler.post(r);
+    }
+
+    private void ensureThread() {
+        if (thread != null) return;
+        thread = new HandlerThread(name, Process.THREAD_PRIORITY_DISPLAY);
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        processor.onSensorChanged(event);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
+}
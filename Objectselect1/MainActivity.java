@@ -3,7 +3,6 @@ package com.example.objectselect1;
 import android.graphics.Color;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
 import android.os.Handler;
@@ -22,7 +21,7 @@ import com.github.mikephil.charting.data.LineDataSet;
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements SensorEventListener {
+public class MainActivity extends AppCompatActivity {
     private SensorManager sensorManager;
     private Sensor gyroscopeSensor;
     private TextView sensorValues;
@@ -36,9 +35,18 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private static final float SCROLL_SENSITIVITY = 2000f; // ✅ 스크롤 감도 조정
     private static final float MIN_SCROLL_THRESHOLD = 0.02f; // ✅ 불필요한 움직임 방지
 
-    private final ArrayList<Float> yawValues = new ArrayList<>();
-    private final ArrayList<Float> pitchValues = new ArrayList<>();
-    private final ArrayList<Float> rollValues = new ArrayList<>();
+    // 센서 스레드 → UI 스냅샷: 최신 값 + 누적합/개수/누적 스크롤량 (UI는 직전 읽기와의 차이로 구간 평균/스크롤 계산)
+    private static final int S_YAW = 0, S_PITCH = 1, S_ROLL = 2,
+            S_SUM_YAW = 3, S_SUM_PITCH = 4, S_SUM_ROLL = 5, S_SAMPLES = 6, S_SCROLL_PX = 7, S_COUNT = 8;
+    private final SensorSnapshot snapshot = new SensorSnapshot(S_COUNT);
+    private SensorPipeline pipeline;
+    // 센서 스레드 전용 누적값
+    private double sumYaw = 0, sumPitch = 0, sumRoll = 0, scrollPx = 0;
+    private long samples = 0;
+    // UI 스레드 전용: 직전 구간 끝의 누적값
+    private final double[] read = new double[S_COUNT];
+    private final double[] prev = new double[S_COUNT];
+    private long shownVersion = 0;
 
     private final Runnable timeWindowRunnable = new Runnable() {
         @Override
@@ -84,57 +92,67 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         sensorManager = (SensorManager) getSystemService(SENSOR_SERVICE);
         if (sensorManager != null) {
             gyroscopeSensor = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
-            if (gyroscopeSensor != null) {
-                sensorManager.registerListener(this, gyroscopeSensor, SensorManager.SENSOR_DELAY_GAME);
-            } else {
+            if (gyroscopeSensor == null) {
                 sensorValues.setText("Gyroscope Sensor Not Available");
             }
         }
+        // 📡 센서 처리는 전용 스레드에서 (UI는 Time Window에서 스냅샷만 읽음)
+        pipeline = new SensorPipeline(sensorManager, "ObjectSelectSensors", this::onSensorEvent)
+                .add(gyroscopeSensor, SensorManager.SENSOR_DELAY_GAME);
+        pipeline.start();
 
         // 📌 Time Window 시작
         handler.post(timeWindowRunnable);
     }
 
-    @Override
-    public void onSensorChanged(SensorEvent event) {
+    /** 센서 스레드: 값 누적 + 스크롤량 계산 후 스냅샷 게시 */
+    private void onSensorEvent(SensorEvent event) {
         if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
             float yaw = event.values[0];
             float pitch = event.values[1];
             float roll = event.values[2];
 
-            sensorValues.setText(String.format("Yaw: %.2f | Pitch: %.2f | Roll: %.2f", yaw, pitch, roll));
-
-            yawValues.add(yaw);
-            pitchValues.add(pitch);
-            rollValues.add(roll);
+            sumYaw += yaw;
+            sumPitch += pitch;
+            sumRoll += roll;
+            samples++;
 
             // 📌 PITCH 변화량을 이용한 스크롤 (불필요한 떨림 방지)
             if (Math.abs(pitch) > MIN_SCROLL_THRESHOLD) {
-                recyclerView.smoothScrollBy((int) (pitch * SCROLL_SENSITIVITY), 0);
+                scrollPx += (int) (pitch * SCROLL_SENSITIVITY);
             }
+
+            snapshot.beginWrite();
+            snapshot.put(S_YAW, yaw);
+            snapshot.put(S_PITCH, pitch);
+            snapshot.put(S_ROLL, roll);
+            snapshot.put(S_SUM_YAW, sumYaw);
+            snapshot.put(S_SUM_PITCH, sumPitch);
+            snapshot.put(S_SUM_ROLL, sumRoll);
+            snapshot.put(S_SAMPLES, samples);
+            snapshot.put(S_SCROLL_PX, scrollPx);
+            snapshot.endWrite();
         }
     }
 
+    /** UI: 직전 구간 이후 들어온 샘플의 평균을 그래프에, 누적 스크롤량 차이만큼 스크롤 */
     private void processTimeWindow() {
-        if (!yawValues.isEmpty() && !pitchValues.isEmpty() && !rollValues.isEmpty()) {
-            float avgYaw = calculateAverage(yawValues);
-            float avgPitch = calculateAverage(pitchValues);
-            float avgRoll = calculateAverage(rollValues);
+        long v = snapshot.read(read);
+        if (v == shownVersion) return;
+        shownVersion = v;
 
-            addEntry(avgYaw, avgPitch, avgRoll);
+        sensorValues.setText(String.format("Yaw: %.2f | Pitch: %.2f | Roll: %.2f", read[S_YAW], read[S_PITCH], read[S_ROLL]));
 
-            yawValues.clear();
-            pitchValues.clear();
-            rollValues.clear();
-        }
-    }
+        int scroll = (int) (read[S_SCROLL_PX] - prev[S_SCROLL_PX]);
+        if (scroll != 0) recyclerView.smoothScrollBy(scroll, 0);
 
-    private float calculateAverage(List<Float> values) {
-        float sum = 0f;
-        for (float v : values) {
-            sum += v;
+        double n = read[S_SAMPLES] - prev[S_SAMPLES];
+        if (n > 0) {
+            addEntry((float) ((read[S_SUM_YAW] - prev[S_SUM_YAW]) / n),
+                    (float) ((read[S_SUM_PITCH] - prev[S_SUM_PITCH]) / n),
+                    (float) ((read[S_SUM_ROLL] - prev[S_SUM_ROLL]) / n));
         }
-        return sum / values.size();
+        System.arraycopy(read, 0, prev, 0, S_COUNT);
     }
 
     private void addEntry(float yaw, float pitch, float roll) {
@@ -188,15 +206,10 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         return dataSet;
     }
 
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {}
-
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        if (sensorManager != null) {
-            sensorManager.unregisterListener(this);
-        }
+        pipeline.release();
         handler.removeCallbacks(timeWindowRunnable);
     }
 }
@@ -2,14 +2,14 @@ package com.example.posturetest1;
 
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.opengl.GLSurfaceView;
 import android.os.Bundle;
+import android.view.Choreographer;
 import android.widget.TextView;
 import androidx.appcompat.app.AppCompatActivity;
 
-public class MainActivity extends AppCompatActivity implements SensorEventListener {
+public class MainActivity extends AppCompatActivity {
 
     private SensorManager sensorManager;
     private Sensor accelerometer, gyroscope;
@@ -17,9 +17,34 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private CubeRenderer cubeRenderer;
     private TextView sensorTextView;
 
+    // 센서 스레드 전용 상태(SensorPipeline 스레드에서만 읽고 씀)
     private float yaw = 0, pitch = 0, roll = 0;  // 회전값
     private float posX = 0, posY = 0, posZ = 0;  // 위치값
 
+    // 센서 스레드 → UI 스냅샷
+    private static final int S_YAW = 0, S_PITCH = 1, S_ROLL = 2, S_POS_X = 3, S_POS_Y = 4, S_POS_Z = 5, S_COUNT = 6;
+    private final SensorSnapshot snapshot = new SensorSnapshot(S_COUNT);
+    private final double[] shown = new double[S_COUNT];
+    private long shownVersion = 0;
+    private SensorPipeline pipeline;
+
+    // UI: 프레임마다 스냅샷이 바뀌었을 때만 렌더러/텍스트 갱신
+    private final Choreographer.FrameCallback uiFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            long v = snapshot.read(shown);
+            if (v != shownVersion) {
+                shownVersion = v;
+                float y = (float) shown[S_YAW], p = (float) shown[S_PITCH], r = (float) shown[S_ROLL];
+                float x = (float) shown[S_POS_X], py = (float) shown[S_POS_Y], z = (float) shown[S_POS_Z];
+                cubeRenderer.setTransform(y, p, r, x, py, z);
+                sensorTextView.setText(String.format("Yaw: %+.2f, Pitch: %+.2f, Roll: %+.2f\nAccel X: %+.2f, Y: %+.2f, Z: %+.2f",
+                        y, p, r, x, py, z));
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -37,16 +62,16 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
         accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
         gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
 
-        if (accelerometer != null) {
-            sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_GAME);
-        }
-        if (gyroscope != null) {
-            sensorManager.registerListener(this, gyroscope, SensorManager.SENSOR_DELAY_GAME);
-        }
+        // 센서 처리는 전용 스레드에서, UI는 프레임 콜백에서 스냅샷만 읽음
+        pipeline = new SensorPipeline(sensorManager, "PostureSensors", this::onSensorEvent)
+                .add(accelerometer, SensorManager.SENSOR_DELAY_GAME)
+                .add(gyroscope, SensorManager.SENSOR_DELAY_GAME);
+        pipeline.start();
+        Choreographer.getInstance().postFrameCallback(uiFrame);
     }
 
-    @Override
-    public void onSensorChanged(SensorEvent event) {
+    /** 센서 스레드 */
+    private void onSensorEvent(SensorEvent event) {
         if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
             yaw += event.values[2] * 0.1f;  // Z 축 회전
             pitch += event.values[1] * 0.1f;  // Y 축 회전
@@ -59,18 +84,20 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             posZ = event.values[2] * 0.1f;
         }
 
-        cubeRenderer.setTransform(yaw, pitch, roll, posX, posY, posZ);
-        sensorTextView.setText(String.format("Yaw: %+.2f, Pitch: %+.2f, Roll: %+.2f\nAccel X: %+.2f, Y: %+.2f, Z: %+.2f",
-                yaw, pitch, roll, posX, posY, posZ));
-    }
-
-    @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        snapshot.beginWrite();
+        snapshot.put(S_YAW, yaw);
+        snapshot.put(S_PITCH, pitch);
+        snapshot.put(S_ROLL, roll);
+        snapshot.put(S_POS_X, posX);
+        snapshot.put(S_POS_Y, posY);
+        snapshot.put(S_POS_Z, posZ);
+        snapshot.endWrite();
     }
 
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        sensorManager.unregisterListener(this);
+        Choreographer.getInstance().removeFrameCallback(uiFrame);
+        pipeline.release();
     }
 }
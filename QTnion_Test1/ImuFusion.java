@@ -0,0 +1,144 @@
+package com.example.qtniontest;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+
+/**
+ * Sensor-thread fusion state: accel/gyro pairing, stationary-based gyro bias estimation and the
+ * Madgwick filter. Feed every SensorEvent to {@link #onSensorEvent}; each gyro sample runs one
+ * bias-corrected filter step with accel interpolated to the gyro timestamp ({@link ImuResampler}),
+ * 9-axis when a fresh mag sample arrived.
+ *
+ * Not thread-safe: owned by the single sensor thread. Publish results to the UI through
+ * {@link SensorSnapshot} instead of reading this object from other threads.
+ */
+public class ImuFusion {
+
+  public static final float G = 9.80665f;
+
+  // --- Gyro bias estimation (stationary-based EMA) ---
+  public static final float STATIONARY_GYRO_NORM_THRESH = 0.08f; // ~4.6°/s
+  public static final float STATIONARY_ACC_DEV_THRESH   = 0.80f; // ||a|-g|
+  private static final float BIAS_EMA_ALPHA = 0.003f;
+
+  private final MadgwickAHRS ahrs;
+  private final ImuResampler resampler = new ImuResampler();
+
+  // Time-aligned pair of the current step + latest mag
+  private final float[] acc = new float[3];
+  private final float[] gyr = new float[3];
+  private final float[] mag = new float[3];
+  private boolean magFresh = false;
+
+  private final float[] gyroBias = new float[]{0f, 0f, 0f};
+
+  // Timestamp (ns) for dt
+  private long lastGyroTimestampNs = 0;
+
+  // Results of the last fused step
+  private float dt, gyroNorm, accMag = G, accDev;
+  private boolean stationary, magFused;
+
+  public ImuFusion(float beta) {
+    ahrs = new MadgwickAHRS(beta);
+  }
+
+  /**
+   * Consumes one sensor event. Gyro samples wait in the resampler until accel around their
+   * timestamp has arrived, so one event may run zero or several filter steps.
+   * @return true if at least one filter step ran (results/quaternion updated)
+   */
+  public boolean onSensorEvent(SensorEvent event) {
+    final int type = event.sensor.getType();
+    final float[] v = event.values;
+    if (type == Sensor.TYPE_ACCELEROMETER) {
+      resampler.putAccel(event.timestamp, v[0], v[1], v[2]);
+    } else if (type == Sensor.TYPE_GYROSCOPE) {
+      resampler.putGyro(event.timestamp, v[0], v[1], v[2]);
+    } else if (type == Sensor.TYPE_MAGNETIC_FIELD) {
+      // 지자기는 방향만 쓰고 주기가 느려 최신 샘플을 다음 스텝에 사용
+      System.arraycopy(v, 0, mag, 0, 3);
+      magFresh = true;
+      return false;
+    } else {
+      return false;
+    }
+
+    boolean stepped = false;
+    while (resampler.poll(gyr, acc)) {
+      final long ts = resampler.getLastTimestampNs(); // gyro ns
+      final long prevTs = lastGyroTimestampNs;
+      lastGyroTimestampNs = ts;
+      if (prevTs == 0L) continue;
+      step((ts - prevTs) * 1e-9f);
+      stepped = true;
+    }
+    return stepped;
+  }
+
+  /**
+   * Drops queued samples and the last gyro timestamp so the first step after re-registering the
+   * listeners does not integrate over the paused gap or pair with pre-pause accel. Orientation,
+   * gyro bias and the mag reference are kept. Call on the sensor thread.
+   */
+  public void reset() {
+    resampler.clear();
+    lastGyroTimestampNs = 0;
+    magFresh = false;
+  }
+
+  /** One filter step on the aligned gyr/acc pair. */
+  private void step(float dtSec) {
+    dt = dtSec; // seconds
+
+    // 1) 정지 감지 기반 자이로 바이어스 추정
+    gyroNorm = (float)Math.sqrt(gyr[0]*gyr[0] + gyr[1]*gyr[1] + gyr[2]*gyr[2]);
+    accMag   = (float)Math.sqrt(acc[0]*acc[0] + acc[1]*acc[1] + acc[2]*acc[2]);
+    accDev   = Math.abs(accMag - G);
+    stationary = (gyroNorm < STATIONARY_GYRO_NORM_THRESH) && (accDev < STATIONARY_ACC_DEV_THRESH);
+
+    if (stationary) {
+      gyroBias[0] = (1f - BIAS_EMA_ALPHA) * gyroBias[0] + BIAS_EMA_ALPHA * gyr[0];
+      gyroBias[1] = (1f - BIAS_EMA_ALPHA) * gyroBias[1] + BIAS_EMA_ALPHA * gyr[1];
+      gyroBias[2] = (1f - BIAS_EMA_ALPHA) * gyroBias[2] + BIAS_EMA_ALPHA * gyr[2];
+    }
+
+    // 바이어스 보정 자이로
+    final float gx = gyr[0] - gyroBias[0];
+    final float gy = gyr[1] - gyroBias[1];
+    final float gz = gyr[2] - gyroBias[2];
+
+    // 2) Madgwick 업데이트
+    //    새 지자기 샘플이 있으면 9축(왜곡 판정 후 거부 시 내부에서 6축으로 대체), 없으면 6축
+    if (magFresh) {
+      magFresh = false;
+      magFused = ahrs.updateMarg(gx, gy, gz, acc[0], acc[1], acc[2], mag[0], mag[1], mag[2], dt);
+    } else {
+      ahrs.update(gx, gy, gz, acc[0], acc[1], acc[2], dt);
+    }
+  }
+
+  /** Copies the current [w, x, y, z] into out without allocating. Returns out. */
+  public double[] getQuaternion(double[] out) {
+    return ahrs.getQuaternion(out);
+  }
+
+  /** Seconds between the last two gyro events. */
+  public float getDt() { return dt; }
+  public float getGyroNorm() { return gyroNorm; }
+  /** |a| (m/s^2) used by the last step. */
+  public float getAccMag() { return accMag; }
+  /** ||a| - g| (m/s^2) used by the last step. */
+  public float getAccDev() { return accDev; }
+  public boolean isStationary() { return stationary; }
+  /** Whether the last 9-axis step accepted its mag sample. */
+  public boolean isMagFused() { return magFused; }
+  public float getGyroBias(int axis) { return gyroBias[axis]; }
+  public long getMagRejectedCount() { return ahrs.getMagRejectedCount(); }
+  /** False while the mag field reference is still being learned. */
+  public boolean isMagReferenceLearned() { return ahrs.isMagReferenceLearned(); }
+  /** Re-learn the mag field reference from the next consistent samples (e.g. after a bad start). */
+  public void resetMagReference() { ahrs.resetMagReference(); }
+  /** Accel/gyro pairing and its skew statistics. */
+  public ImuResampler getResampler() { return resampler; }
+}
@@ -0,0 +1,159 @@
+package com.example.qtniontest;
+
+/**
+ * Time-aligned accel/gyro pairing by SensorEvent.timestamp (ns).
+ *
+ * Accel and gyro arrive as independent streams with their own rates and jitter, so "the last
+ * accel copied in" can be several ms older than the gyro sample it is fused with. This keeps the
+ * recent samples of each sensor in primitive ring buffers and emits, for every gyro sample, the
+ * accel value linearly interpolated to that gyro timestamp.
+ *
+ * Usage (single thread): putAccel()/putGyro() on each event, then drain with
+ * {@code while (poll(gyroOut, accOut)) ...}. A gyro sample is held until an accel sample at or
+ * after its timestamp arrives; if that takes longer than maxWaitNs (accel stalled or much slower),
+ * it is emitted with the newest accel held instead. No allocation after construction.
+ *
+ * Skew statistics describe the raw streams: for each gyro sample, |t_gyro - t_latest_accel| at the
+ * moment the gyro arrived, i.e. the staleness latest-sample pairing would have used.
+ */
+public final class ImuResampler {
+
+  public static final long DEFAULT_MAX_WAIT_NS = 30_000_000L; // 30 ms
+
+  private final int mask;
+  private final long maxWaitNs;
+
+  // Accel ring: sample n lives at n & mask, valid for n in [max(0, accCount - cap), accCount)
+  private final long[] accT;
+  private final float[] accX, accY, accZ;
+  private long accCount = 0;
+
+  // Pending gyro FIFO: [gyrRead, gyrWrite)
+  private final long[] gyrT;
+  private final float[] gyrX, gyrY, gyrZ;
+  private long gyrRead = 0, gyrWrite = 0;
+
+  private long lastTimestampNs = 0;
+
+  // --- Stats ---
+  private long skewCount = 0;
+  private double skewSumNs = 0;
+  private long skewMaxNs = 0;
+  private long interpolatedCount = 0, heldCount = 0, droppedCount = 0;
+
+  /** @param capacity ring size per sensor, rounded up to a power of two (>= 4) */
+  public ImuResampler(int capacity, long maxWaitNs) {
+    int cap = Integer.highestOneBit(Math.max(4, capacity) - 1) << 1;
+    this.mask = cap - 1;
+    this.maxWaitNs = maxWaitNs;
+    accT = new long[cap];
+    accX = new float[cap]; accY = new float[cap]; accZ = new float[cap];
+    gyrT = new long[cap];
+    gyrX = new float[cap]; gyrY = new float[cap]; gyrZ = new float[cap];
+  }
+
+  public ImuResampler() {
+    this(64, DEFAULT_MAX_WAIT_NS);
+  }
+
+  /** Adds an accel sample. Out-of-order or duplicate timestamps are ignored. */
+  public void putAccel(long tNs, float x, float y, float z) {
+    if (accCount > 0 && tNs <= accT[(int) ((accCount - 1) & mask)]) return;
+    int i = (int) (accCount & mask);
+    accT[i] = tNs; accX[i] = x; accY[i] = y; accZ[i] = z;
+    accCount++;
+  }
+
+  /** Queues a gyro sample for pairing. If the queue is full the oldest pending sample is dropped. */
+  public void putGyro(long tNs, float x, float y, float z) {
+    if (gyrWrite > gyrRead && tNs <= gyrT[(int) ((gyrWrite - 1) & mask)]) return;
+    if (accCount > 0) {
+      long skew = Math.abs(tNs - accT[(int) ((accCount - 1) & mask)]);
+      skewCount++;
+      skewSumNs += skew;
+      if (skew > skewMaxNs) skewMaxNs = skew;
+    }
+    if (gyrWrite - gyrRead > mask) {
+      gyrRead++;
+      droppedCount++;
+    }
+    int i = (int) (gyrWrite & mask);
+    gyrT[i] = tNs; gyrX[i] = x; gyrY[i] = y; gyrZ[i] = z;
+    gyrWrite++;
+  }
+
+  /**
+   * Emits the next time-aligned pair, oldest first.
+   * @param gyroOut length >= 3, receives the gyro sample
+   * @param accOut  length >= 3, receives accel interpolated (or held) at the gyro timestamp
+   * @return false if nothing is ready yet; see {@link #getLastTimestampNs()} for the pair's time
+   */
+  public boolean poll(float[] gyroOut, float[] accOut) {
+    if (gyrRead == gyrWrite || accCount == 0) return false;
+
+    final int gi = (int) (gyrRead & mask);
+    final long t = gyrT[gi];
+    final long newest = accCount - 1;
+    final long tNewest = accT[(int) (newest & mask)];
+
+    if (tNewest < t) {
+      // Accel has not reached this gyro time yet: wait, unless it is taking too long
+      final long tGyroNewest = gyrT[(int) ((gyrWrite - 1) & mask)];
+      if (tGyroNewest - t < maxWaitNs) return false;
+      copyAcc((int) (newest & mask), accOut);
+      heldCount++;
+    } else {
+      // Newest accel is at/after t: scan back for the bracket a[k] <= t < a[k+1]
+      final long oldest = Math.max(0, accCount - (mask + 1));
+      long k = newest;
+      while (k > oldest && accT[(int) (k & mask)] > t) k--;
+      final int i0 = (int) (k & mask);
+      if (accT[i0] > t || k == newest) {
+        // Older than anything kept (or exact hit on the newest): nearest sample
+        copyAcc(i0, accOut);
+        if (accT[i0] == t) interpolatedCount++; else heldCount++;
+      } else {
+        final int i1 = (int) ((k + 1) & mask);
+        final float w = (float) ((double) (t - accT[i0]) / (accT[i1] - accT[i0]));
+        accOut[0] = accX[i0] + w * (accX[i1] - accX[i0]);
+        accOut[1] = accY[i0] + w * (accY[i1] - accY[i0]);
+        accOut[2] = accZ[i0] + w * (accZ[i1] - accZ[i0]);
+        interpolatedCount++;
+      }
+    }
+
+    gyroOut[0] = gyrX[gi]; gyroOut[1] = gyrY[gi]; gyroOut[2] = gyrZ[gi];
+    lastTimestampNs = t;
+    gyrRead++;
+    return true;
+  }
+
+  private void copyAcc(int i, float[] out) {
+    out[0] = accX[i]; out[1] = accY[i]; out[2] = accZ[i];
+  }
+
+  /** Gyro timestamp (ns) of the pair last returned by {@link #poll}. */
+  public long getLastTimestampNs() { return lastTimestampNs; }
+
+  /** Drops all samples (e.g. after the listeners were re-registered). Stats are kept. */
+  public void clear() {
+    accCount = 0;
+    gyrRead = gyrWrite = 0;
+  }
+
+  public void resetStats() {
+    skewCount = 0; skewSumNs = 0; skewMaxNs = 0;
+    interpolatedCount = heldCount = droppedCount = 0;
+  }
+
+  /** Mean |t_gyro - t_latest_accel| at gyro arrival (ns). */
+  public double getMeanSkewNs() { return skewCount == 0 ? 0 : skewSumNs / skewCount; }
+  /** Max |t_gyro - t_latest_accel| at gyro arrival (ns). */
+  public long getMaxSkewNs() { return skewMaxNs; }
+  /** Pairs whose accel was interpolated between two samples (or hit exactly). */
+  public long getInterpolatedCount() { return interpolatedCount; }
+  /** Pairs that fell back to the nearest accel sample (accel late/stalled or gyro too old). */
+  public long getHeldCount() { return heldCount; }
+  /** Gyro samples dropped because the pending queue overflowed. */
+  public long getDroppedCount() { return droppedCount; }
+}
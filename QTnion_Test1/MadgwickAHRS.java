@@ -1,39 +1,86 @@
 package com.example.qtniontest;
 
 /**
- * Minimal Madgwick AHRS (no magnetometer) for Android.
+ * Minimal Madgwick AHRS for Android: IMU (6-axis) update plus optional MARG (9-axis) update.
  * Reference:
  *   S. O. H. Madgwick, "An efficient orientation filter for inertial and inertial/magnetic sensor arrays," 2010.
  *
  * Inputs:
  *   - Gyroscope (rad/s)
  *   - Accelerometer (m/s^2)
+ *   - Magnetometer (uT, optional via updateMarg; only direction is used)
  *
  * Output:
  *   - Unit quaternion [w, x, y, z] representing device->world orientation
  *
  * Note:
  *   Without magnetometer, yaw will drift; pitch/roll stabilize via gravity.
+ *   updateMarg() fuses the magnetic field into the same quaternion to pin yaw. A sample whose
+ *   field strength or dip angle (vs. gravity) is off the learned reference is treated as
+ *   distorted (steel, magnets, motors) and that step falls back to the 6-axis update.
+ *   The reference is learned from a run of mutually consistent samples and re-learned after a
+ *   long run of rejections, so one distorted sample at start-up cannot disable mag fusion.
  */
 public class MadgwickAHRS {
 
   private double beta = 0.1; // gain (tune 0.05~0.2)
   private double q0 = 1, q1 = 0, q2 = 0, q3 = 0; // quaternion
 
+  // --- Magnetic distortion rejection ---
+  public static final double MAG_NORM_TOL = 0.15;      // |m| within ±15% of reference
+  public static final double MAG_DIP_TOL_DEG = 6.0;    // dip angle within ±6° of reference
+  private static final double MAG_MIN_UT = 15, MAG_MAX_UT = 90; // plausible Earth field range
+  private static final double MAG_REF_ALPHA = 0.02;    // reference EMA (accepted samples only)
+  private static final double MAG_DIP_TOL_RAD = Math.toRadians(MAG_DIP_TOL_DEG);
+  public static final int MAG_SEED_SAMPLES = 10;       // consistent samples needed to learn the reference
+  public static final int MAG_RESEED_REJECTS = 100;    // consecutive mismatches before re-learning (~5 s at 20 Hz)
+  private double magRefNorm = 0;   // 0 = not learned yet
+  private double magRefCos = 0;    // reference cos(angle between accel and mag) = -sin(dip)
+  private double magSeedNorm = 0, magSeedCos = 0; // running mean of the current seed candidates
+  private int magSeedCount = 0;
+  private int magRejectRun = 0;    // consecutive reference mismatches
+  private long magAccepted = 0, magRejected = 0;
+
   public MadgwickAHRS(float beta) {
     this.beta = beta;
   }
 
   public void setBeta(double beta) { this.beta = beta; }
 
+  /** Allocates a new array per call; prefer {@link #getQuaternion(double[])} on the sensor path. */
   public double[] getQuaternion() {
     return new double[]{q0, q1, q2, q3};
   }
 
+  /** Copies [w, x, y, z] into out (length >= 4) without allocating. Returns out. */
+  public double[] getQuaternion(double[] out) {
+    out[0] = q0; out[1] = q1; out[2] = q2; out[3] = q3;
+    return out;
+  }
+
+  public double getW() { return q0; }
+  public double getX() { return q1; }
+  public double getY() { return q2; }
+  public double getZ() { return q3; }
+
   public void reset() {
     q0 = 1; q1 = q2 = q3 = 0;
   }
 
+  /** Forget the learned field strength/dip (e.g. after moving to another room). */
+  public void resetMagReference() {
+    magRefNorm = 0;
+    magRefCos = 0;
+    magSeedCount = 0;
+    magRejectRun = 0;
+  }
+
+  /** False while the field reference is still being learned (mag not fused yet). */
+  public boolean isMagReferenceLearned() { return magRefNorm > 0; }
+
+  public long getMagAcceptedCount() { return magAccepted; }
+  public long getMagRejectedCount() { return magRejected; }
+
   public void update(float gx, float gy, float gz,
                      float ax, float ay, float az,
                      float dt) {
@@ -96,6 +143,220 @@ public class MadgwickAHRS {
     }
   }
 
+  /**
+   * 9-axis (MARG) update. The magnetometer sample is first checked against the learned
+   * field strength and dip; if it looks distorted (or is missing) this falls back to
+   * {@link #update} for the step.
+   *
+   * One call costs roughly twice {@link #update}. It only runs when a fresh mag sample arrived
+   * (20 Hz vs. ~200 Hz gyro), so the cost that matters is the average per gyro step.
+   *
+   * @return true if the magnetometer was fused
+   */
+  public boolean updateMarg(float gx, float gy, float gz,
+                            float ax, float ay, float az,
+                            float mx, float my, float mz,
+                            float dt) {
+    double aNorm = Math.sqrt(ax*ax + ay*ay + az*az);
+    double mNorm = Math.sqrt(mx*mx + my*my + mz*mz);
+    if (aNorm < 1e-6 || !acceptMag(ax, ay, az, aNorm, mx, my, mz, mNorm)) {
+      update(gx, gy, gz, ax, ay, az, dt);
+      return false;
+    }
+    ax /= aNorm; ay /= aNorm; az /= aNorm;
+    mx /= mNorm; my /= mNorm; mz /= mNorm;
+
+    // Auxiliary variables to avoid repeated arithmetic
+    double _2q0mx = 2.0*q0*mx;
+    double _2q0my = 2.0*q0*my;
+    double _2q0mz = 2.0*q0*mz;
+    double _2q1mx = 2.0*q1*mx;
+    double _2q0 = 2.0*q0;
+    double _2q1 = 2.0*q1;
+    double _2q2 = 2.0*q2;
+    double _2q3 = 2.0*q3;
+    double _2q0q2 = 2.0*q0*q2;
+    double _2q2q3 = 2.0*q2*q3;
+    double q0q0 = q0*q0;
+    double q0q1 = q0*q1;
+    double q0q2 = q0*q2;
+    double q0q3 = q0*q3;
+    double q1q1 = q1*q1;
+    double q1q2 = q1*q2;
+    double q1q3 = q1*q3;
+    double q2q2 = q2*q2;
+    double q2q3 = q2*q3;
+    double q3q3 = q3*q3;
+
+    // Reference direction of Earth's magnetic field (horizontal bx, vertical bz)
+    double hx = mx*q0q0 - _2q0my*q3 + _2q0mz*q2 + mx*q1q1 + _2q1*my*q2 + _2q1*mz*q3 - mx*q2q2 - mx*q3q3;
+    double hy = _2q0mx*q3 + my*q0q0 - _2q0mz*q1 + _2q1mx*q2 - my*q1q1 + my*q2q2 + _2q2*mz*q3 - my*q3q3;
+    double _2bx = Math.sqrt(hx*hx + hy*hy);
+    double _2bz = -_2q0mx*q2 + _2q0my*q1 + mz*q0q0 + _2q1mx*q3 - mz*q1q1 + _2q2*my*q3 - mz*q2q2 + mz*q3q3;
+    double _4bx = 2.0*_2bx;
+    double _4bz = 2.0*_2bz;
+
+    // Objective function residuals (gravity: fa*, field: fm*)
+    double fax = 2.0*q1q3 - _2q0q2 - ax;
+    double fay = 2.0*q0q1 + _2q2q3 - ay;
+    double faz = 1.0 - 2.0*q1q1 - 2.0*q2q2 - az;
+    double fmx = _2bx*(0.5 - q2q2 - q3q3) + _2bz*(q1q3 - q0q2) - mx;
+    double fmy = _2bx*(q1q2 - q0q3) + _2bz*(q0q1 + q2q3) - my;
+    double fmz = _2bx*(q0q2 + q1q3) + _2bz*(0.5 - q1q1 - q2q2) - mz;
+
+    // Gradient decent algorithm corrective step (J^T f)
+    double s0 = -_2q2*fax + _2q1*fay
+        - _2bz*q2*fmx + (-_2bx*q3 + _2bz*q1)*fmy + _2bx*q2*fmz;
+    double s1 = _2q3*fax + _2q0*fay - 4.0*q1*faz
+        + _2bz*q3*fmx + (_2bx*q2 + _2bz*q0)*fmy + (_2bx*q3 - _4bz*q1)*fmz;
+    double s2 = -_2q0*fax + _2q3*fay - 4.0*q2*faz
+        + (-_4bx*q2 - _2bz*q0)*fmx + (_2bx*q1 + _2bz*q3)*fmy + (_2bx*q0 - _4bz*q2)*fmz;
+    double s3 = _2q1*fax + _2q2*fay
+        + (-_4bx*q3 + _2bz*q1)*fmx + (-_2bx*q0 + _2bz*q2)*fmy + _2bx*q1*fmz;
+
+    double norm = Math.sqrt(s0*s0 + s1*s1 + s2*s2 + s3*s3);
+    if (norm > 1e-9) {
+      s0 /= norm; s1 /= norm; s2 /= norm; s3 /= norm;
+    } else {
+      s0 = s1 = s2 = s3 = 0;
+    }
+
+    double qDot0 = 0.5 * (-q1*gx - q2*gy - q3*gz) - beta * s0;
+    double qDot1 = 0.5 * ( q0*gx + q2*gz - q3*gy) - beta * s1;
+    double qDot2 = 0.5 * ( q0*gy - q1*gz + q3*gx) - beta * s2;
+    double qDot3 = 0.5 * ( q0*gz + q1*gy - q2*gx) - beta * s3;
+
+    q0 += qDot0 * dt;
+    q1 += qDot1 * dt;
+    q2 += qDot2 * dt;
+    q3 += qDot3 * dt;
+
+    norm = Math.sqrt(q0*q0 + q1*q1 + q2*q2 + q3*q3);
+    if (norm > 0) {
+      q0 /= norm; q1 /= norm; q2 /= norm; q3 /= norm;
+    } else {
+      q0 = 1; q1 = q2 = q3 = 0;
+    }
+    return true;
+  }
+
+  /**
+   * Field strength and accel/mag angle (dip) must match the learned reference.
+   * The reference is seeded once {@link #MAG_SEED_SAMPLES} plausible samples in a row agree with
+   * each other (samples are not fused meanwhile), tracks slowly on accepted samples, and is
+   * dropped for re-learning after {@link #MAG_RESEED_REJECTS} consecutive mismatches.
+   */
+  private boolean acceptMag(float ax, float ay, float az, double aNorm,
+                            float mx, float my, float mz, double mNorm) {
+    if (mNorm < MAG_MIN_UT || mNorm > MAG_MAX_UT) {
+      magRejected++;
+      return false;
+    }
+    double cos = (ax*mx + ay*my + az*mz) / (aNorm * mNorm);
+    if (magRefNorm <= 0) {
+      if (magSeedCount > 0 && matches(mNorm, cos, magSeedNorm, magSeedCos)) {
+        magSeedCount++;
+        magSeedNorm += (mNorm - magSeedNorm) / magSeedCount;
+        magSeedCos += (cos - magSeedCos) / magSeedCount;
+      } else {
+        // First candidate, or disagrees with the current run: start a new run from this sample
+        magSeedNorm = mNorm;
+        magSeedCos = cos;
+        magSeedCount = 1;
+      }
+      if (magSeedCount < MAG_SEED_SAMPLES) return false;
+      magRefNorm = magSeedNorm;
+      magRefCos = magSeedCos;
+      magSeedCount = 0;
+      magRejectRun = 0;
+    } else if (!matches(mNorm, cos, magRefNorm, magRefCos)) {
+      magRejected++;
+      if (++magRejectRun >= MAG_RESEED_REJECTS) resetMagReference(); // field changed, not a glitch
+      return false;
+    } else {
+      magRefNorm += MAG_REF_ALPHA * (mNorm - magRefNorm);
+      magRefCos += MAG_REF_ALPHA * (cos - magRefCos);
+      magRejectRun = 0;
+    }
+    magAccepted++;
+    return true;
+  }
+
+  private static boolean matches(double mNorm, double cos, double refNorm, double refCos) {
+    // Angle tolerance linearized around the reference (d cos = sin * d angle), no acos per sample
+    double cosTol = MAG_DIP_TOL_RAD * Math.sqrt(Math.max(1.0 - refCos*refCos, 1e-4));
+    return Math.abs(mNorm - refNorm) <= MAG_NORM_TOL * refNorm && Math.abs(cos - refCos) <= cosTol;
+  }
+
+  /**
+   * Offline batch update over a recorded stream (struct-of-arrays).
+   *
+   * Processes samples [from, from + count) in order, exactly as {@link #update} would one by one,
+   * and writes the quaternion after each sample to outW/X/Y/Z[outFrom + i].
+   * Filter state is kept in locals for the whole loop and written back once at the end, so the
+   * body has no field traffic, no calls and no allocation (JIT keeps it in registers).
+   * Any out array may be null to skip storing that component.
+   */
+  public void updateBatch(float[] gx, float[] gy, float[] gz,
+                          float[] ax, float[] ay, float[] az,
+                          float[] dt, int from, int count,
+                          double[] outW, double[] outX, double[] outY, double[] outZ, int outFrom) {
+    final double b = beta;
+    double w = q0, x = q1, y = q2, z = q3;
+    final int end = from + count;
+    for (int i = from, o = outFrom; i < end; i++, o++) {
+      final float wx = gx[i], wy = gy[i], wz = gz[i], h = dt[i];
+      float fx = ax[i], fy = ay[i], fz = az[i];
+      double qDot0 = 0.5 * (-x*wx - y*wy - z*wz);
+      double qDot1 = 0.5 * ( w*wx + y*wz - z*wy);
+      double qDot2 = 0.5 * ( w*wy - x*wz + z*wx);
+      double qDot3 = 0.5 * ( w*wz + x*wy - y*wx);
+
+      double norm = Math.sqrt(fx*fx + fy*fy + fz*fz);
+      if (norm >= 1e-6) {
+        fx /= norm; fy /= norm; fz /= norm;
+
+        // Same corrective step as update()
+        double _2q0 = 2.0*w, _2q1 = 2.0*x, _2q2 = 2.0*y, _2q3 = 2.0*z;
+        double _4q0 = 4.0*w, _4q1 = 4.0*x, _4q2 = 4.0*y;
+        double _8q1 = 8.0*x, _8q2 = 8.0*y;
+        double q0q0 = w*w, q1q1 = x*x, q2q2 = y*y, q3q3 = z*z;
+
+        double s0 = _4q0*q2q2 + _2q2*fx + _4q0*q1q1 - _2q1*fy;
+        double s1 = _4q1*q3q3 - _2q3*fx + 4.0*q0q0*x - _2q0*fy - _4q1 + _8q1*q1q1 + _8q1*q2q2 + _4q1*fz;
+        double s2 = 4.0*q0q0*y + _2q0*fx + _4q2*q3q3 - _2q3*fy - _4q2 + _8q2*q1q1 + _8q2*q2q2 + _4q2*fz;
+        double s3 = 4.0*q1q1*z - _2q1*fx + 4.0*q2q2*z - _2q2*fy;
+
+        norm = Math.sqrt(s0*s0 + s1*s1 + s2*s2 + s3*s3);
+        if (norm > 1e-9) {
+          s0 /= norm; s1 /= norm; s2 /= norm; s3 /= norm;
+          qDot0 -= b * s0;
+          qDot1 -= b * s1;
+          qDot2 -= b * s2;
+          qDot3 -= b * s3;
+        }
+      }
+
+      w += qDot0 * h;
+      x += qDot1 * h;
+      y += qDot2 * h;
+      z += qDot3 * h;
+
+      norm = Math.sqrt(w*w + x*x + y*y + z*z);
+      if (norm > 0) {
+        w /= norm; x /= norm; y /= norm; z /= norm;
+      } else {
+        w = 1; x = y = z = 0;
+      }
+
+      if (outW != null) outW[o] = w;
+      if (outX != null) outX[o] = x;
+      if (outY != null) outY[o] = y;
+      if (outZ != null) outZ[o] = z;
+    }
+    q0 = w; q1 = x; q2 = y; q3 = z;
+  }
+
   private void integrateGyro(float gx, float gy, float gz, float dt) {
     double qDot0 = 0.5 * (-q1*gx - q2*gy - q3*gz);
     double qDot1 = 0.5 * ( q0*gx + q2*gz - q3*gy);
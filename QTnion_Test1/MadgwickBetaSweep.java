@@ -0,0 +1,108 @@
+package com.example.qtniontest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Offline beta tuning: runs many Madgwick gains over the same recorded IMU log in parallel.
+ *
+ * The log is struct-of-arrays (gx, gy, gz in rad/s; ax, ay, az in m/s^2; dt in s) and is shared
+ * read-only by all workers. Each beta gets its own filter and its own chunk-sized quaternion
+ * buffers, runs {@link MadgwickAHRS#updateBatch} chunk by chunk and hands each chunk to a
+ * per-beta {@link Metric}, so memory stays O(chunk) per worker no matter how long the log is.
+ *
+ * Not for the UI thread: {@link #run} blocks until every beta is done.
+ */
+public final class MadgwickBetaSweep {
+
+  /** Per-beta score accumulator. Called from one worker thread only, chunks in log order. */
+  public interface Metric {
+    /** q*[0, count) = filter output for log samples [logFrom, logFrom + count) */
+    void accept(int logFrom, int count, double[] qw, double[] qx, double[] qy, double[] qz);
+
+    /** Final score after the whole log (lower = better, by convention of the caller) */
+    double result();
+  }
+
+  /** Creates a fresh Metric for each beta (must be safe to call from several threads). */
+  public interface MetricFactory {
+    Metric create(double beta);
+  }
+
+  public static final int DEFAULT_CHUNK = 4096;
+
+  private final float[] gx, gy, gz, ax, ay, az, dt;
+  private final int length;
+  private int chunk = DEFAULT_CHUNK;
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  public MadgwickBetaSweep(float[] gx, float[] gy, float[] gz,
+                           float[] ax, float[] ay, float[] az,
+                           float[] dt, int length) {
+    if (length < 0 || gx.length < length || gy.length < length || gz.length < length
+        || ax.length < length || ay.length < length || az.length < length || dt.length < length) {
+      throw new IllegalArgumentException("log arrays shorter than length " + length);
+    }
+    this.gx = gx; this.gy = gy; this.gz = gz;
+    this.ax = ax; this.ay = ay; this.az = az;
+    this.dt = dt;
+    this.length = length;
+  }
+
+  public MadgwickBetaSweep setChunkSize(int chunk) {
+    this.chunk = Math.max(1, chunk);
+    return this;
+  }
+
+  public MadgwickBetaSweep setThreads(int threads) {
+    this.threads = Math.max(1, threads);
+    return this;
+  }
+
+  /** Runs every beta (identity start) and returns scores[i] for betas[i]. */
+  public double[] run(double[] betas, MetricFactory factory) throws InterruptedException {
+    final double[] scores = new double[betas.length];
+    if (betas.length == 0) return scores;
+
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, betas.length));
+    try {
+      List<Future<?>> futures = new ArrayList<>(betas.length);
+      for (int i = 0; i < betas.length; i++) {
+        final int idx = i;
+        futures.add(pool.submit(() -> { scores[idx] = runOne(betas[idx], factory.create(betas[idx])); }));
+      }
+      for (Future<?> f : futures) {
+        try {
+          f.get();
+        } catch (ExecutionException e) {
+          Throwable c = e.getCause();
+          if (c instanceof RuntimeException) throw (RuntimeException) c;
+          if (c instanceof Error) throw (Error) c;
+          throw new IllegalStateException(c);
+        }
+      }
+    } finally {
+      pool.shutdownNow();
+    }
+    return scores;
+  }
+
+  /** Single beta on the calling thread. */
+  public double runOne(double beta, Metric metric) {
+    MadgwickAHRS ahrs = new MadgwickAHRS((float) beta);
+    ahrs.setBeta(beta); // keep full double precision of the swept value
+    final int n = Math.min(chunk, Math.max(1, length));
+    final double[] qw = new double[n], qx = new double[n], qy = new double[n], qz = new double[n];
+    for (int from = 0; from < length; from += n) {
+      if (Thread.currentThread().isInterrupted()) break;
+      int count = Math.min(n, length - from);
+      ahrs.updateBatch(gx, gy, gz, ax, ay, az, dt, from, count, qw, qx, qy, qz, 0);
+      metric.accept(from, count, qw, qx, qy, qz);
+    }
+    return metric.result();
+  }
+}
@@ -2,7 +2,7 @@ package com.example.qtniontest;
 
 import android.annotation.SuppressLint;
 import android.os.Bundle;
-import android.os.SystemClock;
+import android.view.Choreographer;
 import android.widget.Button;
 import android.widget.TextView;
 
@@ -14,58 +14,79 @@ import androidx.core.view.WindowInsetsCompat;
 
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.content.Context;
 import android.view.WindowManager;
 
-public class MainActivity extends AppCompatActivity implements SensorEventListener {
+public class MainActivity extends AppCompatActivity {
 
   private SensorManager sensorManager;
   private Sensor accelSensor;
   private Sensor gyroSensor;
+  private Sensor magSensor; // 없으면 6축(IMU)만
 
-  // Madgwick filter (quaternion-based fusion)
-  private MadgwickAHRS ahrs;
+  // --- 지자기(MARG) 융합: 자이로보다 낮은 주기로 받고, 새 샘플이 들어온 자이로 스텝에서만 9축 업데이트 ---
+  private static final int MAG_SAMPLING_US = 50_000; // 20 Hz
 
-  // Latest raw sensor values
-  private float[] acc = new float[3];
-  private float[] gyr = new float[3];
-  private boolean hasAcc = false, hasGyr = false;
+  // 센서 이벤트는 전용 스레드에서 받아 바이어스 추정 + Madgwick까지 처리
+  private SensorPipeline pipeline;
 
-  // --- Gyro bias estimation (stationary-based EMA) ---
-  private final float[] gyroBias = new float[]{0f, 0f, 0f};
-  private static final float G = 9.80665f;
-  private static final float STATIONARY_GYRO_NORM_THRESH = 0.08f; // ~4.6°/s
-  private static final float STATIONARY_ACC_DEV_THRESH   = 0.80f; // ||a|-g|
-  private static final float BIAS_EMA_ALPHA = 0.003f;
+  // ===== 아래 상태는 센서 스레드 전용 (UI에서 바꿀 때는 pipeline.post) =====
+  // Madgwick filter (quaternion-based fusion) + gyro bias
+  private ImuFusion fusion;
 
   // Snap-to-zero 조건
   private static final double SNAP_ANGLE_DEG_THRESH = 2.0;
   private static final float  SNAP_GYRO_NORM_THRESH = 0.05f;
   private static final float  SNAP_ACC_DEV_THRESH   = 0.60f;
 
-  // Timestamp (ns) for dt
-  private long lastGyroTimestampNs = 0;
-
   // Orientation quaternions
   private final double[] qCurr = new double[]{1,0,0,0}; // [w,x,y,z]
   private final double[] qInit = new double[]{1,0,0,0}; // reference (resettable)
+  private final double[] qRel  = new double[]{1,0,0,0}; // scratch: inv(qInit) * qCurr (이벤트마다 재사용)
   private boolean hasInit = false;
 
   // Diagonal axis in device coordinates: TL -> BR ≈ (1,-1,0)
-  private final double[] diagAxisBody = norm(new double[]{1, -1, 0});
+  private final double[] diagAxisBody = new double[]{1, -1, 0};
+  {
+    QuatMath.normalize3Into(diagAxisBody, diagAxisBody);
+  }
+
+  // --- G-force 최대값/현재값 추적 ---
+  private double maxGForce = 0.0;
+  private double lastAngleDeg = 0.0;
+
+  // ===== 센서 스레드 → UI 스냅샷 =====
+  private static final int S_ANGLE = 0, S_QW = 1, S_QX = 2, S_QY = 3, S_QZ = 4, S_DT = 5,
+      S_BIAS_X = 6, S_BIAS_Y = 7, S_BIAS_Z = 8, S_STATIONARY = 9, S_MAG_FUSED = 10,
+      S_MAG_REJECTED = 11, S_MAX_G = 12, S_ACC_MAG = 13,
+      S_SKEW_MEAN_NS = 14, S_SKEW_MAX_NS = 15, S_PAIR_HELD = 16, S_MAG_LEARNED = 17, S_COUNT = 18;
+  private final SensorSnapshot snapshot = new SensorSnapshot(S_COUNT);
 
   // UI
   private TextView tvAngle, tvQuat, tvDt, tvStatus, tvGForce;
   private Button btnReset, btnReset2;
 
-  // For simple FPS / dt display
-  private long lastUiUpdateMs = 0;
-
-  // --- G-force 최대값/현재값 추적 ---
-  private double maxGForce = 0.0;
-  private double lastAccMag = G; // 최근 |a| (m/s^2), 초기값은 g
+  // UI 스레드 전용: 스냅샷 읽기 버퍼 + 표시 쓰로틀
+  private final double[] shown = new double[S_COUNT];
+  private long shownVersion = 0;
+  private long lastUiUpdateNs = 0;
+  private static final long UI_INTERVAL_NS = 25_000_000L;
+
+  private final Choreographer.FrameCallback uiFrame = new Choreographer.FrameCallback() {
+    @Override
+    public void doFrame(long frameTimeNanos) {
+      if (frameTimeNanos - lastUiUpdateNs > UI_INTERVAL_NS) {
+        long v = snapshot.read(shown);
+        if (v != shownVersion) {
+          shownVersion = v;
+          lastUiUpdateNs = frameTimeNanos;
+          renderSnapshot();
+        }
+      }
+      Choreographer.getInstance().postFrameCallback(this);
+    }
+  };
 
   @Override
   protected void onCreate(Bundle savedInstanceState) {
@@ -93,157 +114,144 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
 
     // 아래쪽 Reset: G-force를 "현재 상태"로 재설정
     btnReset2.setOnClickListener(v -> {
-      // 현재 측정된 |a|로 최대 G-force를 재정의
-      maxGForce = lastAccMag / G;
-      // 즉시 UI 반영(다음 주기까지 기다리지 않도록)
-      tvGForce.setText(String.format("G-force (max): %7.3f g  (|a|=%6.3f m/s²)", maxGForce, lastAccMag));
+      pipeline.post(() -> {
+        // 현재 측정된 |a|로 최대 G-force를 재정의 → 바로 게시해 다음 프레임에 반영
+        maxGForce = fusion.getAccMag() / ImuFusion.G;
+        publish();
+      });
       tvStatus.setText("G-force reset to current value");
     });
 
     sensorManager = (SensorManager) getSystemService(Context.SENSOR_SERVICE);
     accelSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
     gyroSensor  = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
+    magSensor   = sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD);
 
     // Madgwick: beta 0.1~0.2 권장
-    ahrs = new MadgwickAHRS(0.1f);
+    fusion = new ImuFusion(0.1f);
+
+    pipeline = new SensorPipeline(sensorManager, "QTnionFusion", this::onSensorEvent)
+        .add(accelSensor, SensorManager.SENSOR_DELAY_GAME)
+        .add(gyroSensor,  SensorManager.SENSOR_DELAY_GAME)
+        .add(magSensor,   MAG_SAMPLING_US);
 
     if (accelSensor == null || gyroSensor == null) {
       tvStatus.setText("⚠️ 이 기기에서 가속도계 또는 자이로스코프를 사용할 수 없습니다.");
     } else {
-      tvStatus.setText("Sensors OK · Madgwick running · Bias & Snap enabled");
+      tvStatus.setText("Sensors OK · Madgwick " + (magSensor != null ? "MARG" : "IMU") + " running · Bias & Snap enabled");
     }
   }
 
   @Override
   protected void onResume() {
     super.onResume();
-    sensorManager.registerListener(this, accelSensor, SensorManager.SENSOR_DELAY_GAME);
-    sensorManager.registerListener(this, gyroSensor,  SensorManager.SENSOR_DELAY_GAME);
+    // 일시정지 동안 멈춘 스트림: 이전 샘플/타임스탬프를 버려 첫 스텝 dt가 정지 시간 전체가 되지 않게
+    pipeline.post(fusion::reset);
+    pipeline.start();
+    Choreographer.getInstance().postFrameCallback(uiFrame);
   }
 
   @Override
   protected void onPause() {
     super.onPause();
-    sensorManager.unregisterListener(this);
+    pipeline.stop();
+    Choreographer.getInstance().removeFrameCallback(uiFrame);
   }
 
-  @SuppressLint("DefaultLocale")
   @Override
-  public void onSensorChanged(SensorEvent event) {
-    if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-      System.arraycopy(event.values, 0, acc, 0, 3);
-      hasAcc = true;
-    } else if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-      System.arraycopy(event.values, 0, gyr, 0, 3);
-      hasGyr = true;
-
-      final long ts = event.timestamp; // ns
-      if (lastGyroTimestampNs != 0L) {
-        float dt = (ts - lastGyroTimestampNs) * 1e-9f; // seconds
-
-        if (hasAcc) {
-          // 1) 정지 감지 기반 자이로 바이어스 추정
-          final float gyroNorm = (float)Math.sqrt(gyr[0]*gyr[0] + gyr[1]*gyr[1] + gyr[2]*gyr[2]);
-          final float accMag   = (float)Math.sqrt(acc[0]*acc[0] + acc[1]*acc[1] + acc[2]*acc[2]);
-          lastAccMag = accMag; // 최근 |a| 저장
-          final float accDev   = Math.abs(accMag - G);
-          final boolean isStationaryForBias =
-              (gyroNorm < STATIONARY_GYRO_NORM_THRESH) && (accDev < STATIONARY_ACC_DEV_THRESH);
-
-          if (isStationaryForBias) {
-            gyroBias[0] = (1f - BIAS_EMA_ALPHA) * gyroBias[0] + BIAS_EMA_ALPHA * gyr[0];
-            gyroBias[1] = (1f - BIAS_EMA_ALPHA) * gyroBias[1] + BIAS_EMA_ALPHA * gyr[1];
-            gyroBias[2] = (1f - BIAS_EMA_ALPHA) * gyroBias[2] + BIAS_EMA_ALPHA * gyr[2];
-          }
-
-          // 바이어스 보정 자이로
-          final float gx = gyr[0] - gyroBias[0];
-          final float gy = gyr[1] - gyroBias[1];
-          final float gz = gyr[2] - gyroBias[2];
-
-          // 2) Madgwick 업데이트
-          ahrs.update(gx, gy, gz, acc[0], acc[1], acc[2], dt);
-          double[] q = ahrs.getQuaternion(); // [w,x,y,z]
-          qCurr[0] = q[0]; qCurr[1] = q[1]; qCurr[2] = q[2]; qCurr[3] = q[3];
-
-          if (!hasInit) {
-            qInit[0] = qCurr[0]; qInit[1] = qCurr[1]; qInit[2] = qCurr[2]; qInit[3] = qCurr[3];
-            hasInit = true;
-          }
-
-          // q_rel = inv(qInit) * qCurr
-          double[] qInitInv = quatConjugate(qInit);
-          double[] qRel = quatMultiply(qInitInv, qCurr);
-          qRel = quatNormalize(qRel);
-
-          // 대각선 축 기준 twist 각
-          double axisDot = qRel[1]*diagAxisBody[0] + qRel[2]*diagAxisBody[1] + qRel[3]*diagAxisBody[2];
-          double w = qRel[0];
-          double angleRad = 2.0 * Math.atan2(axisDot, w);
-          double angleDeg = Math.toDegrees(angleRad);
-
-          // 3) Snap-to-zero (표시각만 스냅)
-          final boolean canSnap =
-              (Math.abs(angleDeg) <= SNAP_ANGLE_DEG_THRESH) &&
-              (gyroNorm < SNAP_GYRO_NORM_THRESH) &&
-              (accDev   < SNAP_ACC_DEV_THRESH);
-          if (canSnap) angleDeg = 0.0;
-
-          // 4) G-force (최대값 갱신)
-          final double gForce = accMag / G;
-          if (gForce > maxGForce) maxGForce = gForce;
-
-          // UI 업데이트(쓰로틀)
-          long now = SystemClock.elapsedRealtime();
-          if (now - lastUiUpdateMs > 25) {
-            lastUiUpdateMs = now;
-            tvAngle.setText(String.format("Diagonal-axis angle: %7.2f°", angleDeg));
-            tvQuat.setText(String.format("q = [w=%.4f, x=%.4f, y=%.4f, z=%.4f]", qCurr[0], qCurr[1], qCurr[2], qCurr[3]));
-            tvDt.setText(String.format("dt=%.3f ms", dt*1000.0));
-            tvStatus.setText(String.format(
-                "Bias[rad/s]=[%.4f, %.4f, %.4f] · stationary=%s",
-                gyroBias[0], gyroBias[1], gyroBias[2],
-                isStationaryForBias ? "Y" : "N"
-            ));
-            // 항상 '최대값'을 표시
-            tvGForce.setText(String.format("G-force (max): %7.3f g  (|a|=%6.3f m/s²)", maxGForce, accMag));
-          }
-        }
-      }
-      lastGyroTimestampNs = ts;
-    }
+  protected void onDestroy() {
+    super.onDestroy();
+    pipeline.release();
   }
 
-  @Override
-  public void onAccuracyChanged(Sensor sensor, int accuracy) { /* Not used */ }
+  /** 센서 스레드: 융합 스텝 → 기준 대비 대각선 축 각도 → 스냅샷 게시 */
+  private void onSensorEvent(SensorEvent event) {
+    if (!fusion.onSensorEvent(event)) return;
 
-  private void resetReference() {
-    double[] q = ahrs.getQuaternion();
-    qInit[0] = q[0]; qInit[1] = q[1]; qInit[2] = q[2]; qInit[3] = q[3];
-    hasInit = true;
-    tvStatus.setText("Reference reset (0°) at current pose");
-    // 상단 Reset은 요구사항대로 G-force 최대값을 변경하지 않음.
-  }
+    fusion.getQuaternion(qCurr); // [w,x,y,z], 할당 없이 복사
+
+    if (!hasInit) {
+      QuatMath.copyInto(qCurr, qInit);
+      hasInit = true;
+    }
+
+    // q_rel = inv(qInit) * qCurr (스크래치 배열에 in-place)
+    QuatMath.conjMulInto(qInit, qCurr, qRel);
+    QuatMath.normalizeInto(qRel, qRel);
+
+    // 대각선 축 기준 twist 각
+    double angleDeg = Math.toDegrees(QuatMath.twistAngle(qRel, diagAxisBody));
+
+    // 3) Snap-to-zero (표시각만 스냅)
+    final boolean canSnap =
+        (Math.abs(angleDeg) <= SNAP_ANGLE_DEG_THRESH) &&
+        (fusion.getGyroNorm() < SNAP_GYRO_NORM_THRESH) &&
+        (fusion.getAccDev()   < SNAP_ACC_DEV_THRESH);
+    if (canSnap) angleDeg = 0.0;
+    lastAngleDeg = angleDeg;
 
-  // ---------- Math helpers ----------
-  private static double[] quatConjugate(double[] q) {
-    return new double[]{ q[0], -q[1], -q[2], -q[3] };
+    // 4) G-force (최대값 갱신)
+    final double gForce = fusion.getAccMag() / ImuFusion.G;
+    if (gForce > maxGForce) maxGForce = gForce;
+
+    publish();
   }
-  private static double[] quatMultiply(double[] a, double[] b) {
-    double w = a[0]*b[0] - a[1]*b[1] - a[2]*b[2] - a[3]*b[3];
-    double x = a[0]*b[1] + a[1]*b[0] + a[2]*b[3] - a[3]*b[2];
-    double y = a[0]*b[2] - a[1]*b[3] + a[2]*b[0] + a[3]*b[1];
-    double z = a[0]*b[3] + a[1]*b[2] - a[2]*b[1] + a[3]*b[0];
-    return new double[]{w,x,y,z};
+
+  /** 센서 스레드 */
+  private void publish() {
+    snapshot.beginWrite();
+    snapshot.put(S_ANGLE, lastAngleDeg);
+    snapshot.put(S_QW, qCurr[0]);
+    snapshot.put(S_QX, qCurr[1]);
+    snapshot.put(S_QY, qCurr[2]);
+    snapshot.put(S_QZ, qCurr[3]);
+    snapshot.put(S_DT, fusion.getDt());
+    snapshot.put(S_BIAS_X, fusion.getGyroBias(0));
+    snapshot.put(S_BIAS_Y, fusion.getGyroBias(1));
+    snapshot.put(S_BIAS_Z, fusion.getGyroBias(2));
+    snapshot.put(S_STATIONARY, fusion.isStationary() ? 1 : 0);
+    snapshot.put(S_MAG_FUSED, fusion.isMagFused() ? 1 : 0);
+    snapshot.put(S_MAG_REJECTED, fusion.getMagRejectedCount());
+    snapshot.put(S_MAG_LEARNED, fusion.isMagReferenceLearned() ? 1 : 0);
+    snapshot.put(S_MAX_G, maxGForce);
+    snapshot.put(S_ACC_MAG, fusion.getAccMag());
+    final ImuResampler rs = fusion.getResampler();
+    snapshot.put(S_SKEW_MEAN_NS, rs.getMeanSkewNs());
+    snapshot.put(S_SKEW_MAX_NS, rs.getMaxSkewNs());
+    snapshot.put(S_PAIR_HELD, rs.getHeldCount());
+    snapshot.endWrite();
   }
-  private static double[] quatNormalize(double[] q) {
-    double n = Math.sqrt(q[0]*q[0]+q[1]*q[1]+q[2]*q[2]+q[3]*q[3]);
-    if (n == 0) return new double[]{1,0,0,0};
-    return new double[]{ q[0]/n, q[1]/n, q[2]/n, q[3]/n };
+
+  /** UI 스레드 */
+  @SuppressLint("DefaultLocale")
+  private void renderSnapshot() {
+    tvAngle.setText(String.format("Diagonal-axis angle: %7.2f°", shown[S_ANGLE]));
+    tvQuat.setText(String.format("q = [w=%.4f, x=%.4f, y=%.4f, z=%.4f]",
+        shown[S_QW], shown[S_QX], shown[S_QY], shown[S_QZ]));
+    // acc/gyro 타임스탬프 차(정렬 전 원시 스트림 기준) + 보간 못 하고 최근값을 쓴 쌍 수
+    tvDt.setText(String.format("dt=%.3f ms · acc skew avg %.2f / max %.2f ms (held %d)",
+        shown[S_DT]*1000.0, shown[S_SKEW_MEAN_NS]*1e-6, shown[S_SKEW_MAX_NS]*1e-6, (long) shown[S_PAIR_HELD]));
+    tvStatus.setText(String.format(
+        "Bias[rad/s]=[%.4f, %.4f, %.4f] · stationary=%s · mag=%s (rejected %d)",
+        shown[S_BIAS_X], shown[S_BIAS_Y], shown[S_BIAS_Z],
+        shown[S_STATIONARY] != 0 ? "Y" : "N",
+        magSensor == null ? "off" : shown[S_MAG_LEARNED] == 0 ? "learning"
+            : shown[S_MAG_FUSED] != 0 ? "fused" : "rejected",
+        (long) shown[S_MAG_REJECTED]
+    ));
+    // 항상 '최대값'을 표시
+    tvGForce.setText(String.format("G-force (max): %7.3f g  (|a|=%6.3f m/s²)", shown[S_MAX_G], shown[S_ACC_MAG]));
   }
-  private static double[] norm(double[] v) {
-    double n = Math.sqrt(v[0]*v[0]+v[1]*v[1]+v[2]*v[2]);
-    if (n == 0) return new double[]{0,0,0};
-    return new double[]{ v[0]/n, v[1]/n, v[2]/n };
+
+  private void resetReference() {
+    // 기준 자세는 센서 스레드 소유 → 다음 융합 스텝과 같은 스레드에서 교체
+    // 지자기 기준(세기/복각)도 현재 위치에서 다시 학습 → 시작 시 왜곡된 값으로 잡힌 기준 복구
+    pipeline.post(() -> {
+      fusion.getQuaternion(qInit);
+      hasInit = true;
+      fusion.resetMagReference();
+    });
+    tvStatus.setText("Reference reset (0°) at current pose · mag re-learning");
+    // 상단 Reset은 요구사항대로 G-force 최대값을 변경하지 않음.
   }
 }
@@ -0,0 +1,84 @@
+package com.example.qtniontest;
+
+/**
+ * Allocation-free quaternion / 3-vector kernel.
+ *
+ * Quaternions are double[4] as [w, x, y, z], vectors are double[3].
+ * Every operation writes into a caller-owned {@code out} array (no {@code new} on the hot path),
+ * and reads all inputs into locals first, so {@code out} may alias any input
+ * (e.g. {@code normalizeInto(q, q)}).
+ *
+ * Intended for the sensor callback: keep scratch arrays as fields and reuse them per event.
+ */
+public final class QuatMath {
+
+  private QuatMath() {}
+
+  /** out = (w, x, y, z) */
+  public static void set(double[] out, double w, double x, double y, double z) {
+    out[0] = w; out[1] = x; out[2] = y; out[3] = z;
+  }
+
+  /** out = identity */
+  public static void identityInto(double[] out) {
+    out[0] = 1; out[1] = 0; out[2] = 0; out[3] = 0;
+  }
+
+  /** out = q */
+  public static void copyInto(double[] q, double[] out) {
+    out[0] = q[0]; out[1] = q[1]; out[2] = q[2]; out[3] = q[3];
+  }
+
+  /** out = conj(q) (= inverse for unit q) */
+  public static void conjugateInto(double[] q, double[] out) {
+    out[0] = q[0]; out[1] = -q[1]; out[2] = -q[2]; out[3] = -q[3];
+  }
+
+  /** out = a * b (Hamilton product) */
+  public static void mulInto(double[] a, double[] b, double[] out) {
+    final double aw = a[0], ax = a[1], ay = a[2], az = a[3];
+    final double bw = b[0], bx = b[1], by = b[2], bz = b[3];
+    out[0] = aw*bw - ax*bx - ay*by - az*bz;
+    out[1] = aw*bx + ax*bw + ay*bz - az*by;
+    out[2] = aw*by - ax*bz + ay*bw + az*bx;
+    out[3] = aw*bz + ax*by - ay*bx + az*bw;
+  }
+
+  /** out = conj(a) * b — relative rotation from a to b without a temporary conjugate */
+  public static void conjMulInto(double[] a, double[] b, double[] out) {
+    final double aw = a[0], ax = -a[1], ay = -a[2], az = -a[3];
+    final double bw = b[0], bx = b[1], by = b[2], bz = b[3];
+    out[0] = aw*bw - ax*bx - ay*by - az*bz;
+    out[1] = aw*bx + ax*bw + ay*bz - az*by;
+    out[2] = aw*by - ax*bz + ay*bw + az*bx;
+    out[3] = aw*bz + ax*by - ay*bx + az*bw;
+  }
+
+  /** out = q / |q|; zero-length q becomes identity */
+  public static void normalizeInto(double[] q, double[] out) {
+    final double n = Math.sqrt(q[0]*q[0] + q[1]*q[1] + q[2]*q[2] + q[3]*q[3]);
+    if (n == 0) {
+      identityInto(out);
+      return;
+    }
+    final double inv = 1.0 / n;
+    out[0] = q[0]*inv; out[1] = q[1]*inv; out[2] = q[2]*inv; out[3] = q[3]*inv;
+  }
+
+  /** out = v / |v| for 3-vectors; zero-length v becomes (0,0,0) */
+  public static void normalize3Into(double[] v, double[] out) {
+    final double n = Math.sqrt(v[0]*v[0] + v[1]*v[1] + v[2]*v[2]);
+    if (n == 0) {
+      out[0] = 0; out[1] = 0; out[2] = 0;
+      return;
+    }
+    final double inv = 1.0 / n;
+    out[0] = v[0]*inv; out[1] = v[1]*inv; out[2] = v[2]*inv;
+  }
+
+  /** Rotation angle (rad) of unit q about unit axis (twist component), in (-2π, 2π] */
+  public static double twistAngle(double[] q, double[] axis) {
+    final double axisDot = q[1]*axis[0] + q[2]*axis[1] + q[3]*axis[2];
+    return 2.0 * Math.atan2(axisDot, q[0]);
+  }
+}
@@ -3,10 +3,10 @@ package com.example.objectselect2;
 import android.graphics.Color;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
 import android.os.Bundle;
 import android.util.Log;
+import android.view.Choreographer;
 import android.widget.TextView;
 import androidx.activity.EdgeToEdge;
 import androidx.appcompat.app.AppCompatActivity;
@@ -18,7 +18,7 @@ import com.jjoe64.graphview.series.LineGraphSeries;
 import java.util.ArrayList;
 import java.util.List;
 
-public class MainActivity extends AppCompatActivity implements SensorEventListener {
+public class MainActivity extends AppCompatActivity {
 
     private SensorManager sensorManager;
     private Sensor accelerometer, gyroscope;
@@ -28,7 +28,46 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     private LineGraphSeries<DataPoint> gyroYawSeries, gyroPitchSeries, gyroRollSeries;
     private LineGraphSeries<DataPoint> accelXSeries, accelYSeries, accelZSeries;
     
-    private int graphXIndex = 0;
+    private int graphXIndex = 0; // 센서 스레드 전용(이벤트마다 증가)
+
+    // 센서 스레드 → UI 스냅샷: 센서별 최신 값 + 그 값의 그래프 X 인덱스
+    private static final int S_GYRO_X = 0, S_GYRO_Y = 1, S_GYRO_Z = 2, S_GYRO_INDEX = 3,
+            S_ACCEL_X = 4, S_ACCEL_Y = 5, S_ACCEL_Z = 6, S_ACCEL_INDEX = 7, S_COUNT = 8;
+    private final SensorSnapshot snapshot = new SensorSnapshot(S_COUNT);
+    private final float[] lastGyro = new float[3], lastAccel = new float[3]; // 센서 스레드 전용
+    private int gyroIndex = 0, accelIndex = 0;                               // 센서 스레드 전용
+    private final double[] read = new double[S_COUNT];
+    private double shownGyroIndex = 0, shownAccelIndex = 0;                  // UI 스레드 전용
+    private long shownVersion = 0;
+    private SensorPipeline pipeline;
+
+    // UI: 프레임마다 스냅샷을 읽어 바뀐 센서만 텍스트/그래프 갱신
+    private final Choreographer.FrameCallback uiFrame = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            long v = snapshot.read(read);
+            if (v != shownVersion) {
+                shownVersion = v;
+                if (read[S_GYRO_INDEX] != shownGyroIndex) {
+                    shownGyroIndex = read[S_GYRO_INDEX];
+                    float yaw = (float) read[S_GYRO_X], pitch = (float) read[S_GYRO_Y], roll = (float) read[S_GYRO_Z];
+                    gyroTextView.setText(String.format("Yaw: %+06.2f, Pitch: %+06.2f, Roll: %+06.2f", yaw, pitch, roll));
+                    gyroYawSeries.appendData(new DataPoint(shownGyroIndex, yaw), true, 100);
+                    gyroPitchSeries.appendData(new DataPoint(shownGyroIndex, pitch), true, 100);
+                    gyroRollSeries.appendData(new DataPoint(shownGyroIndex, roll), true, 100);
+                }
+                if (read[S_ACCEL_INDEX] != shownAccelIndex) {
+                    shownAccelIndex = read[S_ACCEL_INDEX];
+                    float accelX = (float) read[S_ACCEL_X], accelY = (float) read[S_ACCEL_Y], accelZ = (float) read[S_ACCEL_Z];
+                    accelTextView.setText(String.format("Accel X: %+06.2f, Y: %+06.2f, Z: %+06.2f", accelX, accelY, accelZ));
+                    accelXSeries.appendData(new DataPoint(shownAccelIndex, accelX), true, 100);
+                    accelYSeries.appendData(new DataPoint(shownAccelIndex, accelY), true, 100);
+                    accelZSeries.appendData(new DataPoint(shownAccelIndex, accelZ), true, 100);
+                }
+            }
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -63,6 +102,10 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
             accelerometer = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
             gyroscope = sensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE);
         }
+        // 센서 이벤트는 전용 스레드에서 받음(UI 스레드로 이벤트마다 넘기지 않음)
+        pipeline = new SensorPipeline(sensorManager, "ObjectSelectSensors", this::onSensorEvent)
+                .add(gyroscope, SensorManager.SENSOR_DELAY_UI)
+                .add(accelerometer, SensorManager.SENSOR_DELAY_UI);
 
         // 그래프 초기화 (자이로 데이터)
         gyroYawSeries = new LineGraphSeries<>();
@@ -109,45 +152,49 @@ public class MainActivity extends AppCompatActivity implements SensorEventListen
     @Override
     protected void onResume() {
         super.onResume();
-        if (sensorManager != null) {
-            if (gyroscope != null) {
-                sensorManager.registerListener(this, gyroscope, SensorManager.SENSOR_DELAY_UI);
-                Log.d("SENSOR_REGISTER", "Gyroscope registered successfully");
-            }
-            if (accelerometer != null) {
-                sensorManager.registerListener(this, accelerometer, SensorManager.SENSOR_DELAY_UI);
-                Log.d("SENSOR_REGISTER", "Accelerometer registered successfully");
-            }
+        if (pipeline.hasSensors()) {
+            pipeline.start();
+            Log.d("SENSOR_REGISTER", "Sensors registered on sensor thread");
         }
+        Choreographer.getInstance().postFrameCallback(uiFrame);
     }
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
-        runOnUiThread(() -> {
-            graphXIndex++;
-
-            if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
-                float yaw = event.values[0];
-                float pitch = event.values[1];
-                float roll = event.values[2];
-
-                gyroTextView.setText(String.format("Yaw: %+06.2f, Pitch: %+06.2f, Roll: %+06.2f", yaw, pitch, roll));
-                gyroYawSeries.appendData(new DataPoint(graphXIndex, yaw), true, 100);
-                gyroPitchSeries.appendData(new DataPoint(graphXIndex, pitch), true, 100);
-                gyroRollSeries.appendData(new DataPoint(graphXIndex, roll), true, 100);
-            } else if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
-                float accelX = event.values[0];
-                float accelY = event.values[1];
-                float accelZ = event.values[2];
-
-                accelTextView.setText(String.format("Accel X: %+06.2f, Y: %+06.2f, Z: %+06.2f", accelX, accelY, accelZ));
-                accelXSeries.appendData(new DataPoint(graphXIndex, accelX), true, 100);
-                accelYSeries.appendData(new DataPoint(graphXIndex, accelY), true, 100);
-                accelZSeries.appendData(new DataPoint(graphXIndex, accelZ), true, 100);
-            }
-        });
+    protected void onPause() {
+        super.onPause();
+        pipeline.stop();
+        Choreographer.getInstance().removeFrameCallback(uiFrame);
     }
 
     @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) { }
+    protected void onDestroy() {
+        super.onDestroy();
+        pipeline.release();
+    }
+
+    /** 센서 스레드: 최신 값과 그래프 X 인덱스만 기록해 게시 */
+    private void onSensorEvent(SensorEvent event) {
+        graphXIndex++;
+
+        if (event.sensor.getType() == Sensor.TYPE_GYROSCOPE) {
+            System.arraycopy(event.values, 0, lastGyro, 0, 3);
+            gyroIndex = graphXIndex;
+        } else if (event.sensor.getType() == Sensor.TYPE_ACCELEROMETER) {
+            System.arraycopy(event.values, 0, lastAccel, 0, 3);
+            accelIndex = graphXIndex;
+        } else {
+            return;
+        }
+
+        snapshot.beginWrite();
+        snapshot.put(S_GYRO_X, lastGyro[0]);
+        snapshot.put(S_GYRO_Y, lastGyro[1]);
+        snapshot.put(S_GYRO_Z, lastGyro[2]);
+        snapshot.put(S_GYRO_INDEX, gyroIndex);
+        snapshot.put(S_ACCEL_X, lastAccel[0]);
+        snapshot.put(S_ACCEL_Y, lastAccel[1]);
+        snapshot.put(S_ACCEL_Z, lastAccel[2]);
+        snapshot.put(S_ACCEL_INDEX, accelIndex);
+        snapshot.endWrite();
+    }
 }